@@ -0,0 +1,57 @@
+package SpringAWS.benchmarks;
+
+import SpringAWS.SpringMain;
+import SpringAWS.services.S3Service;
+import SpringAWS.testing.LocalS3Server;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * One in-process LocalS3Server and one application context per benchmark fork, shared by all its threads.
+ * Benchmarks run against the real S3Service beans, so client and transfer settings are the ones
+ * from application.properties unless overridden with -Daws.s3...=... on the forked JVM. The server answers
+ * right away unless -Dbenchmark.s3-latency=20ms or so stands in for the round trip to S3.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkContext {
+    public static final String BUCKET = "benchmark-bucket";
+
+    private LocalS3Server api;
+    private ConfigurableApplicationContext context;
+    private S3Service s3Service;
+
+    @Setup(Level.Trial)
+    public void start() {
+        this.api = new LocalS3Server.Builder()
+                .withLatency(DurationStyle.detectAndParse(System.getProperty("benchmark.s3-latency", "0ms")))
+                .build();
+        this.api.start();
+
+        // Passed as arguments, so they take precedence over application.properties
+        this.context = new SpringApplicationBuilder(SpringMain.class)
+                .web(WebApplicationType.NONE)
+                .run("--aws.s3.endpoint=http://localhost:" + this.api.port(),
+                        "--aws.s3.bucket=" + BUCKET,
+                        "--aws.s3.cache.disk.directory=target/jmh/s3-object-cache",
+                        "--logging.level.root=WARN");
+        this.s3Service = this.context.getBean(S3Service.class);
+        this.s3Service.s3Client().createBucket(BUCKET);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        this.context.close();
+        this.api.shutdown();
+    }
+
+    public S3Service s3Service() {
+        return this.s3Service;
+    }
+}
@@ -0,0 +1,106 @@
+package SpringAWS.benchmarks;
+
+import SpringAWS.services.CompressionCodec;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Codec cost against the bytes it saves, without S3 in the way: the compressed size is reported as an
+ * auxiliary counter next to the throughput, per codec, level and kind of payload.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class CompressionBenchmark {
+
+    private static final int PAYLOAD_SIZE = 4 * 1024 * 1024;
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    // none measures the plain copy the codecs are compared with
+    @Param({"none", "gzip", "zstd"})
+    private String codec;
+
+    // 0 picks the codec's default level
+    @Param({"1", "0", "9"})
+    private int level;
+
+    // Log-like text compresses well, random bytes stand in for media and archives
+    @Param({"text", "random"})
+    private String payload;
+
+    private byte[] content;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        if (this.payload.equals("random")) {
+            this.content = new byte[PAYLOAD_SIZE];
+            new Random(1416).nextBytes(this.content);
+
+            return;
+        }
+
+        StringBuilder text = new StringBuilder(PAYLOAD_SIZE);
+
+        for (int line = 0; text.length() < PAYLOAD_SIZE; line++) {
+            text.append("2024-05-01T12:00:").append(line % 60).append(" INFO request ").append(line)
+                    .append(" served GET /objects/docs/report-").append(line % 97).append(".pdf\n");
+        }
+
+        this.content = text.substring(0, PAYLOAD_SIZE).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Output {
+        public long inputBytes;
+        public long compressedBytes;
+    }
+
+    @Benchmark
+    public long compress(Output output) throws IOException {
+        CountingSink sink = new CountingSink();
+
+        try (OutputStream stream = this.open(sink)) {
+            for (int offset = 0; offset < this.content.length; offset += CHUNK_SIZE) {
+                stream.write(this.content, offset, Math.min(CHUNK_SIZE, this.content.length - offset));
+            }
+        }
+
+        output.inputBytes += this.content.length;
+        output.compressedBytes += sink.count;
+
+        return sink.count;
+    }
+
+    private OutputStream open(OutputStream sink) throws IOException {
+        if (this.codec.equals("none")) {
+            return sink;
+        }
+
+        CompressionCodec compressionCodec = CompressionCodec.fromId(this.codec).orElseThrow();
+
+        return compressionCodec.compress(sink, this.level == 0 ? compressionCodec.defaultLevel() : this.level);
+    }
+
+    private static final class CountingSink extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int value) {
+            this.count++;
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) {
+            this.count += length;
+        }
+    }
+}
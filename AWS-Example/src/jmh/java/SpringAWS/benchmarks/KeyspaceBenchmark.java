@@ -0,0 +1,64 @@
+package SpringAWS.benchmarks;
+
+import SpringAWS.services.BucketScan;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listing and delete calls, where the payload size doesn't matter but the number of keys does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class KeyspaceBenchmark {
+
+    private static final String LIST_PREFIX = "bench/listing/";
+    private static final String[] FOLDERS = {"images/", "docs/", "images/thumbnails/", "docs/archive/"};
+
+    // 10000 pages through ten continuation tokens
+    @Param({"100", "1000", "10000"})
+    private int objectCount;
+
+    @Setup(Level.Trial)
+    public void seed(BenchmarkContext context) {
+        for (int index = 0; index < this.objectCount; index++) {
+            String key = LIST_PREFIX + FOLDERS[index % FOLDERS.length] + index + ".bin";
+            context.s3Service().s3Client().putObject(BenchmarkContext.BUCKET, key, "x");
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class DeletableObject {
+        private final String key = "bench/delete/" + UUID.randomUUID() + ".bin";
+
+        // Invocation level setup is only acceptable because a put takes milliseconds, not nanoseconds
+        @Setup(Level.Invocation)
+        public void put(BenchmarkContext context) {
+            context.s3Service().putObjectStream(BenchmarkContext.BUCKET, this.key,
+                    new ByteArrayInputStream(new byte[0]), 0, null);
+        }
+    }
+
+    @Benchmark
+    public long list(BenchmarkContext context) {
+        return context.s3Service().listObjects(BenchmarkContext.BUCKET, LIST_PREFIX).count();
+    }
+
+    @Benchmark
+    public long scan(BenchmarkContext context) {
+        try (BucketScan scan = context.s3Service().scan(BenchmarkContext.BUCKET, LIST_PREFIX)) {
+            return scan.stream().count();
+        }
+    }
+
+    @Benchmark
+    public void delete(BenchmarkContext context, DeletableObject object) {
+        context.s3Service().deleteObject(BenchmarkContext.BUCKET, object.key);
+    }
+}
@@ -0,0 +1,79 @@
+package SpringAWS.benchmarks;
+
+import SpringAWS.services.CopyResult;
+import SpringAWS.services.S3Service;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.S3Object;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Put, get and copy of a single object per operation, across payload sizes. Every thread works on its
+ * own target key, so concurrent threads measure the client and connection pool rather than contention
+ * on one key.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class ObjectBenchmark {
+
+    private static final String SOURCE_KEY = "bench/objects/source.bin";
+
+    @Param({"1KB", "1MB", "16MB"})
+    private String payloadSize;
+
+    private byte[] payload;
+
+    @Setup(Level.Trial)
+    public void seed(BenchmarkContext context) {
+        this.payload = new byte[(int) DataSize.parse(this.payloadSize).toBytes()];
+        new Random(42).nextBytes(this.payload);
+
+        context.s3Service().putObjectStream(BenchmarkContext.BUCKET, SOURCE_KEY,
+                new ByteArrayInputStream(this.payload), this.payload.length, "application/octet-stream");
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        private final String key = "bench/objects/" + UUID.randomUUID() + ".bin";
+        private final byte[] buffer = new byte[64 * 1024];
+    }
+
+    @Benchmark
+    public PutObjectResult put(BenchmarkContext context, ThreadState thread) {
+        return context.s3Service().putObjectStream(BenchmarkContext.BUCKET, thread.key,
+                new ByteArrayInputStream(this.payload), this.payload.length, "application/octet-stream");
+    }
+
+    @Benchmark
+    public long get(BenchmarkContext context, ThreadState thread) throws IOException {
+        S3Service s3Service = context.s3Service();
+        long total = 0;
+
+        // Straight from S3, the disk cache would otherwise turn this into a local file read
+        try (S3Object object = s3Service.s3Client().getObject(BenchmarkContext.BUCKET, SOURCE_KEY);
+             InputStream content = object.getObjectContent()) {
+            for (int read; (read = content.read(thread.buffer)) >= 0; ) {
+                total += read;
+            }
+        }
+
+        return total;
+    }
+
+    @Benchmark
+    public CopyResult copy(BenchmarkContext context, ThreadState thread) {
+        return context.s3Service().copyObject(BenchmarkContext.BUCKET, SOURCE_KEY, BenchmarkContext.BUCKET,
+                thread.key);
+    }
+}
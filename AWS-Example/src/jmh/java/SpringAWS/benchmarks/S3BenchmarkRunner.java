@@ -0,0 +1,43 @@
+package SpringAWS.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Runs the benchmarks once per concurrency level (-Djmh.threads=1,8,32) and writes one JSON result
+ * file per level into -Djmh.output, ready to be diffed against a previous run. Below JDK 21 the virtual
+ * thread mode of {@link ThreadingModeBenchmark} is left out, so a run on the project's JDK still completes.
+ */
+public final class S3BenchmarkRunner {
+
+    private S3BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws IOException, RunnerException {
+        String include = System.getProperty("jmh.include", S3BenchmarkRunner.class.getPackage().getName() + ".*");
+        Path output = Files.createDirectories(Paths.get(System.getProperty("jmh.output", "target/jmh")));
+
+        for (String level : System.getProperty("jmh.threads", "1,8,32").split(",")) {
+            int threads = Integer.parseInt(level.trim());
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(output.resolve(String.format("s3-service-threads-%d.json", threads)).toString());
+
+            if (Runtime.version().feature() < 21) {
+                options.param("virtualThreads", "false");
+            }
+
+            new Runner(options.build()).run();
+        }
+    }
+}
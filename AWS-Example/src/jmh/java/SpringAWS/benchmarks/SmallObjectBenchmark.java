@@ -0,0 +1,80 @@
+package SpringAWS.benchmarks;
+
+import SpringAWS.services.SmallObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thumbnail sized uploads one put at a time, as a concurrent batch and as a single pack. Every invocation
+ * stores BATCH_SIZE objects, so the reported throughput is in objects per second.
+ * <p>
+ * Batches and packs only pay off by overlapping or saving round trips, so the server takes 20ms per request
+ * like a put to S3 does. Answered right away over loopback, every mode is bound by the CPU time of a request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dbenchmark.s3-latency=20ms")
+public class SmallObjectBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"4096"})
+    private int objectSize;
+
+    private byte[] content;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        this.content = new byte[this.objectSize];
+        new Random(1416).nextBytes(this.content);
+    }
+
+    @State(Scope.Thread)
+    public static class Batch {
+        private final String prefix = "bench/small/" + UUID.randomUUID() + "/";
+        private int invocation;
+
+        private List<SmallObject> next(byte[] content) {
+            List<SmallObject> objects = new ArrayList<>(BATCH_SIZE);
+            String batchPrefix = this.prefix + this.invocation++ + "/";
+
+            for (int index = 0; index < BATCH_SIZE; index++) {
+                objects.add(new SmallObject(batchPrefix + index + ".jpg", content, "image/jpeg"));
+            }
+
+            return objects;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void putEach(BenchmarkContext context, Batch batch) {
+        for (SmallObject object : batch.next(this.content)) {
+            context.s3Service().putObjectStream(BenchmarkContext.BUCKET, object.key(),
+                    new ByteArrayInputStream(object.content()), object.content().length, object.contentType());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public long uploadBatch(BenchmarkContext context, Batch batch) {
+        return context.s3Service().uploadSmallObjects(BenchmarkContext.BUCKET, batch.next(this.content)).uploaded();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public long pack(BenchmarkContext context, Batch batch) {
+        List<SmallObject> objects = batch.next(this.content);
+
+        return context.s3Service().pack(BenchmarkContext.BUCKET, objects.get(0).key() + ".pack", objects).bytes();
+    }
+}
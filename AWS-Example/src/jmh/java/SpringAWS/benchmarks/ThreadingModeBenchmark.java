@@ -0,0 +1,120 @@
+package SpringAWS.benchmarks;
+
+import SpringAWS.SpringMain;
+import SpringAWS.services.CopyJob;
+import SpringAWS.services.S3Service;
+import SpringAWS.testing.LocalS3Server;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.system.JavaVersion;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Platform versus virtual threads (spring.threads.virtual.enabled) for the two paths that block on S3:
+ * Tomcat request threads serving GET /objects/{folder}/{key}, and the executors a bulk copy fans out on.
+ * Run with -Djmh.threads=32 or more to see the difference, at low concurrency both modes are equivalent.
+ * The virtual mode needs a JDK 21 runtime, S3BenchmarkRunner only runs the platform mode on older ones.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class ThreadingModeBenchmark {
+
+    private static final String BUCKET = "threading-bucket";
+    private static final String OBJECT_KEY = "docs/threading.bin";
+    private static final String COPY_PREFIX = "bench/threading/source/";
+    private static final int COPY_OBJECTS = 50;
+
+    @Param({"false", "true"})
+    private boolean virtualThreads;
+
+    private LocalS3Server api;
+    private ConfigurableApplicationContext context;
+    private S3Service s3Service;
+    private HttpClient httpClient;
+    private URI objectUri;
+
+    @Setup(Level.Trial)
+    public void start() {
+        if (this.virtualThreads && !JavaVersion.getJavaVersion().isEqualOrNewerThan(JavaVersion.TWENTY_ONE)) {
+            throw new IllegalStateException("Virtual threads need a JDK 21 runtime, run the benchmark on one");
+        }
+
+        this.api = new LocalS3Server.Builder().build();
+        this.api.start();
+
+        // Revalidating on every request, so each GET blocks its request thread on a round trip to S3
+        this.context = new SpringApplicationBuilder(SpringMain.class)
+                .run("--server.port=0",
+                        "--spring.threads.virtual.enabled=" + this.virtualThreads,
+                        "--aws.s3.endpoint=http://localhost:" + this.api.port(),
+                        "--aws.s3.bucket=" + BUCKET,
+                        "--aws.s3.cache.disk.directory=target/jmh/s3-object-cache",
+                        "--aws.s3.cache.disk.revalidate-after=0s",
+                        "--logging.level.root=WARN");
+        this.s3Service = this.context.getBean(S3Service.class);
+        this.s3Service.s3Client().createBucket(BUCKET);
+
+        byte[] payload = new byte[16 * 1024];
+        new Random(42).nextBytes(payload);
+        this.s3Service.putObjectStream(BUCKET, OBJECT_KEY, new ByteArrayInputStream(payload), payload.length,
+                "application/octet-stream");
+
+        for (int index = 0; index < COPY_OBJECTS; index++) {
+            this.s3Service.putObjectStream(BUCKET, COPY_PREFIX + index, new ByteArrayInputStream(payload, 0, 1024),
+                    1024, "application/octet-stream");
+        }
+
+        int serverPort = ((WebServerApplicationContext) this.context).getWebServer().getPort();
+        this.objectUri = URI.create("http://localhost:" + serverPort + "/objects/" + OBJECT_KEY);
+        this.httpClient = HttpClient.newHttpClient();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        this.context.close();
+        this.api.shutdown();
+    }
+
+    @Benchmark
+    public byte[] getThroughController() throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = this.httpClient.send(HttpRequest.newBuilder(this.objectUri).GET().build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("GET " + this.objectUri + " answered " + response.statusCode());
+        }
+
+        return response.body();
+    }
+
+    @Benchmark
+    public long copyPrefix() throws InterruptedException {
+        CopyJob job = this.s3Service.copyAll(BUCKET, COPY_PREFIX, BUCKET,
+                "bench/threading/copies/" + UUID.randomUUID() + "/", false);
+
+        while (!job.finished()) {
+            Thread.sleep(1);
+        }
+
+        if (job.state() != CopyJob.State.COMPLETED) {
+            throw new IllegalStateException("Copy job " + job.id() + " failed: " + job.progress());
+        }
+
+        return job.copied();
+    }
+}
@@ -1,28 +1,264 @@
 package SpringAWS.configs;
 
+import SpringAWS.metrics.S3ClientMetrics;
 import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.AWSStaticCredentialsProvider;
 import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder.EndpointConfiguration;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3AsyncClientBuilder;
+import software.amazon.awssdk.services.s3.S3Configuration;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
 public class AWSConfig {
 
+    @Value("${aws.access-key}")
+    private String accessKey;
+
+    @Value("${aws.secret-key}")
+    private String secretKey;
+
+    @Value("${aws.region}")
+    private String region;
+
+    @Value("${aws.s3.endpoint:}")
+    private String endpoint;
+
+    @Bean
+    @ConfigurationProperties(prefix = "aws.s3.client")
+    public S3ClientProperties s3ClientProperties() {
+        return new S3ClientProperties();
+    }
+
+    @Bean
+    @ConfigurationProperties(prefix = "aws.s3.bulk-client")
+    public S3ClientProperties s3BulkClientProperties() {
+        // Bulk transfers keep many long running streams open, so default to a wider pool and slower reads
+        S3ClientProperties properties = new S3ClientProperties();
+        properties.setEnabled(false);
+        properties.setMaxConnections(500);
+        properties.setSocketTimeout(Duration.ofMinutes(2));
+
+        return properties;
+    }
+
+    @Bean
+    @ConfigurationProperties(prefix = "aws.s3.async-client")
+    public S3ClientProperties s3AsyncClientProperties() {
+        return new S3ClientProperties();
+    }
+
+    /**
+     * Credentials of the async client and of presigned URLs. Unlike the v1 providers, v2 ones tell when
+     * temporary credentials expire, which presigned URLs must not outlive.
+     */
+    @Bean
+    public AwsCredentialsProvider s3CredentialsProvider() {
+        return StaticCredentialsProvider.create(AwsBasicCredentials.create(this.accessKey, this.secretKey));
+    }
+
     @Bean
+    @Primary
     @Qualifier("s3client")
-    public AmazonS3 buildS3Client(@Value("${aws.access-key}") String accessKey,
-                                  @Value("${aws.secret-key}") String secretKey,
-                                  @Value("${aws.region}") String region) {
-        AWSCredentials credentials = new BasicAWSCredentials(accessKey, secretKey);
+    public AmazonS3 buildS3Client(@Qualifier("s3ClientProperties") S3ClientProperties clientProperties,
+                                  S3ClientMetrics clientMetrics) {
+        clientProperties.validate("aws.s3.client");
+
+        return this.buildClient("s3client", clientProperties, clientMetrics);
+    }
+
+    @Bean
+    @Qualifier("s3BulkClient")
+    @ConditionalOnProperty(prefix = "aws.s3.bulk-client", name = "enabled", havingValue = "true")
+    public AmazonS3 buildS3BulkClient(@Qualifier("s3BulkClientProperties") S3ClientProperties clientProperties,
+                                      S3ClientMetrics clientMetrics) {
+        clientProperties.validate("aws.s3.bulk-client");
+
+        return this.buildClient("s3BulkClient", clientProperties, clientMetrics);
+    }
+
+    /**
+     * Non-blocking SDK v2 client for the reactive endpoints. Requests are multiplexed over a small
+     * Netty event loop, so in-flight transfers don't hold a thread each.
+     */
+    @Bean(destroyMethod = "close")
+    @Qualifier("s3AsyncClient")
+    public S3AsyncClient buildS3AsyncClient(
+            @Qualifier("s3AsyncClientProperties") S3ClientProperties clientProperties,
+            AwsCredentialsProvider credentialsProvider) {
+        clientProperties.validate("aws.s3.async-client");
 
-        return AmazonS3ClientBuilder.standard()
+        S3AsyncClientBuilder builder = S3AsyncClient.builder()
+                .credentialsProvider(credentialsProvider)
+                .region(Region.of(this.region))
+                .httpClientBuilder(clientProperties.toAsyncHttpClient())
+                .overrideConfiguration(clientProperties.toOverrideConfiguration());
+
+        if (!this.endpoint.isEmpty()) {
+            builder.endpointOverride(URI.create(this.endpoint))
+                    .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(true).build());
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Runs the parts and ranges of multipart uploads, ranged downloads and copies. The callers bound
+     * their own concurrency, so in virtual thread mode this simply becomes a thread per task.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    @Qualifier("s3TransferExecutor")
+    public ExecutorService buildTransferExecutor(S3TransferConfig transferConfig, Environment environment) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            return virtualThreadPerTaskExecutor("s3-transfer-");
+        }
+
+        return Executors.newFixedThreadPool(transferConfig.threads(), new CustomizableThreadFactory("s3-transfer-"));
+    }
+
+    /**
+     * Runs the object copies of bulk copy jobs. Large objects fan their parts out to the transfer
+     * executor, so the two pools must stay separate or waiting copies could starve their own parts.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    @Qualifier("s3CopyExecutor")
+    public ExecutorService buildCopyExecutor(S3TransferConfig transferConfig, Environment environment) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            return virtualThreadPerTaskExecutor("s3-copy-");
+        }
+
+        return Executors.newFixedThreadPool(transferConfig.copyConcurrency(), new CustomizableThreadFactory("s3-copy-"));
+    }
+
+    /**
+     * Runs background page prefetches of listings and the shards of bucket scans. Every listing has at most
+     * one fetch in flight and every scan at most aws.s3.scan.max-concurrency shards, and listings may be
+     * consumed from transfer threads, so this pool is kept separate and unbounded.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    @Qualifier("s3ListingExecutor")
+    public ExecutorService buildListingExecutor(Environment environment) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            return virtualThreadPerTaskExecutor("s3-listing-");
+        }
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("s3-listing-");
+        threadFactory.setDaemon(true);
+
+        return Executors.newCachedThreadPool(threadFactory);
+    }
+
+    /**
+     * Runs the GETs of hedged reads, the original and its duplicate, while the reading thread waits for
+     * whichever answers first. Up to aws.s3.hedging.max-threads of them, without a queue: a read waiting
+     * behind others would defeat the hedge, so once the pool is busy the reader sends its GET unhedged.
+     * Virtual threads aren't pooled, waiting costs them nothing and the connection pool bounds their GETs.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    @Qualifier("s3HedgingExecutor")
+    public ExecutorService buildHedgingExecutor(S3HedgingConfig hedgingConfig, Environment environment) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            return virtualThreadPerTaskExecutor("s3-hedging-");
+        }
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("s3-hedging-");
+        threadFactory.setDaemon(true);
+
+        return new ThreadPoolExecutor(0, hedgingConfig.maxThreads(), 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), threadFactory);
+    }
+
+    /**
+     * Runs the puts of batched small object uploads, which are bounded by aws.s3.batch.concurrency.
+     * Kept apart from the transfer pool so a flood of small objects can't delay the parts of large ones.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    @Qualifier("s3BatchExecutor")
+    public ExecutorService buildBatchExecutor(S3BatchConfig batchConfig, Environment environment) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            return virtualThreadPerTaskExecutor("s3-batch-");
+        }
+
+        return Executors.newFixedThreadPool(batchConfig.concurrency(), new CustomizableThreadFactory("s3-batch-"));
+    }
+
+    /**
+     * Runs the requests of the executor backed async operations. Every request blocks its thread for
+     * as long as it holds a connection, so more threads than pooled connections would only queue.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    @Qualifier("s3RequestExecutor")
+    @ConditionalOnProperty(name = "aws.s3.async-operations", havingValue = "sync", matchIfMissing = true)
+    public ExecutorService buildRequestExecutor(@Qualifier("s3ClientProperties") S3ClientProperties clientProperties,
+                                                Environment environment) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            return virtualThreadPerTaskExecutor("s3-request-");
+        }
+
+        return Executors.newFixedThreadPool(clientProperties.maxConnections(),
+                new CustomizableThreadFactory("s3-request-"));
+    }
+
+    /**
+     * Executors.newThreadPerTaskExecutor only exists from JDK 21 on, looking it up reflectively keeps this
+     * class loadable on JDK 17. Only called when virtual threads are active, which Spring Boot only allows
+     * on JDK 21+.
+     */
+    private static ExecutorService virtualThreadPerTaskExecutor(String threadNamePrefix) {
+        ThreadFactory threadFactory = new VirtualThreadTaskExecutor(threadNamePrefix).getVirtualThreadFactory();
+
+        try {
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, threadFactory);
+        } catch (ReflectiveOperationException exception) {
+            throw new IllegalStateException("Virtual thread executors need JDK 21 or later", exception);
+        }
+    }
+
+    private AmazonS3 buildClient(String clientName, S3ClientProperties clientProperties,
+                                 S3ClientMetrics clientMetrics) {
+        AWSCredentials credentials = new BasicAWSCredentials(this.accessKey, this.secretKey);
+
+        AmazonS3ClientBuilder builder = AmazonS3ClientBuilder.standard()
                 .withCredentials(new AWSStaticCredentialsProvider(credentials))
-                .withRegion(region)
-                .build();
+                .withClientConfiguration(clientProperties.toClientConfiguration())
+                .withMetricsCollector(clientMetrics.collector(clientName, clientProperties.maxConnections()))
+                .withRequestHandlers(clientMetrics.byteCounter(clientName));
+
+        // Local S3 stand-ins (S3Mock etc.) only understand path style requests
+        if (this.endpoint.isEmpty()) {
+            builder.withRegion(this.region);
+        } else {
+            builder.withEndpointConfiguration(new EndpointConfiguration(this.endpoint, this.region))
+                    .withPathStyleAccessEnabled(true);
+        }
+
+        return builder.build();
     }
 }
@@ -0,0 +1,40 @@
+package SpringAWS.configs;
+
+import SpringAWS.controllers.S3ReactiveHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+/**
+ * Serves the reactive object endpoints on a Reactor Netty server of their own, next to the servlet
+ * stack. Both WebFlux and Tomcat can't own the main port, and the point of these endpoints is that
+ * they run on a handful of event loop threads instead of a servlet thread per request.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "aws.s3.reactive", name = "enabled", havingValue = "true")
+public class ReactiveServerConfig {
+
+    @Value("${aws.s3.reactive.port}")
+    private int port;
+
+    @Bean(destroyMethod = "disposeNow")
+    public DisposableServer reactiveServer(S3ReactiveHandler handler) {
+        RouterFunction<ServerResponse> routes = RouterFunctions.route()
+                .PUT("/objects/{folder}/{key}", handler::putObject)
+                .GET("/objects/{folder}/{key}", handler::getObject)
+                .GET("/objects/{folder}", handler::listObjects)
+                .build();
+
+        return HttpServer.create()
+                .port(this.port)
+                .handle(new ReactorHttpHandlerAdapter(RouterFunctions.toHttpHandler(routes)))
+                .bindNow();
+    }
+}
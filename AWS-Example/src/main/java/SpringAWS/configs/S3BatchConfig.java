@@ -0,0 +1,56 @@
+package SpringAWS.configs;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+@ConfigurationProperties(prefix = "aws.s3.batch")
+@Configuration
+public class S3BatchConfig {
+    // Puts in flight at once, each one holds a pooled connection while it runs
+    private int concurrency = 64;
+    // Contents are held in memory until they are sent, so only small objects are accepted
+    private DataSize maxObjectSize = DataSize.ofMegabytes(1);
+    // Parsed pack indexes kept for ranged member reads
+    private int packIndexCacheEntries = 1000;
+
+    @PostConstruct
+    public void validate() {
+        if (this.concurrency < 1) {
+            throw new IllegalStateException("aws.s3.batch.concurrency must be positive");
+        }
+
+        if (this.maxObjectSize.toBytes() < 1) {
+            throw new IllegalStateException("aws.s3.batch.max-object-size must be positive");
+        }
+
+        if (this.packIndexCacheEntries < 0) {
+            throw new IllegalStateException("aws.s3.batch.pack-index-cache-entries must not be negative");
+        }
+    }
+
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public int concurrency() {
+        return this.concurrency;
+    }
+
+    public void setMaxObjectSize(DataSize maxObjectSize) {
+        this.maxObjectSize = maxObjectSize;
+    }
+
+    public long maxObjectSize() {
+        return this.maxObjectSize.toBytes();
+    }
+
+    public void setPackIndexCacheEntries(int packIndexCacheEntries) {
+        this.packIndexCacheEntries = packIndexCacheEntries;
+    }
+
+    public int packIndexCacheEntries() {
+        return this.packIndexCacheEntries;
+    }
+}
@@ -0,0 +1,269 @@
+package SpringAWS.configs;
+
+import SpringAWS.services.RequestScheduler;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.retry.PredefinedRetryPolicies;
+import com.amazonaws.retry.RetryMode;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.core.retry.RetryPolicy;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+
+import java.time.Duration;
+
+/**
+ * Connection pool, timeout and retry settings of a single S3 client.
+ * Bound by {@link AWSConfig} once per client (aws.s3.client / aws.s3.bulk-client / aws.s3.async-client).
+ */
+public class S3ClientProperties {
+    // The SDK's own condition, except for requests the scheduler runs, it retries them with its own backoff
+    private static final com.amazonaws.retry.RetryPolicy.RetryCondition RETRY_CONDITION =
+            (request, exception, retriesAttempted) -> !RequestScheduler.ownsRetries()
+                    && PredefinedRetryPolicies.DEFAULT_RETRY_CONDITION
+                    .shouldRetry(request, exception, retriesAttempted);
+
+    private boolean enabled = true;
+    private int maxConnections = 200;
+    private Duration connectionTimeout = Duration.ofSeconds(5);
+    private Duration socketTimeout = Duration.ofSeconds(30);
+    // Zero disables the request / client execution timeouts
+    private Duration requestTimeout = Duration.ZERO;
+    private Duration clientExecutionTimeout = Duration.ZERO;
+    private boolean tcpKeepAlive = true;
+    // Zero keeps pooled connections forever, otherwise they're recycled to pick up S3 DNS changes
+    private Duration connectionTtl = Duration.ofMinutes(1);
+    private Duration connectionMaxIdle = Duration.ofSeconds(30);
+    private boolean useReaper = true;
+    private RetryMode retryMode = RetryMode.STANDARD;
+    private int maxErrorRetry = 3;
+    private boolean throttledRetries = true;
+    private boolean gzip = false;
+    private boolean cacheResponseMetadata = false;
+
+    /**
+     * Fails application startup on settings the SDK would silently misbehave with.
+     */
+    public void validate(String prefix) {
+        if (this.maxConnections < 1) {
+            throw new IllegalStateException(String.format("%s.max-connections must be positive", prefix));
+        }
+
+        requirePositive(prefix + ".connection-timeout", this.connectionTimeout);
+        requirePositive(prefix + ".socket-timeout", this.socketTimeout);
+        requireNotNegative(prefix + ".request-timeout", this.requestTimeout);
+        requireNotNegative(prefix + ".client-execution-timeout", this.clientExecutionTimeout);
+        requireNotNegative(prefix + ".connection-ttl", this.connectionTtl);
+        requirePositive(prefix + ".connection-max-idle", this.connectionMaxIdle);
+
+        if (this.maxErrorRetry < 0) {
+            throw new IllegalStateException(String.format("%s.max-error-retry must not be negative", prefix));
+        }
+
+        if (!this.requestTimeout.isZero() && !this.clientExecutionTimeout.isZero()
+                && this.requestTimeout.compareTo(this.clientExecutionTimeout) > 0) {
+            throw new IllegalStateException(String.format(
+                    "%s.request-timeout must not exceed %s.client-execution-timeout", prefix, prefix));
+        }
+    }
+
+    public ClientConfiguration toClientConfiguration() {
+        return new ClientConfiguration()
+                .withMaxConnections(this.maxConnections)
+                .withConnectionTimeout(toMillis(this.connectionTimeout))
+                .withSocketTimeout(toMillis(this.socketTimeout))
+                .withRequestTimeout(toMillis(this.requestTimeout))
+                .withClientExecutionTimeout(toMillis(this.clientExecutionTimeout))
+                .withTcpKeepAlive(this.tcpKeepAlive)
+                .withConnectionTTL(this.connectionTtl.isZero() ? -1 : this.connectionTtl.toMillis())
+                .withConnectionMaxIdleMillis(this.connectionMaxIdle.toMillis())
+                .withReaper(this.useReaper)
+                .withRetryMode(this.retryMode)
+                .withRetryPolicy(new com.amazonaws.retry.RetryPolicy(RETRY_CONDITION,
+                        PredefinedRetryPolicies.getDefaultBackoffStrategy(this.retryMode), this.maxErrorRetry,
+                        true, this.retryMode))
+                .withMaxErrorRetry(this.maxErrorRetry)
+                .withThrottledRetries(this.throttledRetries)
+                .withGzip(this.gzip)
+                .withCacheResponseMetadata(this.cacheResponseMetadata);
+    }
+
+    /**
+     * The same settings for the SDK v2 Netty client. The async client has no separate request timeout,
+     * it is applied per attempt instead.
+     */
+    public NettyNioAsyncHttpClient.Builder toAsyncHttpClient() {
+        return NettyNioAsyncHttpClient.builder()
+                .maxConcurrency(this.maxConnections)
+                .connectionTimeout(this.connectionTimeout)
+                .readTimeout(this.socketTimeout)
+                .writeTimeout(this.socketTimeout)
+                .tcpKeepAlive(this.tcpKeepAlive)
+                // Zero keeps pooled connections forever here as well
+                .connectionTimeToLive(this.connectionTtl)
+                .connectionMaxIdleTime(this.connectionMaxIdle)
+                .useIdleConnectionReaper(this.useReaper);
+    }
+
+    /**
+     * The retry and timeout settings for the SDK v2 client. Throttled retries map to its retry capacity,
+     * the token bucket that stops retries once too many failed. Gzip has no v2 counterpart: the Netty client
+     * doesn't ask for compressed responses, so the setting is ignored by the async client.
+     */
+    public ClientOverrideConfiguration toOverrideConfiguration() {
+        RetryPolicy.Builder retryPolicy = RetryPolicy.builder(
+                        software.amazon.awssdk.core.retry.RetryMode.valueOf(this.retryMode.name()))
+                .numRetries(this.maxErrorRetry);
+
+        if (!this.throttledRetries) {
+            retryPolicy.retryCapacityCondition(context -> true);
+        }
+
+        ClientOverrideConfiguration.Builder builder = ClientOverrideConfiguration.builder()
+                .retryPolicy(retryPolicy.build());
+
+        if (!this.requestTimeout.isZero()) {
+            builder.apiCallAttemptTimeout(this.requestTimeout);
+        }
+
+        if (!this.clientExecutionTimeout.isZero()) {
+            builder.apiCallTimeout(this.clientExecutionTimeout);
+        }
+
+        return builder.build();
+    }
+
+    private static void requirePositive(String property, Duration value) {
+        if (value.isNegative() || value.isZero()) {
+            throw new IllegalStateException(String.format("%s must be positive", property));
+        }
+    }
+
+    private static void requireNotNegative(String property, Duration value) {
+        if (value.isNegative()) {
+            throw new IllegalStateException(String.format("%s must not be negative", property));
+        }
+    }
+
+    private static int toMillis(Duration value) {
+        return (int) Math.min(value.toMillis(), Integer.MAX_VALUE);
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean enabled() {
+        return this.enabled;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int maxConnections() {
+        return this.maxConnections;
+    }
+
+    public void setConnectionTimeout(Duration connectionTimeout) {
+        this.connectionTimeout = connectionTimeout;
+    }
+
+    public Duration connectionTimeout() {
+        return this.connectionTimeout;
+    }
+
+    public void setSocketTimeout(Duration socketTimeout) {
+        this.socketTimeout = socketTimeout;
+    }
+
+    public Duration socketTimeout() {
+        return this.socketTimeout;
+    }
+
+    public void setRequestTimeout(Duration requestTimeout) {
+        this.requestTimeout = requestTimeout;
+    }
+
+    public Duration requestTimeout() {
+        return this.requestTimeout;
+    }
+
+    public void setClientExecutionTimeout(Duration clientExecutionTimeout) {
+        this.clientExecutionTimeout = clientExecutionTimeout;
+    }
+
+    public Duration clientExecutionTimeout() {
+        return this.clientExecutionTimeout;
+    }
+
+    public void setTcpKeepAlive(boolean tcpKeepAlive) {
+        this.tcpKeepAlive = tcpKeepAlive;
+    }
+
+    public boolean tcpKeepAlive() {
+        return this.tcpKeepAlive;
+    }
+
+    public void setConnectionTtl(Duration connectionTtl) {
+        this.connectionTtl = connectionTtl;
+    }
+
+    public Duration connectionTtl() {
+        return this.connectionTtl;
+    }
+
+    public void setConnectionMaxIdle(Duration connectionMaxIdle) {
+        this.connectionMaxIdle = connectionMaxIdle;
+    }
+
+    public Duration connectionMaxIdle() {
+        return this.connectionMaxIdle;
+    }
+
+    public void setUseReaper(boolean useReaper) {
+        this.useReaper = useReaper;
+    }
+
+    public boolean useReaper() {
+        return this.useReaper;
+    }
+
+    public void setRetryMode(RetryMode retryMode) {
+        this.retryMode = retryMode;
+    }
+
+    public RetryMode retryMode() {
+        return this.retryMode;
+    }
+
+    public void setMaxErrorRetry(int maxErrorRetry) {
+        this.maxErrorRetry = maxErrorRetry;
+    }
+
+    public int maxErrorRetry() {
+        return this.maxErrorRetry;
+    }
+
+    public void setThrottledRetries(boolean throttledRetries) {
+        this.throttledRetries = throttledRetries;
+    }
+
+    public boolean throttledRetries() {
+        return this.throttledRetries;
+    }
+
+    public void setGzip(boolean gzip) {
+        this.gzip = gzip;
+    }
+
+    public boolean gzip() {
+        return this.gzip;
+    }
+
+    public void setCacheResponseMetadata(boolean cacheResponseMetadata) {
+        this.cacheResponseMetadata = cacheResponseMetadata;
+    }
+
+    public boolean cacheResponseMetadata() {
+        return this.cacheResponseMetadata;
+    }
+}
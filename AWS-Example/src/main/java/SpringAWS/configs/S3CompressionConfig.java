@@ -0,0 +1,70 @@
+package SpringAWS.configs;
+
+import SpringAWS.services.CompressionCodec;
+import jakarta.annotation.PostConstruct;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+@ConfigurationProperties(prefix = "aws.s3.compression")
+@Configuration
+public class S3CompressionConfig {
+    private boolean enabled = false;
+    // Logical folder names, as in S3FolderConfig
+    private List<String> folders = List.of("docs");
+    private CompressionCodec codec = CompressionCodec.ZSTD;
+    // 0 picks the codec's default level
+    private int level = 0;
+    // Content type prefixes of formats that are compressed already and would only cost CPU
+    private List<String> skipContentTypes = List.of("image/", "video/", "audio/", "application/zip",
+            "application/gzip", "application/zstd");
+
+    @PostConstruct
+    public void validate() {
+        if (this.level != 0 && (this.level < this.codec.minLevel() || this.level > this.codec.maxLevel())) {
+            throw new IllegalStateException(String.format("aws.s3.compression.level must be between %d and %d for %s",
+                    this.codec.minLevel(), this.codec.maxLevel(), this.codec.id()));
+        }
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean enabled() {
+        return this.enabled;
+    }
+
+    public void setFolders(List<String> folders) {
+        this.folders = folders;
+    }
+
+    public List<String> folders() {
+        return this.folders;
+    }
+
+    public void setCodec(CompressionCodec codec) {
+        this.codec = codec;
+    }
+
+    public CompressionCodec codec() {
+        return this.codec;
+    }
+
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
+    public int level() {
+        return this.level == 0 ? this.codec.defaultLevel() : this.level;
+    }
+
+    public void setSkipContentTypes(List<String> skipContentTypes) {
+        this.skipContentTypes = skipContentTypes;
+    }
+
+    public List<String> skipContentTypes() {
+        return this.skipContentTypes;
+    }
+}
@@ -0,0 +1,75 @@
+package SpringAWS.configs;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+
+@ConfigurationProperties(prefix = "aws.s3.dedup")
+@Configuration
+public class S3DedupConfig {
+    private boolean enabled = false;
+    // Logical folder names, as in S3FolderConfig
+    private List<String> folders = List.of("images");
+    // Blobs are stored as <blob-prefix>/<first two hex digits>/<sha-256>
+    private String blobPrefix = "blobs/sha256";
+    // Unreferenced blobs younger than this are kept by sweeps, their uploads may still be writing the reference
+    private Duration sweepGrace = Duration.ofHours(1);
+    // Streams are spooled here while hashing, as the transfer can only be skipped once the hash is known
+    private Path spoolDirectory = Paths.get(System.getProperty("java.io.tmpdir"));
+
+    @PostConstruct
+    public void validate() {
+        if (this.blobPrefix == null || this.blobPrefix.isEmpty() || this.blobPrefix.endsWith("/")) {
+            throw new IllegalStateException("aws.s3.dedup.blob-prefix must be set and must not end with '/'");
+        }
+
+        if (this.sweepGrace == null || this.sweepGrace.isNegative()) {
+            throw new IllegalStateException("aws.s3.dedup.sweep-grace must not be negative");
+        }
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean enabled() {
+        return this.enabled;
+    }
+
+    public void setFolders(List<String> folders) {
+        this.folders = folders;
+    }
+
+    public List<String> folders() {
+        return this.folders;
+    }
+
+    public void setBlobPrefix(String blobPrefix) {
+        this.blobPrefix = blobPrefix;
+    }
+
+    public String blobPrefix() {
+        return this.blobPrefix;
+    }
+
+    public void setSweepGrace(Duration sweepGrace) {
+        this.sweepGrace = sweepGrace;
+    }
+
+    public Duration sweepGrace() {
+        return this.sweepGrace;
+    }
+
+    public void setSpoolDirectory(Path spoolDirectory) {
+        this.spoolDirectory = spoolDirectory;
+    }
+
+    public Path spoolDirectory() {
+        return this.spoolDirectory;
+    }
+}
@@ -0,0 +1,67 @@
+package SpringAWS.configs;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "aws.s3.cache.disk")
+@Configuration
+public class S3DiskCacheConfig {
+    private Path directory = Paths.get(System.getProperty("java.io.tmpdir"), "s3-object-cache");
+    private DataSize maxSize = DataSize.ofGigabytes(1);
+    private int maxEntries = 10_000;
+    // Entries validated more recently than this are served without asking S3
+    private Duration revalidateAfter = Duration.ofMinutes(1);
+
+    @PostConstruct
+    public void validate() {
+        if (this.maxSize.toBytes() < 1) {
+            throw new IllegalStateException("aws.s3.cache.disk.max-size must be positive");
+        }
+
+        if (this.maxEntries < 1) {
+            throw new IllegalStateException("aws.s3.cache.disk.max-entries must be positive");
+        }
+
+        if (this.revalidateAfter.isNegative()) {
+            throw new IllegalStateException("aws.s3.cache.disk.revalidate-after must not be negative");
+        }
+    }
+
+    public void setDirectory(Path directory) {
+        this.directory = directory;
+    }
+
+    public Path directory() {
+        return this.directory;
+    }
+
+    public void setMaxSize(DataSize maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public long maxSize() {
+        return this.maxSize.toBytes();
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public int maxEntries() {
+        return this.maxEntries;
+    }
+
+    public void setRevalidateAfter(Duration revalidateAfter) {
+        this.revalidateAfter = revalidateAfter;
+    }
+
+    public Duration revalidateAfter() {
+        return this.revalidateAfter;
+    }
+}
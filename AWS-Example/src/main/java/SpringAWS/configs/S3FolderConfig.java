@@ -3,6 +3,8 @@ package SpringAWS.configs;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.Optional;
+
 @ConfigurationProperties(prefix = "aws.s3.folder")
 @Configuration
 public class S3FolderConfig {
@@ -24,4 +26,18 @@ public class S3FolderConfig {
     public String docs() {
         return this.docs;
     }
+
+    /**
+     * Maps a logical folder name ("images" / "docs") to the configured S3 folder.
+     */
+    public Optional<String> resolve(String folder) {
+        switch (folder) {
+            case "images":
+                return Optional.ofNullable(this.images);
+            case "docs":
+                return Optional.ofNullable(this.docs);
+            default:
+                return Optional.empty();
+        }
+    }
 }
@@ -0,0 +1,115 @@
+package SpringAWS.configs;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.List;
+
+@ConfigurationProperties(prefix = "aws.s3.hedging")
+@Configuration
+public class S3HedgingConfig {
+    private boolean enabled = false;
+    // Logical folder names, as in S3FolderConfig
+    private List<String> folders = List.of("images");
+    // A GET still unanswered after this percentile of recent GET latencies gets a duplicate
+    private double percentile = 0.95;
+    // Lower bound of the hedge delay, so fast GETs aren't doubled while the latencies are still being learned
+    private Duration minDelay = Duration.ofMillis(10);
+    // How far back the latencies the percentile is taken from go
+    private Duration window = Duration.ofMinutes(1);
+    // Hedges earned per GET, so at most this share of the traffic is hedges once the burst is spent
+    private double hedgeRatio = 0.05;
+    private int hedgeBurst = 10;
+    // GETs in flight on the hedging pool, GETs past it aren't hedged and hedges past it aren't sent
+    private int maxThreads = 64;
+
+    @PostConstruct
+    public void validate() {
+        if (this.percentile <= 0 || this.percentile >= 1) {
+            throw new IllegalStateException("aws.s3.hedging.percentile must be between 0 and 1");
+        }
+
+        if (this.minDelay.isNegative()) {
+            throw new IllegalStateException("aws.s3.hedging.min-delay must not be negative");
+        }
+
+        if (this.window.isNegative() || this.window.isZero()) {
+            throw new IllegalStateException("aws.s3.hedging.window must be positive");
+        }
+
+        if (this.hedgeRatio < 0 || this.hedgeRatio > 1 || this.hedgeBurst < 0) {
+            throw new IllegalStateException(
+                    "aws.s3.hedging.hedge-ratio must be between 0 and 1 and hedge-burst must not be negative");
+        }
+
+        if (this.maxThreads < 1) {
+            throw new IllegalStateException("aws.s3.hedging.max-threads must be positive");
+        }
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean enabled() {
+        return this.enabled;
+    }
+
+    public void setFolders(List<String> folders) {
+        this.folders = folders;
+    }
+
+    public List<String> folders() {
+        return this.folders;
+    }
+
+    public void setPercentile(double percentile) {
+        this.percentile = percentile;
+    }
+
+    public double percentile() {
+        return this.percentile;
+    }
+
+    public void setMinDelay(Duration minDelay) {
+        this.minDelay = minDelay;
+    }
+
+    public Duration minDelay() {
+        return this.minDelay;
+    }
+
+    public void setWindow(Duration window) {
+        this.window = window;
+    }
+
+    public Duration window() {
+        return this.window;
+    }
+
+    public void setHedgeRatio(double hedgeRatio) {
+        this.hedgeRatio = hedgeRatio;
+    }
+
+    public double hedgeRatio() {
+        return this.hedgeRatio;
+    }
+
+    public void setHedgeBurst(int hedgeBurst) {
+        this.hedgeBurst = hedgeBurst;
+    }
+
+    public int hedgeBurst() {
+        return this.hedgeBurst;
+    }
+
+    public void setMaxThreads(int maxThreads) {
+        this.maxThreads = maxThreads;
+    }
+
+    public int maxThreads() {
+        return this.maxThreads;
+    }
+}
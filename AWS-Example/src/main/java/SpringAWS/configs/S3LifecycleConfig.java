@@ -0,0 +1,244 @@
+package SpringAWS.configs;
+
+import com.amazonaws.services.s3.model.StorageClass;
+import jakarta.annotation.PostConstruct;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lifecycle rules per bucket (aws.s3.lifecycle.rules[n]). The rules of a bucket replace its whole lifecycle
+ * configuration when applied, so buckets listed here are owned by these properties.
+ */
+@ConfigurationProperties(prefix = "aws.s3.lifecycle")
+@Configuration
+public class S3LifecycleConfig {
+    // S3 Standard list prices per GB-month (us-east-1), used by the simulator unless overridden in prices
+    private static final Map<String, Double> DEFAULT_PRICES = Map.of(
+            "STANDARD", 0.023,
+            "REDUCED_REDUNDANCY", 0.024,
+            "INTELLIGENT_TIERING", 0.023,
+            "STANDARD_IA", 0.0125,
+            "ONEZONE_IA", 0.01,
+            "GLACIER_IR", 0.004,
+            "GLACIER", 0.0036,
+            "DEEP_ARCHIVE", 0.00099);
+    // Lifecycle transition request list prices per 1000 requests (us-east-1), by the class moved to
+    private static final Map<String, Double> DEFAULT_TRANSITION_PRICES = Map.of(
+            "STANDARD_IA", 0.01,
+            "INTELLIGENT_TIERING", 0.01,
+            "ONEZONE_IA", 0.01,
+            "GLACIER_IR", 0.02,
+            "GLACIER", 0.03,
+            "DEEP_ARCHIVE", 0.05);
+
+    private boolean applyOnStartup = false;
+    private List<Rule> rules = new ArrayList<>();
+    // Storage class to USD per GB-month
+    private Map<String, Double> prices = new LinkedHashMap<>();
+    // Storage class to USD per 1000 transitions into it
+    private Map<String, Double> transitionPrices = new LinkedHashMap<>();
+    // S3 leaves smaller objects where they are unless a rule filters on size, which these rules don't
+    private DataSize minTransitionSize = DataSize.ofKilobytes(128);
+
+    @PostConstruct
+    public void validate() {
+        Set<String> ids = new HashSet<>();
+
+        if (this.minTransitionSize.isNegative()) {
+            throw new IllegalStateException("aws.s3.lifecycle.min-transition-size must not be negative");
+        }
+
+        for (Rule rule : this.rules) {
+            if (rule.bucket == null || rule.bucket.isEmpty() || rule.id == null || rule.id.isEmpty()) {
+                throw new IllegalStateException("aws.s3.lifecycle.rules need a bucket and an id");
+            }
+
+            if (!ids.add(rule.bucket + "/" + rule.id)) {
+                throw new IllegalStateException(String.format("aws.s3.lifecycle.rules has rule '%s' twice for bucket '%s'",
+                        rule.id, rule.bucket));
+            }
+
+            for (Transition transition : rule.transitions) {
+                if (transition.days < 0) {
+                    throw new IllegalStateException(String.format("Transition days of lifecycle rule '%s' must not be negative",
+                            rule.id));
+                }
+
+                try {
+                    StorageClass.fromValue(transition.storageClass);
+                } catch (IllegalArgumentException exception) {
+                    throw new IllegalStateException(String.format("Lifecycle rule '%s' has unknown storage class '%s'",
+                            rule.id, transition.storageClass));
+                }
+            }
+
+            if (rule.transitions.isEmpty() && rule.expirationDays == null && rule.noncurrentVersionExpirationDays == null
+                    && rule.abortIncompleteUploadDays == null) {
+                throw new IllegalStateException(String.format("Lifecycle rule '%s' has no action", rule.id));
+            }
+        }
+    }
+
+    public void setApplyOnStartup(boolean applyOnStartup) {
+        this.applyOnStartup = applyOnStartup;
+    }
+
+    public boolean applyOnStartup() {
+        return this.applyOnStartup;
+    }
+
+    public void setRules(List<Rule> rules) {
+        this.rules = rules;
+    }
+
+    public List<Rule> rules() {
+        return this.rules;
+    }
+
+    public void setPrices(Map<String, Double> prices) {
+        this.prices = prices;
+    }
+
+    /**
+     * USD per GB-month of the storage class, 0 for classes without a known price.
+     */
+    public double price(String storageClass) {
+        return this.prices.getOrDefault(storageClass, DEFAULT_PRICES.getOrDefault(storageClass, 0d));
+    }
+
+    public void setTransitionPrices(Map<String, Double> transitionPrices) {
+        this.transitionPrices = transitionPrices;
+    }
+
+    /**
+     * USD per request transitioning an object into the storage class, 0 for classes without a known price.
+     */
+    public double transitionPrice(String storageClass) {
+        return this.transitionPrices.getOrDefault(storageClass,
+                DEFAULT_TRANSITION_PRICES.getOrDefault(storageClass, 0d)) / 1000;
+    }
+
+    public void setMinTransitionSize(DataSize minTransitionSize) {
+        this.minTransitionSize = minTransitionSize;
+    }
+
+    public long minTransitionSize() {
+        return this.minTransitionSize.toBytes();
+    }
+
+    public static class Rule {
+        private String bucket;
+        private String id;
+        private boolean enabled = true;
+        // Key prefix the rule is limited to, empty for the whole bucket
+        private String prefix = "";
+        // Objects must carry all of these tags as well
+        private Map<String, String> tags = new LinkedHashMap<>();
+        private List<Transition> transitions = new ArrayList<>();
+        private Integer expirationDays;
+        private Integer noncurrentVersionExpirationDays;
+        private Integer abortIncompleteUploadDays;
+
+        public void setBucket(String bucket) {
+            this.bucket = bucket;
+        }
+
+        public String bucket() {
+            return this.bucket;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String id() {
+            return this.id;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public boolean enabled() {
+            return this.enabled;
+        }
+
+        public void setPrefix(String prefix) {
+            this.prefix = prefix;
+        }
+
+        public String prefix() {
+            return this.prefix;
+        }
+
+        public void setTags(Map<String, String> tags) {
+            this.tags = tags;
+        }
+
+        public Map<String, String> tags() {
+            return this.tags;
+        }
+
+        public void setTransitions(List<Transition> transitions) {
+            this.transitions = transitions;
+        }
+
+        public List<Transition> transitions() {
+            return this.transitions;
+        }
+
+        public void setExpirationDays(Integer expirationDays) {
+            this.expirationDays = expirationDays;
+        }
+
+        public Integer expirationDays() {
+            return this.expirationDays;
+        }
+
+        public void setNoncurrentVersionExpirationDays(Integer noncurrentVersionExpirationDays) {
+            this.noncurrentVersionExpirationDays = noncurrentVersionExpirationDays;
+        }
+
+        public Integer noncurrentVersionExpirationDays() {
+            return this.noncurrentVersionExpirationDays;
+        }
+
+        public void setAbortIncompleteUploadDays(Integer abortIncompleteUploadDays) {
+            this.abortIncompleteUploadDays = abortIncompleteUploadDays;
+        }
+
+        public Integer abortIncompleteUploadDays() {
+            return this.abortIncompleteUploadDays;
+        }
+    }
+
+    public static class Transition {
+        private int days;
+        // As S3 names it, e.g. STANDARD_IA, GLACIER_IR, DEEP_ARCHIVE
+        private String storageClass;
+
+        public void setDays(int days) {
+            this.days = days;
+        }
+
+        public int days() {
+            return this.days;
+        }
+
+        public void setStorageClass(String storageClass) {
+            this.storageClass = storageClass;
+        }
+
+        public String storageClass() {
+            return this.storageClass;
+        }
+    }
+}
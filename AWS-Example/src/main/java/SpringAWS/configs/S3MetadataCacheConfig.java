@@ -0,0 +1,60 @@
+package SpringAWS.configs;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "aws.s3.cache.metadata")
+@Configuration
+public class S3MetadataCacheConfig {
+    private boolean enabled = true;
+    private int maxEntries = 10_000;
+    private Duration ttl = Duration.ofSeconds(30);
+    // Misses are cached for less time, since a missing key is usually about to be written
+    private Duration negativeTtl = Duration.ofSeconds(5);
+
+    @PostConstruct
+    public void validate() {
+        if (this.maxEntries < 1) {
+            throw new IllegalStateException("aws.s3.cache.metadata.max-entries must be positive");
+        }
+
+        if (this.ttl.isNegative() || this.negativeTtl.isNegative()) {
+            throw new IllegalStateException("aws.s3.cache.metadata TTLs must not be negative");
+        }
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean enabled() {
+        return this.enabled;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public int maxEntries() {
+        return this.maxEntries;
+    }
+
+    public void setTtl(Duration ttl) {
+        this.ttl = ttl;
+    }
+
+    public Duration ttl() {
+        return this.ttl;
+    }
+
+    public void setNegativeTtl(Duration negativeTtl) {
+        this.negativeTtl = negativeTtl;
+    }
+
+    public Duration negativeTtl() {
+        return this.negativeTtl;
+    }
+}
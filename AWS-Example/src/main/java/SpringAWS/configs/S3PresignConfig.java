@@ -0,0 +1,69 @@
+package SpringAWS.configs;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "aws.s3.presign")
+@Configuration
+public class S3PresignConfig {
+    // Signature V4 rejects presigned URLs valid for longer than 7 days
+    public static final Duration MAX_EXPIRY = Duration.ofDays(7);
+
+    private Duration expiry = Duration.ofMinutes(15);
+    // Cached URLs are reissued once they'd expire within this margin, so clients always get time to use them
+    private Duration refreshBefore = Duration.ofMinutes(2);
+    private int maxEntries = 10_000;
+    private int maxKeys = 1000;
+
+    @PostConstruct
+    public void validate() {
+        if (this.expiry.isNegative() || this.expiry.isZero() || this.expiry.compareTo(MAX_EXPIRY) > 0) {
+            throw new IllegalStateException(String.format(
+                    "aws.s3.presign.expiry must be positive and at most %s", MAX_EXPIRY));
+        }
+
+        if (this.refreshBefore.isNegative() || this.refreshBefore.compareTo(this.expiry) >= 0) {
+            throw new IllegalStateException(
+                    "aws.s3.presign.refresh-before must not be negative and must be less than the expiry");
+        }
+
+        if (this.maxEntries < 1 || this.maxKeys < 1) {
+            throw new IllegalStateException("aws.s3.presign.max-entries and max-keys must be positive");
+        }
+    }
+
+    public void setExpiry(Duration expiry) {
+        this.expiry = expiry;
+    }
+
+    public Duration expiry() {
+        return this.expiry;
+    }
+
+    public void setRefreshBefore(Duration refreshBefore) {
+        this.refreshBefore = refreshBefore;
+    }
+
+    public Duration refreshBefore() {
+        return this.refreshBefore;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public int maxEntries() {
+        return this.maxEntries;
+    }
+
+    public void setMaxKeys(int maxKeys) {
+        this.maxKeys = maxKeys;
+    }
+
+    public int maxKeys() {
+        return this.maxKeys;
+    }
+}
@@ -0,0 +1,53 @@
+package SpringAWS.configs;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@ConfigurationProperties(prefix = "aws.s3.scan")
+@Configuration
+public class S3ScanConfig {
+    private int maxConcurrency = 16;
+    // How many delimiter levels are split into shards before listing them flat
+    private int shardDepth = 2;
+    private String delimiter = "/";
+
+    @PostConstruct
+    public void validate() {
+        if (this.maxConcurrency < 1) {
+            throw new IllegalStateException("aws.s3.scan.max-concurrency must be positive");
+        }
+
+        if (this.shardDepth < 0) {
+            throw new IllegalStateException("aws.s3.scan.shard-depth must not be negative");
+        }
+
+        if (this.delimiter == null || this.delimiter.isEmpty()) {
+            throw new IllegalStateException("aws.s3.scan.delimiter must not be empty");
+        }
+    }
+
+    public void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public int maxConcurrency() {
+        return this.maxConcurrency;
+    }
+
+    public void setShardDepth(int shardDepth) {
+        this.shardDepth = shardDepth;
+    }
+
+    public int shardDepth() {
+        return this.shardDepth;
+    }
+
+    public void setDelimiter(String delimiter) {
+        this.delimiter = delimiter;
+    }
+
+    public String delimiter() {
+        return this.delimiter;
+    }
+}
@@ -0,0 +1,144 @@
+package SpringAWS.configs;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "aws.s3.scheduler")
+@Configuration
+public class S3SchedulerConfig {
+    // Off runs bulk requests directly, retried by the SDK like every other request
+    private boolean enabled = true;
+    // Key segments that make up the prefix a limit is kept for, S3 throttles each partitioned prefix on its own
+    private int prefixDepth = 1;
+    private int initialLimit = 64;
+    private int minLimit = 1;
+    private int maxLimit = 256;
+    // A limit is multiplied by this on throttling, and grows back by one per limit's worth of successes
+    private double backoffRatio = 0.5;
+    private int maxRetries = 3;
+    private Duration baseDelay = Duration.ofMillis(50);
+    private Duration maxDelay = Duration.ofSeconds(5);
+    // Retries earned per request, so at most this share of the traffic is retries once the burst is spent
+    private double retryBudgetRatio = 0.1;
+    private int retryBudgetBurst = 100;
+
+    @PostConstruct
+    public void validate() {
+        if (this.prefixDepth < 0) {
+            throw new IllegalStateException("aws.s3.scheduler.prefix-depth must not be negative");
+        }
+
+        if (this.minLimit < 1 || this.initialLimit < this.minLimit || this.maxLimit < this.initialLimit) {
+            throw new IllegalStateException(
+                    "aws.s3.scheduler limits must satisfy 1 <= min-limit <= initial-limit <= max-limit");
+        }
+
+        if (this.backoffRatio <= 0 || this.backoffRatio >= 1) {
+            throw new IllegalStateException("aws.s3.scheduler.backoff-ratio must be between 0 and 1");
+        }
+
+        if (this.maxRetries < 0) {
+            throw new IllegalStateException("aws.s3.scheduler.max-retries must not be negative");
+        }
+
+        if (this.baseDelay.isNegative() || this.baseDelay.isZero() || this.maxDelay.compareTo(this.baseDelay) < 0) {
+            throw new IllegalStateException("aws.s3.scheduler.base-delay must be positive and at most max-delay");
+        }
+
+        if (this.retryBudgetRatio < 0 || this.retryBudgetBurst < 0) {
+            throw new IllegalStateException(
+                    "aws.s3.scheduler.retry-budget-ratio / retry-budget-burst must not be negative");
+        }
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean enabled() {
+        return this.enabled;
+    }
+
+    public void setPrefixDepth(int prefixDepth) {
+        this.prefixDepth = prefixDepth;
+    }
+
+    public int prefixDepth() {
+        return this.prefixDepth;
+    }
+
+    public void setInitialLimit(int initialLimit) {
+        this.initialLimit = initialLimit;
+    }
+
+    public int initialLimit() {
+        return this.initialLimit;
+    }
+
+    public void setMinLimit(int minLimit) {
+        this.minLimit = minLimit;
+    }
+
+    public int minLimit() {
+        return this.minLimit;
+    }
+
+    public void setMaxLimit(int maxLimit) {
+        this.maxLimit = maxLimit;
+    }
+
+    public int maxLimit() {
+        return this.maxLimit;
+    }
+
+    public void setBackoffRatio(double backoffRatio) {
+        this.backoffRatio = backoffRatio;
+    }
+
+    public double backoffRatio() {
+        return this.backoffRatio;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public int maxRetries() {
+        return this.maxRetries;
+    }
+
+    public void setBaseDelay(Duration baseDelay) {
+        this.baseDelay = baseDelay;
+    }
+
+    public Duration baseDelay() {
+        return this.baseDelay;
+    }
+
+    public void setMaxDelay(Duration maxDelay) {
+        this.maxDelay = maxDelay;
+    }
+
+    public Duration maxDelay() {
+        return this.maxDelay;
+    }
+
+    public void setRetryBudgetRatio(double retryBudgetRatio) {
+        this.retryBudgetRatio = retryBudgetRatio;
+    }
+
+    public double retryBudgetRatio() {
+        return this.retryBudgetRatio;
+    }
+
+    public void setRetryBudgetBurst(int retryBudgetBurst) {
+        this.retryBudgetBurst = retryBudgetBurst;
+    }
+
+    public int retryBudgetBurst() {
+        return this.retryBudgetBurst;
+    }
+}
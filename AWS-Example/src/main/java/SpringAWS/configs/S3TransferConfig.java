@@ -0,0 +1,166 @@
+package SpringAWS.configs;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+@ConfigurationProperties(prefix = "aws.s3.transfer")
+@Configuration
+public class S3TransferConfig {
+    // S3 rejects multipart parts smaller than 5MB (except for the last one)
+    public static final DataSize MIN_PART_SIZE = DataSize.ofMegabytes(5);
+    // Largest object a single CopyObject can handle, and the largest copy part
+    public static final DataSize MAX_COPY_SIZE = DataSize.ofGigabytes(5);
+
+    private DataSize partSize = DataSize.ofMegabytes(16);
+    private int threads = 8;
+    private int partRetries = 3;
+    private DataSize rangeSize = DataSize.ofMegabytes(8);
+    private DataSize singleStreamThreshold = DataSize.ofMegabytes(16);
+    private int deleteConcurrency = 8;
+    private int deleteRetries = 3;
+    private DataSize copyThreshold = DataSize.ofMegabytes(256);
+    private DataSize copyPartSize = DataSize.ofMegabytes(128);
+    private int copyConcurrency = 16;
+    // Multipart uploads of files and ranged downloads journal their progress, and pick up where a failed
+    // attempt (or process) left off when called again for the same key and file
+    private boolean resumable = false;
+    private Path journalDirectory = Paths.get(System.getProperty("java.io.tmpdir"), "s3-transfer-journal");
+
+    @PostConstruct
+    public void validate() {
+        if (this.partSize.compareTo(MIN_PART_SIZE) < 0) {
+            throw new IllegalStateException(String.format("aws.s3.transfer.part-size must be at least %s", MIN_PART_SIZE));
+        }
+
+        if (this.threads < 1) {
+            throw new IllegalStateException("aws.s3.transfer.threads must be positive");
+        }
+
+        if (this.partRetries < 0) {
+            throw new IllegalStateException("aws.s3.transfer.part-retries must not be negative");
+        }
+
+        if (this.deleteConcurrency < 1 || this.deleteRetries < 0) {
+            throw new IllegalStateException("aws.s3.transfer.delete-concurrency / delete-retries out of range");
+        }
+
+        if (this.rangeSize.toBytes() < 1) {
+            throw new IllegalStateException("aws.s3.transfer.range-size must be positive");
+        }
+
+        if (this.copyThreshold.compareTo(MAX_COPY_SIZE) > 0) {
+            throw new IllegalStateException(String.format("aws.s3.transfer.copy-threshold must not exceed %s",
+                    MAX_COPY_SIZE));
+        }
+
+        if (this.copyPartSize.compareTo(MIN_PART_SIZE) < 0 || this.copyPartSize.compareTo(MAX_COPY_SIZE) > 0) {
+            throw new IllegalStateException(String.format("aws.s3.transfer.copy-part-size must be between %s and %s",
+                    MIN_PART_SIZE, MAX_COPY_SIZE));
+        }
+
+        if (this.copyConcurrency < 1) {
+            throw new IllegalStateException("aws.s3.transfer.copy-concurrency must be positive");
+        }
+    }
+
+    public void setPartSize(DataSize partSize) {
+        this.partSize = partSize;
+    }
+
+    public long partSize() {
+        return this.partSize.toBytes();
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public int threads() {
+        return this.threads;
+    }
+
+    public void setPartRetries(int partRetries) {
+        this.partRetries = partRetries;
+    }
+
+    public int partRetries() {
+        return this.partRetries;
+    }
+
+    public void setRangeSize(DataSize rangeSize) {
+        this.rangeSize = rangeSize;
+    }
+
+    public long rangeSize() {
+        return this.rangeSize.toBytes();
+    }
+
+    public void setSingleStreamThreshold(DataSize singleStreamThreshold) {
+        this.singleStreamThreshold = singleStreamThreshold;
+    }
+
+    public long singleStreamThreshold() {
+        return this.singleStreamThreshold.toBytes();
+    }
+
+    public void setDeleteConcurrency(int deleteConcurrency) {
+        this.deleteConcurrency = deleteConcurrency;
+    }
+
+    public int deleteConcurrency() {
+        return this.deleteConcurrency;
+    }
+
+    public void setDeleteRetries(int deleteRetries) {
+        this.deleteRetries = deleteRetries;
+    }
+
+    public int deleteRetries() {
+        return this.deleteRetries;
+    }
+
+    public void setCopyThreshold(DataSize copyThreshold) {
+        this.copyThreshold = copyThreshold;
+    }
+
+    public long copyThreshold() {
+        return this.copyThreshold.toBytes();
+    }
+
+    public void setCopyPartSize(DataSize copyPartSize) {
+        this.copyPartSize = copyPartSize;
+    }
+
+    public long copyPartSize() {
+        return this.copyPartSize.toBytes();
+    }
+
+    public void setCopyConcurrency(int copyConcurrency) {
+        this.copyConcurrency = copyConcurrency;
+    }
+
+    public int copyConcurrency() {
+        return this.copyConcurrency;
+    }
+
+    public void setResumable(boolean resumable) {
+        this.resumable = resumable;
+    }
+
+    public boolean resumable() {
+        return this.resumable;
+    }
+
+    public void setJournalDirectory(Path journalDirectory) {
+        this.journalDirectory = journalDirectory;
+    }
+
+    public Path journalDirectory() {
+        return this.journalDirectory;
+    }
+}
@@ -0,0 +1,53 @@
+package SpringAWS.controllers;
+
+/**
+ * Body of POST /copies. The buckets default to the configured bucket, so moving a folder within
+ * it only needs the two prefixes.
+ */
+public class CopyRequest {
+    private String sourceBucket;
+    private String sourcePrefix;
+    private String targetBucket;
+    private String targetPrefix;
+    private boolean move;
+
+    public void setSourceBucket(String sourceBucket) {
+        this.sourceBucket = sourceBucket;
+    }
+
+    public String sourceBucket() {
+        return this.sourceBucket;
+    }
+
+    public void setSourcePrefix(String sourcePrefix) {
+        this.sourcePrefix = sourcePrefix;
+    }
+
+    public String sourcePrefix() {
+        return this.sourcePrefix;
+    }
+
+    public void setTargetBucket(String targetBucket) {
+        this.targetBucket = targetBucket;
+    }
+
+    public String targetBucket() {
+        return this.targetBucket;
+    }
+
+    public void setTargetPrefix(String targetPrefix) {
+        this.targetPrefix = targetPrefix;
+    }
+
+    public String targetPrefix() {
+        return this.targetPrefix;
+    }
+
+    public void setMove(boolean move) {
+        this.move = move;
+    }
+
+    public boolean move() {
+        return this.move;
+    }
+}
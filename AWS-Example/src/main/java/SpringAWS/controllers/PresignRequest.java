@@ -0,0 +1,45 @@
+package SpringAWS.controllers;
+
+import java.util.List;
+
+/**
+ * Body of POST /presigned-urls. The keys are relative to the folder, like in the /objects endpoints.
+ */
+public class PresignRequest {
+    private String method = "GET";
+    private String folder;
+    private List<String> keys;
+    private String contentType;
+
+    public void setMethod(String method) {
+        this.method = method;
+    }
+
+    public String method() {
+        return this.method;
+    }
+
+    public void setFolder(String folder) {
+        this.folder = folder;
+    }
+
+    public String folder() {
+        return this.folder;
+    }
+
+    public void setKeys(List<String> keys) {
+        this.keys = keys;
+    }
+
+    public List<String> keys() {
+        return this.keys;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String contentType() {
+        return this.contentType;
+    }
+}
@@ -1,12 +1,37 @@
 package SpringAWS.controllers;
 
 import SpringAWS.configs.S3FolderConfig;
+import SpringAWS.metrics.ConnectionPoolMonitor;
+import SpringAWS.services.CachedObject;
+import SpringAWS.services.CopyJob;
+import SpringAWS.services.LifecycleReport;
+import SpringAWS.services.LifecycleRuleImpact;
+import SpringAWS.services.PresignedUrl;
+import SpringAWS.services.RequestScheduler;
 import SpringAWS.services.S3Service;
+import com.amazonaws.HttpMethod;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/")
@@ -18,10 +43,269 @@ public class S3Controller {
     @Autowired
     private S3FolderConfig folderConfig;
 
+    @Autowired
+    private ConnectionPoolMonitor poolMonitor;
+
+    @Autowired
+    private RequestScheduler scheduler;
+
+    @Value("${aws.s3.bucket}")
+    private String bucketName;
+
     @GetMapping()
     public String example() {
 //        System.out.println(this.folderConfig.images());
 //        this.s3Service.nice();
         return "server works";
     }
+
+    @PutMapping("/objects/{folder}/{key}")
+    public ResponseEntity<String> putObject(@PathVariable String folder,
+                                            @PathVariable String key,
+                                            HttpServletRequest request) throws IOException {
+        String objectKey = this.objectKey(folder, key);
+        long contentLength = request.getContentLengthLong();
+
+        if (contentLength < 0) {
+            throw new ResponseStatusException(HttpStatus.LENGTH_REQUIRED, "Content-Length header is required");
+        }
+
+        String eTag;
+
+        try (InputStream inputStream = request.getInputStream()) {
+            if (this.s3Service.deduplicates(objectKey)) {
+                eTag = this.s3Service.putObjectDeduplicated(this.bucketName, objectKey, inputStream,
+                        request.getContentType()).eTag();
+            } else {
+                eTag = this.s3Service.putObjectStream(this.bucketName, objectKey, inputStream,
+                        contentLength, request.getContentType()).getETag();
+            }
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.CREATED);
+
+        if (eTag != null) {
+            response.eTag(eTag);
+        }
+
+        return response.body(objectKey);
+    }
+
+    @GetMapping("/objects/{folder}/{key}")
+    public void getObject(@PathVariable String folder,
+                          @PathVariable String key,
+                          HttpServletRequest request,
+                          HttpServletResponse response) throws IOException {
+        String objectKey = this.objectKey(folder, key);
+
+        try (CachedObject object = this.openCachedObject(objectKey)) {
+            String eTag = object.eTag() == null ? null : "\"" + object.eTag() + "\"";
+
+            if (eTag != null) {
+                response.setHeader(HttpHeaders.ETAG, eTag);
+
+                if (eTag.equals(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+                    response.setStatus(HttpStatus.NOT_MODIFIED.value());
+                    return;
+                }
+            }
+
+            if (object.contentType() != null) {
+                response.setContentType(object.contentType());
+            }
+
+            response.setContentLengthLong(object.contentLength());
+            object.transferTo(Channels.newChannel(response.getOutputStream()));
+        }
+    }
+
+    /**
+     * Starts a server-side copy (or move) of a prefix, answering right away with the job's progress.
+     */
+    @PostMapping("/copies")
+    public ResponseEntity<Map<String, Object>> startCopy(@RequestBody CopyRequest request) {
+        if (request.sourcePrefix() == null || request.targetPrefix() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "sourcePrefix and targetPrefix are required");
+        }
+
+        CopyJob job;
+
+        try {
+            job = this.s3Service.copyAll(
+                    request.sourceBucket() != null ? request.sourceBucket() : this.bucketName, request.sourcePrefix(),
+                    request.targetBucket() != null ? request.targetBucket() : this.bucketName, request.targetPrefix(),
+                    request.move());
+        } catch (IllegalArgumentException exception) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, exception.getMessage());
+        }
+
+        return ResponseEntity.accepted()
+                .location(URI.create("/copies/" + job.id()))
+                .body(job.progress());
+    }
+
+    @GetMapping("/copies/{id}")
+    public Map<String, Object> copyProgress(@PathVariable String id) {
+        return this.s3Service.copyJob(id)
+                .map(CopyJob::progress)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        String.format("Unknown copy job '%s'", id)));
+    }
+
+    /**
+     * Presigns a batch of keys of one folder, e.g. a whole gallery, for direct GETs or PUTs against S3.
+     */
+    @PostMapping("/presigned-urls")
+    public Map<String, Object> presignUrls(@RequestBody PresignRequest request) {
+        if (request.keys() == null || request.keys().isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "keys are required");
+        }
+
+        HttpMethod method;
+
+        try {
+            method = HttpMethod.valueOf(request.method().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException exception) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    String.format("Unknown method '%s'", request.method()));
+        }
+
+        String folder = this.objectKey(request.folder(), "");
+        List<String> objectKeys = request.keys().stream()
+                .map(key -> folder + key)
+                .collect(Collectors.toList());
+        List<PresignedUrl> urls;
+
+        try {
+            urls = this.s3Service.presignedUrls(this.bucketName, objectKeys, method, request.contentType());
+        } catch (IllegalArgumentException exception) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, exception.getMessage());
+        }
+
+        List<Map<String, Object>> entries = new ArrayList<>(urls.size());
+
+        for (int index = 0; index < urls.size(); index++) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("key", request.keys().get(index));
+            entry.put("url", urls.get(index).url().toString());
+            entry.put("expiresAt", urls.get(index).expiresAt().toString());
+            entries.add(entry);
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("method", method);
+        response.put("urls", entries);
+
+        return response;
+    }
+
+    /**
+     * Dry run of the lifecycle rules: what they would transition or expire {@code days} from now, and the savings.
+     */
+    @GetMapping("/lifecycle/simulation")
+    public Map<String, Object> simulateLifecycle(@RequestParam(required = false) String bucket,
+                                                 @RequestParam(defaultValue = "0") int days) {
+        if (days < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "days must not be negative");
+        }
+
+        LifecycleReport report;
+
+        try {
+            report = this.s3Service.simulateLifecycle(bucket != null ? bucket : this.bucketName, Duration.ofDays(days));
+        } catch (IllegalArgumentException exception) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, exception.getMessage());
+        }
+
+        List<Map<String, Object>> rules = new ArrayList<>(report.rules().size());
+
+        for (LifecycleRuleImpact impact : report.rules()) {
+            Map<String, Object> actions = new LinkedHashMap<>();
+            impact.actions().forEach((action, actionImpact) -> {
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("objects", actionImpact.objects());
+                entry.put("bytes", actionImpact.bytes());
+                entry.put("monthlySavings", actionImpact.monthlySavings());
+                entry.put("transitionCost", actionImpact.transitionCost());
+                actions.put(action, entry);
+            });
+
+            Map<String, Object> rule = new LinkedHashMap<>();
+            rule.put("ruleId", impact.ruleId());
+            rule.put("simulated", impact.simulated());
+            rule.put("objects", impact.objects());
+            rule.put("bytes", impact.bytes());
+            rule.put("actions", actions);
+            rule.put("monthlySavings", impact.monthlySavings());
+            rule.put("transitionCost", impact.transitionCost());
+            rules.add(rule);
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("bucket", report.bucketName());
+        response.put("at", report.at().toString());
+        response.put("scannedObjects", report.scannedObjects());
+        response.put("scannedBytes", report.scannedBytes());
+        response.put("rules", rules);
+        response.put("monthlySavings", report.monthlySavings());
+        response.put("transitionCost", report.transitionCost());
+
+        return response;
+    }
+
+    @GetMapping("/cache/presigned-urls")
+    public Map<String, Long> presignedUrlCacheStats() {
+        return this.s3Service.presignedUrlCacheStats();
+    }
+
+    @GetMapping("/cache/dedup-index")
+    public Map<String, Long> dedupStats() {
+        return this.s3Service.dedupStats();
+    }
+
+    @GetMapping("/cache/disk")
+    public Map<String, Long> diskCacheStats() {
+        return this.s3Service.diskCacheStats();
+    }
+
+    @GetMapping("/client/pools")
+    public Map<String, Map<String, Long>> connectionPools() {
+        return this.poolMonitor.snapshot();
+    }
+
+    @GetMapping("/client/hedging")
+    public Map<String, Long> hedgingStats() {
+        return this.s3Service.hedgingStats();
+    }
+
+    @GetMapping("/client/scheduler")
+    public Map<String, Map<String, Number>> schedulerLimits() {
+        return this.scheduler.snapshot();
+    }
+
+    @GetMapping("/cache/metadata")
+    public Map<String, Long> metadataCacheStats() {
+        return this.s3Service.metadataCacheStats();
+    }
+
+    private CachedObject openCachedObject(String objectKey) throws IOException {
+        try {
+            return this.s3Service.openCachedObject(this.bucketName, objectKey);
+        } catch (AmazonS3Exception exception) {
+            if (exception.getStatusCode() == HttpStatus.NOT_FOUND.value()) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        String.format("Object '%s' not found", objectKey));
+            }
+
+            throw exception;
+        }
+    }
+
+    private String objectKey(String folder, String key) {
+        String folderName = this.folderConfig.resolve(folder)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        String.format("Unknown folder '%s'", folder)));
+
+        return folderName + "/" + key;
+    }
 }
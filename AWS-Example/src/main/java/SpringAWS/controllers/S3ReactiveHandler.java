@@ -0,0 +1,214 @@
+package SpringAWS.controllers;
+
+import SpringAWS.configs.S3FolderConfig;
+import SpringAWS.services.ContentDeduplicator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.async.ResponsePublisher;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Non-blocking counterparts of the {@link S3Controller} object endpoints, served by the reactive
+ * server (aws.s3.reactive.enabled). Bodies are streamed between the HTTP connection and the async
+ * S3 client chunk by chunk, each side only pulling as much as the other can take, so neither a
+ * thread nor a whole object is held per transfer.
+ */
+@Component
+public class S3ReactiveHandler {
+
+    @Autowired
+    @Qualifier("s3AsyncClient")
+    private S3AsyncClient s3AsyncClient;
+
+    @Autowired
+    private S3FolderConfig folderConfig;
+
+    @Value("${aws.s3.bucket}")
+    private String bucketName;
+
+    public Mono<ServerResponse> putObject(ServerRequest request) {
+        String objectKey = this.objectKey(request.pathVariable("folder"), request.pathVariable("key"));
+        long contentLength = request.headers().contentLength().orElse(-1);
+
+        if (contentLength < 0) {
+            return Mono.error(new ResponseStatusException(HttpStatus.LENGTH_REQUIRED,
+                    "Content-Length header is required"));
+        }
+
+        PutObjectRequest.Builder putRequest = PutObjectRequest.builder()
+                .bucket(this.bucketName)
+                .key(objectKey)
+                .contentLength(contentLength);
+        request.headers().contentType().ifPresent(contentType -> putRequest.contentType(contentType.toString()));
+
+        Flux<ByteBuffer> body = request.bodyToFlux(DataBuffer.class).map(S3ReactiveHandler::toByteBuffer);
+
+        return Mono.fromFuture(() -> this.s3AsyncClient.putObject(putRequest.build(), AsyncRequestBody.fromPublisher(body)))
+                .flatMap(response -> {
+                    ServerResponse.BodyBuilder created = ServerResponse.status(HttpStatus.CREATED);
+
+                    if (response.eTag() != null) {
+                        created.eTag(response.eTag());
+                    }
+
+                    return created.bodyValue(objectKey);
+                });
+    }
+
+    public Mono<ServerResponse> getObject(ServerRequest request) {
+        String objectKey = this.objectKey(request.pathVariable("folder"), request.pathVariable("key"));
+        GetObjectRequest.Builder getRequest = GetObjectRequest.builder()
+                .bucket(this.bucketName)
+                .key(objectKey);
+        String ifNoneMatch = request.headers().firstHeader(HttpHeaders.IF_NONE_MATCH);
+
+        if (ifNoneMatch != null) {
+            getRequest.ifNoneMatch(ifNoneMatch);
+        }
+
+        return Mono.fromFuture(() -> this.s3AsyncClient.getObject(getRequest.build(),
+                        AsyncResponseTransformer.<GetObjectResponse>toPublisher()))
+                .flatMap(object -> this.streamContent(object, ifNoneMatch))
+                .onErrorResume(S3Exception.class, exception -> {
+                    if (exception.statusCode() == HttpStatus.NOT_MODIFIED.value()) {
+                        return ServerResponse.status(HttpStatus.NOT_MODIFIED).build();
+                    }
+
+                    if (exception.statusCode() == HttpStatus.NOT_FOUND.value()) {
+                        return Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND,
+                                String.format("Object '%s' not found", objectKey)));
+                    }
+
+                    return Mono.error(exception);
+                });
+    }
+
+    /**
+     * Lists a folder as newline delimited JSON, one object per line. Listing pages are only
+     * requested from S3 as fast as the client reads them.
+     */
+    public Mono<ServerResponse> listObjects(ServerRequest request) {
+        String folderName = this.folderName(request.pathVariable("folder"));
+        String prefix = folderName + "/" + request.queryParam("prefix").orElse("");
+        Flux<Map<String, Object>> summaries = Flux.from(this.s3AsyncClient.listObjectsV2Paginator(
+                        ListObjectsV2Request.builder().bucket(this.bucketName).prefix(prefix).build()).contents())
+                .map(S3ReactiveHandler::toSummary);
+
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(summaries, Map.class);
+    }
+
+    /**
+     * Streams the object, or the blob a reference of a deduplicated upload names under the ETag of its content:
+     * every reference has the ETag of an empty body.
+     */
+    private Mono<ServerResponse> streamContent(ResponsePublisher<GetObjectResponse> object, String ifNoneMatch) {
+        Map<String, String> metadata = object.response().metadata();
+        String blobKey = metadata.get(ContentDeduplicator.BLOB_METADATA);
+
+        if (blobKey == null) {
+            return this.streamObject(object, object.response().eTag());
+        }
+
+        String eTag = "\"" + metadata.get(ContentDeduplicator.SHA256_METADATA) + "\"";
+        // The reference's body is empty, reading it hands the connection back
+        Mono<Void> drained = Flux.from(object).then();
+
+        if (eTag.equals(ifNoneMatch)) {
+            return drained.then(ServerResponse.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build());
+        }
+
+        GetObjectRequest blobRequest = GetObjectRequest.builder().bucket(this.bucketName).key(blobKey).build();
+
+        return drained
+                .then(Mono.fromFuture(() -> this.s3AsyncClient.getObject(blobRequest,
+                        AsyncResponseTransformer.<GetObjectResponse>toPublisher())))
+                .flatMap(blob -> this.streamObject(blob, eTag));
+    }
+
+    private Mono<ServerResponse> streamObject(ResponsePublisher<GetObjectResponse> object, String eTag) {
+        GetObjectResponse response = object.response();
+        ServerResponse.BodyBuilder ok = ServerResponse.ok();
+
+        if (response.contentLength() != null) {
+            ok.contentLength(response.contentLength());
+        }
+
+        if (response.contentType() != null) {
+            ok.contentType(MediaType.parseMediaType(response.contentType()));
+        }
+
+        if (eTag != null) {
+            ok.eTag(eTag);
+        }
+
+        // Streamed as stored, folder compressed objects are marked with their codec
+        if (response.contentEncoding() != null) {
+            ok.header(HttpHeaders.CONTENT_ENCODING, response.contentEncoding());
+        }
+
+        Flux<DataBuffer> body = Flux.from(object).map(DefaultDataBufferFactory.sharedInstance::wrap);
+
+        return ok.body(BodyInserters.fromDataBuffers(body));
+    }
+
+    private String objectKey(String folder, String key) {
+        return this.folderName(folder) + "/" + key;
+    }
+
+    private String folderName(String folder) {
+        return this.folderConfig.resolve(folder)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        String.format("Unknown folder '%s'", folder)));
+    }
+
+    private static ByteBuffer toByteBuffer(DataBuffer buffer) {
+        // One bulk copy per chunk: Reactor Netty hands out pooled buffers, and they have to go back before
+        // the SDK is done with the chunk, so they can't be wrapped
+        try {
+            ByteBuffer copy = ByteBuffer.allocate(buffer.readableByteCount());
+            buffer.toByteBuffer(copy);
+
+            return copy;
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+    }
+
+    private static Map<String, Object> toSummary(S3Object object) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("key", object.key());
+        summary.put("size", object.size());
+        summary.put("eTag", object.eTag());
+        summary.put("lastModified", String.valueOf(object.lastModified()));
+
+        return summary;
+    }
+}
@@ -0,0 +1,33 @@
+package SpringAWS.metrics;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the connection pool stats of every AmazonS3 client built by the application.
+ */
+@Component
+public class ConnectionPoolMonitor {
+    private final Map<String, ConnectionPoolStats> clients = new ConcurrentHashMap<>();
+
+    public ConnectionPoolStats register(String clientName, int maxConnections) {
+        ConnectionPoolStats stats = new ConnectionPoolStats(maxConnections);
+        this.clients.put(clientName, stats);
+
+        return stats;
+    }
+
+    public Map<String, ConnectionPoolStats> clients() {
+        return this.clients;
+    }
+
+    public Map<String, Map<String, Long>> snapshot() {
+        Map<String, Map<String, Long>> snapshot = new TreeMap<>();
+        this.clients.forEach((clientName, stats) -> snapshot.put(clientName, stats.snapshot()));
+
+        return snapshot;
+    }
+}
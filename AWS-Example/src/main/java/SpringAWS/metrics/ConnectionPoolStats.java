@@ -0,0 +1,72 @@
+package SpringAWS.metrics;
+
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.metrics.RequestMetricCollector;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+import com.amazonaws.util.TimingInfo;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the connection pool state the SDK observed when leasing a connection for the latest request.
+ * The SDK only samples the pool while a request metric collector is installed on the client.
+ */
+public class ConnectionPoolStats extends RequestMetricCollector {
+    private final int maxConnections;
+    private volatile long available;
+    private volatile long leased;
+    private volatile long pending;
+
+    public ConnectionPoolStats(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    @Override
+    public void collectMetrics(Request<?> request, Response<?> response) {
+        TimingInfo timingInfo = request.getAWSRequestMetrics().getTimingInfo();
+        Number leasedCount = timingInfo.getCounter(Field.HttpClientPoolLeasedCount.name());
+
+        // Requests that failed before leasing a connection carry no pool sample
+        if (leasedCount == null) {
+            return;
+        }
+
+        this.leased = leasedCount.longValue();
+        this.available = counter(timingInfo, Field.HttpClientPoolAvailableCount);
+        this.pending = counter(timingInfo, Field.HttpClientPoolPendingCount);
+    }
+
+    public int maxConnections() {
+        return this.maxConnections;
+    }
+
+    public long available() {
+        return this.available;
+    }
+
+    public long leased() {
+        return this.leased;
+    }
+
+    public long pending() {
+        return this.pending;
+    }
+
+    public Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        snapshot.put("max", (long) this.maxConnections);
+        snapshot.put("leased", this.leased);
+        snapshot.put("available", this.available);
+        snapshot.put("pending", this.pending);
+
+        return snapshot;
+    }
+
+    private static long counter(TimingInfo timingInfo, Field field) {
+        Number value = timingInfo.getCounter(field.name());
+
+        return value == null ? 0 : value.longValue();
+    }
+}
@@ -0,0 +1,52 @@
+package SpringAWS.metrics;
+
+import com.amazonaws.handlers.RequestHandler2;
+import com.amazonaws.metrics.RequestMetricCollector;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Builds the metric collector installed on every AmazonS3 client, and exposes the client's
+ * connection pool as gauges next to the per request metrics.
+ */
+@Component
+public class S3ClientMetrics {
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Autowired
+    private ConnectionPoolMonitor poolMonitor;
+
+    public RequestMetricCollector collector(String clientName, int maxConnections) {
+        ConnectionPoolStats poolStats = this.poolMonitor.register(clientName, maxConnections);
+
+        this.gauge(clientName, "max", poolStats, ConnectionPoolStats::maxConnections);
+        this.gauge(clientName, "leased", poolStats, ConnectionPoolStats::leased);
+        this.gauge(clientName, "available", poolStats, ConnectionPoolStats::available);
+        this.gauge(clientName, "pending", poolStats, ConnectionPoolStats::pending);
+
+        return new S3RequestMetricCollector(this.registry, clientName, poolStats);
+    }
+
+    /**
+     * Counts the object bytes read from the client's responses, to be installed next to its collector.
+     */
+    public RequestHandler2 byteCounter(String clientName) {
+        return new S3ResponseByteCounter(this.registry, clientName);
+    }
+
+    private void gauge(String clientName, String state, ConnectionPoolStats poolStats,
+                       ToDoubleFunction<ConnectionPoolStats> value) {
+        Gauge.builder("s3.client.connections", poolStats, value)
+                .description("Connection pool state sampled on the latest request")
+                .tag("client", clientName)
+                .tag("state", state)
+                .strongReference(true)
+                .register(this.registry);
+    }
+}
@@ -0,0 +1,169 @@
+package SpringAWS.metrics;
+
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.http.HttpMethodName;
+import com.amazonaws.metrics.RequestMetricCollector;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.util.AWSRequestMetrics;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+import com.amazonaws.util.TimingInfo;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.http.Outcome;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Records a timer per S3 call, tagged with the operation, bucket and outcome, plus bytes sent / received,
+ * retries and throttling. The SDK invokes it once per client execution (after all retries), failures
+ * included, and it forwards every request to the client's connection pool stats as well.
+ * <p>
+ * Object bodies are still being streamed to the caller at that point, their bytes are counted as they are
+ * read by {@link S3ResponseByteCounter} instead.
+ */
+public class S3RequestMetricCollector extends RequestMetricCollector {
+
+    private static final String NONE = "none";
+
+    // Resolved once per request class, the hot path only does a lookup
+    private static final ClassValue<String> OPERATIONS = new ClassValue<String>() {
+        @Override
+        protected String computeValue(Class<?> type) {
+            String name = type.getSimpleName();
+
+            return name.endsWith("Request") ? name.substring(0, name.length() - "Request".length()) : name;
+        }
+    };
+
+    private static final ClassValue<Function<Object, String>> BUCKETS = new ClassValue<Function<Object, String>>() {
+        @Override
+        protected Function<Object, String> computeValue(Class<?> type) {
+            // Copies are attributed to the bucket they write to
+            for (String getter : new String[]{"getBucketName", "getDestinationBucketName"}) {
+                try {
+                    Method method = type.getMethod(getter);
+
+                    return request -> invoke(method, request);
+                } catch (NoSuchMethodException ignored) {
+                    // Try the next one
+                }
+            }
+
+            return request -> NONE;
+        }
+    };
+
+    private final MeterRegistry registry;
+    private final String clientName;
+    private final ConnectionPoolStats poolStats;
+
+    public S3RequestMetricCollector(MeterRegistry registry, String clientName, ConnectionPoolStats poolStats) {
+        this.registry = registry;
+        this.clientName = clientName;
+        this.poolStats = poolStats;
+    }
+
+    @Override
+    public void collectMetrics(Request<?> request, Response<?> response) {
+        this.poolStats.collectMetrics(request, response);
+
+        AWSRequestMetrics requestMetrics = request.getAWSRequestMetrics();
+        TimingInfo timingInfo = requestMetrics.getTimingInfo();
+        Tags tags = tags(this.clientName, request);
+        Integer statusCode = statusCode(requestMetrics, response);
+        Long endTime = timingInfo.getEndTimeNanoIfKnown();
+
+        if (endTime != null) {
+            this.registry.timer("s3.requests", tags.and(
+                            "outcome", statusCode == null ? Outcome.UNKNOWN.name() : Outcome.forStatus(statusCode).name(),
+                            "status", statusCode == null ? NONE : statusCode.toString()))
+                    .record(endTime - timingInfo.getStartTimeNano(), TimeUnit.NANOSECONDS);
+        }
+
+        long retries = counter(timingInfo, Field.HttpClientRetryCount);
+        long throttled = counter(timingInfo, Field.ThrottleException);
+
+        if (retries > 0) {
+            this.registry.counter("s3.requests.retries", tags).increment(retries);
+        }
+
+        if (throttled > 0) {
+            this.registry.counter("s3.requests.throttled", tags).increment(throttled);
+        }
+
+        // Chunk-signed uploads inflate Content-Length with their signatures, the decoded length is the payload
+        long sent = contentLength(request.getHeaders().get("x-amz-decoded-content-length"),
+                request.getHeaders().get("Content-Length"));
+
+        if (sent > 0) {
+            this.registry.counter("s3.bytes.sent", tags).increment(sent);
+        }
+
+        // HEAD responses announce the length of a body they don't have, objects are counted as they are read
+        if (response != null && response.getHttpResponse() != null && request.getHttpMethod() != HttpMethodName.HEAD
+                && !(response.getAwsResponse() instanceof S3Object)) {
+            List<String> lengths = response.getHttpResponse().getHeaderValues("Content-Length");
+            long received = lengths == null || lengths.isEmpty() ? 0 : contentLength(null, lengths.get(0));
+
+            if (received > 0) {
+                this.registry.counter("s3.bytes.received", tags).increment(received);
+            }
+        }
+    }
+
+    static Tags tags(String clientName, Request<?> request) {
+        Object originalRequest = request.getOriginalRequestObject();
+
+        return Tags.of(
+                "client", clientName,
+                "operation", OPERATIONS.get(originalRequest.getClass()),
+                "bucket", BUCKETS.get(originalRequest.getClass()).apply(originalRequest));
+    }
+
+    private static Integer statusCode(AWSRequestMetrics requestMetrics, Response<?> response) {
+        if (response != null && response.getHttpResponse() != null) {
+            return response.getHttpResponse().getStatusCode();
+        }
+
+        // Failed requests only leave their status behind as a metric property, one per attempt
+        List<Object> statusCodes = requestMetrics.getProperty(Field.StatusCode);
+
+        if (statusCodes == null || statusCodes.isEmpty()) {
+            return null;
+        }
+
+        Object last = statusCodes.get(statusCodes.size() - 1);
+
+        return last instanceof Number ? ((Number) last).intValue() : null;
+    }
+
+    private static long counter(TimingInfo timingInfo, Field field) {
+        Number value = timingInfo.getCounter(field.name());
+
+        return value == null ? 0 : value.longValue();
+    }
+
+    private static long contentLength(String preferred, String fallback) {
+        String value = preferred != null ? preferred : fallback;
+
+        try {
+            return value == null ? 0 : Long.parseLong(value.trim());
+        } catch (NumberFormatException exception) {
+            return 0;
+        }
+    }
+
+    private static String invoke(Method getter, Object request) {
+        try {
+            Object bucketName = getter.invoke(request);
+
+            return bucketName == null ? NONE : bucketName.toString();
+        } catch (ReflectiveOperationException exception) {
+            return NONE;
+        }
+    }
+}
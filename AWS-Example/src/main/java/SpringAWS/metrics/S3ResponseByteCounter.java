@@ -0,0 +1,90 @@
+package SpringAWS.metrics;
+
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.handlers.RequestHandler2;
+import com.amazonaws.internal.SdkFilterInputStream;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the object bytes callers actually read as s3.bytes.received. A ranged or aborted read transfers
+ * less than the response announces, and a body that is never read isn't counted at all.
+ */
+public class S3ResponseByteCounter extends RequestHandler2 {
+
+    private final MeterRegistry registry;
+    private final String clientName;
+
+    public S3ResponseByteCounter(MeterRegistry registry, String clientName) {
+        this.registry = registry;
+        this.clientName = clientName;
+    }
+
+    @Override
+    public void afterResponse(Request<?> request, Response<?> response) {
+        // A 304 of a conditional GET has no object
+        if (!(response.getAwsResponse() instanceof S3Object)) {
+            return;
+        }
+
+        S3Object object = (S3Object) response.getAwsResponse();
+        S3ObjectInputStream content = object.getObjectContent();
+
+        if (content != null) {
+            Counter received = this.registry.counter("s3.bytes.received",
+                    S3RequestMetricCollector.tags(this.clientName, request));
+
+            // Keeps the HTTP request, so aborting the wrapper still drops the connection
+            object.setObjectContent(new S3ObjectInputStream(new CountingInputStream(content, received),
+                    content.getHttpRequest()));
+        }
+    }
+
+    private static final class CountingInputStream extends SdkFilterInputStream {
+        private final Counter counter;
+
+        private CountingInputStream(InputStream in, Counter counter) {
+            super(in);
+            this.counter = counter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+
+            if (read >= 0) {
+                this.counter.increment();
+            }
+
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+
+            if (read > 0) {
+                this.counter.increment(read);
+            }
+
+            return read;
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            long skipped = super.skip(count);
+
+            if (skipped > 0) {
+                this.counter.increment(skipped);
+            }
+
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package SpringAWS.services;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit of one prefix, adjusted AIMD style: it grows by one once a limit's worth of requests
+ * succeeded while it was nearly used up, and is cut by the backoff ratio when S3 throttles. Requests that
+ * were already in flight when the limit was cut don't cut it again, so one burst of SlowDowns costs a
+ * single decrease, the same way TCP only halves its window once per round trip.
+ * <p>
+ * Guarded by a lock rather than a monitor: a virtual thread waiting in {@code Object.wait()} stays pinned
+ * to its carrier, and enough of them waiting on a throttled prefix would leave no carrier to release them.
+ */
+final class AdaptiveLimit {
+    // Weight of the latest attempt in the throttle rate, which so reflects roughly the last 100 attempts
+    private static final double THROTTLE_RATE_WEIGHT = 0.01;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = this.lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private long lastDecrease = System.nanoTime();
+    private double throttleRate;
+
+    AdaptiveLimit(int initialLimit, int minLimit, int maxLimit, double backoffRatio) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+    }
+
+    /**
+     * Blocks until the request fits within the limit.
+     *
+     * @return when the request started, to be handed back on completion
+     */
+    long acquire() throws InterruptedException {
+        this.lock.lockInterruptibly();
+
+        try {
+            while (this.inFlight >= (int) this.limit) {
+                this.released.await();
+            }
+
+            this.inFlight++;
+
+            return System.nanoTime();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    void succeeded() {
+        this.lock.lock();
+
+        try {
+            // Only a limit that is actually in the way has earned growing, idle prefixes would grow without bounds
+            if (this.inFlight * 2 >= this.limit) {
+                this.limit = Math.min(this.maxLimit, this.limit + 1 / this.limit);
+            }
+
+            this.release(false);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    void throttled(long started) {
+        this.lock.lock();
+
+        try {
+            if (started - this.lastDecrease > 0) {
+                this.limit = Math.max(this.minLimit, this.limit * this.backoffRatio);
+                this.lastDecrease = System.nanoTime();
+            }
+
+            this.release(true);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Any other failure says nothing about the prefix's capacity and leaves the limit alone.
+     */
+    void failed() {
+        this.lock.lock();
+
+        try {
+            this.release(false);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    int limit() {
+        this.lock.lock();
+
+        try {
+            return (int) this.limit;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    int inFlight() {
+        this.lock.lock();
+
+        try {
+            return this.inFlight;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    double throttleRate() {
+        this.lock.lock();
+
+        try {
+            return this.throttleRate;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void release(boolean throttled) {
+        this.inFlight--;
+        this.throttleRate += THROTTLE_RATE_WEIGHT * ((throttled ? 1 : 0) - this.throttleRate);
+        this.released.signalAll();
+    }
+}
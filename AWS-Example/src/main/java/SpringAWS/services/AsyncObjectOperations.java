@@ -0,0 +1,36 @@
+package SpringAWS.services;
+
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectResult;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking single object requests, so callers can keep hundreds of them in flight and combine
+ * the results instead of parking a thread per request. aws.s3.async-operations picks the implementation:
+ * "sync" runs the v1 client on an executor, "async" uses the SDK v2 Netty client.
+ * Results use the v1 model types either way, like the rest of the services.
+ */
+public interface AsyncObjectOperations {
+
+    /**
+     * Reads the whole object into memory, meant for small objects. Use the ranged downloader for large ones.
+     */
+    CompletableFuture<byte[]> getObject(String bucketName, String key);
+
+    CompletableFuture<PutObjectResult> putObject(String bucketName, String key, byte[] content, String contentType);
+
+    /**
+     * Completes with an empty result when the object doesn't exist.
+     */
+    CompletableFuture<Optional<ObjectMetadata>> getObjectMetadata(String bucketName, String key);
+
+    CompletableFuture<Void> deleteObject(String bucketName, String key);
+
+    /**
+     * Server-side copy, objects above the copy threshold are copied as parallel multipart copies.
+     */
+    CompletableFuture<CopyResult> copyObject(String sourceBucket, String sourceKey, String targetBucket,
+                                             String targetKey);
+}
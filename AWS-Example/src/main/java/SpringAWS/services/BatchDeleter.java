@@ -0,0 +1,162 @@
+package SpringAWS.services;
+
+import SpringAWS.configs.S3TransferConfig;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest.KeyVersion;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException.DeleteError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Deletes everything under a prefix. Keys are streamed lazily from the listing and packed into
+ * 1000-key DeleteObjects requests (the S3 maximum), which are sent concurrently. Keys S3 reports as
+ * failed are retried, whatever still fails is returned to the caller.
+ */
+@Component
+public class BatchDeleter {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchDeleter.class);
+
+    private static final int MAX_KEYS_PER_REQUEST = 1000;
+    private static final long RETRY_BACKOFF_MILLIS = 200;
+
+    @Autowired
+    private AmazonS3 s3Client;
+
+    @Autowired
+    private S3Lister lister;
+
+    @Autowired
+    private S3TransferConfig transferConfig;
+
+    @Autowired
+    private RequestScheduler scheduler;
+
+    @Autowired
+    @Qualifier("s3TransferExecutor")
+    private ExecutorService transferExecutor;
+
+    /**
+     * @param allVersions also delete every noncurrent version and delete marker, which empties a versioned prefix
+     */
+    public BulkDeleteResult deleteAll(String bucketName, String prefix, boolean allVersions) {
+        long start = System.nanoTime();
+        LongAdder deleted = new LongAdder();
+        List<DeleteError> failed = Collections.synchronizedList(new ArrayList<>());
+        List<Future<?>> batches = new ArrayList<>();
+        Semaphore inFlight = new Semaphore(this.transferConfig.deleteConcurrency());
+        List<KeyVersion> batch = new ArrayList<>(MAX_KEYS_PER_REQUEST);
+
+        try (PrefetchingIterator<KeyVersion> keys = this.keys(bucketName, prefix, allVersions)) {
+            while (keys.hasNext()) {
+                batch.add(keys.next());
+
+                if (batch.size() == MAX_KEYS_PER_REQUEST) {
+                    batches.add(this.submit(bucketName, batch, inFlight, deleted, failed));
+                    batch = new ArrayList<>(MAX_KEYS_PER_REQUEST);
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                batches.add(this.submit(bucketName, batch, inFlight, deleted, failed));
+            }
+
+            for (Future<?> future : batches) {
+                future.get();
+            }
+        } catch (InterruptedException exception) {
+            batches.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+
+            throw new SdkClientException(String.format("Deleting '%s' from bucket '%s' was interrupted",
+                    prefix, bucketName), exception);
+        } catch (ExecutionException exception) {
+            batches.forEach(future -> future.cancel(true));
+
+            throw new SdkClientException(String.format("Deleting '%s' from bucket '%s' failed", prefix, bucketName),
+                    exception.getCause());
+        }
+
+        return new BulkDeleteResult(deleted.sum(), new ArrayList<>(failed), Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private PrefetchingIterator<KeyVersion> keys(String bucketName, String prefix, boolean allVersions) {
+        if (allVersions) {
+            return this.lister.versions(bucketName, prefix)
+                    .map(summary -> new KeyVersion(summary.getKey(), summary.getVersionId()));
+        }
+
+        return this.lister.objects(bucketName, prefix).map(summary -> new KeyVersion(summary.getKey()));
+    }
+
+    private Future<?> submit(String bucketName, List<KeyVersion> keys, Semaphore inFlight,
+                             LongAdder deleted, List<DeleteError> failed) throws InterruptedException {
+        // Keeps the listing from running arbitrarily far ahead of the deletes
+        inFlight.acquire();
+
+        try {
+            return this.transferExecutor.submit(() -> {
+                try {
+                    this.deleteBatch(bucketName, keys, deleted, failed);
+                    return null;
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RuntimeException exception) {
+            inFlight.release();
+            throw exception;
+        }
+    }
+
+    private void deleteBatch(String bucketName, List<KeyVersion> keys, LongAdder deleted, List<DeleteError> failed)
+            throws InterruptedException {
+        List<KeyVersion> pending = keys;
+
+        for (int attempt = 0; ; attempt++) {
+            try {
+                DeleteObjectsRequest request = new DeleteObjectsRequest(bucketName).withKeys(pending)
+                        // Quiet mode only reports failures, which keeps responses small
+                        .withQuiet(true);
+                // Scheduled by its first key, a batch comes from a sorted listing and mostly shares its prefix
+                this.scheduler.execute(bucketName, pending.get(0).getKey(), () -> this.s3Client.deleteObjects(request));
+                deleted.add(pending.size());
+
+                return;
+            } catch (MultiObjectDeleteException exception) {
+                List<DeleteError> errors = exception.getErrors();
+                deleted.add(pending.size() - errors.size());
+
+                if (attempt >= this.transferConfig.deleteRetries()) {
+                    failed.addAll(errors);
+
+                    return;
+                }
+
+                log.warn("Retrying {} of {} keys that failed to delete from bucket '{}'",
+                        errors.size(), pending.size(), bucketName);
+                pending = errors.stream()
+                        .map(error -> new KeyVersion(error.getKey(), error.getVersionId()))
+                        .collect(Collectors.toList());
+                Thread.sleep(RETRY_BACKOFF_MILLIS << attempt);
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package SpringAWS.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+
+import java.time.Duration;
+import java.util.Map;
+
+@Getter
+@Accessors(fluent = true)
+@AllArgsConstructor
+public class BatchUploadResult {
+    private final long uploaded;
+    private final long bytes;
+    // Key to the failure's message, for the objects that could not be uploaded
+    private final Map<String, String> failed;
+    private final Duration elapsed;
+
+    public double objectsPerSecond() {
+        long nanos = Math.max(this.elapsed.toNanos(), 1);
+
+        return this.uploaded * 1_000_000_000d / nanos;
+    }
+}
@@ -0,0 +1,254 @@
+package SpringAWS.services;
+
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A running {@link BucketScanner} scan. Shard workers hand their pages to a bounded queue, the
+ * consumer drains it through {@link #stream()} in no particular order. Once the queue is full the
+ * workers block, so a slow consumer throttles the listing instead of piling up pages in memory.
+ * <p>
+ * Shards run on the shared listing executor, at most maxConcurrency at a time. They are taken in FIFO order,
+ * so shallow shards don't starve behind deep ones.
+ */
+public class BucketScan implements Iterator<S3ObjectSummary>, AutoCloseable {
+
+    private static final List<S3ObjectSummary> END = Collections.emptyList();
+
+    private final ExecutorService executor;
+    private final int maxConcurrency;
+    private final Queue<Runnable> queuedShards = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger workers = new AtomicInteger();
+    private final Set<Future<?>> runningWorkers = ConcurrentHashMap.newKeySet();
+    private final BlockingQueue<List<S3ObjectSummary>> pages;
+    private final AtomicInteger pendingShards = new AtomicInteger();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final LongAdder keys = new LongAdder();
+    private final LongAdder shards = new LongAdder();
+    private final long startedAt = System.nanoTime();
+    private volatile long finishedAt;
+    // Set on failure or close, tells the shard workers to stop listing
+    private volatile boolean cancelled;
+    private volatile boolean closed;
+
+    private Iterator<S3ObjectSummary> page = Collections.emptyIterator();
+    private boolean done;
+
+    BucketScan(ExecutorService executor, int maxConcurrency) {
+        this.executor = executor;
+        this.maxConcurrency = maxConcurrency;
+        this.pages = new ArrayBlockingQueue<>(maxConcurrency * 2);
+    }
+
+    void submit(Runnable shard) {
+        if (this.cancelled) {
+            return;
+        }
+
+        this.pendingShards.incrementAndGet();
+        this.queuedShards.add(shard);
+
+        if (this.reserveWorker()) {
+            try {
+                this.runningWorkers.removeIf(Future::isDone);
+                this.runningWorkers.add(this.executor.submit(this::work));
+            } catch (RuntimeException exception) {
+                this.workers.decrementAndGet();
+                this.queuedShards.remove(shard);
+                this.pendingShards.decrementAndGet();
+                throw exception;
+            }
+        }
+    }
+
+    void shardStarted() {
+        this.shards.increment();
+    }
+
+    /**
+     * @return false once the scan was closed or failed, the shard should stop listing
+     */
+    boolean offer(List<S3ObjectSummary> summaries) {
+        if (this.cancelled) {
+            return false;
+        }
+
+        if (summaries.isEmpty()) {
+            return true;
+        }
+
+        try {
+            this.pages.put(summaries);
+            this.keys.add(summaries.size());
+
+            return !this.cancelled;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+
+            return false;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!this.page.hasNext()) {
+            if (this.done || this.closed) {
+                return false;
+            }
+
+            List<S3ObjectSummary> next;
+
+            try {
+                next = this.pages.take();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                this.close();
+
+                throw new SdkClientException("Bucket scan was interrupted", exception);
+            }
+
+            if (next == END) {
+                this.done = true;
+                Throwable cause = this.failure.get();
+
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+
+                if (cause != null) {
+                    throw new SdkClientException("Bucket scan failed", cause);
+                }
+            }
+
+            this.page = next.iterator();
+        }
+
+        return true;
+    }
+
+    @Override
+    public S3ObjectSummary next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        return this.page.next();
+    }
+
+    public Stream<S3ObjectSummary> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.NONNULL), false)
+                .onClose(this::close);
+    }
+
+    /**
+     * Keys listed so far, including those still waiting in the queue.
+     */
+    public long keys() {
+        return this.keys.sum();
+    }
+
+    public long shards() {
+        return this.shards.sum();
+    }
+
+    public boolean finished() {
+        return this.finishedAt != 0;
+    }
+
+    public Duration elapsed() {
+        long end = this.finished() ? this.finishedAt : System.nanoTime();
+
+        return Duration.ofNanos(end - this.startedAt);
+    }
+
+    public double keysPerSecond() {
+        long nanos = this.elapsed().toNanos();
+
+        return nanos == 0 ? 0 : this.keys() * 1_000_000_000d / nanos;
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+        this.cancelled = true;
+        // Unblocks workers stuck on a full queue, they see the flag and return
+        this.runningWorkers.forEach(worker -> worker.cancel(true));
+        this.pages.clear();
+    }
+
+    /**
+     * Runs queued shards until there are none left, then hands the worker's slot back.
+     */
+    private void work() {
+        do {
+            for (Runnable shard = this.queuedShards.poll(); shard != null; shard = this.queuedShards.poll()) {
+                this.run(shard);
+            }
+
+            this.workers.decrementAndGet();
+            // A shard queued after the last poll may have found every slot taken
+        } while (!this.queuedShards.isEmpty() && this.reserveWorker());
+    }
+
+    private void run(Runnable shard) {
+        try {
+            if (!this.cancelled) {
+                shard.run();
+            }
+        } catch (Throwable exception) {
+            if (!this.closed) {
+                this.failure.compareAndSet(null, exception);
+            }
+
+            this.cancelled = true;
+        } finally {
+            if (this.pendingShards.decrementAndGet() == 0) {
+                this.finish();
+            }
+        }
+    }
+
+    private boolean reserveWorker() {
+        for (int running = this.workers.get(); running < this.maxConcurrency; running = this.workers.get()) {
+            if (this.workers.compareAndSet(running, running + 1)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void finish() {
+        this.finishedAt = System.nanoTime();
+
+        try {
+            // Blocks until the consumer made room, close() interrupts us if it gives up instead
+            if (!this.closed) {
+                this.pages.put(END);
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package SpringAWS.services;
+
+import SpringAWS.configs.S3ScanConfig;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Lists a whole bucket (or prefix) in parallel. The keyspace is split into shards along the delimiter,
+ * e.g. images/ and docs/, then images/2021/, images/2022/ and so on down to the configured depth, and
+ * every shard is listed on its own worker. A single ListObjectsV2 cursor is strictly sequential, this
+ * turns one long chain of page requests into many short ones.
+ * <p>
+ * Shards run on the shared listing executor, so they use virtual threads when those are enabled. Their
+ * pages go through the {@link RequestScheduler}, so a fan-out S3 throttles backs off like other bulk requests.
+ */
+@Component
+public class BucketScanner {
+
+    private static final int PAGE_SIZE = 1000;
+
+    @Autowired
+    private AmazonS3 s3Client;
+
+    @Autowired
+    private S3ScanConfig scanConfig;
+
+    @Autowired
+    private RequestScheduler scheduler;
+
+    @Autowired
+    @Qualifier("s3ListingExecutor")
+    private ExecutorService listingExecutor;
+
+    public BucketScan scan(String bucketName, String prefix) {
+        return this.scan(bucketName, prefix, this.scanConfig.maxConcurrency());
+    }
+
+    /**
+     * Starts the scan right away, the returned handle has to be closed when abandoning it early.
+     */
+    public BucketScan scan(String bucketName, String prefix, int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be positive");
+        }
+
+        BucketScan scan = new BucketScan(this.listingExecutor, maxConcurrency);
+        scan.submit(() -> this.listShard(scan, bucketName, prefix == null ? "" : prefix, 0));
+
+        return scan;
+    }
+
+    private void listShard(BucketScan scan, String bucketName, String prefix, int depth) {
+        // Below the shard depth the prefix is listed flat, without asking S3 to roll up common prefixes
+        boolean split = depth < this.scanConfig.shardDepth();
+        ListObjectsV2Request request = new ListObjectsV2Request()
+                .withBucketName(bucketName)
+                .withPrefix(prefix)
+                .withMaxKeys(PAGE_SIZE);
+
+        if (split) {
+            request.withDelimiter(this.scanConfig.delimiter());
+        }
+
+        scan.shardStarted();
+
+        do {
+            ListObjectsV2Result result = this.scheduler.execute(bucketName, prefix,
+                    () -> this.s3Client.listObjectsV2(request));
+
+            if (result.isTruncated() && result.getNextContinuationToken() == null) {
+                throw new SdkClientException(String.format(
+                        "Truncated listing of bucket '%s' without a continuation token", bucketName));
+            }
+
+            // Fan out first, so the sub-shards are already being listed while we wait on the consumer
+            for (String commonPrefix : result.getCommonPrefixes()) {
+                scan.submit(() -> this.listShard(scan, bucketName, commonPrefix, depth + 1));
+            }
+
+            if (!scan.offer(result.getObjectSummaries())) {
+                return;
+            }
+
+            request.setContinuationToken(result.getNextContinuationToken());
+        } while (request.getContinuationToken() != null);
+    }
+}
@@ -0,0 +1,18 @@
+package SpringAWS.services;
+
+import com.amazonaws.services.s3.model.MultiObjectDeleteException.DeleteError;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+
+import java.time.Duration;
+import java.util.List;
+
+@Getter
+@Accessors(fluent = true)
+@AllArgsConstructor
+public class BulkDeleteResult {
+    private final long deleted;
+    private final List<DeleteError> failed;
+    private final Duration elapsed;
+}
@@ -0,0 +1,40 @@
+package SpringAWS.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * An open handle on an object in the disk cache. The file stays readable until the handle is closed,
+ * even if the cache evicts it meanwhile.
+ */
+@Getter
+@Accessors(fluent = true)
+@AllArgsConstructor
+public class CachedObject implements Closeable {
+    private final FileChannel channel;
+    private final long contentLength;
+    private final String contentType;
+    private final String eTag;
+
+    /**
+     * Sends the whole file to the target, letting the OS copy it without going through the heap where possible.
+     */
+    public void transferTo(WritableByteChannel target) throws IOException {
+        long position = 0;
+
+        while (position < this.contentLength) {
+            position += this.channel.transferTo(position, this.contentLength - position, target);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+}
@@ -0,0 +1,93 @@
+package SpringAWS.services;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Turns a source stream into its compressed form on the fly. Every read pulls one chunk from the source
+ * through the compressor, so only a chunk and the codec's own window are ever held, whatever the object size.
+ */
+final class CompressingInputStream extends InputStream {
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final InputStream source;
+    private final PendingBytes pending = new PendingBytes();
+    private final OutputStream compressor;
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+    private int position;
+    private boolean finished;
+
+    CompressingInputStream(InputStream source, CompressionCodec codec, int level) throws IOException {
+        this.source = source;
+        this.compressor = codec.compress(this.pending, level);
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+
+        return this.read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+
+        // Compressors hold input back until they have a block, so a chunk may produce nothing yet
+        while (this.position == this.pending.size() && !this.finished) {
+            this.fill();
+        }
+
+        int available = this.pending.size() - this.position;
+
+        if (available == 0) {
+            return -1;
+        }
+
+        int count = Math.min(length, available);
+        System.arraycopy(this.pending.bytes(), this.position, buffer, offset, count);
+        this.position += count;
+
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (InputStream ignored = this.source) {
+            if (!this.finished) {
+                this.finished = true;
+                // Releases the codec's (native) resources, the remaining output isn't needed anymore
+                this.compressor.close();
+            }
+        }
+    }
+
+    private void fill() throws IOException {
+        this.pending.reset();
+        this.position = 0;
+
+        int read = this.source.read(this.chunk);
+
+        if (read < 0) {
+            this.finished = true;
+            // Flushes the last block and the codec's trailer
+            this.compressor.close();
+        } else {
+            this.compressor.write(this.chunk, 0, read);
+        }
+    }
+
+    private static final class PendingBytes extends ByteArrayOutputStream {
+        private PendingBytes() {
+            super(CHUNK_SIZE);
+        }
+
+        private byte[] bytes() {
+            return this.buf;
+        }
+    }
+}
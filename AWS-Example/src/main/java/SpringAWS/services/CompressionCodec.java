@@ -0,0 +1,84 @@
+package SpringAWS.services;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Codecs objects can be stored with. The id is recorded in the object's user metadata, so it must never change.
+ */
+public enum CompressionCodec {
+    GZIP("gzip", 1, 9, 6) {
+        @Override
+        public OutputStream compress(OutputStream target, int level) throws IOException {
+            return new GZIPOutputStream(target, BUFFER_SIZE) {
+                {
+                    this.def.setLevel(level);
+                }
+            };
+        }
+
+        @Override
+        public InputStream decompress(InputStream source) throws IOException {
+            return new GZIPInputStream(source, BUFFER_SIZE);
+        }
+    },
+    ZSTD("zstd", 1, 19, 3) {
+        @Override
+        public OutputStream compress(OutputStream target, int level) throws IOException {
+            return new ZstdOutputStream(target, level);
+        }
+
+        @Override
+        public InputStream decompress(InputStream source) throws IOException {
+            return new ZstdInputStream(source);
+        }
+    };
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String id;
+    private final int minLevel;
+    private final int maxLevel;
+    private final int defaultLevel;
+
+    CompressionCodec(String id, int minLevel, int maxLevel, int defaultLevel) {
+        this.id = id;
+        this.minLevel = minLevel;
+        this.maxLevel = maxLevel;
+        this.defaultLevel = defaultLevel;
+    }
+
+    public abstract OutputStream compress(OutputStream target, int level) throws IOException;
+
+    public abstract InputStream decompress(InputStream source) throws IOException;
+
+    public String id() {
+        return this.id;
+    }
+
+    public int minLevel() {
+        return this.minLevel;
+    }
+
+    public int maxLevel() {
+        return this.maxLevel;
+    }
+
+    public int defaultLevel() {
+        return this.defaultLevel;
+    }
+
+    public static Optional<CompressionCodec> fromId(String id) {
+        return Arrays.stream(values())
+                .filter(codec -> codec.id.equals(id))
+                .findFirst();
+    }
+}
@@ -0,0 +1,389 @@
+package SpringAWS.services;
+
+import SpringAWS.configs.S3DedupConfig;
+import SpringAWS.configs.S3FolderConfig;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.BucketVersioningConfiguration;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest.KeyVersion;
+import com.amazonaws.services.s3.model.GetObjectMetadataRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.services.s3.model.S3VersionSummary;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed uploads: the content is stored once as a blob named by its SHA-256, and the key
+ * itself becomes an empty reference object naming the blob and the content's length. Repeated uploads of
+ * the same content only write the reference, which is what keeps versioned buckets from filling up with
+ * identical versions. Blobs of keys in compressed folders are stored compressed.
+ * <p>
+ * Every reference has the ETag of an empty body, so wherever a reference stands in for its content, the
+ * content's SHA-256 is reported as its ETag instead, see {@link #eTagOf}.
+ * <p>
+ * Whether a blob exists is answered by a HEAD on the blob key every time, the bucket is the only index,
+ * shared by every instance and never stale after blobs were deleted. Blobs no version of any key refers
+ * to anymore are removed by {@link #sweep}.
+ */
+@Component
+public class ContentDeduplicator {
+    public static final String BLOB_METADATA = "content-blob";
+    public static final String SHA256_METADATA = "content-sha256";
+    public static final String LENGTH_METADATA = "content-length";
+    private static final int DELETE_BATCH_SIZE = 1000;
+
+    @Autowired
+    private AmazonS3 s3Client;
+
+    @Autowired
+    private MultipartUploader multipartUploader;
+
+    @Autowired
+    private S3DedupConfig dedupConfig;
+
+    @Autowired
+    private S3FolderConfig folderConfig;
+
+    @Autowired
+    private ObjectCompressor compressor;
+
+    @Autowired
+    private S3Lister lister;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder transfers = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+    private final LongAdder blobsSwept = new LongAdder();
+
+    /**
+     * Whether uploads of the key are deduplicated, going by aws.s3.dedup.
+     */
+    public boolean appliesTo(String key) {
+        return this.dedupConfig.enabled() && this.dedupConfig.folders().stream()
+                .map(this.folderConfig::resolve)
+                .flatMap(Optional::stream)
+                .anyMatch(folder -> key.startsWith(folder + "/"));
+    }
+
+    /**
+     * Hashes the stream while spooling it to disk, then uploads the blob only if it isn't stored yet.
+     */
+    public DedupResult upload(String bucketName, String key, InputStream content, String contentType) {
+        Path spool = null;
+
+        try {
+            spool = Files.createTempFile(this.dedupConfig.spoolDirectory(), "dedup-", ".tmp");
+            MessageDigest digest = sha256();
+
+            try (InputStream hashing = new DigestInputStream(content, digest)) {
+                Files.copy(hashing, spool, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            return this.store(bucketName, key, spool.toFile(), HexFormat.of().formatHex(digest.digest()),
+                    contentType);
+        } catch (IOException exception) {
+            throw new SdkClientException(String.format("Spooling '%s' for upload failed", key), exception);
+        } finally {
+            if (spool != null) {
+                deleteQuietly(spool);
+            }
+        }
+    }
+
+    /**
+     * Hashes the file in one read pass, then uploads it only if its blob isn't stored yet.
+     */
+    public DedupResult upload(String bucketName, String key, File file, String contentType) {
+        MessageDigest digest = sha256();
+
+        try (InputStream hashing = new DigestInputStream(Files.newInputStream(file.toPath()), digest)) {
+            hashing.transferTo(OutputStream.nullOutputStream());
+        } catch (IOException exception) {
+            throw new SdkClientException(String.format("Reading '%s' for upload failed", file), exception);
+        }
+
+        return this.store(bucketName, key, file, HexFormat.of().formatHex(digest.digest()), contentType);
+    }
+
+    /**
+     * Deletes the blobs no version of any key in the bucket refers to, unless they are younger than
+     * aws.s3.dedup.sweep-grace: an upload in progress may have stored its blob but not yet its reference.
+     * Finding references takes a listing of the whole bucket and a HEAD per empty object or version.
+     * In versioned buckets every version of an unreferenced blob is deleted, a plain delete would only
+     * hide it behind a delete marker and keep its storage.
+     * <p>
+     * An upload that reuses an old unreferenced blob while the sweep runs can lose it. Its reference then
+     * names a missing blob until the same content is uploaded again, which stores the blob anew.
+     */
+    public SweepResult sweep(String bucketName) {
+        long start = System.nanoTime();
+        Instant graceStart = Instant.now().minus(this.dedupConfig.sweepGrace());
+        boolean versioned = this.versioned(bucketName);
+        // Blobs are listed before the references, so a blob stored after that is simply not a candidate yet
+        Map<String, List<KeyVersion>> candidates = versioned
+                ? this.blobVersions(bucketName, graceStart)
+                : this.blobObjects(bucketName, graceStart);
+        long blobs = candidates.size();
+        candidates.values().removeIf(List::isEmpty);
+
+        Set<String> referenced = this.referencedBlobs(bucketName, versioned);
+        candidates.keySet().removeAll(referenced);
+        List<KeyVersion> unreferenced = candidates.values().stream()
+                .flatMap(List::stream)
+                .toList();
+
+        for (int first = 0; first < unreferenced.size(); first += DELETE_BATCH_SIZE) {
+            this.s3Client.deleteObjects(new DeleteObjectsRequest(bucketName).withQuiet(true)
+                    .withKeys(unreferenced.subList(first, Math.min(first + DELETE_BATCH_SIZE, unreferenced.size()))));
+        }
+
+        this.blobsSwept.add(candidates.size());
+
+        return new SweepResult(blobs, referenced.size(), candidates.size(),
+                Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("hits", this.hits.sum());
+        stats.put("transfers", this.transfers.sum());
+        stats.put("bytesSaved", this.bytesSaved.sum());
+        stats.put("blobsSwept", this.blobsSwept.sum());
+
+        return stats;
+    }
+
+    /**
+     * The blob a reference object points to, empty for regular objects.
+     */
+    public static Optional<String> blobKeyOf(ObjectMetadata metadata) {
+        return Optional.ofNullable(metadata.getUserMetaDataOf(BLOB_METADATA));
+    }
+
+    /**
+     * The ETag of the content, the SHA-256 of a reference's content rather than the ETag of its empty body.
+     */
+    public static String eTagOf(ObjectMetadata metadata) {
+        String sha256 = metadata.getUserMetaDataOf(SHA256_METADATA);
+
+        return sha256 != null && blobKeyOf(metadata).isPresent() ? sha256 : metadata.getETag();
+    }
+
+    /**
+     * The metadata as callers expect it, with the length and ETag of the content rather than of the empty
+     * reference.
+     */
+    public static ObjectMetadata withContentHeaders(ObjectMetadata metadata) {
+        String length = metadata.getUserMetaDataOf(LENGTH_METADATA);
+
+        if (length != null && blobKeyOf(metadata).isPresent()) {
+            metadata.setContentLength(Long.parseLong(length));
+            metadata.setHeader(Headers.ETAG, eTagOf(metadata));
+        }
+
+        return metadata;
+    }
+
+    private DedupResult store(String bucketName, String key, File file, String sha256, String contentType) {
+        String blobKey = String.format("%s/%s/%s", this.dedupConfig.blobPrefix(), sha256.substring(0, 2), sha256);
+        boolean transferred = !this.blobExists(bucketName, blobKey);
+
+        if (transferred) {
+            ObjectMetadata blobMetadata = new ObjectMetadata();
+            blobMetadata.addUserMetadata(SHA256_METADATA, sha256);
+
+            if (contentType != null) {
+                blobMetadata.setContentType(contentType);
+            }
+
+            // Concurrent uploads of the same new content may both get here, they write identical blobs
+            this.uploadBlob(bucketName, key, blobKey, file, blobMetadata);
+            this.transfers.increment();
+        } else {
+            this.bytesSaved.add(file.length());
+        }
+
+        ObjectMetadata reference = new ObjectMetadata();
+        reference.setContentLength(0);
+        reference.addUserMetadata(BLOB_METADATA, blobKey);
+        reference.addUserMetadata(SHA256_METADATA, sha256);
+        reference.addUserMetadata(LENGTH_METADATA, Long.toString(file.length()));
+
+        if (contentType != null) {
+            reference.setContentType(contentType);
+        }
+
+        PutObjectResult result = this.s3Client.putObject(
+                new PutObjectRequest(bucketName, key, new ByteArrayInputStream(new byte[0]), reference));
+
+        return new DedupResult(key, blobKey, sha256, file.length(), transferred, sha256, result.getVersionId());
+    }
+
+    /**
+     * Compressed like the key itself would be, the blob key is outside the compressed folders.
+     * Blobs stay named by the SHA-256 of the content as uploaded.
+     */
+    private void uploadBlob(String bucketName, String key, String blobKey, File file, ObjectMetadata blobMetadata) {
+        Optional<CompressionCodec> codec = this.compressor.codecFor(key, blobMetadata.getContentType());
+
+        if (codec.isEmpty()) {
+            this.multipartUploader.upload(bucketName, blobKey, file, blobMetadata);
+
+            return;
+        }
+
+        try (InputStream compressed = this.compressor.compress(Files.newInputStream(file.toPath()), codec.get(),
+                file.length(), blobMetadata)) {
+            this.multipartUploader.upload(bucketName, blobKey, compressed, blobMetadata);
+        } catch (IOException exception) {
+            throw new SdkClientException(String.format("Compressing '%s' for upload failed", key), exception);
+        }
+    }
+
+    private boolean versioned(String bucketName) {
+        return !BucketVersioningConfiguration.OFF.equals(
+                this.s3Client.getBucketVersioningConfiguration(bucketName).getStatus());
+    }
+
+    /**
+     * The blobs of an unversioned bucket, those younger than the grace start without anything to delete.
+     */
+    private Map<String, List<KeyVersion>> blobObjects(String bucketName, Instant graceStart) {
+        Map<String, List<KeyVersion>> blobs = new HashMap<>();
+
+        try (Stream<S3ObjectSummary> summaries = this.lister.objects(bucketName,
+                this.dedupConfig.blobPrefix() + "/").stream()) {
+            for (S3ObjectSummary summary : (Iterable<S3ObjectSummary>) summaries::iterator) {
+                blobs.put(summary.getKey(), summary.getLastModified().toInstant().isBefore(graceStart)
+                        ? List.of(new KeyVersion(summary.getKey()))
+                        : List.of());
+            }
+        }
+
+        return blobs;
+    }
+
+    /**
+     * Every version of every blob of a versioned bucket, delete markers included. A blob with any version
+     * younger than the grace start is kept whole.
+     */
+    private Map<String, List<KeyVersion>> blobVersions(String bucketName, Instant graceStart) {
+        Map<String, List<KeyVersion>> blobs = new HashMap<>();
+        Set<String> young = new HashSet<>();
+
+        try (Stream<S3VersionSummary> versions = this.lister.versions(bucketName,
+                this.dedupConfig.blobPrefix() + "/").stream()) {
+            for (S3VersionSummary version : (Iterable<S3VersionSummary>) versions::iterator) {
+                blobs.computeIfAbsent(version.getKey(), blobKey -> new ArrayList<>())
+                        .add(new KeyVersion(version.getKey(), version.getVersionId()));
+
+                if (!version.getLastModified().toInstant().isBefore(graceStart)) {
+                    young.add(version.getKey());
+                }
+            }
+        }
+
+        young.forEach(blobKey -> blobs.get(blobKey).clear());
+
+        return blobs;
+    }
+
+    private Set<String> referencedBlobs(String bucketName, boolean versioned) {
+        Set<String> referenced = new HashSet<>();
+        String blobPrefix = this.dedupConfig.blobPrefix() + "/";
+
+        // Noncurrent versions can be restored, the blobs they name have to stay as well
+        if (versioned) {
+            try (Stream<S3VersionSummary> versions = this.lister.versions(bucketName, "").stream()) {
+                versions.filter(version -> !version.isDeleteMarker() && version.getSize() == 0
+                                && !version.getKey().startsWith(blobPrefix))
+                        .forEach(version -> this.referencedBlob(bucketName, version.getKey(), version.getVersionId())
+                                .ifPresent(referenced::add));
+            }
+        } else {
+            try (Stream<S3ObjectSummary> objects = this.lister.objects(bucketName, "").stream()) {
+                objects.filter(object -> object.getSize() == 0 && !object.getKey().startsWith(blobPrefix))
+                        .forEach(object -> this.referencedBlob(bucketName, object.getKey(), null)
+                                .ifPresent(referenced::add));
+            }
+        }
+
+        return referenced;
+    }
+
+    private Optional<String> referencedBlob(String bucketName, String key, String versionId) {
+        try {
+            return blobKeyOf(this.s3Client.getObjectMetadata(new GetObjectMetadataRequest(bucketName, key, versionId)));
+        } catch (AmazonS3Exception exception) {
+            // Deleted since it was listed
+            if (exception.getStatusCode() == 404) {
+                return Optional.empty();
+            }
+
+            throw exception;
+        }
+    }
+
+    private boolean blobExists(String bucketName, String blobKey) {
+        try {
+            this.s3Client.getObjectMetadata(bucketName, blobKey);
+        } catch (AmazonS3Exception exception) {
+            if (exception.getStatusCode() == 404) {
+                return false;
+            }
+
+            throw exception;
+        }
+
+        this.hits.increment();
+
+        return true;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("SHA-256 is not available", exception);
+        }
+    }
+
+    private static void deleteQuietly(Path spool) {
+        try {
+            Files.deleteIfExists(spool);
+        } catch (IOException ignored) {
+            // The upload's outcome matters more than the cleanup one
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package SpringAWS.services;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Progress of a bulk copy started by {@link ObjectCopier#copyAll}. Counters are updated by the
+ * copy workers while the job runs, so every read is a live snapshot.
+ */
+public class CopyJob {
+
+    public enum State { RUNNING, COMPLETED, FAILED }
+
+    // Only the first failures are kept with their message, the rest are just counted
+    private static final int MAX_REPORTED_FAILURES = 100;
+
+    private final String id;
+    private final String sourceBucket;
+    private final String sourcePrefix;
+    private final String targetBucket;
+    private final String targetPrefix;
+    private final boolean move;
+    private final long startedAt = System.nanoTime();
+
+    private final LongAdder listed = new LongAdder();
+    private final LongAdder copied = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final Map<String, String> failures = new LinkedHashMap<>();
+    private volatile boolean listingComplete;
+    private volatile State state = State.RUNNING;
+    private volatile String error;
+    private volatile long finishedAt;
+
+    CopyJob(String id, String sourceBucket, String sourcePrefix, String targetBucket, String targetPrefix,
+            boolean move) {
+        this.id = id;
+        this.sourceBucket = sourceBucket;
+        this.sourcePrefix = sourcePrefix;
+        this.targetBucket = targetBucket;
+        this.targetPrefix = targetPrefix;
+        this.move = move;
+    }
+
+    public String id() {
+        return this.id;
+    }
+
+    public String sourceBucket() {
+        return this.sourceBucket;
+    }
+
+    public String sourcePrefix() {
+        return this.sourcePrefix;
+    }
+
+    public String targetBucket() {
+        return this.targetBucket;
+    }
+
+    public String targetPrefix() {
+        return this.targetPrefix;
+    }
+
+    public boolean move() {
+        return this.move;
+    }
+
+    public State state() {
+        return this.state;
+    }
+
+    public boolean finished() {
+        return this.state != State.RUNNING;
+    }
+
+    public long copied() {
+        return this.copied.sum();
+    }
+
+    public long failed() {
+        return this.failed.sum();
+    }
+
+    public long bytes() {
+        return this.bytes.sum();
+    }
+
+    public Duration elapsed() {
+        long end = this.finished() ? this.finishedAt : System.nanoTime();
+
+        return Duration.ofNanos(end - this.startedAt);
+    }
+
+    /**
+     * JSON friendly snapshot, served as the job's progress report.
+     */
+    public Map<String, Object> progress() {
+        Map<String, Object> progress = new LinkedHashMap<>();
+        progress.put("id", this.id);
+        progress.put("state", this.state);
+        progress.put("sourceBucket", this.sourceBucket);
+        progress.put("sourcePrefix", this.sourcePrefix);
+        progress.put("targetBucket", this.targetBucket);
+        progress.put("targetPrefix", this.targetPrefix);
+        progress.put("move", this.move);
+        progress.put("listingComplete", this.listingComplete);
+        progress.put("listed", this.listed.sum());
+        progress.put("copied", this.copied.sum());
+        progress.put("failed", this.failed.sum());
+        progress.put("bytes", this.bytes.sum());
+        progress.put("elapsedMillis", this.elapsed().toMillis());
+
+        if (this.error != null) {
+            progress.put("error", this.error);
+        }
+
+        synchronized (this.failures) {
+            progress.put("failures", new LinkedHashMap<>(this.failures));
+        }
+
+        return progress;
+    }
+
+    String targetKey(String sourceKey) {
+        return this.targetPrefix + sourceKey.substring(this.sourcePrefix.length());
+    }
+
+    void listed() {
+        this.listed.increment();
+    }
+
+    void listingComplete() {
+        this.listingComplete = true;
+    }
+
+    void copied(CopyResult result) {
+        this.copied.increment();
+        this.bytes.add(result.bytes());
+    }
+
+    void failed(String sourceKey, Throwable cause) {
+        this.failed.increment();
+
+        synchronized (this.failures) {
+            if (this.failures.size() < MAX_REPORTED_FAILURES) {
+                this.failures.put(sourceKey, String.valueOf(cause.getMessage()));
+            }
+        }
+    }
+
+    void finish(Throwable cause) {
+        this.finishedAt = System.nanoTime();
+
+        if (cause != null) {
+            this.error = String.valueOf(cause.getMessage());
+        }
+
+        this.state = cause == null && this.failed.sum() == 0 ? State.COMPLETED : State.FAILED;
+    }
+}
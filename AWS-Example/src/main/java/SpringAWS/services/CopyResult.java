@@ -0,0 +1,22 @@
+package SpringAWS.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+
+import java.time.Duration;
+
+@Getter
+@Accessors(fluent = true)
+@AllArgsConstructor
+public class CopyResult {
+    private final String sourceBucket;
+    private final String sourceKey;
+    private final String targetBucket;
+    private final String targetKey;
+    private final long bytes;
+    // 0 for a plain CopyObject
+    private final int parts;
+    private final String eTag;
+    private final Duration elapsed;
+}
@@ -0,0 +1,21 @@
+package SpringAWS.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+
+@Getter
+@Accessors(fluent = true)
+@AllArgsConstructor
+public class DedupResult {
+    private final String key;
+    private final String blobKey;
+    private final String sha256;
+    private final long bytes;
+    // false when the blob existed already and only the reference was written
+    private final boolean transferred;
+    // Of the content, the SHA-256, every reference object has the ETag of an empty body
+    private final String eTag;
+    // Of the reference object
+    private final String versionId;
+}
@@ -0,0 +1,25 @@
+package SpringAWS.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+@Getter
+@Accessors(fluent = true)
+@AllArgsConstructor
+public class DownloadResult {
+    private final Path file;
+    private final long bytes;
+    private final Duration elapsed;
+    private final List<Duration> rangeLatencies;
+
+    public double bytesPerSecond() {
+        long nanos = Math.max(this.elapsed.toNanos(), 1);
+
+        return this.bytes * 1_000_000_000d / nanos;
+    }
+}
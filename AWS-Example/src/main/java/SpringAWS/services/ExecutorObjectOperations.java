@@ -0,0 +1,107 @@
+package SpringAWS.services;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.util.IOUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * {@link AsyncObjectOperations} on the blocking v1 client. Every request holds an executor thread
+ * until it completes, so the request executor is sized like the client's connection pool.
+ */
+@Component
+@ConditionalOnProperty(name = "aws.s3.async-operations", havingValue = "sync", matchIfMissing = true)
+public class ExecutorObjectOperations implements AsyncObjectOperations {
+
+    @Autowired
+    private AmazonS3 s3Client;
+
+    @Autowired
+    private ObjectCopier objectCopier;
+
+    @Autowired
+    @Qualifier("s3RequestExecutor")
+    private ExecutorService requestExecutor;
+
+    @Override
+    public CompletableFuture<byte[]> getObject(String bucketName, String key) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (S3Object object = this.s3Client.getObject(bucketName, key)) {
+                // Deduplicated uploads leave an empty reference, the content is in the blob it names
+                Optional<String> blobKey = ContentDeduplicator.blobKeyOf(object.getObjectMetadata());
+
+                if (blobKey.isPresent()) {
+                    try (S3Object blob = this.s3Client.getObject(bucketName, blobKey.get())) {
+                        return read(blob);
+                    }
+                }
+
+                return read(object);
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }, this.requestExecutor);
+    }
+
+    @Override
+    public CompletableFuture<PutObjectResult> putObject(String bucketName, String key, byte[] content,
+                                                        String contentType) {
+        return CompletableFuture.supplyAsync(() -> {
+            ObjectMetadata metadata = new ObjectMetadata();
+            metadata.setContentLength(content.length);
+
+            if (contentType != null) {
+                metadata.setContentType(contentType);
+            }
+
+            return this.s3Client.putObject(
+                    new PutObjectRequest(bucketName, key, new ByteArrayInputStream(content), metadata));
+        }, this.requestExecutor);
+    }
+
+    @Override
+    public CompletableFuture<Optional<ObjectMetadata>> getObjectMetadata(String bucketName, String key) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return Optional.of(this.s3Client.getObjectMetadata(bucketName, key));
+            } catch (AmazonS3Exception exception) {
+                if (exception.getStatusCode() == 404) {
+                    return Optional.empty();
+                }
+
+                throw exception;
+            }
+        }, this.requestExecutor);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteObject(String bucketName, String key) {
+        return CompletableFuture.runAsync(() -> this.s3Client.deleteObject(bucketName, key), this.requestExecutor);
+    }
+
+    @Override
+    public CompletableFuture<CopyResult> copyObject(String sourceBucket, String sourceKey, String targetBucket,
+                                                    String targetKey) {
+        return CompletableFuture.supplyAsync(
+                () -> this.objectCopier.copy(sourceBucket, sourceKey, targetBucket, targetKey),
+                this.requestExecutor);
+    }
+
+    private static byte[] read(S3Object object) throws IOException {
+        return IOUtils.toByteArray(ObjectCompressor.decompress(object.getObjectContent(), object.getObjectMetadata()));
+    }
+}
@@ -0,0 +1,309 @@
+package SpringAWS.services;
+
+import SpringAWS.configs.S3FolderConfig;
+import SpringAWS.configs.S3HedgingConfig;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * GETs objects of the configured folders with a hedge: when S3 hasn't answered within a percentile of the
+ * recent GET latencies, the same GET is sent a second time and whichever answers first is used. A slow GET
+ * is usually slow because of the one S3 host or connection it landed on, so the duplicate mostly answers
+ * in typical time and cuts the tail to little more than the hedge delay.
+ * <p>
+ * Hedges are paid from a budget that every GET refills by aws.s3.hedging.hedge-ratio, so when S3 is slow
+ * across the board hedging doesn't double the load on it, and the GETs run on a bounded pool: when it is
+ * busy, a GET goes out unhedged and a hedge isn't sent. The response that loses the race is aborted instead
+ * of read, and so is the winning one if the reader gives up waiting for it. The SDK can't abort a request
+ * that is still waiting for its response, so the losing thread is interrupted and otherwise runs until the
+ * response arrives.
+ */
+@Component
+public class HedgedReader {
+    // The percentile is taken from a histogram, recomputing it for every GET would cost more than it is worth
+    private static final long DELAY_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // Claim of a GET nobody answered yet, of a 304 without an object, and of a GET the reader is done with
+    private static final Object UNANSWERED = new Object();
+    private static final Object NOT_MODIFIED = new Object();
+    private static final Object CLOSED = new Object();
+
+    @Autowired
+    private AmazonS3 s3Client;
+
+    @Autowired
+    private S3HedgingConfig hedgingConfig;
+
+    @Autowired
+    private S3FolderConfig folderConfig;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Autowired
+    @Qualifier("s3HedgingExecutor")
+    private ExecutorService executor;
+
+    private final LongAdder requests = new LongAdder();
+    private final Object hedgeBudgetLock = new Object();
+    private double hedgeBudget;
+    private Timer latency;
+    private Counter fired;
+    private Counter won;
+    private Counter rejected;
+    private Counter poolExhausted;
+    private volatile long hedgeDelay;
+    private volatile long hedgeDelayUpdatedAt;
+
+    @PostConstruct
+    public void init() {
+        this.hedgeBudget = this.hedgingConfig.hedgeBurst();
+        this.hedgeDelay = this.hedgingConfig.minDelay().toNanos();
+        this.hedgeDelayUpdatedAt = System.nanoTime();
+        this.latency = Timer.builder("s3.hedging.latency")
+                .description("Time until S3 answered the GETs of hedged folders, which the hedge delay is taken from")
+                .publishPercentiles(this.hedgingConfig.percentile())
+                .distributionStatisticExpiry(this.hedgingConfig.window())
+                .register(this.registry);
+        this.fired = this.registry.counter("s3.hedging.fired");
+        this.won = this.registry.counter("s3.hedging.won");
+        this.rejected = this.registry.counter("s3.hedging.budget-exhausted");
+        this.poolExhausted = this.registry.counter("s3.hedging.pool-exhausted");
+
+        Gauge.builder("s3.hedging.delay", this, reader -> reader.hedgeDelay / 1e6)
+                .description("Milliseconds a GET waits for its answer before it is hedged")
+                .strongReference(true)
+                .register(this.registry);
+    }
+
+    /**
+     * Whether GETs of the key are hedged, going by aws.s3.hedging.
+     */
+    public boolean appliesTo(String key) {
+        return this.hedgingConfig.enabled() && this.hedgingConfig.folders().stream()
+                .map(this.folderConfig::resolve)
+                .flatMap(Optional::stream)
+                .anyMatch(folder -> key.startsWith(folder + "/"));
+    }
+
+    /**
+     * Same as {@link AmazonS3#getObject(GetObjectRequest)}, hedged for keys of the configured folders.
+     */
+    public S3Object getObject(GetObjectRequest request) {
+        if (!this.appliesTo(request.getKey())) {
+            return this.s3Client.getObject(request);
+        }
+
+        this.requests.increment();
+        this.depositHedgeBudget();
+
+        CompletionService<S3Object> completion = new ExecutorCompletionService<>(this.executor);
+        // Claimed by the first answer, later ones abort themselves
+        AtomicReference<Object> answer = new AtomicReference<>(UNANSWERED);
+        List<Future<S3Object>> attempts = new ArrayList<>(2);
+        S3Object returned = null;
+
+        try {
+            attempts.add(completion.submit(() -> this.attempt(request, answer)));
+        } catch (RejectedExecutionException exception) {
+            this.poolExhausted.increment();
+
+            return this.s3Client.getObject(request);
+        }
+
+        try {
+            // An answer within the delay is taken as it is, a quick failure isn't slow and retrying it is
+            // up to the client
+            Future<S3Object> first = completion.poll(this.hedgeDelay(), TimeUnit.NANOSECONDS);
+
+            if (first == null) {
+                if (this.withdrawHedgeBudget()) {
+                    this.hedge(request, answer, completion, attempts);
+                } else {
+                    this.rejected.increment();
+                }
+
+                first = completion.take();
+            }
+
+            returned = this.answer(first, completion, attempts);
+
+            return returned;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+
+            throw new SdkClientException(String.format("Waiting for '%s' from bucket '%s' was interrupted",
+                    request.getKey(), request.getBucketName()), exception);
+        } finally {
+            // Once closed no attempt can win anymore, one that won without being returned is released here
+            Object winner = answer.getAndSet(CLOSED);
+
+            if (winner instanceof S3Object && winner != returned) {
+                abort((S3Object) winner);
+            }
+
+            attempts.forEach(attempt -> attempt.cancel(true));
+        }
+    }
+
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("requests", this.requests.sum());
+        stats.put("fired", (long) this.fired.count());
+        stats.put("won", (long) this.won.count());
+        stats.put("budgetExhausted", (long) this.rejected.count());
+        stats.put("poolExhausted", (long) this.poolExhausted.count());
+        stats.put("delayMillis", TimeUnit.NANOSECONDS.toMillis(this.hedgeDelay));
+
+        return stats;
+    }
+
+    private void hedge(GetObjectRequest request, AtomicReference<Object> answer,
+                       CompletionService<S3Object> completion, List<Future<S3Object>> attempts) {
+        GetObjectRequest hedge = (GetObjectRequest) request.clone();
+
+        try {
+            attempts.add(completion.submit(() -> this.attempt(hedge, answer)));
+            this.fired.increment();
+        } catch (RejectedExecutionException exception) {
+            this.poolExhausted.increment();
+        }
+    }
+
+    /**
+     * The first successful answer, or the first failure once every attempt failed.
+     */
+    private S3Object answer(Future<S3Object> first, CompletionService<S3Object> completion,
+                            List<Future<S3Object>> attempts) throws InterruptedException {
+        RuntimeException failure = null;
+        Future<S3Object> done = first;
+
+        for (int remaining = attempts.size(); ; ) {
+            try {
+                S3Object object = done.get();
+
+                if (done != attempts.get(0)) {
+                    this.won.increment();
+                }
+
+                return object;
+            } catch (ExecutionException exception) {
+                if (!(exception.getCause() instanceof Superseded) && failure == null) {
+                    failure = exception.getCause() instanceof RuntimeException
+                            ? (RuntimeException) exception.getCause()
+                            : new SdkClientException(exception.getCause().getMessage(), exception.getCause());
+                }
+            }
+
+            if (--remaining == 0) {
+                throw failure;
+            }
+
+            done = completion.take();
+        }
+    }
+
+    private S3Object attempt(GetObjectRequest request, AtomicReference<Object> answer) {
+        long started = System.nanoTime();
+        S3Object object = this.s3Client.getObject(request);
+        // The losers count too, their latency is the tail the delay is meant to cut
+        this.latency.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+
+        if (!answer.compareAndSet(UNANSWERED, object == null ? NOT_MODIFIED : object)) {
+            abort(object);
+
+            throw new Superseded();
+        }
+
+        return object;
+    }
+
+    private long hedgeDelay() {
+        long now = System.nanoTime();
+
+        if (now - this.hedgeDelayUpdatedAt > DELAY_REFRESH_NANOS) {
+            long percentile = 0;
+
+            for (ValueAtPercentile value : this.latency.takeSnapshot().percentileValues()) {
+                percentile = (long) value.value(TimeUnit.NANOSECONDS);
+            }
+
+            this.hedgeDelay = Math.max(this.hedgingConfig.minDelay().toNanos(), percentile);
+            this.hedgeDelayUpdatedAt = now;
+        }
+
+        return this.hedgeDelay;
+    }
+
+    private void depositHedgeBudget() {
+        synchronized (this.hedgeBudgetLock) {
+            this.hedgeBudget = Math.min(this.hedgingConfig.hedgeBurst(),
+                    this.hedgeBudget + this.hedgingConfig.hedgeRatio());
+        }
+    }
+
+    private boolean withdrawHedgeBudget() {
+        synchronized (this.hedgeBudgetLock) {
+            if (this.hedgeBudget < 1) {
+                return false;
+            }
+
+            this.hedgeBudget--;
+
+            return true;
+        }
+    }
+
+    /**
+     * Drops the connection of an unread response instead of draining a body nobody wants.
+     */
+    private static void abort(S3Object object) {
+        // A 304 of a conditional GET has no object
+        if (object == null) {
+            return;
+        }
+
+        object.getObjectContent().abort();
+
+        try {
+            object.close();
+        } catch (IOException ignored) {
+            // Aborted already, closing only releases what is left
+        }
+    }
+
+    /**
+     * Thrown by an attempt whose answer came second.
+     */
+    private static final class Superseded extends RuntimeException {
+        private Superseded() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package SpringAWS.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+
+@Getter
+@Accessors(fluent = true)
+@AllArgsConstructor
+public class LifecycleActionImpact {
+    private final long objects;
+    private final long bytes;
+    // USD per month, going by aws.s3.lifecycle.prices
+    private final double monthlySavings;
+    // USD once, for the transition requests
+    private final double transitionCost;
+}
@@ -1,64 +1,207 @@
 package SpringAWS.services;
 
+import SpringAWS.configs.S3LifecycleConfig;
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortIncompleteMultipartUpload;
 import com.amazonaws.services.s3.model.BucketLifecycleConfiguration;
+import com.amazonaws.services.s3.model.BucketLifecycleConfiguration.NoncurrentVersionExpiration;
+import com.amazonaws.services.s3.model.BucketLifecycleConfiguration.Rule;
 import com.amazonaws.services.s3.model.StorageClass;
 import com.amazonaws.services.s3.model.Tag;
 import com.amazonaws.services.s3.model.lifecycle.LifecycleAndOperator;
 import com.amazonaws.services.s3.model.lifecycle.LifecycleFilter;
+import com.amazonaws.services.s3.model.lifecycle.LifecycleFilterPredicate;
 import com.amazonaws.services.s3.model.lifecycle.LifecyclePrefixPredicate;
 import com.amazonaws.services.s3.model.lifecycle.LifecycleTagPredicate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
 
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static com.amazonaws.services.s3.model.BucketLifecycleConfiguration.Transition;
 
+/**
+ * Applies the lifecycle rules of aws.s3.lifecycle.rules. A bucket's configuration is only written when it
+ * differs from what S3 already has, so applying on every startup costs one GET per bucket.
+ */
+@Component
 public class LifecycleConfiguration {
 
+    private static final Logger log = LoggerFactory.getLogger(LifecycleConfiguration.class);
+
     @Autowired
     private AmazonS3 s3Client;
 
-    public void demo() {
-        String bucketName = "test-bucket";
-
-        // Create a rule to archive objects with the "glacierobjects/" prefix to Glacier immediately.
-        BucketLifecycleConfiguration.Rule rule1 = new BucketLifecycleConfiguration.Rule()
-                .withId("Archive immediately rule")
-                .withFilter(new LifecycleFilter(new LifecyclePrefixPredicate("glacierobjects/")))
-                .addTransition(new Transition().withDays(0).withStorageClass(StorageClass.Glacier))
-                .withStatus(BucketLifecycleConfiguration.ENABLED);
-
-        // Create a rule to transition objects to the Standard-Infrequent Access storage class
-        // after 30 days, then to Glacier after 365 days. Amazon S3 will delete the objects after 3650 days.
-        // The rule applies to all objects with the tag "archive" set to "true".
-        BucketLifecycleConfiguration.Rule rule2 = new BucketLifecycleConfiguration.Rule()
-                .withId("Archive and then delete rule")
-                .withFilter(new LifecycleFilter(new LifecycleTagPredicate(new Tag("archive", "true"))))
-                .addTransition(new Transition().withDays(30).withStorageClass(StorageClass.StandardInfrequentAccess))
-                .addTransition(new Transition().withDays(365).withStorageClass(StorageClass.Glacier))
-                .withExpirationInDays(3650)
-                .withStatus(BucketLifecycleConfiguration.ENABLED);
-
-        // Add the rules to a new BucketLifecycleConfiguration.
-        BucketLifecycleConfiguration configuration = new BucketLifecycleConfiguration()
-                .withRules(Arrays.asList(rule1, rule2));
-
-        // Save the configuration.
-        s3Client.setBucketLifecycleConfiguration(bucketName, configuration);
-
-        // Retrieve the configuration.
-        configuration = s3Client.getBucketLifecycleConfiguration(bucketName);
-
-        // Add a new rule with both a prefix predicate and a tag predicate.
-        configuration.getRules().add(new BucketLifecycleConfiguration.Rule().withId("NewRule")
-                .withFilter(new LifecycleFilter(new LifecycleAndOperator(
-                        Arrays.asList(new LifecyclePrefixPredicate("YearlyDocuments/"),
-                                new LifecycleTagPredicate(new Tag("expire_after", "ten_years"))))))
-                .withExpirationInDays(3650)
-                .withStatus(BucketLifecycleConfiguration.ENABLED));
-
-        // Save the configuration.
-        s3Client.setBucketLifecycleConfiguration(bucketName, configuration);
+    @Autowired
+    private S3LifecycleConfig lifecycleConfig;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void applyOnStartup() {
+        if (!this.lifecycleConfig.applyOnStartup()) {
+            return;
+        }
+
+        for (String bucketName : this.buckets()) {
+            try {
+                this.apply(bucketName);
+            } catch (RuntimeException exception) {
+                // A bucket we can't reach shouldn't keep the application from serving the others
+                log.error("Applying the lifecycle rules of bucket '{}' failed", bucketName, exception);
+            }
+        }
+    }
+
+    /**
+     * Writes the configured rules of the bucket unless S3 has exactly these rules already.
+     *
+     * @return whether the configuration was written
+     */
+    public boolean apply(String bucketName) {
+        BucketLifecycleConfiguration desired = this.configurationFor(bucketName);
+
+        if (desired.getRules().isEmpty()) {
+            throw new IllegalArgumentException(String.format("No lifecycle rules are configured for bucket '%s'",
+                    bucketName));
+        }
+
+        BucketLifecycleConfiguration current = this.s3Client.getBucketLifecycleConfiguration(bucketName);
+
+        if (current != null && describe(current).equals(describe(desired))) {
+            log.debug("Lifecycle rules of bucket '{}' are up to date", bucketName);
+
+            return false;
+        }
+
+        this.s3Client.setBucketLifecycleConfiguration(bucketName, desired);
+        log.info("Applied {} lifecycle rules to bucket '{}'", desired.getRules().size(), bucketName);
+
+        return true;
+    }
+
+    /**
+     * The bucket's rules as configured, in S3's model.
+     */
+    public BucketLifecycleConfiguration configurationFor(String bucketName) {
+        List<Rule> rules = this.lifecycleConfig.rules().stream()
+                .filter(rule -> rule.bucket().equals(bucketName))
+                .map(LifecycleConfiguration::toRule)
+                .collect(Collectors.toList());
+
+        return new BucketLifecycleConfiguration().withRules(rules);
+    }
+
+    public Set<String> buckets() {
+        return this.lifecycleConfig.rules().stream()
+                .map(S3LifecycleConfig.Rule::bucket)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    private static Rule toRule(S3LifecycleConfig.Rule configured) {
+        List<LifecycleFilterPredicate> predicates = new ArrayList<>();
+
+        // S3 leaves an empty prefix out next to tags, so does this to compare equal
+        if (!configured.prefix().isEmpty() || configured.tags().isEmpty()) {
+            predicates.add(new LifecyclePrefixPredicate(configured.prefix()));
+        }
+
+        configured.tags().forEach((key, value) -> predicates.add(new LifecycleTagPredicate(new Tag(key, value))));
+
+        Rule rule = new Rule()
+                .withId(configured.id())
+                .withFilter(new LifecycleFilter(predicates.size() == 1
+                        ? predicates.get(0)
+                        : new LifecycleAndOperator(predicates)))
+                .withStatus(configured.enabled() ? BucketLifecycleConfiguration.ENABLED
+                        : BucketLifecycleConfiguration.DISABLED);
+
+        for (S3LifecycleConfig.Transition transition : configured.transitions()) {
+            rule.addTransition(new Transition()
+                    .withDays(transition.days())
+                    .withStorageClass(StorageClass.fromValue(transition.storageClass())));
+        }
+
+        if (configured.expirationDays() != null) {
+            rule.withExpirationInDays(configured.expirationDays());
+        }
+
+        if (configured.noncurrentVersionExpirationDays() != null) {
+            rule.withNoncurrentVersionExpiration(new NoncurrentVersionExpiration()
+                    .withDays(configured.noncurrentVersionExpirationDays()));
+        }
+
+        if (configured.abortIncompleteUploadDays() != null) {
+            rule.withAbortIncompleteMultipartUpload(new AbortIncompleteMultipartUpload()
+                    .withDaysAfterInitiation(configured.abortIncompleteUploadDays()));
+        }
+
+        return rule;
+    }
+
+    /**
+     * A canonical form of the rules, the SDK model has no equals and S3 may return them in another order.
+     */
+    private static List<String> describe(BucketLifecycleConfiguration configuration) {
+        return configuration.getRules().stream()
+                .sorted(Comparator.comparing(Rule::getId, Comparator.nullsFirst(Comparator.naturalOrder())))
+                .map(LifecycleConfiguration::describe)
+                .collect(Collectors.toList());
+    }
+
+    private static String describe(Rule rule) {
+        String transitions = (rule.getTransitions() == null ? List.<Transition>of() : rule.getTransitions()).stream()
+                .map(transition -> transition.getDays() + ":" + transition.getStorageClassAsString())
+                .sorted()
+                .collect(Collectors.joining(","));
+        int noncurrentExpiration = rule.getNoncurrentVersionExpiration() != null
+                ? rule.getNoncurrentVersionExpiration().getDays()
+                : -1;
+        int abortIncomplete = rule.getAbortIncompleteMultipartUpload() != null
+                ? rule.getAbortIncompleteMultipartUpload().getDaysAfterInitiation()
+                : -1;
+
+        return String.join("|", rule.getId(), rule.getStatus(), describe(rule.getFilter()),
+                transitions, Integer.toString(rule.getExpirationInDays()), Integer.toString(noncurrentExpiration),
+                Integer.toString(abortIncomplete));
+    }
+
+    private static String describe(LifecycleFilter filter) {
+        // Rules stored with the legacy top-level prefix have no filter, configured rules always have one and
+        // so replace them
+        if (filter == null || filter.getPredicate() == null) {
+            return "unfiltered";
+        }
+
+        List<LifecycleFilterPredicate> predicates = filter.getPredicate() instanceof LifecycleAndOperator
+                ? ((LifecycleAndOperator) filter.getPredicate()).getOperands()
+                : List.of(filter.getPredicate());
+
+        return predicates.stream()
+                .filter(predicate -> predicates.size() == 1 || !(predicate instanceof LifecyclePrefixPredicate)
+                        || !Objects.toString(((LifecyclePrefixPredicate) predicate).getPrefix(), "").isEmpty())
+                .map(predicate -> {
+                    if (predicate instanceof LifecyclePrefixPredicate) {
+                        return "prefix=" + Objects.toString(((LifecyclePrefixPredicate) predicate).getPrefix(), "");
+                    }
+
+                    if (predicate instanceof LifecycleTagPredicate) {
+                        Tag tag = ((LifecycleTagPredicate) predicate).getTag();
+
+                        return "tag:" + tag.getKey() + "=" + tag.getValue();
+                    }
+
+                    return predicate.getClass().getSimpleName();
+                })
+                .sorted()
+                .collect(Collectors.joining("&"));
     }
 }
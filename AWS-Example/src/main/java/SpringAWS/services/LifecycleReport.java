@@ -0,0 +1,26 @@
+package SpringAWS.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+@Getter
+@Accessors(fluent = true)
+@AllArgsConstructor
+public class LifecycleReport {
+    private final String bucketName;
+    // The point in time the rules were evaluated for
+    private final Instant at;
+    private final long scannedObjects;
+    private final long scannedBytes;
+    private final List<LifecycleRuleImpact> rules;
+    // Objects matched by several rules count once, with their largest saving
+    private final double monthlySavings;
+    // USD once, for the transitions of the actions counted in monthlySavings
+    private final double transitionCost;
+    private final Duration elapsed;
+}
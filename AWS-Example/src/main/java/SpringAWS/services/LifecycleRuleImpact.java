@@ -0,0 +1,24 @@
+package SpringAWS.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+
+import java.util.Map;
+
+@Getter
+@Accessors(fluent = true)
+@AllArgsConstructor
+public class LifecycleRuleImpact {
+    private final String ruleId;
+    // false for rules filtering on tags, which listings don't include, and rules that only act on noncurrent
+    // versions or incomplete uploads
+    private final boolean simulated;
+    // Objects within the rule's filter, whether or not they're old enough for an action yet
+    private final long objects;
+    private final long bytes;
+    // EXPIRE or TRANSITION_TO_<storage class>
+    private final Map<String, LifecycleActionImpact> actions;
+    private final double monthlySavings;
+    private final double transitionCost;
+}
@@ -0,0 +1,219 @@
+package SpringAWS.services;
+
+import SpringAWS.configs.S3LifecycleConfig;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Dry run of a bucket's configured lifecycle rules: scans the listing with the parallel bucket scanner and
+ * counts the objects and bytes every rule would transition or expire at a given point in time, and what
+ * that saves per month. Nothing is changed, so it can be run over millions of objects before committing to
+ * a storage class move.
+ * <p>
+ * Like S3, transitions only move objects down the storage class waterfall, never to a class they're already
+ * past, and leave objects smaller than aws.s3.lifecycle.min-transition-size where they are. Every transition
+ * is a request S3 charges for once, which is reported next to the monthly savings.
+ * <p>
+ * Object age is measured from LastModified, without S3's rounding to the next midnight. Rules filtering on
+ * tags are reported as not simulated, as listings don't include tags, and so are rules that only expire
+ * noncurrent versions or abort incomplete uploads, as the simulation only lists current objects.
+ */
+@Component
+public class LifecycleSimulator {
+    private static final double BYTES_PER_GB = 1024d * 1024 * 1024;
+    private static final String EXPIRE = "EXPIRE";
+    // S3's transition waterfall, objects only move to classes further down
+    private static final List<String> STORAGE_CLASS_ORDER = List.of("STANDARD", "STANDARD_IA",
+            "INTELLIGENT_TIERING", "ONEZONE_IA", "GLACIER_IR", "GLACIER", "DEEP_ARCHIVE");
+
+    @Autowired
+    private BucketScanner bucketScanner;
+
+    @Autowired
+    private S3LifecycleConfig lifecycleConfig;
+
+    /**
+     * @param ahead how far from now to evaluate the rules, zero for what they would do today
+     */
+    public LifecycleReport simulate(String bucketName, Duration ahead) {
+        long start = System.nanoTime();
+        Instant at = Instant.now().plus(ahead);
+        List<S3LifecycleConfig.Rule> rules = this.lifecycleConfig.rules().stream()
+                .filter(rule -> rule.bucket().equals(bucketName) && rule.enabled())
+                .collect(Collectors.toList());
+
+        if (rules.isEmpty()) {
+            throw new IllegalArgumentException(String.format("No enabled lifecycle rules are configured for bucket '%s'",
+                    bucketName));
+        }
+
+        List<RuleTally> tallies = rules.stream().map(RuleTally::new).collect(Collectors.toList());
+        List<RuleTally> simulated = tallies.stream()
+                .filter(RuleTally::simulated)
+                .collect(Collectors.toList());
+        long scannedObjects = 0;
+        long scannedBytes = 0;
+        double monthlySavings = 0;
+        double transitionCost = 0;
+
+        if (!simulated.isEmpty()) {
+            try (BucketScan scan = this.bucketScanner.scan(bucketName, commonPrefix(simulated))) {
+                while (scan.hasNext()) {
+                    S3ObjectSummary summary = scan.next();
+                    Outcome best = Outcome.NONE;
+                    scannedObjects++;
+                    scannedBytes += summary.getSize();
+
+                    for (RuleTally tally : simulated) {
+                        Outcome outcome = tally.add(summary, at);
+
+                        if (outcome.saving > best.saving) {
+                            best = outcome;
+                        }
+                    }
+
+                    monthlySavings += best.saving;
+                    transitionCost += best.cost;
+                }
+            }
+        }
+
+        return new LifecycleReport(bucketName, at, scannedObjects, scannedBytes,
+                tallies.stream().map(RuleTally::impact).collect(Collectors.toList()), monthlySavings,
+                transitionCost, Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private static String commonPrefix(List<RuleTally> tallies) {
+        String prefix = tallies.get(0).rule.prefix();
+
+        for (RuleTally tally : tallies) {
+            String other = tally.rule.prefix();
+            int length = 0;
+
+            while (length < prefix.length() && length < other.length()
+                    && prefix.charAt(length) == other.charAt(length)) {
+                length++;
+            }
+
+            prefix = prefix.substring(0, length);
+        }
+
+        return prefix;
+    }
+
+    /**
+     * Whether S3 moves objects of the one storage class to the other, unknown classes aren't moved.
+     */
+    private static boolean isDownward(String from, String to) {
+        int fromIndex = STORAGE_CLASS_ORDER.indexOf("REDUCED_REDUNDANCY".equals(from) ? "STANDARD" : from);
+        int toIndex = STORAGE_CLASS_ORDER.indexOf(to);
+
+        return fromIndex >= 0 && toIndex > fromIndex;
+    }
+
+    /**
+     * What an action on an object saves per month and costs once.
+     */
+    private static final class Outcome {
+        private static final Outcome NONE = new Outcome(0, 0);
+
+        private final double saving;
+        private final double cost;
+
+        private Outcome(double saving, double cost) {
+            this.saving = saving;
+            this.cost = cost;
+        }
+    }
+
+    /**
+     * Counters of a single rule, only touched by the thread consuming the scan.
+     */
+    private final class RuleTally {
+        private final S3LifecycleConfig.Rule rule;
+        private final Map<String, long[]> actions = new TreeMap<>();
+        private final Map<String, Double> savings = new TreeMap<>();
+        private final Map<String, Double> costs = new TreeMap<>();
+        private long objects;
+        private long bytes;
+
+        private RuleTally(S3LifecycleConfig.Rule rule) {
+            this.rule = rule;
+        }
+
+        private boolean simulated() {
+            return this.rule.tags().isEmpty()
+                    && (this.rule.expirationDays() != null || !this.rule.transitions().isEmpty());
+        }
+
+        /**
+         * Counts the object if the rule applies to it.
+         *
+         * @return what the rule's action on the object saves per month and costs once
+         */
+        private Outcome add(S3ObjectSummary summary, Instant at) {
+            if (!summary.getKey().startsWith(this.rule.prefix())) {
+                return Outcome.NONE;
+            }
+
+            this.objects++;
+            this.bytes += summary.getSize();
+
+            String storageClass = summary.getStorageClass() == null ? "STANDARD" : summary.getStorageClass();
+            long ageDays = Duration.between(summary.getLastModified().toInstant(), at).toDays();
+            double gigabytes = summary.getSize() / BYTES_PER_GB;
+            double currentPrice = lifecycleConfig.price(storageClass);
+            String action;
+            double saving;
+            double cost = 0;
+
+            if (this.rule.expirationDays() != null && ageDays >= this.rule.expirationDays()) {
+                action = EXPIRE;
+                saving = gigabytes * currentPrice;
+            } else if (summary.getSize() < lifecycleConfig.minTransitionSize()) {
+                return Outcome.NONE;
+            } else {
+                // The latest transition the object is old enough for is where it ends up
+                Optional<S3LifecycleConfig.Transition> transition = this.rule.transitions().stream()
+                        .filter(candidate -> ageDays >= candidate.days())
+                        .max((left, right) -> Integer.compare(left.days(), right.days()));
+
+                if (transition.isEmpty() || !isDownward(storageClass, transition.get().storageClass())) {
+                    return Outcome.NONE;
+                }
+
+                action = "TRANSITION_TO_" + transition.get().storageClass();
+                saving = gigabytes * (currentPrice - lifecycleConfig.price(transition.get().storageClass()));
+                cost = lifecycleConfig.transitionPrice(transition.get().storageClass());
+            }
+
+            long[] counts = this.actions.computeIfAbsent(action, ignored -> new long[2]);
+            counts[0]++;
+            counts[1] += summary.getSize();
+            this.savings.merge(action, saving, Double::sum);
+            this.costs.merge(action, cost, Double::sum);
+
+            return new Outcome(saving, cost);
+        }
+
+        private LifecycleRuleImpact impact() {
+            Map<String, LifecycleActionImpact> impacts = new TreeMap<>();
+            this.actions.forEach((action, counts) ->
+                    impacts.put(action, new LifecycleActionImpact(counts[0], counts[1], this.savings.get(action),
+                            this.costs.get(action))));
+
+            return new LifecycleRuleImpact(this.rule.id(), this.simulated(), this.objects, this.bytes, impacts,
+                    this.savings.values().stream().mapToDouble(Double::doubleValue).sum(),
+                    this.costs.values().stream().mapToDouble(Double::doubleValue).sum());
+        }
+    }
+}
@@ -0,0 +1,412 @@
+package SpringAWS.services;
+
+import SpringAWS.configs.S3TransferConfig;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.model.*;
+import com.amazonaws.services.s3.transfer.model.UploadResult;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Uploads large objects as concurrent multipart uploads. At most {@code aws.s3.transfer.threads}
+ * parts are in flight at once, which also bounds the memory used for stream sources.
+ * <p>
+ * With aws.s3.transfer.resumable, uploads of files journal their upload id and the ETags of finished parts.
+ * A failed upload is then left open rather than aborted, and uploading the same file to the same key again
+ * only sends the parts S3 doesn't have yet, unless the file changed in between.
+ */
+@Component
+public class MultipartUploader {
+
+    private static final int MAX_PARTS = 10_000;
+    // Stream parts are doubled every this many parts, which reaches S3's 5TB object limit well within MAX_PARTS
+    private static final int PARTS_PER_SIZE = 1_000;
+    // S3 takes parts of up to 5GB, a part buffer can't exceed the largest array
+    private static final long MAX_STREAM_PART_SIZE = Integer.MAX_VALUE - 8;
+    private static final String UPLOAD = "upload";
+    private static final String PART = "part";
+
+    private AmazonS3 s3Client;
+
+    @Autowired
+    private S3TransferConfig transferConfig;
+
+    @Autowired
+    private RequestScheduler scheduler;
+
+    @Autowired
+    private TransferJournal journal;
+
+    @Autowired
+    @Qualifier("s3TransferExecutor")
+    private ExecutorService transferExecutor;
+
+    // Transfers prefer the bulk client when one is configured
+    @Autowired
+    public void setS3Client(AmazonS3 s3Client, @Qualifier("s3BulkClient") Optional<AmazonS3> bulkClient) {
+        this.s3Client = bulkClient.orElse(s3Client);
+    }
+
+    public UploadResult upload(String bucketName, String key, File file, ObjectMetadata metadata) {
+        long contentLength = file.length();
+        // Grow the part size for huge files so we stay within the 10,000 parts limit
+        long partSize = Math.max(this.transferConfig.partSize(), (contentLength + MAX_PARTS - 1) / MAX_PARTS);
+
+        if (contentLength <= partSize) {
+            PutObjectResult result = this.s3Client.putObject(
+                    new PutObjectRequest(bucketName, key, file).withMetadata(metadata));
+
+            return toUploadResult(bucketName, key, result.getETag(), result.getVersionId());
+        }
+
+        TransferJournal.Session session = this.journal.enabled()
+                ? this.journal.session(UPLOAD, bucketName, key, file.getAbsolutePath())
+                : null;
+        String[] header = {UPLOAD, null, String.valueOf(contentLength), String.valueOf(file.lastModified()),
+                String.valueOf(partSize)};
+        Map<Integer, PartETag> uploaded = new HashMap<>();
+        String resumedUploadId = session == null ? null : this.resume(bucketName, key, session, header, uploaded);
+        String uploadId = resumedUploadId != null ? resumedUploadId : this.initiate(bucketName, key, metadata);
+        List<Future<PartETag>> parts = new ArrayList<>();
+        Semaphore inFlight = new Semaphore(this.transferConfig.threads());
+
+        if (session != null && resumedUploadId == null) {
+            header[1] = uploadId;
+            session.start(header);
+        }
+
+        try {
+            int partNumber = 1;
+
+            for (long offset = 0; offset < contentLength; offset += partSize, partNumber++) {
+                final int currentPart = partNumber;
+                final long currentOffset = offset;
+                final long currentSize = Math.min(partSize, contentLength - offset);
+
+                if (uploaded.containsKey(currentPart)) {
+                    parts.add(CompletableFuture.completedFuture(uploaded.get(currentPart)));
+                    continue;
+                }
+
+                parts.add(this.submitPart(bucketName, key, session, inFlight, () -> new UploadPartRequest()
+                        .withBucketName(bucketName)
+                        .withKey(key)
+                        .withUploadId(uploadId)
+                        .withPartNumber(currentPart)
+                        .withFile(file)
+                        .withFileOffset(currentOffset)
+                        .withPartSize(currentSize)
+                        .withLastPart(currentOffset + currentSize == contentLength)));
+            }
+
+            UploadResult result = this.complete(bucketName, key, uploadId, parts);
+
+            if (session != null) {
+                session.finish();
+            }
+
+            return result;
+        } catch (Exception exception) {
+            // Left open for the next attempt to resume, abortStaleUploads cleans up the ones never resumed
+            throw this.abort(bucketName, key, session == null ? uploadId : null, parts, exception);
+        }
+    }
+
+    /**
+     * Uploads a stream of unknown length. Parts are read into memory one at a time, so at most
+     * {@code threads + 1} part buffers exist at any moment.
+     * <p>
+     * Streams don't tell how many parts they will take, so the part size doubles every 1,000 parts to stay
+     * within S3's 10,000 parts limit. A declared Content-Length sizes the parts up front instead.
+     */
+    public UploadResult upload(String bucketName, String key, InputStream inputStream, ObjectMetadata metadata) {
+        long declaredLength = metadata.getRawMetadataValue(Headers.CONTENT_LENGTH) != null
+                ? metadata.getContentLength()
+                : 0;
+        int partSize = (int) Math.min(Math.max(this.transferConfig.partSize(),
+                (declaredLength + MAX_PARTS - 1) / MAX_PARTS), MAX_STREAM_PART_SIZE);
+        String uploadId = null;
+        List<Future<PartETag>> parts = new ArrayList<>();
+        Semaphore inFlight = new Semaphore(this.transferConfig.threads());
+
+        try {
+            byte[] buffer = new byte[partSize];
+            int length = readFully(inputStream, buffer);
+
+            if (length < partSize) {
+                metadata.setContentLength(length);
+
+                PutObjectResult result = this.s3Client.putObject(
+                        new PutObjectRequest(bucketName, key, new ByteArrayInputStream(buffer, 0, length), metadata));
+
+                return toUploadResult(bucketName, key, result.getETag(), result.getVersionId());
+            }
+
+            uploadId = this.initiate(bucketName, key, metadata);
+
+            for (int partNumber = 1; length > 0; partNumber++) {
+                final byte[] partBytes = buffer;
+                final int partLength = length;
+                final int currentPart = partNumber;
+                final String currentUploadId = uploadId;
+
+                // Reserve the slot before reading the next part, so buffered parts stay bounded
+                inFlight.acquire();
+
+                if (partNumber % PARTS_PER_SIZE == 0) {
+                    partSize = (int) Math.min(2L * partSize, MAX_STREAM_PART_SIZE);
+                }
+
+                buffer = new byte[partSize];
+                length = readFully(inputStream, buffer);
+                final boolean lastPart = length == 0;
+
+                if (!lastPart && partNumber == MAX_PARTS) {
+                    inFlight.release();
+
+                    throw new SdkClientException(String.format(
+                            "Stream for '%s' exceeds the %d parts limit of multipart uploads", key, MAX_PARTS));
+                }
+
+                parts.add(this.submitAcquiredPart(bucketName, key, null, inFlight, () -> new UploadPartRequest()
+                        .withBucketName(bucketName)
+                        .withKey(key)
+                        .withUploadId(currentUploadId)
+                        .withPartNumber(currentPart)
+                        .withInputStream(new ByteArrayInputStream(partBytes, 0, partLength))
+                        .withPartSize(partLength)
+                        .withLastPart(lastPart)));
+            }
+
+            return this.complete(bucketName, key, uploadId, parts);
+        } catch (Exception exception) {
+            throw this.abort(bucketName, key, uploadId, parts, exception);
+        }
+    }
+
+    /**
+     * Aborts uploads that were started before the given date and never completed.
+     * Their parts are otherwise billed forever.
+     */
+    public int abortStaleUploads(String bucketName, Date initiatedBefore) {
+        int aborted = 0;
+        ListMultipartUploadsRequest request = new ListMultipartUploadsRequest(bucketName);
+        MultipartUploadListing listing;
+
+        do {
+            listing = this.s3Client.listMultipartUploads(request);
+
+            for (MultipartUpload upload : listing.getMultipartUploads()) {
+                if (upload.getInitiated().before(initiatedBefore)) {
+                    this.s3Client.abortMultipartUpload(
+                            new AbortMultipartUploadRequest(bucketName, upload.getKey(), upload.getUploadId()));
+                    aborted++;
+                }
+            }
+
+            request.setKeyMarker(listing.getNextKeyMarker());
+            request.setUploadIdMarker(listing.getNextUploadIdMarker());
+        } while (listing.isTruncated());
+
+        return aborted;
+    }
+
+    private String initiate(String bucketName, String key, ObjectMetadata metadata) {
+        return this.s3Client.initiateMultipartUpload(
+                new InitiateMultipartUploadRequest(bucketName, key, metadata)).getUploadId();
+    }
+
+    /**
+     * The id of the journaled upload if it can be resumed, collecting the parts S3 confirms it has.
+     */
+    private String resume(String bucketName, String key, TransferJournal.Session session, String[] header,
+                          Map<Integer, PartETag> uploaded) {
+        List<String[]> records = session.records();
+
+        if (records.isEmpty()) {
+            return null;
+        }
+
+        String uploadId = records.get(0).length > 1 ? records.get(0)[1] : null;
+        header[1] = uploadId;
+
+        if (!Arrays.equals(header, records.get(0))) {
+            // A different file by now, its parts are of no use
+            if (uploadId != null) {
+                this.abortQuietly(bucketName, key, uploadId);
+            }
+
+            return null;
+        }
+
+        Map<Integer, String> journaled = new HashMap<>();
+        records.stream()
+                .skip(1)
+                .filter(record -> record.length == 3 && record[0].equals(PART))
+                .forEach(record -> journaled.put(Integer.parseInt(record[1]), record[2]));
+
+        // Only parts S3 still has with the journaled ETag are skipped, the journal may be ahead of an aborted upload
+        PartListing listing;
+        ListPartsRequest request = new ListPartsRequest(bucketName, key, uploadId);
+
+        try {
+            do {
+                listing = this.s3Client.listParts(request);
+
+                for (PartSummary part : listing.getParts()) {
+                    String eTag = journaled.get(part.getPartNumber());
+
+                    if (eTag != null && unquoted(eTag).equals(unquoted(part.getETag()))) {
+                        uploaded.put(part.getPartNumber(), new PartETag(part.getPartNumber(), eTag));
+                    }
+                }
+
+                request.setPartNumberMarker(listing.getNextPartNumberMarker());
+            } while (listing.isTruncated());
+        } catch (AmazonS3Exception exception) {
+            if (exception.getStatusCode() == 404) {
+                // Aborted or completed meanwhile
+                return null;
+            }
+
+            throw exception;
+        }
+
+        return uploadId;
+    }
+
+    private Future<PartETag> submitPart(String bucketName, String key, TransferJournal.Session session,
+                                        Semaphore inFlight, Supplier<UploadPartRequest> request)
+            throws InterruptedException {
+        inFlight.acquire();
+
+        return this.submitAcquiredPart(bucketName, key, session, inFlight, request);
+    }
+
+    /**
+     * @param session journals the part once uploaded, null if the upload isn't resumable
+     */
+    private Future<PartETag> submitAcquiredPart(String bucketName, String key, TransferJournal.Session session,
+                                                Semaphore inFlight, Supplier<UploadPartRequest> request) {
+        try {
+            return this.transferExecutor.submit(() -> {
+                try {
+                    // A fresh request per attempt, since the previous one may have consumed its input stream
+                    PartETag partETag = this.scheduler.execute(bucketName, key, this.transferConfig.partRetries(),
+                            () -> this.s3Client.uploadPart(request.get()).getPartETag());
+
+                    if (session != null) {
+                        session.append(PART, String.valueOf(partETag.getPartNumber()), partETag.getETag());
+                    }
+
+                    return partETag;
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RuntimeException exception) {
+            inFlight.release();
+            throw exception;
+        }
+    }
+
+    private UploadResult complete(String bucketName, String key, String uploadId, List<Future<PartETag>> parts)
+            throws InterruptedException, ExecutionException {
+        List<PartETag> partETags = new ArrayList<>(parts.size());
+
+        for (Future<PartETag> part : parts) {
+            partETags.add(part.get());
+        }
+
+        partETags.sort(Comparator.comparingInt(PartETag::getPartNumber));
+
+        CompleteMultipartUploadResult result = this.s3Client.completeMultipartUpload(
+                new CompleteMultipartUploadRequest(bucketName, key, uploadId, partETags));
+
+        return toUploadResult(bucketName, key, result.getETag(), result.getVersionId());
+    }
+
+    private SdkClientException abort(String bucketName, String key, String uploadId,
+                                     List<Future<PartETag>> parts, Exception cause) {
+        parts.forEach(part -> part.cancel(true));
+
+        if (cause instanceof InterruptedException) {
+            Thread.currentThread().interrupt();
+        }
+
+        Throwable rootCause = cause instanceof ExecutionException ? cause.getCause() : cause;
+        SdkClientException failure = new SdkClientException(
+                String.format("Multipart upload of '%s' to bucket '%s' failed", key, bucketName), rootCause);
+
+        if (uploadId != null) {
+            try {
+                this.s3Client.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, key, uploadId));
+            } catch (SdkClientException abortException) {
+                // The parts stay billed until abortStaleUploads catches them
+                failure.addSuppressed(abortException);
+            }
+        }
+
+        return failure;
+    }
+
+    private void abortQuietly(String bucketName, String key, String uploadId) {
+        try {
+            this.s3Client.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, key, uploadId));
+        } catch (SdkClientException ignored) {
+            // Gone already, or left to abortStaleUploads
+        }
+    }
+
+    private static String unquoted(String eTag) {
+        return eTag.replace("\"", "");
+    }
+
+    private static int readFully(InputStream inputStream, byte[] buffer) throws IOException {
+        int total = 0;
+
+        while (total < buffer.length) {
+            int read = inputStream.read(buffer, total, buffer.length - total);
+
+            if (read < 0) {
+                break;
+            }
+
+            total += read;
+        }
+
+        return total;
+    }
+
+    private static UploadResult toUploadResult(String bucketName, String key, String eTag, String versionId) {
+        UploadResult uploadResult = new UploadResult();
+        uploadResult.setBucketName(bucketName);
+        uploadResult.setKey(key);
+        uploadResult.setETag(eTag);
+        uploadResult.setVersionId(versionId);
+
+        return uploadResult;
+    }
+}
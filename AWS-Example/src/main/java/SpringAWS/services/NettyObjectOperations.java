@@ -0,0 +1,243 @@
+package SpringAWS.services;
+
+import SpringAWS.configs.S3TransferConfig;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * {@link AsyncObjectOperations} on the SDK v2 Netty client. Requests only occupy a connection while on
+ * the wire, the rest queue for one without holding a thread. Failures are translated to the v1
+ * exceptions, so callers handle both implementations alike.
+ */
+@Component
+@ConditionalOnProperty(name = "aws.s3.async-operations", havingValue = "async")
+public class NettyObjectOperations implements AsyncObjectOperations {
+
+    @Autowired
+    @Qualifier("s3AsyncClient")
+    private S3AsyncClient s3AsyncClient;
+
+    @Autowired
+    private ObjectCopier objectCopier;
+
+    @Autowired
+    private S3TransferConfig transferConfig;
+
+    @Autowired
+    @Qualifier("s3CopyExecutor")
+    private ExecutorService copyExecutor;
+
+    @Override
+    public CompletableFuture<byte[]> getObject(String bucketName, String key) {
+        return translated(this.get(bucketName, key)
+                .thenCompose(object -> {
+                    // Deduplicated uploads leave an empty reference, the content is in the blob it names
+                    String blobKey = object.response().metadata().get(ContentDeduplicator.BLOB_METADATA);
+
+                    return blobKey == null ? CompletableFuture.completedFuture(object) : this.get(bucketName, blobKey);
+                })
+                .thenApply(NettyObjectOperations::decompress));
+    }
+
+    @Override
+    public CompletableFuture<PutObjectResult> putObject(String bucketName, String key, byte[] content,
+                                                        String contentType) {
+        PutObjectRequest request = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentLength((long) content.length)
+                .contentType(contentType)
+                .build();
+
+        return translated(this.s3AsyncClient.putObject(request, AsyncRequestBody.fromBytes(content))
+                .thenApply(response -> {
+                    PutObjectResult result = new PutObjectResult();
+                    result.setETag(unquote(response.eTag()));
+                    result.setVersionId(response.versionId());
+
+                    return result;
+                }));
+    }
+
+    @Override
+    public CompletableFuture<Optional<ObjectMetadata>> getObjectMetadata(String bucketName, String key) {
+        return translated(this.head(bucketName, key)
+                .thenApply(response -> Optional.of(toMetadata(response)))
+                .exceptionally(failure -> {
+                    Throwable cause = unwrap(failure);
+
+                    if (cause instanceof S3Exception && ((S3Exception) cause).statusCode() == 404) {
+                        return Optional.empty();
+                    }
+
+                    throw new CompletionException(cause);
+                }));
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteObject(String bucketName, String key) {
+        DeleteObjectRequest request = DeleteObjectRequest.builder().bucket(bucketName).key(key).build();
+
+        return translated(this.s3AsyncClient.deleteObject(request).thenApply(response -> null));
+    }
+
+    @Override
+    public CompletableFuture<CopyResult> copyObject(String sourceBucket, String sourceKey, String targetBucket,
+                                                    String targetKey) {
+        long start = System.nanoTime();
+
+        return translated(this.head(sourceBucket, sourceKey).thenCompose(source -> {
+            // A single CopyObject is limited to 5GB and slow on large objects, those go through the multipart copier.
+            // So do references of deduplicated uploads to another bucket, which need their blob copied along.
+            if (source.contentLength() >= this.transferConfig.copyThreshold()
+                    || source.metadata().containsKey(ContentDeduplicator.BLOB_METADATA)
+                    && !sourceBucket.equals(targetBucket)) {
+                return CompletableFuture.supplyAsync(
+                        () -> this.objectCopier.copy(sourceBucket, sourceKey, targetBucket, targetKey),
+                        this.copyExecutor);
+            }
+
+            CopyObjectRequest request = CopyObjectRequest.builder()
+                    .sourceBucket(sourceBucket)
+                    .sourceKey(sourceKey)
+                    .sourceVersionId(source.versionId())
+                    .destinationBucket(targetBucket)
+                    .destinationKey(targetKey)
+                    .build();
+
+            return this.s3AsyncClient.copyObject(request).thenApply(response -> new CopyResult(
+                    sourceBucket, sourceKey, targetBucket, targetKey, source.contentLength(), 0,
+                    unquote(response.copyObjectResult().eTag()), Duration.ofNanos(System.nanoTime() - start)));
+        }));
+    }
+
+    private CompletableFuture<ResponseBytes<GetObjectResponse>> get(String bucketName, String key) {
+        return this.s3AsyncClient.getObject(GetObjectRequest.builder().bucket(bucketName).key(key).build(),
+                AsyncResponseTransformer.toBytes());
+    }
+
+    private CompletableFuture<HeadObjectResponse> head(String bucketName, String key) {
+        return this.s3AsyncClient.headObject(HeadObjectRequest.builder().bucket(bucketName).key(key).build());
+    }
+
+    private static ObjectMetadata toMetadata(HeadObjectResponse response) {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(response.contentLength());
+        metadata.setContentType(response.contentType());
+        metadata.setContentEncoding(response.contentEncoding());
+        metadata.setHeader(Headers.ETAG, unquote(response.eTag()));
+        metadata.setUserMetadata(response.metadata());
+
+        if (response.lastModified() != null) {
+            metadata.setLastModified(Date.from(response.lastModified()));
+        }
+
+        if (response.versionId() != null) {
+            metadata.setHeader(Headers.S3_VERSION_ID, response.versionId());
+        }
+
+        return metadata;
+    }
+
+    /**
+     * Completes with the v1 counterpart of any SDK v2 failure. Cancelling the returned future cancels the request.
+     */
+    private static <T> CompletableFuture<T> translated(CompletableFuture<T> request) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+
+        request.whenComplete((value, failure) -> {
+            if (failure == null) {
+                result.complete(value);
+            } else {
+                result.completeExceptionally(translate(unwrap(failure)));
+            }
+        });
+        result.whenComplete((value, failure) -> {
+            if (result.isCancelled()) {
+                request.cancel(true);
+            }
+        });
+
+        return result;
+    }
+
+    private static Throwable translate(Throwable failure) {
+        if (failure instanceof S3Exception) {
+            S3Exception exception = (S3Exception) failure;
+            AmazonS3Exception translated = new AmazonS3Exception(exception.getMessage(), exception);
+            translated.setStatusCode(exception.statusCode());
+            translated.setRequestId(exception.requestId());
+            translated.setServiceName("Amazon S3");
+
+            if (exception.awsErrorDetails() != null) {
+                translated.setErrorCode(exception.awsErrorDetails().errorCode());
+                translated.setErrorMessage(exception.awsErrorDetails().errorMessage());
+            }
+
+            return translated;
+        }
+
+        if (failure instanceof SdkException) {
+            return new SdkClientException(failure.getMessage(), failure);
+        }
+
+        return failure;
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    }
+
+    private static byte[] decompress(ResponseBytes<GetObjectResponse> object) {
+        Optional<CompressionCodec> codec = ObjectCompressor.codecOf(object.response().metadata());
+
+        if (codec.isEmpty()) {
+            return object.asByteArrayUnsafe();
+        }
+
+        try (InputStream content = codec.get().decompress(object.asInputStream())) {
+            return content.readAllBytes();
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    // v1 reports ETags without the quotes S3 sends them with
+    private static String unquote(String eTag) {
+        if (eTag != null && eTag.length() >= 2 && eTag.startsWith("\"") && eTag.endsWith("\"")) {
+            return eTag.substring(1, eTag.length() - 1);
+        }
+
+        return eTag;
+    }
+}
@@ -0,0 +1,124 @@
+package SpringAWS.services;
+
+import SpringAWS.configs.S3ClientProperties;
+import SpringAWS.configs.S3CompressionConfig;
+import SpringAWS.configs.S3FolderConfig;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Compression of the configured folders (aws.s3.compression). The codec is recorded in the object's
+ * user metadata, which is all reads go by: objects stored before compression was enabled, or with
+ * another codec, keep being read correctly.
+ * <p>
+ * The codec is also set as the object's Content-Encoding, so presigned GETs and other readers outside this
+ * service get the content marked as compressed, and HTTP clients that know the codec decode it on their own.
+ */
+@Component
+public class ObjectCompressor {
+    public static final String CODEC_METADATA = "compression";
+    public static final String UNCOMPRESSED_LENGTH_METADATA = "uncompressed-length";
+
+    @Autowired
+    private S3CompressionConfig compressionConfig;
+
+    @Autowired
+    private S3FolderConfig folderConfig;
+
+    @Autowired
+    @Qualifier("s3ClientProperties")
+    private S3ClientProperties clientProperties;
+
+    @Autowired
+    @Qualifier("s3BulkClientProperties")
+    private S3ClientProperties bulkClientProperties;
+
+    @PostConstruct
+    public void validate() {
+        // Those clients decode gzip Content-Encoding themselves, decompressing the content again would fail
+        if (this.compressionConfig.enabled() && (this.clientProperties.gzip()
+                || this.bulkClientProperties.enabled() && this.bulkClientProperties.gzip())) {
+            throw new IllegalStateException("aws.s3.compression can't be combined with aws.s3.client.gzip "
+                    + "or aws.s3.bulk-client.gzip");
+        }
+    }
+
+    /**
+     * The codec a new upload of the key is compressed with, empty if it's stored as is.
+     */
+    public Optional<CompressionCodec> codecFor(String key, String contentType) {
+        if (!this.compressionConfig.enabled()) {
+            return Optional.empty();
+        }
+
+        if (contentType != null && this.compressionConfig.skipContentTypes().stream().anyMatch(contentType::startsWith)) {
+            return Optional.empty();
+        }
+
+        boolean configuredFolder = this.compressionConfig.folders().stream()
+                .map(this.folderConfig::resolve)
+                .flatMap(Optional::stream)
+                .anyMatch(folder -> key.startsWith(folder + "/"));
+
+        return configuredFolder ? Optional.of(this.compressionConfig.codec()) : Optional.empty();
+    }
+
+    /**
+     * Wraps the upload source into its compressed form and records the codec in the metadata. Content that is
+     * encoded already keeps its encoding, the codec is listed after it as the one applied last.
+     *
+     * @param uncompressedLength recorded as well when known, -1 otherwise
+     */
+    public InputStream compress(InputStream source, CompressionCodec codec, long uncompressedLength,
+                                ObjectMetadata metadata) throws IOException {
+        metadata.addUserMetadata(CODEC_METADATA, codec.id());
+        metadata.setContentEncoding(metadata.getContentEncoding() == null ? codec.id()
+                : metadata.getContentEncoding() + ", " + codec.id());
+
+        if (uncompressedLength >= 0) {
+            metadata.addUserMetadata(UNCOMPRESSED_LENGTH_METADATA, Long.toString(uncompressedLength));
+        }
+
+        return new CompressingInputStream(source, codec, this.compressionConfig.level());
+    }
+
+    /**
+     * The codec an existing object was stored with, empty for uncompressed objects.
+     */
+    public static Optional<CompressionCodec> codecOf(ObjectMetadata metadata) {
+        return codecOf(metadata.getUserMetaDataOf(CODEC_METADATA));
+    }
+
+    /**
+     * Same for the user metadata of an SDK v2 response, which comes without the x-amz-meta- prefixes.
+     */
+    public static Optional<CompressionCodec> codecOf(Map<String, String> userMetadata) {
+        return codecOf(userMetadata.get(CODEC_METADATA));
+    }
+
+    private static Optional<CompressionCodec> codecOf(String id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+
+        return Optional.of(CompressionCodec.fromId(id).orElseThrow(() -> new IllegalStateException(
+                String.format("Object is stored with unknown codec '%s'", id))));
+    }
+
+    /**
+     * Returns the object's content as it was uploaded, decompressing it if it was stored compressed.
+     */
+    public static InputStream decompress(InputStream content, ObjectMetadata metadata) throws IOException {
+        Optional<CompressionCodec> codec = codecOf(metadata);
+
+        return codec.isPresent() ? codec.get().decompress(content) : content;
+    }
+}
@@ -0,0 +1,381 @@
+package SpringAWS.services;
+
+import SpringAWS.configs.S3TransferConfig;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.*;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+/**
+ * Server-side copies, the data never leaves S3. Objects up to {@code aws.s3.transfer.copy-threshold}
+ * go through a single CopyObject, larger ones (CopyObject stops at 5GB) are copied as concurrent
+ * UploadPartCopy byte ranges. Bulk copies of a prefix run as background jobs that copy many objects
+ * at once and report their progress.
+ * <p>
+ * References of deduplicated uploads are copied as they are, a copy into another bucket copies the blob
+ * along unless that bucket stores it already.
+ */
+@Component
+public class ObjectCopier {
+
+    private static final Logger log = LoggerFactory.getLogger(ObjectCopier.class);
+
+    private static final int MAX_PARTS = 10_000;
+    private static final int MAX_RETAINED_JOBS = 100;
+
+    private AmazonS3 s3Client;
+
+    @Autowired
+    private S3Lister lister;
+
+    @Autowired
+    private S3TransferConfig transferConfig;
+
+    @Autowired
+    private RequestScheduler scheduler;
+
+    @Autowired
+    @Qualifier("s3TransferExecutor")
+    private ExecutorService transferExecutor;
+
+    @Autowired
+    @Qualifier("s3CopyExecutor")
+    private ExecutorService copyExecutor;
+
+    @Autowired
+    @Qualifier("s3ListingExecutor")
+    private ExecutorService listingExecutor;
+
+    // Insertion ordered, so the oldest finished jobs are dropped first
+    private final Map<String, CopyJob> jobs = new LinkedHashMap<>();
+    // Shared by all jobs, the copy executor may hand out a (virtual) thread per task and bound nothing itself
+    private Semaphore copySlots;
+
+    @PostConstruct
+    public void init() {
+        this.copySlots = new Semaphore(this.transferConfig.copyConcurrency());
+    }
+
+    // Transfers prefer the bulk client when one is configured
+    @Autowired
+    public void setS3Client(AmazonS3 s3Client, @Qualifier("s3BulkClient") Optional<AmazonS3> bulkClient) {
+        this.s3Client = bulkClient.orElse(s3Client);
+    }
+
+    public CopyResult copy(String sourceBucket, String sourceKey, String targetBucket, String targetKey) {
+        return this.copy(sourceBucket, sourceKey, targetBucket, targetKey, -1);
+    }
+
+    /**
+     * Starts copying everything under the source prefix to the target prefix in the background.
+     *
+     * @param move     delete every source object once its copy succeeded
+     * @param onCopied called from the copy workers after every successful copy
+     */
+    public CopyJob copyAll(String sourceBucket, String sourcePrefix, String targetBucket, String targetPrefix,
+                           boolean move, Consumer<CopyResult> onCopied) {
+        // The job would list its own copies and never end
+        if (sourceBucket.equals(targetBucket) && targetPrefix.startsWith(sourcePrefix)) {
+            throw new IllegalArgumentException(String.format(
+                    "Target prefix '%s' must not be inside the source prefix '%s'", targetPrefix, sourcePrefix));
+        }
+
+        CopyJob job = new CopyJob(UUID.randomUUID().toString(), sourceBucket, sourcePrefix, targetBucket,
+                targetPrefix, move);
+
+        this.register(job);
+        this.listingExecutor.execute(() -> this.runJob(job, onCopied));
+
+        return job;
+    }
+
+    public Optional<CopyJob> job(String id) {
+        synchronized (this.jobs) {
+            return Optional.ofNullable(this.jobs.get(id));
+        }
+    }
+
+    private void runJob(CopyJob job, Consumer<CopyResult> onCopied) {
+        List<Future<?>> copies = new ArrayList<>();
+        Throwable failure = null;
+
+        try (PrefetchingIterator<S3ObjectSummary> summaries =
+                     this.lister.objects(job.sourceBucket(), job.sourcePrefix())) {
+            while (summaries.hasNext()) {
+                S3ObjectSummary summary = summaries.next();
+                job.listed();
+
+                // Caps the copies of all jobs together, and keeps the listing from running far ahead of them
+                this.copySlots.acquire();
+
+                try {
+                    copies.add(this.copyExecutor.submit(() -> {
+                        try {
+                            this.copyForJob(job, summary, onCopied);
+                        } finally {
+                            this.copySlots.release();
+                        }
+                    }));
+                } catch (RuntimeException exception) {
+                    this.copySlots.release();
+                    throw exception;
+                }
+
+                // Copies report their own failures to the job, finished ones needn't be kept around
+                copies.removeIf(Future::isDone);
+            }
+
+            job.listingComplete();
+
+            for (Future<?> copy : copies) {
+                copy.get();
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            copies.forEach(copy -> copy.cancel(true));
+            failure = exception;
+        } catch (ExecutionException exception) {
+            failure = exception.getCause();
+        } catch (RuntimeException exception) {
+            copies.forEach(copy -> copy.cancel(true));
+            failure = exception;
+        }
+
+        if (failure != null) {
+            log.warn("Copy job {} failed: {}", job.id(), failure.getMessage());
+        }
+
+        job.finish(failure);
+    }
+
+    private void copyForJob(CopyJob job, S3ObjectSummary summary, Consumer<CopyResult> onCopied) {
+        try {
+            CopyResult result = this.copy(summary.getBucketName(), summary.getKey(), job.targetBucket(),
+                    job.targetKey(summary.getKey()), summary.getSize());
+
+            if (job.move()) {
+                this.scheduler.execute(summary.getBucketName(), summary.getKey(), () -> {
+                    this.s3Client.deleteObject(summary.getBucketName(), summary.getKey());
+
+                    return null;
+                });
+            }
+
+            job.copied(result);
+            onCopied.accept(result);
+        } catch (RuntimeException exception) {
+            // One bad object shouldn't stop the rest of the job
+            job.failed(summary.getKey(), exception);
+        }
+    }
+
+    /**
+     * @param knownLength size from a listing, so small objects don't need a HEAD first, -1 if unknown
+     */
+    private CopyResult copy(String sourceBucket, String sourceKey, String targetBucket, String targetKey,
+                            long knownLength) {
+        long start = System.nanoTime();
+        // An empty object may be a reference, whose blob has to exist in the target bucket too
+        boolean sameBucket = sourceBucket.equals(targetBucket);
+
+        if (knownLength > 0 && knownLength < this.transferConfig.copyThreshold()
+                || knownLength == 0 && sameBucket) {
+            CopyObjectResult result = this.scheduler.execute(targetBucket, targetKey,
+                    () -> this.s3Client.copyObject(sourceBucket, sourceKey, targetBucket, targetKey));
+
+            return new CopyResult(sourceBucket, sourceKey, targetBucket, targetKey, knownLength, 0,
+                    result.getETag(), Duration.ofNanos(System.nanoTime() - start));
+        }
+
+        ObjectMetadata metadata = this.s3Client.getObjectMetadata(sourceBucket, sourceKey);
+        long contentLength = metadata.getContentLength();
+        Optional<String> blobKey = ContentDeduplicator.blobKeyOf(metadata);
+
+        if (blobKey.isPresent() && !sameBucket) {
+            this.copyBlob(sourceBucket, blobKey.get(), targetBucket);
+        }
+
+        if (contentLength < this.transferConfig.copyThreshold()) {
+            CopyObjectResult result = this.scheduler.execute(targetBucket, targetKey,
+                    () -> this.s3Client.copyObject(new CopyObjectRequest(
+                            sourceBucket, sourceKey, metadata.getVersionId(), targetBucket, targetKey)));
+
+            return new CopyResult(sourceBucket, sourceKey, targetBucket, targetKey, contentLength, 0,
+                    result.getETag(), Duration.ofNanos(System.nanoTime() - start));
+        }
+
+        return this.copyMultipart(sourceBucket, sourceKey, targetBucket, targetKey, metadata, start);
+    }
+
+    /**
+     * Copies the blob unless the target bucket stores it already, blobs are named by their content.
+     * Copied before the reference, so the reference never names a missing blob.
+     */
+    private void copyBlob(String sourceBucket, String blobKey, String targetBucket) {
+        try {
+            this.s3Client.getObjectMetadata(targetBucket, blobKey);
+
+            return;
+        } catch (AmazonS3Exception exception) {
+            if (exception.getStatusCode() != 404) {
+                throw exception;
+            }
+        }
+
+        this.copy(sourceBucket, blobKey, targetBucket, blobKey, -1);
+    }
+
+    private CopyResult copyMultipart(String sourceBucket, String sourceKey, String targetBucket, String targetKey,
+                                     ObjectMetadata metadata, long start) {
+        long contentLength = metadata.getContentLength();
+        // Grow the part size for huge objects so we stay within the 10,000 parts limit
+        long partSize = Math.max(this.transferConfig.copyPartSize(), (contentLength + MAX_PARTS - 1) / MAX_PARTS);
+        // Pin every part to the version we just looked at, in case the key is overwritten meanwhile
+        String versionId = metadata.getVersionId();
+        String eTag = metadata.getETag();
+        String uploadId = this.s3Client.initiateMultipartUpload(new InitiateMultipartUploadRequest(
+                targetBucket, targetKey, copyableMetadata(metadata))).getUploadId();
+        List<Future<PartETag>> parts = new ArrayList<>();
+        Semaphore inFlight = new Semaphore(this.transferConfig.threads());
+
+        try {
+            int partNumber = 1;
+
+            for (long first = 0; first < contentLength; first += partSize, partNumber++) {
+                CopyPartRequest request = new CopyPartRequest()
+                        .withSourceBucketName(sourceBucket)
+                        .withSourceKey(sourceKey)
+                        .withSourceVersionId(versionId)
+                        .withDestinationBucketName(targetBucket)
+                        .withDestinationKey(targetKey)
+                        .withUploadId(uploadId)
+                        .withPartNumber(partNumber)
+                        .withFirstByte(first)
+                        .withLastByte(Math.min(first + partSize, contentLength) - 1);
+
+                // Unversioned buckets have no version to pin, so fail the part if the content changed
+                if (versionId == null && eTag != null) {
+                    request.withMatchingETagConstraint(eTag);
+                }
+
+                inFlight.acquire();
+
+                try {
+                    parts.add(this.transferExecutor.submit(() -> {
+                        try {
+                            return this.copyPart(request);
+                        } finally {
+                            inFlight.release();
+                        }
+                    }));
+                } catch (RuntimeException exception) {
+                    inFlight.release();
+                    throw exception;
+                }
+            }
+
+            List<PartETag> partETags = new ArrayList<>(parts.size());
+
+            for (Future<PartETag> part : parts) {
+                partETags.add(part.get());
+            }
+
+            partETags.sort(Comparator.comparingInt(PartETag::getPartNumber));
+
+            CompleteMultipartUploadResult result = this.s3Client.completeMultipartUpload(
+                    new CompleteMultipartUploadRequest(targetBucket, targetKey, uploadId, partETags));
+
+            return new CopyResult(sourceBucket, sourceKey, targetBucket, targetKey, contentLength, partETags.size(),
+                    result.getETag(), Duration.ofNanos(System.nanoTime() - start));
+        } catch (Exception exception) {
+            parts.forEach(part -> part.cancel(true));
+
+            if (exception instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+
+            try {
+                this.s3Client.abortMultipartUpload(new AbortMultipartUploadRequest(targetBucket, targetKey, uploadId));
+            } catch (SdkClientException abortException) {
+                exception.addSuppressed(abortException);
+            }
+
+            Throwable cause = exception instanceof ExecutionException ? exception.getCause() : exception;
+
+            throw new SdkClientException(String.format("Multipart copy of '%s' to '%s' in bucket '%s' failed",
+                    sourceKey, targetKey, targetBucket), cause);
+        }
+    }
+
+    private PartETag copyPart(CopyPartRequest request) {
+        CopyPartResult result = this.scheduler.execute(request.getDestinationBucketName(),
+                request.getDestinationKey(), this.transferConfig.partRetries(), () -> this.s3Client.copyPart(request));
+
+        // A null result means the ETag constraint failed
+        if (result == null) {
+            throw new SdkClientException(String.format("Object '%s' changed during copy", request.getSourceKey()));
+        }
+
+        return result.getPartETag();
+    }
+
+    private void register(CopyJob job) {
+        synchronized (this.jobs) {
+            Iterator<CopyJob> eldest = this.jobs.values().iterator();
+
+            while (this.jobs.size() >= MAX_RETAINED_JOBS && eldest.hasNext()) {
+                if (eldest.next().finished()) {
+                    eldest.remove();
+                }
+            }
+
+            this.jobs.put(job.id(), job);
+        }
+    }
+
+    /**
+     * CopyObject carries the metadata over by itself, a multipart upload has to be given it explicitly.
+     */
+    private static ObjectMetadata copyableMetadata(ObjectMetadata source) {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setUserMetadata(source.getUserMetadata());
+
+        if (source.getContentType() != null) {
+            metadata.setContentType(source.getContentType());
+        }
+
+        if (source.getContentEncoding() != null) {
+            metadata.setContentEncoding(source.getContentEncoding());
+        }
+
+        if (source.getContentDisposition() != null) {
+            metadata.setContentDisposition(source.getContentDisposition());
+        }
+
+        if (source.getCacheControl() != null) {
+            metadata.setCacheControl(source.getCacheControl());
+        }
+
+        return metadata;
+    }
+}
@@ -0,0 +1,378 @@
+package SpringAWS.services;
+
+import SpringAWS.configs.S3DiskCacheConfig;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.util.BinaryUtils;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Read-through disk cache of whole objects, keyed by bucket, key, version id for reads of a specific version,
+ * and ETag. Fresh entries are served without contacting S3, stale ones are revalidated with a conditional GET
+ * that only transfers the body if the ETag changed. Entries are evicted in LRU order once the size or entry
+ * limit is exceeded. Concurrent reads of an object that has to be fetched share one GET, so a popular object
+ * that expires or is read for the first time during a spike costs a single request.
+ * <p>
+ * Empty objects all have the same ETag, the references of deduplicated uploads among them. They are
+ * revalidated with a plain GET, which costs no more than a conditional one, and compared by the ETag of
+ * their content.
+ * <p>
+ * The index lock only guards the index itself, files are opened, moved and deleted outside of it. A reader
+ * may therefore find the file of an entry it just looked up deleted by an eviction, and looks again.
+ */
+@Component
+public class ObjectDiskCache {
+    private static final char SEPARATOR = '\u0000';
+    private static final Pattern CACHE_FILE = Pattern.compile("[0-9a-f]{64}\\.\\d+|download-\\d+\\.tmp");
+    // The last attempt bypasses the cache, so a read racing with evictions still ends
+    private static final int MAX_ATTEMPTS = 3;
+
+    @Autowired
+    private AmazonS3 s3Client;
+
+    @Autowired
+    private S3DiskCacheConfig cacheConfig;
+
+    @Autowired
+    private HedgedReader hedgedReader;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final SingleFlight<Entry> loads = new SingleFlight<>();
+    private final AtomicLong fileIds = new AtomicLong();
+    private long totalBytes;
+    // Bumped by every invalidation, so a download racing with a write isn't cached
+    private long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @PostConstruct
+    public void init() throws IOException {
+        Path directory = Files.createDirectories(this.cacheConfig.directory());
+
+        // The index lives in memory, so files left over from a previous run can't be trusted.
+        // Only touch files we could have written, the directory may be shared.
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(directory,
+                path -> CACHE_FILE.matcher(path.getFileName().toString()).matches())) {
+            for (Path leftover : leftovers) {
+                Files.deleteIfExists(leftover);
+            }
+        }
+    }
+
+    public CachedObject open(String bucketName, String key) throws IOException {
+        return this.open(bucketName, key, null);
+    }
+
+    /**
+     * Opens a specific version of the object, or the latest one if the version id is null. A version's content
+     * never changes, so writes to the key leave its cached versions alone, revalidation notices deleted ones.
+     */
+    public CachedObject open(String bucketName, String key, String versionId) throws IOException {
+        String cacheKey = versionId == null
+                ? bucketName + SEPARATOR + key
+                : bucketName + SEPARATOR + key + SEPARATOR + versionId;
+        long revalidateAfter = this.cacheConfig.revalidateAfter().toNanos();
+
+        for (int attempt = 1; ; attempt++) {
+            boolean lastAttempt = attempt >= MAX_ATTEMPTS;
+            Entry cached;
+            boolean fresh;
+            long loadGeneration;
+
+            synchronized (this.entries) {
+                cached = lastAttempt ? null : this.entries.get(cacheKey);
+                fresh = cached != null && System.nanoTime() - cached.validatedAt < revalidateAfter;
+                loadGeneration = this.generation;
+            }
+
+            if (fresh) {
+                try {
+                    CachedObject object = cached.open();
+                    this.hits.increment();
+
+                    return object;
+                } catch (NoSuchFileException evicted) {
+                    continue;
+                }
+            }
+
+            // Set if the copy S3 sent isn't cached, it then only serves the caller that loaded it
+            AtomicReference<CachedObject> uncached = new AtomicReference<>();
+            Supplier<Entry> load = () -> this.load(new GetObjectRequest(bucketName, key, versionId), cacheKey, cached,
+                    loadGeneration, !lastAttempt, uncached);
+            Entry loaded;
+
+            try {
+                // Only the first attempt joins a shared load, the next one might not be cached either
+                loaded = attempt == 1 ? this.loads.run(cacheKey, load) : load.get();
+            } catch (UncheckedIOException exception) {
+                throw exception.getCause();
+            }
+
+            if (uncached.get() != null) {
+                return uncached.get();
+            }
+
+            if (loaded != null) {
+                try {
+                    return loaded.open();
+                } catch (NoSuchFileException evicted) {
+                    // Evicted since it was loaded
+                }
+            }
+
+            // Evicted or replaced while we were asking S3, or another caller's copy wasn't cached
+        }
+    }
+
+    public void invalidate(String bucketName, String key) {
+        Entry removed;
+
+        synchronized (this.entries) {
+            this.generation++;
+            removed = this.entries.remove(bucketName + SEPARATOR + key);
+
+            if (removed != null) {
+                this.totalBytes -= removed.length;
+            }
+        }
+
+        this.loads.forget(bucketName + SEPARATOR + key);
+
+        if (removed != null) {
+            delete(removed);
+        }
+    }
+
+    public void invalidatePrefix(String bucketName, String prefix) {
+        String cachePrefix = bucketName + SEPARATOR + prefix;
+        List<Entry> removed = new ArrayList<>();
+
+        synchronized (this.entries) {
+            this.generation++;
+            Iterator<Map.Entry<String, Entry>> iterator = this.entries.entrySet().iterator();
+
+            while (iterator.hasNext()) {
+                Map.Entry<String, Entry> cached = iterator.next();
+
+                if (cached.getKey().startsWith(cachePrefix)) {
+                    iterator.remove();
+                    this.totalBytes -= cached.getValue().length;
+                    removed.add(cached.getValue());
+                }
+            }
+        }
+
+        this.loads.forgetPrefix(cachePrefix);
+        removed.forEach(ObjectDiskCache::delete);
+    }
+
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("hits", this.hits.sum());
+        stats.put("revalidations", this.revalidations.sum());
+        stats.put("misses", this.misses.sum());
+        stats.put("evictions", this.evictions.sum());
+        stats.put("coalesced", this.loads.joined());
+
+        synchronized (this.entries) {
+            stats.put("entries", (long) this.entries.size());
+            stats.put("bytes", this.totalBytes);
+        }
+
+        return stats;
+    }
+
+    /**
+     * Revalidates or downloads the object, answering the entry now holding it, or null if there is none.
+     */
+    private Entry load(GetObjectRequest request, String cacheKey, Entry cached, long loadGeneration,
+                       boolean cache, AtomicReference<CachedObject> uncached) {
+        if (cached != null && cached.eTag != null && !cached.empty) {
+            request.withNonmatchingETagConstraint(cached.eTag);
+        }
+
+        S3Object object = this.hedgedReader.getObject(request);
+
+        try (S3Object ignored = object) {
+            // A null object means S3 answered 304, the cached copy is still current, as it is when an empty
+            // object still stands for the same content
+            if (object == null || cached != null && cached.empty
+                    && Objects.equals(cached.eTag, ContentDeduplicator.eTagOf(object.getObjectMetadata()))) {
+                synchronized (this.entries) {
+                    if (this.entries.get(cacheKey) == cached) {
+                        this.revalidations.increment();
+                        cached.validatedAt = System.nanoTime();
+
+                        return cached;
+                    }
+                }
+
+                return null;
+            }
+
+            this.misses.increment();
+
+            return this.store(cacheKey, object, loadGeneration, cache, uncached);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private Entry store(String cacheKey, S3Object object, long loadGeneration, boolean cache,
+                        AtomicReference<CachedObject> uncached) throws IOException {
+        ObjectMetadata metadata = object.getObjectMetadata();
+        Path directory = this.cacheConfig.directory();
+        // References of deduplicated uploads are cached with the blob's content under the ETag of that
+        S3Object content = ContentDeduplicator.blobKeyOf(metadata)
+                .map(blobKey -> this.s3Client.getObject(object.getBucketName(), blobKey))
+                .orElse(object);
+        Path temporary = Files.createTempFile(directory, "download-", ".tmp");
+
+        // Cached decompressed, so hits are served without any codec work
+        try (S3Object ignored = content;
+             InputStream inputStream = ObjectCompressor.decompress(content.getObjectContent(),
+                     content.getObjectMetadata())) {
+            Files.copy(inputStream, temporary, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException exception) {
+            Files.deleteIfExists(temporary);
+            throw exception;
+        }
+
+        long length = Files.size(temporary);
+        String eTag = ContentDeduplicator.eTagOf(metadata);
+        boolean cacheable = cache && length <= this.cacheConfig.maxSize();
+        // Every stored copy gets a file of its own, so no eviction of an older copy can delete it
+        Path file = cacheable
+                ? Files.move(temporary, directory.resolve(fileName(cacheKey, eTag) + "."
+                + this.fileIds.incrementAndGet()), StandardCopyOption.ATOMIC_MOVE)
+                : temporary;
+        Entry entry = new Entry(file, length, metadata.getContentType(), eTag, metadata.getContentLength() == 0);
+        List<Entry> removed = new ArrayList<>();
+        boolean stored = false;
+
+        synchronized (this.entries) {
+            if (cacheable && this.generation == loadGeneration) {
+                Entry previous = this.entries.put(cacheKey, entry);
+
+                if (previous != null) {
+                    this.totalBytes -= previous.length;
+                    removed.add(previous);
+                }
+
+                this.totalBytes += length;
+                this.evict(entry, removed);
+                stored = true;
+            }
+        }
+
+        removed.forEach(ObjectDiskCache::delete);
+
+        if (stored) {
+            return entry;
+        }
+
+        // Too large to ever fit, already outdated or the last attempt: serve it once from an unlinked file
+        try {
+            uncached.set(entry.open());
+
+            return null;
+        } finally {
+            Files.delete(entry.file);
+        }
+    }
+
+    private void evict(Entry keep, List<Entry> removed) {
+        Iterator<Entry> eldest = this.entries.values().iterator();
+
+        while ((this.totalBytes > this.cacheConfig.maxSize() || this.entries.size() > this.cacheConfig.maxEntries())
+                && eldest.hasNext()) {
+            Entry entry = eldest.next();
+
+            if (entry != keep) {
+                eldest.remove();
+                this.totalBytes -= entry.length;
+                this.evictions.increment();
+                removed.add(entry);
+            }
+        }
+    }
+
+    private static void delete(Entry entry) {
+        try {
+            // Readers with an open channel keep the data, unlinking only drops the name
+            Files.deleteIfExists(entry.file);
+        } catch (IOException ignored) {
+            // Best effort, the file is unreachable from the index either way
+        }
+    }
+
+    private static String fileName(String cacheKey, String eTag) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(cacheKey.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) SEPARATOR);
+            digest.update(String.valueOf(eTag).getBytes(StandardCharsets.UTF_8));
+
+            return BinaryUtils.toHex(digest.digest());
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    private static final class Entry {
+        private final Path file;
+        private final long length;
+        private final String contentType;
+        // Of the content, the SHA-256 for references
+        private final String eTag;
+        // The object at the key is empty, its own ETag says nothing about the content
+        private final boolean empty;
+        private long validatedAt = System.nanoTime();
+
+        private Entry(Path file, long length, String contentType, String eTag, boolean empty) {
+            this.file = file;
+            this.length = length;
+            this.contentType = contentType;
+            this.eTag = eTag;
+            this.empty = empty;
+        }
+
+        private CachedObject open() throws IOException {
+            return new CachedObject(FileChannel.open(this.file, READ), this.length, this.contentType, this.eTag);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package SpringAWS.services;
+
+import SpringAWS.configs.S3MetadataCacheConfig;
+import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Size bounded LRU cache of object metadata (HEAD object) and bucket existence lookups.
+ * Misses are cached as well (with their own TTL), so repeated existence checks of absent
+ * keys don't hit S3 either. Concurrent lookups of an entry that isn't cached share one load.
+ */
+@Component
+public class ObjectMetadataCache {
+    private static final char SEPARATOR = '\u0000';
+    private static final String BUCKET_NAMESPACE = "bucket" + SEPARATOR;
+    private static final String OBJECT_NAMESPACE = "object" + SEPARATOR;
+    private static final Map<String, String> SDK_HEADER_NAMES = Arrays.stream(Headers.class.getFields())
+            .filter(field -> field.getType() == String.class)
+            .map(field -> {
+                try {
+                    return (String) field.get(null);
+                } catch (IllegalAccessException exception) {
+                    throw new IllegalStateException(exception);
+                }
+            })
+            .collect(Collectors.toMap(name -> name.toLowerCase(Locale.ROOT), name -> name, (first, second) -> first));
+
+    @Autowired
+    private S3MetadataCacheConfig cacheConfig;
+
+    private Map<String, Entry> entries;
+    private final SingleFlight<Object> loads = new SingleFlight<>();
+    // Keys being loaded, so invalidating one of them keeps a load racing with its write from putting stale
+    // metadata back, while loads of other keys are cached as usual
+    private final Map<String, Load> loading = new HashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                boolean evict = this.size() > cacheConfig.maxEntries();
+
+                if (evict) {
+                    evictions.increment();
+                }
+
+                return evict;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached metadata of an object, loading it on a miss. The loader returns null for missing objects.
+     */
+    public Optional<ObjectMetadata> objectMetadata(String bucketName, String key, Supplier<ObjectMetadata> loader) {
+        Object value = this.get(objectKey(bucketName, key), loader::get);
+
+        // Hand out copies, ObjectMetadata is mutable
+        return Optional.ofNullable((ObjectMetadata) value).map(ObjectMetadataCache::copyOf);
+    }
+
+    /**
+     * Metadata of a specific version, or of the latest one if the version id is null. Versions are loaded
+     * without caching, a version can be deleted without a new one taking its place.
+     */
+    public Optional<ObjectMetadata> objectMetadata(String bucketName, String key, String versionId,
+                                                   Supplier<ObjectMetadata> loader) {
+        if (versionId == null) {
+            return this.objectMetadata(bucketName, key, loader);
+        }
+
+        Object value = this.loads.run(objectKey(bucketName, key) + SEPARATOR + versionId, loader::get);
+
+        return Optional.ofNullable((ObjectMetadata) value).map(ObjectMetadataCache::copyOf);
+    }
+
+    public boolean bucketExists(String bucketName, Supplier<Boolean> loader) {
+        return this.get(BUCKET_NAMESPACE + bucketName, () -> loader.get() ? Boolean.TRUE : null) != null;
+    }
+
+    public void invalidate(String bucketName, String key) {
+        synchronized (this.entries) {
+            this.entries.remove(objectKey(bucketName, key));
+            Optional.ofNullable(this.loading.get(objectKey(bucketName, key))).ifPresent(Load::invalidate);
+        }
+
+        this.loads.forget(objectKey(bucketName, key));
+    }
+
+    public void invalidatePrefix(String bucketName, String prefix) {
+        String cachePrefix = objectKey(bucketName, prefix);
+
+        synchronized (this.entries) {
+            this.entries.keySet().removeIf(cacheKey -> cacheKey.startsWith(cachePrefix));
+            this.loading.forEach((cacheKey, load) -> {
+                if (cacheKey.startsWith(cachePrefix)) {
+                    load.invalidate();
+                }
+            });
+        }
+
+        this.loads.forgetPrefix(cachePrefix);
+    }
+
+    public void invalidateBucket(String bucketName) {
+        synchronized (this.entries) {
+            this.entries.remove(BUCKET_NAMESPACE + bucketName);
+            Optional.ofNullable(this.loading.get(BUCKET_NAMESPACE + bucketName)).ifPresent(Load::invalidate);
+        }
+
+        this.loads.forget(BUCKET_NAMESPACE + bucketName);
+
+        this.invalidatePrefix(bucketName, "");
+    }
+
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("hits", this.hits.sum());
+        stats.put("misses", this.misses.sum());
+        stats.put("evictions", this.evictions.sum());
+        stats.put("coalesced", this.loads.joined());
+
+        synchronized (this.entries) {
+            stats.put("size", (long) this.entries.size());
+        }
+
+        return stats;
+    }
+
+    private Object get(String cacheKey, Supplier<Object> loader) {
+        if (!this.cacheConfig.enabled()) {
+            return this.loads.run(cacheKey, loader);
+        }
+
+        long now = System.nanoTime();
+        Load load;
+        long loadGeneration;
+
+        synchronized (this.entries) {
+            Entry entry = this.entries.get(cacheKey);
+
+            if (entry != null && now - entry.expiresAt < 0) {
+                this.hits.increment();
+
+                return entry.value;
+            }
+
+            load = this.loading.computeIfAbsent(cacheKey, ignored -> new Load());
+            load.loaders++;
+            loadGeneration = load.generation;
+        }
+
+        this.misses.increment();
+        Object value = null;
+        boolean loaded = false;
+
+        try {
+            // Load outside the lock, a slow HEAD must not block lookups of other keys
+            value = this.loads.run(cacheKey, loader);
+            loaded = true;
+        } finally {
+            long ttl = (value == null ? this.cacheConfig.negativeTtl() : this.cacheConfig.ttl()).toNanos();
+
+            synchronized (this.entries) {
+                if (loaded && ttl > 0 && load.generation == loadGeneration) {
+                    this.entries.put(cacheKey, new Entry(value, System.nanoTime() + ttl));
+                }
+
+                if (--load.loaders == 0) {
+                    this.loading.remove(cacheKey);
+                }
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * {@link ObjectMetadata#clone()} copies the headers into a case sensitive map, so headers a server spelled
+     * differently than the SDK looks them up (e.g. Content-length) are added again in the SDK's spelling.
+     */
+    private static ObjectMetadata copyOf(ObjectMetadata metadata) {
+        ObjectMetadata copy = metadata.clone();
+
+        metadata.getRawMetadata().forEach((name, value) -> {
+            String sdkName = SDK_HEADER_NAMES.get(name.toLowerCase(Locale.ROOT));
+
+            if (sdkName != null && !sdkName.equals(name)) {
+                copy.setHeader(sdkName, value);
+            }
+        });
+
+        return copy;
+    }
+
+    private static String objectKey(String bucketName, String key) {
+        return OBJECT_NAMESPACE + bucketName + SEPARATOR + key;
+    }
+
+    /**
+     * The loads of a key in flight, and how often the key was invalidated since the first of them started.
+     */
+    private static final class Load {
+        private int loaders;
+        private long generation;
+
+        private void invalidate() {
+            this.generation++;
+        }
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final long expiresAt;
+
+        private Entry(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
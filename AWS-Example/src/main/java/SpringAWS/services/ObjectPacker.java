@@ -0,0 +1,239 @@
+package SpringAWS.services;
+
+import SpringAWS.configs.S3BatchConfig;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.transfer.model.UploadResult;
+import com.amazonaws.util.IOUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Packs many tiny objects into one archive object, so storing them costs a single upload instead of
+ * one request each. The archive is the plain concatenation of the members; a JSON index next to it
+ * (&lt;pack key&gt;.index) records every member's offset and length, so members are read with ranged GETs.
+ * <p>
+ * Parsed indexes are cached. Ranged reads are pinned to the archive ETag the index recorded, so a pack
+ * rewritten by another instance is noticed and its index reloaded.
+ */
+@Component
+public class ObjectPacker {
+    public static final String INDEX_SUFFIX = ".index";
+    private static final char SEPARATOR = '\u0000';
+
+    @Autowired
+    private AmazonS3 s3Client;
+
+    @Autowired
+    private MultipartUploader multipartUploader;
+
+    @Autowired
+    private S3BatchConfig batchConfig;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private Map<String, PackIndex> indexes;
+
+    @PostConstruct
+    public void init() {
+        this.indexes = new LinkedHashMap<String, PackIndex>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PackIndex> eldest) {
+                return this.size() > batchConfig.packIndexCacheEntries();
+            }
+        };
+    }
+
+    /**
+     * Uploads the objects as one archive, then its index, which records the archive's ETag and so can only
+     * follow it. The index is what makes a pack readable: if it can't be stored, the archive is deleted again
+     * rather than left behind unreadable. Member keys are only names within the pack.
+     */
+    public PackIndex pack(String bucketName, String packKey, List<SmallObject> objects) {
+        Map<String, PackMember> members = new LinkedHashMap<>();
+        long offset = 0;
+
+        for (SmallObject object : objects) {
+            if (object.content().length > this.batchConfig.maxObjectSize()) {
+                throw new IllegalArgumentException(String.format("Object '%s' has %d bytes, packs take at most %d",
+                        object.key(), object.content().length, this.batchConfig.maxObjectSize()));
+            }
+
+            PackMember member = new PackMember(object.key(), offset, object.content().length, object.contentType());
+
+            if (members.putIfAbsent(object.key(), member) != null) {
+                throw new IllegalArgumentException(String.format("Object '%s' is packed twice", object.key()));
+            }
+
+            offset += object.content().length;
+        }
+
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentType("application/octet-stream");
+        InputStream archive = new SequenceInputStream(Collections.enumeration(objects.stream()
+                .map(object -> (InputStream) new ByteArrayInputStream(object.content()))
+                .collect(Collectors.toList())));
+        UploadResult result = this.multipartUploader.upload(bucketName, packKey, archive, metadata);
+
+        PackIndex index = new PackIndex(packKey, result.getETag(), offset, members);
+        byte[] json = this.write(index);
+        ObjectMetadata indexMetadata = new ObjectMetadata();
+        indexMetadata.setContentType("application/json");
+        indexMetadata.setContentLength(json.length);
+
+        try {
+            this.s3Client.putObject(new PutObjectRequest(bucketName, packKey + INDEX_SUFFIX,
+                    new ByteArrayInputStream(json), indexMetadata));
+        } catch (RuntimeException exception) {
+            this.evict(bucketName, packKey);
+            this.deleteArchive(bucketName, packKey, exception);
+
+            throw exception;
+        }
+
+        synchronized (this.indexes) {
+            this.indexes.put(bucketName + SEPARATOR + packKey, index);
+        }
+
+        return index;
+    }
+
+    /**
+     * Fetches a single member with a ranged GET, empty if the pack has no such member.
+     */
+    public Optional<byte[]> read(String bucketName, String packKey, String memberKey) {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            PackIndex index = this.index(bucketName, packKey);
+            Optional<PackMember> member = index.member(memberKey);
+
+            if (member.isEmpty()) {
+                return Optional.empty();
+            }
+
+            if (member.get().length() == 0) {
+                return Optional.of(new byte[0]);
+            }
+
+            GetObjectRequest request = new GetObjectRequest(bucketName, packKey)
+                    .withRange(member.get().offset(), member.get().offset() + member.get().length() - 1);
+
+            if (index.eTag() != null) {
+                request.withMatchingETagConstraint(index.eTag());
+            }
+
+            S3Object object = this.s3Client.getObject(request);
+
+            // A null object means the ETag no longer matched, the pack was rewritten since its index was read
+            if (object == null) {
+                this.evict(bucketName, packKey);
+                continue;
+            }
+
+            try (S3Object ignored = object) {
+                return Optional.of(IOUtils.toByteArray(object.getObjectContent()));
+            } catch (IOException exception) {
+                throw new SdkClientException(String.format("Reading '%s' from pack '%s' failed", memberKey, packKey),
+                        exception);
+            }
+        }
+
+        throw new SdkClientException(String.format("Pack '%s' in bucket '%s' doesn't match its index",
+                packKey, bucketName));
+    }
+
+    public void evict(String bucketName, String packKey) {
+        synchronized (this.indexes) {
+            this.indexes.remove(bucketName + SEPARATOR + packKey);
+        }
+    }
+
+    private void deleteArchive(String bucketName, String packKey, RuntimeException failure) {
+        try {
+            this.s3Client.deleteObject(bucketName, packKey);
+        } catch (RuntimeException exception) {
+            failure.addSuppressed(exception);
+        }
+    }
+
+    private PackIndex index(String bucketName, String packKey) {
+        String cacheKey = bucketName + SEPARATOR + packKey;
+
+        synchronized (this.indexes) {
+            PackIndex cached = this.indexes.get(cacheKey);
+
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        PackIndex index;
+
+        try (S3Object object = this.s3Client.getObject(bucketName, packKey + INDEX_SUFFIX)) {
+            index = this.read(this.objectMapper.readTree(object.getObjectContent()));
+        } catch (IOException exception) {
+            throw new SdkClientException(String.format("Reading the index of pack '%s' failed", packKey), exception);
+        }
+
+        synchronized (this.indexes) {
+            this.indexes.put(cacheKey, index);
+        }
+
+        return index;
+    }
+
+    private byte[] write(PackIndex index) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("packKey", index.packKey());
+        json.put("eTag", index.eTag());
+        json.put("bytes", index.bytes());
+        json.put("members", index.members().values().stream()
+                .map(member -> {
+                    Map<String, Object> entry = new LinkedHashMap<>();
+                    entry.put("key", member.key());
+                    entry.put("offset", member.offset());
+                    entry.put("length", member.length());
+                    entry.put("contentType", member.contentType());
+
+                    return entry;
+                })
+                .collect(Collectors.toList()));
+
+        try {
+            return this.objectMapper.writeValueAsBytes(json);
+        } catch (IOException exception) {
+            throw new IllegalStateException("Pack index could not be serialized", exception);
+        }
+    }
+
+    private PackIndex read(JsonNode json) {
+        Map<String, PackMember> members = new LinkedHashMap<>();
+
+        for (JsonNode entry : json.path("members")) {
+            String key = entry.path("key").asText();
+            members.put(key, new PackMember(key, entry.path("offset").asLong(), entry.path("length").asLong(),
+                    entry.path("contentType").textValue()));
+        }
+
+        return new PackIndex(json.path("packKey").asText(), json.path("eTag").textValue(),
+                json.path("bytes").asLong(), members);
+    }
+}
@@ -0,0 +1,26 @@
+package SpringAWS.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Where every member of a pack lives within the archive object.
+ */
+@Getter
+@Accessors(fluent = true)
+@AllArgsConstructor
+public class PackIndex {
+    private final String packKey;
+    // Of the archive the offsets belong to, null if the store didn't report one
+    private final String eTag;
+    private final long bytes;
+    private final Map<String, PackMember> members;
+
+    public Optional<PackMember> member(String key) {
+        return Optional.ofNullable(this.members.get(key));
+    }
+}
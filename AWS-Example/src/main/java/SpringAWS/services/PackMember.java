@@ -0,0 +1,15 @@
+package SpringAWS.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+
+@Getter
+@Accessors(fluent = true)
+@AllArgsConstructor
+public class PackMember {
+    private final String key;
+    private final long offset;
+    private final long length;
+    private final String contentType;
+}
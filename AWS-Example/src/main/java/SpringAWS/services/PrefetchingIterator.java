@@ -0,0 +1,132 @@
+package SpringAWS.services;
+
+import com.amazonaws.SdkClientException;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterates a paginated listing lazily. Nothing is requested before the first {@link #hasNext()}, and
+ * while a page is consumed the next one is already fetched in the background, so at most two pages
+ * are held in memory at any time.
+ */
+public class PrefetchingIterator<T> implements Iterator<T>, AutoCloseable {
+    private final Callable<Page<T>> fetcher;
+    private final ExecutorService executor;
+
+    private Iterator<T> current = Collections.emptyIterator();
+    private Future<Page<T>> next;
+    private boolean started;
+
+    /**
+     * @param fetcher returns the following page on every call, calls never overlap
+     */
+    public PrefetchingIterator(Callable<Page<T>> fetcher, ExecutorService executor) {
+        this.fetcher = fetcher;
+        this.executor = executor;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!this.current.hasNext()) {
+            if (!this.started) {
+                this.started = true;
+                this.next = this.executor.submit(this.fetcher);
+            }
+
+            if (this.next == null) {
+                return false;
+            }
+
+            Page<T> page = await(this.next);
+            this.next = page.truncated ? this.executor.submit(this.fetcher) : null;
+            this.current = page.items.iterator();
+        }
+
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        return this.current.next();
+    }
+
+    /**
+     * Stops prefetching, for consumers that abandon the listing early.
+     */
+    @Override
+    public void close() {
+        if (this.next != null) {
+            this.next.cancel(true);
+            this.next = null;
+        }
+
+        this.started = true;
+        this.current = Collections.emptyIterator();
+    }
+
+    /**
+     * Converts the items page by page, so the mapping runs on the prefetch thread too.
+     */
+    public <R> PrefetchingIterator<R> map(Function<? super T, ? extends R> mapper) {
+        if (this.started) {
+            throw new IllegalStateException("Cannot map a listing that is already being iterated");
+        }
+
+        return new PrefetchingIterator<>(() -> {
+            Page<T> page = this.fetcher.call();
+            List<R> items = page.items.stream().map(mapper).collect(Collectors.toList());
+
+            return new Page<>(items, page.truncated);
+        }, this.executor);
+    }
+
+    public Stream<T> stream() {
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(this::close);
+    }
+
+    private static <T> Page<T> await(Future<Page<T>> page) {
+        try {
+            return page.get();
+        } catch (InterruptedException exception) {
+            page.cancel(true);
+            Thread.currentThread().interrupt();
+
+            throw new SdkClientException("Interrupted while waiting for the next listing page", exception);
+        } catch (ExecutionException exception) {
+            if (exception.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) exception.getCause();
+            }
+
+            throw new SdkClientException("Fetching the next listing page failed", exception.getCause());
+        }
+    }
+
+    public static final class Page<T> {
+        private final List<T> items;
+        private final boolean truncated;
+
+        public Page(List<T> items, boolean truncated) {
+            this.items = items;
+            this.truncated = truncated;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package SpringAWS.services;
+
+import com.amazonaws.HttpMethod;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+
+import java.net.URL;
+import java.time.Instant;
+
+@Getter
+@Accessors(fluent = true)
+@AllArgsConstructor
+public class PresignedUrl {
+    private final String key;
+    private final HttpMethod method;
+    private final URL url;
+    private final Instant expiresAt;
+}
@@ -0,0 +1,181 @@
+package SpringAWS.services;
+
+import SpringAWS.configs.S3PresignConfig;
+import com.amazonaws.HttpMethod;
+import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.auth.BasicSessionCredentials;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GeneratePresignedUrlRequest;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.auth.credentials.AwsCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.AwsSessionCredentials;
+
+import java.net.URL;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+/**
+ * Issues presigned GET / PUT URLs and hands out the same URL again for as long as it stays valid
+ * beyond the refresh margin, so a gallery requested over and over is signed once per expiry period.
+ * The SDK's signer already caches the derived signing key per day, region and service, so a miss
+ * costs the request signature only.
+ * <p>
+ * URLs are cached per access key, so rotated credentials sign afresh, and never outlive the temporary
+ * credentials they were signed with.
+ */
+@Component
+public class PresignedUrlCache {
+    private static final char SEPARATOR = '\u0000';
+
+    @Autowired
+    private AmazonS3 s3Client;
+
+    @Autowired
+    private S3PresignConfig presignConfig;
+
+    @Autowired
+    private AwsCredentialsProvider credentialsProvider;
+
+    private Map<String, PresignedUrl> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder signed = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        this.entries = new LinkedHashMap<String, PresignedUrl>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PresignedUrl> eldest) {
+                boolean evict = this.size() > presignConfig.maxEntries();
+
+                if (evict) {
+                    evictions.increment();
+                }
+
+                return evict;
+            }
+        };
+    }
+
+    /**
+     * Presigns every key, in the order given.
+     *
+     * @param contentType only for PUT, the uploader then has to send exactly this Content-Type
+     * @param contentKey  the key a GET of the given one is signed for, e.g. the blob a reference names
+     */
+    public List<PresignedUrl> presign(String bucketName, List<String> keys, HttpMethod method, String contentType,
+                                      UnaryOperator<String> contentKey) {
+        if (method != HttpMethod.GET && method != HttpMethod.PUT) {
+            throw new IllegalArgumentException(String.format("Presigning %s URLs is not supported", method));
+        }
+
+        if (keys.size() > this.presignConfig.maxKeys()) {
+            throw new IllegalArgumentException(String.format("At most %d keys can be presigned at once, got %d",
+                    this.presignConfig.maxKeys(), keys.size()));
+        }
+
+        String signedContentType = method == HttpMethod.PUT ? contentType : null;
+        List<String> signedKeys = method == HttpMethod.GET ? keys.stream().map(contentKey).toList() : keys;
+        // Resolved once, the batch is looked up and signed with the same credentials
+        AwsCredentials credentials = this.credentialsProvider.resolveCredentials();
+        String accessKey = credentials.accessKeyId();
+        Instant reuseUntil = Instant.now().plus(this.presignConfig.refreshBefore());
+        PresignedUrl[] urls = new PresignedUrl[keys.size()];
+        List<Integer> missing = new ArrayList<>();
+
+        synchronized (this.entries) {
+            for (int index = 0; index < urls.length; index++) {
+                PresignedUrl cached = this.entries.get(
+                        cacheKey(accessKey, bucketName, signedKeys.get(index), method, signedContentType));
+
+                if (cached != null && cached.expiresAt().isAfter(reuseUntil)) {
+                    // Keys naming the same blob share its URL
+                    urls[index] = cached.key().equals(keys.get(index))
+                            ? cached
+                            : new PresignedUrl(keys.get(index), method, cached.url(), cached.expiresAt());
+                } else {
+                    missing.add(index);
+                }
+            }
+        }
+
+        this.hits.add(urls.length - missing.size());
+
+        if (missing.isEmpty()) {
+            return List.of(urls);
+        }
+
+        // Sign outside the lock, and with one expiry for the whole batch so its URLs are reissued together
+        Instant expiresAt = Instant.now().plus(this.presignConfig.expiry());
+
+        if (credentials instanceof AwsSessionCredentials session && session.expirationTime().isPresent()
+                && session.expirationTime().get().isBefore(expiresAt)) {
+            expiresAt = session.expirationTime().get();
+        }
+
+        Date expiration = Date.from(expiresAt);
+        AWSStaticCredentialsProvider signer = new AWSStaticCredentialsProvider(toSigningCredentials(credentials));
+
+        for (int index : missing) {
+            GeneratePresignedUrlRequest request = new GeneratePresignedUrlRequest(bucketName, signedKeys.get(index),
+                    method)
+                    .withExpiration(expiration)
+                    .withContentType(signedContentType);
+            request.setRequestCredentialsProvider(signer);
+            URL url = this.s3Client.generatePresignedUrl(request);
+
+            urls[index] = new PresignedUrl(keys.get(index), method, url, expiration.toInstant());
+        }
+
+        this.signed.add(missing.size());
+
+        synchronized (this.entries) {
+            for (int index : missing) {
+                this.entries.put(cacheKey(accessKey, bucketName, signedKeys.get(index), method, signedContentType),
+                        urls[index]);
+            }
+        }
+
+        return List.of(urls);
+    }
+
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("hits", this.hits.sum());
+        stats.put("signed", this.signed.sum());
+        stats.put("evictions", this.evictions.sum());
+
+        synchronized (this.entries) {
+            stats.put("size", (long) this.entries.size());
+        }
+
+        return stats;
+    }
+
+    private static String cacheKey(String accessKey, String bucketName, String key, HttpMethod method,
+                                   String contentType) {
+        return accessKey + SEPARATOR + method.name() + SEPARATOR + bucketName + SEPARATOR + key + SEPARATOR
+                + contentType;
+    }
+
+    private static AWSCredentials toSigningCredentials(AwsCredentials credentials) {
+        if (credentials instanceof AwsSessionCredentials session) {
+            return new BasicSessionCredentials(session.accessKeyId(), session.secretAccessKey(),
+                    session.sessionToken());
+        }
+
+        return new BasicAWSCredentials(credentials.accessKeyId(), credentials.secretAccessKey());
+    }
+}
@@ -0,0 +1,330 @@
+package SpringAWS.services;
+
+import SpringAWS.configs.S3TransferConfig;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectMetadataRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Downloads objects as concurrent byte range GETs. Every range is transferred straight from the
+ * response stream into its offset of a preallocated file, so the object is never held in memory.
+ * Objects stored compressed are decompressed into the target once all ranges arrived.
+ * <p>
+ * With aws.s3.transfer.resumable, ranged downloads journal the ranges already in the file. A failed download
+ * then keeps its partial file, and downloading the same object to the same target again only fetches the
+ * missing ranges, unless the object changed in between.
+ */
+@Component
+public class RangedDownloader {
+    private static final String DOWNLOAD = "download";
+    private static final String RANGE = "range";
+
+    private AmazonS3 s3Client;
+
+    @Autowired
+    private S3TransferConfig transferConfig;
+
+    @Autowired
+    private RequestScheduler scheduler;
+
+    @Autowired
+    private TransferJournal journal;
+
+    @Autowired
+    @Qualifier("s3TransferExecutor")
+    private ExecutorService transferExecutor;
+
+    // Transfers prefer the bulk client when one is configured
+    @Autowired
+    public void setS3Client(AmazonS3 s3Client, @Qualifier("s3BulkClient") Optional<AmazonS3> bulkClient) {
+        this.s3Client = bulkClient.orElse(s3Client);
+    }
+
+    public DownloadResult download(String bucketName, String key, String versionId, Path target) {
+        long start = System.nanoTime();
+        ObjectMetadata metadata = this.s3Client.getObjectMetadata(
+                new GetObjectMetadataRequest(bucketName, key, versionId));
+        Optional<String> blobKey = ContentDeduplicator.blobKeyOf(metadata);
+
+        // Deduplicated uploads leave a reference, the content is in the blob it names
+        if (blobKey.isPresent()) {
+            return this.download(bucketName, blobKey.get(), null, target);
+        }
+
+        long contentLength = metadata.getContentLength();
+        // Pin every range to the version we just looked at, in case the key is overwritten meanwhile
+        String pinnedVersion = versionId != null ? versionId : metadata.getVersionId();
+        List<Duration> latencies;
+        Optional<CompressionCodec> codec = ObjectCompressor.codecOf(metadata);
+        // Compressed objects are fetched as stored next to the target, then decompressed into it
+        Path stored = codec.isPresent() ? target.resolveSibling(target.getFileName() + ".compressed") : target;
+        long rangeSize = this.transferConfig.rangeSize();
+        // Single GETs start over, they are small enough for that not to matter
+        TransferJournal.Session session = this.journal.enabled()
+                && contentLength >= this.transferConfig.singleStreamThreshold()
+                ? this.journal.session(DOWNLOAD, bucketName, key, String.valueOf(versionId),
+                stored.toAbsolutePath().toString())
+                : null;
+        String[] header = {DOWNLOAD, String.valueOf(pinnedVersion), String.valueOf(metadata.getETag()),
+                String.valueOf(contentLength), String.valueOf(rangeSize)};
+        Set<Long> completed = session == null ? null : resume(session, header, stored, contentLength);
+
+        try (FileChannel channel = completed != null
+                ? FileChannel.open(stored, WRITE)
+                : FileChannel.open(stored, CREATE, WRITE, TRUNCATE_EXISTING)) {
+
+            if (contentLength < this.transferConfig.singleStreamThreshold()) {
+                GetObjectRequest request = new GetObjectRequest(bucketName, key, pinnedVersion);
+                latencies = Collections.singletonList(this.fetch(request, channel, 0, contentLength));
+            } else {
+                if (completed == null) {
+                    // Preallocate the file, so ranges can land at their offsets in any order
+                    channel.write(ByteBuffer.allocate(1), contentLength - 1);
+                    completed = Collections.emptySet();
+
+                    if (session != null) {
+                        session.start(header);
+                    }
+                }
+
+                // Bounded here rather than by the executor, which may hand out a (virtual) thread per task
+                Semaphore inFlight = new Semaphore(this.transferConfig.threads());
+                // One failed range fails the download, so nothing after it is worth fetching
+                AtomicReference<Throwable> failure = new AtomicReference<>();
+                List<Future<Duration>> ranges = new ArrayList<>();
+
+                try {
+                    for (long first = 0; first < contentLength; first += rangeSize) {
+                        final long rangeStart = first;
+                        final long rangeEnd = Math.min(first + rangeSize, contentLength) - 1;
+
+                        if (completed.contains(rangeStart)) {
+                            continue;
+                        }
+
+                        inFlight.acquire();
+
+                        if (failure.get() != null) {
+                            inFlight.release();
+                            break;
+                        }
+
+                        try {
+                            ranges.add(this.transferExecutor.submit(() -> {
+                                try {
+                                    // Queued while another range failed
+                                    if (failure.get() != null) {
+                                        throw new CancellationException();
+                                    }
+
+                                    GetObjectRequest request = this.rangeRequest(bucketName, key, pinnedVersion,
+                                            metadata.getETag(), rangeStart, rangeEnd);
+                                    Duration latency = this.fetch(request, channel, rangeStart,
+                                            rangeEnd - rangeStart + 1);
+
+                                    if (session != null) {
+                                        session.append(RANGE, String.valueOf(rangeStart));
+                                    }
+
+                                    return latency;
+                                } catch (Throwable throwable) {
+                                    failure.compareAndSet(null, throwable);
+                                    throw throwable;
+                                } finally {
+                                    inFlight.release();
+                                }
+                            }));
+                        } catch (RuntimeException exception) {
+                            inFlight.release();
+                            throw exception;
+                        }
+                    }
+                } catch (InterruptedException | RuntimeException exception) {
+                    // Stops the ranges still queued
+                    failure.compareAndSet(null, exception);
+                }
+
+                // Even a failed download waits for its ranges in flight, so none of them writes to the file or
+                // the journal after it returned, and the ones that got through are journaled for the next attempt
+                latencies = await(ranges, failure);
+            }
+        } catch (Exception exception) {
+            // Kept for the next attempt to resume
+            if (session == null) {
+                deleteQuietly(stored);
+            }
+
+            Throwable cause = exception instanceof ExecutionException ? exception.getCause() : exception;
+
+            if (cause instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+
+            throw new SdkClientException(String.format("Download of '%s' from bucket '%s' failed", key, bucketName),
+                    cause);
+        }
+
+        if (session != null) {
+            session.finish();
+        }
+
+        // The size as uploaded, rather than as stored
+        long bytes = contentLength;
+
+        if (codec.isPresent()) {
+            try (InputStream content = codec.get().decompress(Files.newInputStream(stored))) {
+                bytes = Files.copy(content, target, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException exception) {
+                deleteQuietly(target);
+
+                throw new SdkClientException(String.format("Decompressing '%s' from bucket '%s' failed",
+                        key, bucketName), exception);
+            } finally {
+                deleteQuietly(stored);
+            }
+        }
+
+        return new DownloadResult(target, bytes, Duration.ofNanos(System.nanoTime() - start), latencies);
+    }
+
+    /**
+     * The latencies of all ranges, once every one of them is done. Fails with the range that failed first, rather
+     * than one that was skipped for it. An interrupt doesn't cut the wait short, the ranges in flight are bounded
+     * by the socket timeout.
+     */
+    private static List<Duration> await(List<Future<Duration>> ranges, AtomicReference<Throwable> failure)
+            throws ExecutionException {
+        List<Duration> latencies = new ArrayList<>(ranges.size());
+        boolean interrupted = false;
+
+        for (Future<Duration> range : ranges) {
+            while (true) {
+                try {
+                    latencies.add(range.get());
+                    break;
+                } catch (InterruptedException exception) {
+                    interrupted = true;
+                    failure.compareAndSet(null, exception);
+                } catch (ExecutionException exception) {
+                    break;
+                }
+            }
+        }
+
+        if (failure.get() != null) {
+            throw new ExecutionException(failure.get());
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        return latencies;
+    }
+
+    /**
+     * The start offsets of the ranges already in the stored file, or null if it has to be downloaded afresh.
+     */
+    private static Set<Long> resume(TransferJournal.Session session, String[] header, Path stored,
+                                    long contentLength) {
+        List<String[]> records = session.records();
+
+        try {
+            // Another version of the object, or a file that was touched since
+            if (records.isEmpty() || !Arrays.equals(header, records.get(0)) || Files.size(stored) != contentLength) {
+                return null;
+            }
+        } catch (IOException exception) {
+            return null;
+        }
+
+        return records.stream()
+                .skip(1)
+                .filter(record -> record.length == 2 && record[0].equals(RANGE))
+                .map(record -> Long.parseLong(record[1]))
+                .collect(Collectors.toSet());
+    }
+
+    private GetObjectRequest rangeRequest(String bucketName, String key, String versionId, String eTag,
+                                          long first, long last) {
+        GetObjectRequest request = new GetObjectRequest(bucketName, key, versionId).withRange(first, last);
+
+        // Unversioned buckets have no version to pin, so fail the range if the content changed
+        if (versionId == null && eTag != null) {
+            request.withMatchingETagConstraint(eTag);
+        }
+
+        return request;
+    }
+
+    private Duration fetch(GetObjectRequest request, FileChannel channel, long offset, long length)
+            throws IOException {
+        long start = System.nanoTime();
+        // Only the request is scheduled, S3 throttles request rates and the body streams on without a slot
+        S3Object object = this.scheduler.execute(request.getBucketName(), request.getKey(),
+                () -> this.s3Client.getObject(request));
+
+        if (object == null) {
+            throw new IOException(String.format("Object '%s' changed during download", request.getKey()));
+        }
+
+        try (S3Object ignored = object;
+             ReadableByteChannel source = Channels.newChannel(object.getObjectContent())) {
+            long position = offset;
+            long end = offset + length;
+
+            while (position < end) {
+                long transferred = channel.transferFrom(source, position, end - position);
+
+                if (transferred <= 0) {
+                    throw new IOException(String.format("Unexpected end of '%s' at byte %d of %d",
+                            request.getKey(), position, end));
+                }
+
+                position += transferred;
+            }
+        }
+
+        return Duration.ofNanos(System.nanoTime() - start);
+    }
+
+    private static void deleteQuietly(Path target) {
+        try {
+            Files.deleteIfExists(target);
+        } catch (IOException ignored) {
+            // The original failure is more interesting than the cleanup one
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package SpringAWS.services;
+
+import SpringAWS.configs.S3SchedulerConfig;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.retry.RetryUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs the requests of bulk operations (batched puts, multipart and copy parts, copies, ranged GETs, batch
+ * deletes and listing pages) under an adaptive concurrency limit per bucket and key prefix, and retries them itself.
+ * <p>
+ * Left to the SDK, a throttled request is retried on the spot with a fixed policy, so a prefix S3 asks to
+ * slow down stays just as busy. The client's retry condition leaves scheduled requests alone instead (see
+ * {@link #ownsRetries()}): the prefix's {@link AdaptiveLimit} shrinks, and retries wait out a decorrelated
+ * jitter backoff. Retries also spend from a budget shared by all prefixes, which is refilled by a share of
+ * every request, so when S3 keeps failing retries stay a small part of the traffic instead of multiplying it.
+ */
+@Component
+public class RequestScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(RequestScheduler.class);
+
+    // Set while a scheduled attempt runs, the SDK runs the request and its retries on the calling thread
+    private static final ThreadLocal<Boolean> SCHEDULED = ThreadLocal.withInitial(() -> false);
+
+    @Autowired
+    private S3SchedulerConfig schedulerConfig;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    private final ConcurrentMap<String, AdaptiveLimit> limits = new ConcurrentHashMap<>();
+    private final Object retryBudgetLock = new Object();
+    private double retryBudget;
+    private Counter retries;
+    private Counter rejectedRetries;
+
+    @PostConstruct
+    public void init() {
+        this.retryBudget = this.retryBudgetCapacity();
+        this.retries = this.registry.counter("s3.scheduler.retries", "outcome", "scheduled");
+        this.rejectedRetries = this.registry.counter("s3.scheduler.retries", "outcome", "budget-exhausted");
+
+        Gauge.builder("s3.scheduler.retry-budget", this, RequestScheduler::retryBudget)
+                .description("Retries the scheduler may still spend")
+                .strongReference(true)
+                .register(this.registry);
+    }
+
+    /**
+     * Whether the current thread runs a scheduled request, whose retries are up to the scheduler.
+     */
+    public static boolean ownsRetries() {
+        return SCHEDULED.get();
+    }
+
+    public <T> T execute(String bucketName, String key, Supplier<T> request) {
+        return this.execute(bucketName, key, this.schedulerConfig.maxRetries(), request);
+    }
+
+    /**
+     * Runs the request once the limit of the key's prefix admits it, retrying retryable failures.
+     *
+     * @param request called again for every attempt, so it must build a fresh request each time if the
+     *                previous one may have consumed its content
+     */
+    public <T> T execute(String bucketName, String key, int maxRetries, Supplier<T> request) {
+        if (!this.schedulerConfig.enabled()) {
+            return request.get();
+        }
+
+        String prefix = this.prefixOf(key);
+        AdaptiveLimit limit = this.limit(bucketName, prefix);
+        long delay = this.schedulerConfig.baseDelay().toNanos();
+
+        this.depositRetryBudget();
+
+        for (int attempt = 0; ; attempt++) {
+            long started = acquire(limit, bucketName, key);
+
+            try {
+                T result = attempt(request);
+                limit.succeeded();
+                this.countAttempt(bucketName, prefix, "success");
+
+                return result;
+            } catch (SdkClientException exception) {
+                boolean throttled = isThrottling(exception);
+
+                if (throttled) {
+                    limit.throttled(started);
+                } else {
+                    limit.failed();
+                }
+
+                this.countAttempt(bucketName, prefix, throttled ? "throttled" : "failed");
+
+                if (attempt >= maxRetries || !isRetryable(exception)) {
+                    throw exception;
+                }
+
+                if (!this.withdrawRetryBudget()) {
+                    this.rejectedRetries.increment();
+
+                    throw exception;
+                }
+
+                this.retries.increment();
+                delay = this.nextDelay(delay);
+                log.debug("Retrying '{}' in bucket '{}' in {}ms after failure: {}", key, bucketName,
+                        TimeUnit.NANOSECONDS.toMillis(delay), exception.getMessage());
+                sleep(delay, exception);
+            } catch (RuntimeException | Error exception) {
+                limit.failed();
+
+                throw exception;
+            }
+        }
+    }
+
+    /**
+     * Current limit, requests in flight and recent throttle rate per bucket and prefix.
+     */
+    public Map<String, Map<String, Number>> snapshot() {
+        Map<String, Map<String, Number>> snapshot = new TreeMap<>();
+
+        this.limits.forEach((name, limit) -> {
+            Map<String, Number> values = new LinkedHashMap<>();
+            values.put("limit", limit.limit());
+            values.put("inFlight", limit.inFlight());
+            values.put("throttleRate", limit.throttleRate());
+            snapshot.put(name, values);
+        });
+
+        return snapshot;
+    }
+
+    private static boolean isRetryable(SdkClientException exception) {
+        if (exception instanceof AmazonServiceException) {
+            int statusCode = ((AmazonServiceException) exception).getStatusCode();
+
+            return statusCode >= 500 || isThrottling(exception);
+        }
+
+        return exception.isRetryable();
+    }
+
+    /**
+     * S3 answers an overloaded prefix with 503 SlowDown, other services and proxies with 429 or a throttling code.
+     */
+    private static boolean isThrottling(SdkClientException exception) {
+        return RetryUtils.isThrottlingException(exception)
+                || (exception instanceof AmazonServiceException
+                && ((AmazonServiceException) exception).getStatusCode() == 503);
+    }
+
+    /**
+     * The first {@code prefix-depth} segments of the key, each with its trailing slash.
+     */
+    private String prefixOf(String key) {
+        int end = 0;
+
+        for (int depth = 0; depth < this.schedulerConfig.prefixDepth(); depth++) {
+            int separator = key.indexOf('/', end);
+
+            if (separator < 0) {
+                break;
+            }
+
+            end = separator + 1;
+        }
+
+        return key.substring(0, end);
+    }
+
+    private AdaptiveLimit limit(String bucketName, String prefix) {
+        return this.limits.computeIfAbsent(bucketName + "/" + prefix, ignored -> {
+            AdaptiveLimit limit = new AdaptiveLimit(this.schedulerConfig.initialLimit(),
+                    this.schedulerConfig.minLimit(), this.schedulerConfig.maxLimit(),
+                    this.schedulerConfig.backoffRatio());
+            Tags tags = Tags.of("bucket", bucketName, "prefix", prefix);
+
+            Gauge.builder("s3.scheduler.limit", limit, AdaptiveLimit::limit)
+                    .description("Requests the prefix may currently have in flight")
+                    .tags(tags)
+                    .strongReference(true)
+                    .register(this.registry);
+            Gauge.builder("s3.scheduler.in-flight", limit, AdaptiveLimit::inFlight)
+                    .tags(tags)
+                    .strongReference(true)
+                    .register(this.registry);
+            Gauge.builder("s3.scheduler.throttle-rate", limit, AdaptiveLimit::throttleRate)
+                    .description("Share of the prefix's recent attempts that were throttled")
+                    .tags(tags)
+                    .strongReference(true)
+                    .register(this.registry);
+
+            return limit;
+        });
+    }
+
+    private void countAttempt(String bucketName, String prefix, String outcome) {
+        this.registry.counter("s3.scheduler.attempts", "bucket", bucketName, "prefix", prefix, "outcome", outcome)
+                .increment();
+    }
+
+    /**
+     * Decorrelated jitter: random between the base delay and three times the previous one, capped.
+     */
+    private long nextDelay(long previous) {
+        long base = this.schedulerConfig.baseDelay().toNanos();
+        long upper = Math.max(base + 1, Math.min(this.schedulerConfig.maxDelay().toNanos(), previous * 3));
+
+        return ThreadLocalRandom.current().nextLong(base, upper);
+    }
+
+    private double retryBudget() {
+        synchronized (this.retryBudgetLock) {
+            return this.retryBudget;
+        }
+    }
+
+    private double retryBudgetCapacity() {
+        return Math.max(1, this.schedulerConfig.retryBudgetBurst());
+    }
+
+    private void depositRetryBudget() {
+        synchronized (this.retryBudgetLock) {
+            this.retryBudget = Math.min(this.retryBudgetCapacity(),
+                    this.retryBudget + this.schedulerConfig.retryBudgetRatio());
+        }
+    }
+
+    private boolean withdrawRetryBudget() {
+        synchronized (this.retryBudgetLock) {
+            if (this.retryBudget < 1) {
+                return false;
+            }
+
+            this.retryBudget--;
+
+            return true;
+        }
+    }
+
+    private static <T> T attempt(Supplier<T> request) {
+        // A request scheduled from within another one must leave the enclosing attempt's flag set
+        boolean enclosing = SCHEDULED.get();
+        SCHEDULED.set(true);
+
+        try {
+            return request.get();
+        } finally {
+            if (!enclosing) {
+                SCHEDULED.remove();
+            }
+        }
+    }
+
+    private static long acquire(AdaptiveLimit limit, String bucketName, String key) {
+        try {
+            return limit.acquire();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+
+            throw new SdkClientException(String.format("Waiting to send '%s' to bucket '%s' was interrupted",
+                    key, bucketName), exception);
+        }
+    }
+
+    private static void sleep(long delay, SdkClientException failure) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(delay);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            failure.addSuppressed(exception);
+
+            throw failure;
+        }
+    }
+}
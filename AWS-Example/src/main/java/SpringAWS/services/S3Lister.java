@@ -0,0 +1,74 @@
+package SpringAWS.services;
+
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Builds lazy, prefetching iterators over ListObjectsV2 and ListVersions, following continuation
+ * tokens / markers only as far as the consumer reads. Pages are requested through the {@link RequestScheduler},
+ * under the limit of the listed prefix.
+ */
+@Component
+public class S3Lister {
+
+    private static final int PAGE_SIZE = 1000;
+
+    @Autowired
+    private AmazonS3 s3Client;
+
+    @Autowired
+    private RequestScheduler scheduler;
+
+    @Autowired
+    @Qualifier("s3ListingExecutor")
+    private ExecutorService listingExecutor;
+
+    public PrefetchingIterator<S3ObjectSummary> objects(String bucketName, String prefix) {
+        ListObjectsV2Request request = new ListObjectsV2Request()
+                .withBucketName(bucketName)
+                .withPrefix(prefix)
+                .withMaxKeys(PAGE_SIZE);
+
+        return new PrefetchingIterator<>(() -> {
+            ListObjectsV2Result result = this.scheduler.execute(bucketName, prefix,
+                    () -> this.s3Client.listObjectsV2(request));
+
+            if (result.isTruncated() && result.getNextContinuationToken() == null) {
+                throw new SdkClientException(String.format(
+                        "Truncated listing of bucket '%s' without a continuation token", bucketName));
+            }
+
+            request.setContinuationToken(result.getNextContinuationToken());
+
+            return new PrefetchingIterator.Page<>(result.getObjectSummaries(), result.isTruncated());
+        }, this.listingExecutor);
+    }
+
+    public PrefetchingIterator<S3VersionSummary> versions(String bucketName, String prefix) {
+        ListVersionsRequest request = new ListVersionsRequest()
+                .withBucketName(bucketName)
+                .withPrefix(prefix)
+                .withMaxResults(PAGE_SIZE);
+
+        return new PrefetchingIterator<>(() -> {
+            VersionListing listing = this.scheduler.execute(bucketName, prefix,
+                    () -> this.s3Client.listVersions(request));
+
+            if (listing.isTruncated() && listing.getNextKeyMarker() == null) {
+                throw new SdkClientException(String.format(
+                        "Truncated version listing of bucket '%s' without a key marker", bucketName));
+            }
+
+            request.setKeyMarker(listing.getNextKeyMarker());
+            request.setVersionIdMarker(listing.getNextVersionIdMarker());
+
+            return new PrefetchingIterator.Page<>(listing.getVersionSummaries(), listing.isTruncated());
+        }, this.listingExecutor);
+    }
+}
@@ -1,14 +1,34 @@
 package SpringAWS.services;
 
+import com.amazonaws.HttpMethod;
+import com.amazonaws.SdkClientException;
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
 import com.amazonaws.services.s3.model.Bucket;
+import com.amazonaws.services.s3.model.GetObjectMetadataRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.services.s3.model.S3VersionSummary;
+import com.amazonaws.services.s3.transfer.model.UploadResult;
 import lombok.Getter;
 import lombok.experimental.Accessors;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @Getter
@@ -16,7 +36,58 @@ import java.util.stream.Collectors;
 public class S3Service {
 
     @Autowired
-    private static AmazonS3 s3Client;
+    private AmazonS3 s3Client;
+
+    @Autowired
+    private MultipartUploader multipartUploader;
+
+    @Autowired
+    private RangedDownloader rangedDownloader;
+
+    @Autowired
+    private ObjectMetadataCache metadataCache;
+
+    @Autowired
+    private ObjectDiskCache diskCache;
+
+    @Autowired
+    private HedgedReader hedgedReader;
+
+    @Autowired
+    private BatchDeleter batchDeleter;
+
+    @Autowired
+    private S3Lister lister;
+
+    @Autowired
+    private BucketScanner bucketScanner;
+
+    @Autowired
+    private ObjectCopier objectCopier;
+
+    @Autowired
+    private AsyncObjectOperations asyncOperations;
+
+    @Autowired
+    private PresignedUrlCache presignedUrlCache;
+
+    @Autowired
+    private ObjectCompressor compressor;
+
+    @Autowired
+    private ContentDeduplicator deduplicator;
+
+    @Autowired
+    private SmallObjectUploader smallObjectUploader;
+
+    @Autowired
+    private ObjectPacker objectPacker;
+
+    @Autowired
+    private LifecycleConfiguration lifecycleConfiguration;
+
+    @Autowired
+    private LifecycleSimulator lifecycleSimulator;
 
 //    public List<String> getAllBucketNames() {
 //        return this.s3Client.listBuckets().stream()
@@ -31,4 +102,408 @@ public class S3Service {
 //
 //        s3Client.createBucket(bucketName);
 //    }
+
+    /**
+     * Streams the given input straight into S3. The content length must be known up front,
+     * otherwise the SDK buffers the whole stream in memory to compute it.
+     * Like all uploads, keys in the folders configured under aws.s3.compression are compressed on the fly.
+     */
+    public PutObjectResult putObjectStream(String bucketName, String key, InputStream inputStream,
+                                           long contentLength, String contentType) {
+        if (contentLength < 0) {
+            throw new IllegalArgumentException(String.format("Unknown content length for object '%s'", key));
+        }
+
+        ObjectMetadata metadata = new ObjectMetadata();
+        Optional<CompressionCodec> codec = this.compressor.codecFor(key, contentType);
+
+        if (contentType != null) {
+            metadata.setContentType(contentType);
+        }
+
+        try {
+            if (codec.isPresent()) {
+                UploadResult result = this.uploadCompressed(bucketName, key, inputStream, contentLength, codec.get(),
+                        metadata);
+                PutObjectResult putResult = new PutObjectResult();
+                putResult.setETag(result.getETag());
+                putResult.setVersionId(result.getVersionId());
+
+                return putResult;
+            }
+
+            metadata.setContentLength(contentLength);
+
+            return this.s3Client.putObject(new PutObjectRequest(bucketName, key, inputStream, metadata));
+        } finally {
+            this.invalidate(bucketName, key);
+        }
+    }
+
+    /**
+     * Uploads a file as parallel multipart upload, files smaller than a single part go through a plain put.
+     */
+    public UploadResult uploadMultipart(String bucketName, String key, File file, ObjectMetadata metadata) {
+        Optional<CompressionCodec> codec = this.compressor.codecFor(key, metadata.getContentType());
+
+        try {
+            if (codec.isPresent()) {
+                try (InputStream inputStream = Files.newInputStream(file.toPath())) {
+                    return this.uploadCompressed(bucketName, key, inputStream, file.length(), codec.get(), metadata);
+                } catch (IOException exception) {
+                    throw new SdkClientException(String.format("Reading '%s' for upload failed", file), exception);
+                }
+            }
+
+            return this.multipartUploader.upload(bucketName, key, file, metadata);
+        } finally {
+            this.invalidate(bucketName, key);
+        }
+    }
+
+    /**
+     * Uploads a stream of unknown length as parallel multipart upload, buffering one part at a time.
+     */
+    public UploadResult uploadMultipart(String bucketName, String key, InputStream inputStream,
+                                        ObjectMetadata metadata) {
+        Optional<CompressionCodec> codec = this.compressor.codecFor(key, metadata.getContentType());
+
+        try {
+            if (codec.isPresent()) {
+                return this.uploadCompressed(bucketName, key, inputStream, -1, codec.get(), metadata);
+            }
+
+            return this.multipartUploader.upload(bucketName, key, inputStream, metadata);
+        } finally {
+            this.invalidate(bucketName, key);
+        }
+    }
+
+    /**
+     * Whether uploads of the key should go through {@link #putObjectDeduplicated}, going by aws.s3.dedup.
+     */
+    public boolean deduplicates(String key) {
+        return this.deduplicator.appliesTo(key);
+    }
+
+    /**
+     * Content-addressed upload: the content is transferred only if no blob with the same SHA-256 is stored
+     * yet, the key itself becomes a small reference to the blob. Downloads and the disk cache follow references.
+     */
+    public DedupResult putObjectDeduplicated(String bucketName, String key, InputStream inputStream,
+                                             String contentType) {
+        try {
+            return this.deduplicator.upload(bucketName, key, inputStream, contentType);
+        } finally {
+            this.invalidate(bucketName, key);
+        }
+    }
+
+    public DedupResult putObjectDeduplicated(String bucketName, String key, File file, String contentType) {
+        try {
+            return this.deduplicator.upload(bucketName, key, file, contentType);
+        } finally {
+            this.invalidate(bucketName, key);
+        }
+    }
+
+    /**
+     * Deletes the bucket's deduplicated blobs that no key refers to anymore, see {@link ContentDeduplicator#sweep}.
+     */
+    public SweepResult sweepBlobs(String bucketName) {
+        return this.deduplicator.sweep(bucketName);
+    }
+
+    public Map<String, Long> dedupStats() {
+        return this.deduplicator.stats();
+    }
+
+    /**
+     * Queues a small object for upload, the put runs concurrently with the other queued ones.
+     * Blocks while aws.s3.batch.concurrency puts are in flight already.
+     */
+    public CompletableFuture<PutObjectResult> submitSmallObject(String bucketName, SmallObject object) {
+        return this.smallObjectUploader.submit(bucketName, object)
+                .whenComplete((result, exception) -> this.invalidate(bucketName, object.key()));
+    }
+
+    /**
+     * Uploads many small objects as concurrent puts and waits for all of them, failures are reported per key.
+     */
+    public BatchUploadResult uploadSmallObjects(String bucketName, List<SmallObject> objects) {
+        try {
+            return this.smallObjectUploader.uploadAll(bucketName, objects);
+        } finally {
+            objects.forEach(object -> this.invalidate(bucketName, object.key()));
+        }
+    }
+
+    /**
+     * Stores the objects as members of a single archive object with an offset index next to it,
+     * read them back with {@link #readPacked}.
+     */
+    public PackIndex pack(String bucketName, String packKey, List<SmallObject> objects) {
+        try {
+            return this.objectPacker.pack(bucketName, packKey, objects);
+        } finally {
+            this.invalidate(bucketName, packKey);
+            this.invalidate(bucketName, packKey + ObjectPacker.INDEX_SUFFIX);
+        }
+    }
+
+    /**
+     * Reads one member of a pack with a ranged GET, empty if the pack has no such member.
+     */
+    public Optional<byte[]> readPacked(String bucketName, String packKey, String memberKey) {
+        return this.objectPacker.read(bucketName, packKey, memberKey);
+    }
+
+    /**
+     * Downloads an object into the target file, using parallel range GETs for large objects.
+     */
+    public DownloadResult download(String bucketName, String key, Path target) {
+        return this.download(bucketName, key, null, target);
+    }
+
+    public DownloadResult download(String bucketName, String key, String versionId, Path target) {
+        return this.rangedDownloader.download(bucketName, key, versionId, target);
+    }
+
+    /**
+     * HEAD object through the metadata cache, an empty result means the object doesn't exist.
+     * References of deduplicated uploads report the length and ETag of their content.
+     */
+    public Optional<ObjectMetadata> getObjectMetadata(String bucketName, String key) {
+        return this.getObjectMetadata(bucketName, key, null);
+    }
+
+    /**
+     * HEAD of a specific version, or of the latest one if the version id is null. Concurrent calls for the same
+     * version share one request, specific versions aren't cached though.
+     */
+    public Optional<ObjectMetadata> getObjectMetadata(String bucketName, String key, String versionId) {
+        return this.metadataCache.objectMetadata(bucketName, key, versionId, () -> {
+            try {
+                return ContentDeduplicator.withContentHeaders(
+                        this.s3Client.getObjectMetadata(new GetObjectMetadataRequest(bucketName, key, versionId)));
+            } catch (AmazonS3Exception exception) {
+                if (exception.getStatusCode() == 404) {
+                    return null;
+                }
+
+                throw exception;
+            }
+        });
+    }
+
+    public boolean doesObjectExist(String bucketName, String key) {
+        return this.getObjectMetadata(bucketName, key).isPresent();
+    }
+
+    public boolean doesBucketExist(String bucketName) {
+        return this.metadataCache.bucketExists(bucketName, () -> this.s3Client.doesBucketExistV2(bucketName));
+    }
+
+    public void deleteObject(String bucketName, String key) {
+        try {
+            this.s3Client.deleteObject(bucketName, key);
+        } finally {
+            this.invalidate(bucketName, key);
+        }
+    }
+
+    /**
+     * Lazily lists every object under the prefix, fetching pages on demand with one page of read-ahead.
+     * Close the stream when abandoning it early to stop the prefetch.
+     */
+    public Stream<S3ObjectSummary> listObjects(String bucketName, String prefix) {
+        return this.lister.objects(bucketName, prefix).stream();
+    }
+
+    /**
+     * Lazily lists every version and delete marker under the prefix, like {@link #listObjects}.
+     */
+    public Stream<S3VersionSummary> listVersions(String bucketName, String prefix) {
+        return this.lister.versions(bucketName, prefix).stream();
+    }
+
+    /**
+     * Lists everything under the prefix as parallel, delimiter-sharded listings merged into one unordered stream.
+     * Use it for full bucket scans, {@link #listObjects} is cheaper for small prefixes and keeps key order.
+     */
+    public BucketScan scan(String bucketName, String prefix) {
+        return this.bucketScanner.scan(bucketName, prefix);
+    }
+
+    /**
+     * Writes the bucket's configured lifecycle rules unless S3 already has them.
+     *
+     * @return whether the configuration was written
+     */
+    public boolean applyLifecycle(String bucketName) {
+        return this.lifecycleConfiguration.apply(bucketName);
+    }
+
+    /**
+     * Dry run of the bucket's configured lifecycle rules as they would act {@code ahead} from now.
+     */
+    public LifecycleReport simulateLifecycle(String bucketName, Duration ahead) {
+        return this.lifecycleSimulator.simulate(bucketName, ahead);
+    }
+
+    /**
+     * Deletes every object under the prefix with concurrent 1000-key batch deletes.
+     */
+    public BulkDeleteResult deleteAll(String bucketName, String prefix) {
+        return this.deleteAll(bucketName, prefix, false);
+    }
+
+    /**
+     * @param allVersions also delete noncurrent versions and delete markers, needed to empty versioned buckets
+     */
+    public BulkDeleteResult deleteAll(String bucketName, String prefix, boolean allVersions) {
+        try {
+            return this.batchDeleter.deleteAll(bucketName, prefix, allVersions);
+        } finally {
+            this.metadataCache.invalidatePrefix(bucketName, prefix);
+            this.diskCache.invalidatePrefix(bucketName, prefix);
+        }
+    }
+
+    /**
+     * Server-side copy, large objects are copied as parallel multipart copies.
+     */
+    public CopyResult copyObject(String sourceBucket, String sourceKey, String targetBucket, String targetKey) {
+        try {
+            return this.objectCopier.copy(sourceBucket, sourceKey, targetBucket, targetKey);
+        } finally {
+            this.invalidate(targetBucket, targetKey);
+        }
+    }
+
+    /**
+     * Starts a background job copying (or moving) everything under the source prefix to the target prefix,
+     * the keys keep their path below the prefix. Poll {@link #copyJob} for its progress.
+     */
+    public CopyJob copyAll(String sourceBucket, String sourcePrefix, String targetBucket, String targetPrefix,
+                           boolean move) {
+        return this.objectCopier.copyAll(sourceBucket, sourcePrefix, targetBucket, targetPrefix, move, result -> {
+            this.invalidate(result.targetBucket(), result.targetKey());
+
+            if (move) {
+                this.invalidate(result.sourceBucket(), result.sourceKey());
+            }
+        });
+    }
+
+    public Optional<CopyJob> copyJob(String id) {
+        return this.objectCopier.job(id);
+    }
+
+    /**
+     * Reads a small object into memory without blocking the caller. Like all *Async methods this goes
+     * straight to S3, past the local caches, over the client picked by aws.s3.async-operations.
+     * Objects stored compressed are returned decompressed and references of deduplicated uploads are
+     * followed to their blob, like from every other read.
+     */
+    public CompletableFuture<byte[]> getObjectAsync(String bucketName, String key) {
+        return this.asyncOperations.getObject(bucketName, key);
+    }
+
+    public CompletableFuture<PutObjectResult> putObjectAsync(String bucketName, String key, byte[] content,
+                                                             String contentType) {
+        return this.asyncOperations.putObject(bucketName, key, content, contentType)
+                .whenComplete((result, failure) -> this.invalidate(bucketName, key));
+    }
+
+    /**
+     * HEAD object, an empty result means the object doesn't exist.
+     */
+    public CompletableFuture<Optional<ObjectMetadata>> getObjectMetadataAsync(String bucketName, String key) {
+        return this.asyncOperations.getObjectMetadata(bucketName, key)
+                .thenApply(metadata -> metadata.map(ContentDeduplicator::withContentHeaders));
+    }
+
+    public CompletableFuture<Void> deleteObjectAsync(String bucketName, String key) {
+        return this.asyncOperations.deleteObject(bucketName, key)
+                .whenComplete((result, failure) -> this.invalidate(bucketName, key));
+    }
+
+    public CompletableFuture<CopyResult> copyObjectAsync(String sourceBucket, String sourceKey, String targetBucket,
+                                                         String targetKey) {
+        return this.asyncOperations.copyObject(sourceBucket, sourceKey, targetBucket, targetKey)
+                .whenComplete((result, failure) -> this.invalidate(targetBucket, targetKey));
+    }
+
+    /**
+     * Presigned GET or PUT URLs for every key, so clients transfer the objects directly with S3.
+     * URLs are reused while they stay valid beyond aws.s3.presign.refresh-before. GETs of references of
+     * deduplicated uploads are signed for the blob they name, finding those takes a HEAD through the
+     * metadata cache per key of a deduplicated folder.
+     */
+    public List<PresignedUrl> presignedUrls(String bucketName, List<String> keys, HttpMethod method,
+                                            String contentType) {
+        return this.presignedUrlCache.presign(bucketName, keys, method, contentType, key -> {
+            if (!this.deduplicator.appliesTo(key)) {
+                return key;
+            }
+
+            return this.getObjectMetadata(bucketName, key)
+                    .flatMap(ContentDeduplicator::blobKeyOf)
+                    .orElse(key);
+        });
+    }
+
+    public Map<String, Long> presignedUrlCacheStats() {
+        return this.presignedUrlCache.stats();
+    }
+
+    public Map<String, Long> metadataCacheStats() {
+        return this.metadataCache.stats();
+    }
+
+    /**
+     * Opens an object through the local disk cache. The caller has to close the returned handle.
+     */
+    public CachedObject openCachedObject(String bucketName, String key) throws IOException {
+        return this.diskCache.open(bucketName, key);
+    }
+
+    /**
+     * Opens a specific version through the disk cache, or the latest one if the version id is null. Concurrent
+     * reads of the same version share one GET.
+     */
+    public CachedObject openCachedObject(String bucketName, String key, String versionId) throws IOException {
+        return this.diskCache.open(bucketName, key, versionId);
+    }
+
+    public Map<String, Long> diskCacheStats() {
+        return this.diskCache.stats();
+    }
+
+    /**
+     * GETs the disk cache sent with a hedge, and how many hedges were sent and answered first.
+     */
+    public Map<String, Long> hedgingStats() {
+        return this.hedgedReader.stats();
+    }
+
+    /**
+     * The compressed length isn't known up front, so compressed uploads always go through the
+     * part-buffering stream upload, which still uses a single put for small objects.
+     */
+    private UploadResult uploadCompressed(String bucketName, String key, InputStream inputStream,
+                                          long uncompressedLength, CompressionCodec codec, ObjectMetadata metadata) {
+        try (InputStream compressed = this.compressor.compress(inputStream, codec, uncompressedLength, metadata)) {
+            return this.multipartUploader.upload(bucketName, key, compressed, metadata);
+        } catch (IOException exception) {
+            throw new SdkClientException(String.format("Compressing '%s' for bucket '%s' failed", key, bucketName),
+                    exception);
+        }
+    }
+
+    private void invalidate(String bucketName, String key) {
+        this.metadataCache.invalidate(bucketName, key);
+        this.diskCache.invalidate(bucketName, key);
+    }
 }
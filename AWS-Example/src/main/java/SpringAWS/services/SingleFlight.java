@@ -0,0 +1,130 @@
+package SpringAWS.services;
+
+import com.amazonaws.AbortedException;
+import com.amazonaws.SdkClientException;
+
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Lets concurrent calls for the same key share one request: the first caller runs it on its own thread,
+ * callers arriving while it is in flight wait for it and get its result, or its exception. Calls made
+ * after it completed run their own, so nothing is cached here. If the first caller's thread is interrupted,
+ * that says nothing about the request, so the callers waiting for it send it again, one of them leading.
+ */
+final class SingleFlight<V> {
+    private final ConcurrentMap<String, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+    private final LongAdder joined = new LongAdder();
+
+    V run(String key, Supplier<V> call) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+
+        for (boolean counted = false; ; ) {
+            CompletableFuture<V> inFlight = this.flights.putIfAbsent(key, flight);
+
+            if (inFlight == null) {
+                break;
+            }
+
+            if (!counted) {
+                this.joined.increment();
+                counted = true;
+            }
+
+            try {
+                return await(key, inFlight);
+            } catch (LeaderInterrupted ignored) {
+                // The leader gave up, not the request, try again
+            }
+        }
+
+        try {
+            V value = call.get();
+            flight.complete(value);
+
+            return value;
+        } catch (RuntimeException | Error exception) {
+            // Removed first, so waiters retrying don't find the abandoned flight again
+            this.flights.remove(key, flight);
+            flight.completeExceptionally(interrupted(exception) ? new LeaderInterrupted() : exception);
+
+            throw exception;
+        } finally {
+            this.flights.remove(key, flight);
+        }
+    }
+
+    /**
+     * Callers from now on don't join the key's request in flight, e.g. because it may predate a write.
+     */
+    void forget(String key) {
+        this.flights.remove(key);
+    }
+
+    void forgetPrefix(String prefix) {
+        this.flights.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * Calls that got the result of another caller's request instead of sending their own.
+     */
+    long joined() {
+        return this.joined.sum();
+    }
+
+    private static <V> V await(String key, CompletableFuture<V> flight) {
+        try {
+            return flight.get();
+        } catch (ExecutionException exception) {
+            if (exception.getCause() instanceof LeaderInterrupted) {
+                throw (LeaderInterrupted) exception.getCause();
+            }
+
+            if (exception.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) exception.getCause();
+            }
+
+            throw (Error) exception.getCause();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+
+            throw new SdkClientException(String.format("Waiting for the request of '%s' was interrupted",
+                    key.replace('\u0000', '/')), exception);
+        }
+    }
+
+    /**
+     * Whether the call failed because its thread was interrupted, rather than because of the request.
+     */
+    private static boolean interrupted(Throwable exception) {
+        if (Thread.currentThread().isInterrupted()) {
+            return true;
+        }
+
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof InterruptedException || cause instanceof AbortedException
+                    || cause instanceof ClosedByInterruptException
+                    || cause instanceof InterruptedIOException && !(cause instanceof SocketTimeoutException)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Completes a flight whose leader was interrupted, telling its waiters to try again.
+     */
+    private static final class LeaderInterrupted extends RuntimeException {
+        LeaderInterrupted() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package SpringAWS.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+
+@Getter
+@Accessors(fluent = true)
+@AllArgsConstructor
+public class SmallObject {
+    private final String key;
+    private final byte[] content;
+    private final String contentType;
+}
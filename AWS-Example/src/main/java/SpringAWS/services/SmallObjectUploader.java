@@ -0,0 +1,137 @@
+package SpringAWS.services;
+
+import SpringAWS.configs.S3BatchConfig;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Uploads many small objects as concurrent puts. A put of a thumbnail is almost all round trip, so
+ * throughput comes from keeping aws.s3.batch.concurrency of them in flight over the pooled connections.
+ * The slots are shared by every caller: once they are taken, submitting blocks until a put finishes,
+ * which keeps the queued contents bounded.
+ */
+@Component
+public class SmallObjectUploader {
+
+    @Autowired
+    private AmazonS3 s3Client;
+
+    @Autowired
+    private S3BatchConfig batchConfig;
+
+    @Autowired
+    private RequestScheduler scheduler;
+
+    @Autowired
+    @Qualifier("s3BatchExecutor")
+    private ExecutorService batchExecutor;
+
+    private Semaphore slots;
+
+    @PostConstruct
+    public void init() {
+        this.slots = new Semaphore(this.batchConfig.concurrency());
+    }
+
+    /**
+     * Queues a single put, blocking while all slots are taken.
+     */
+    public CompletableFuture<PutObjectResult> submit(String bucketName, SmallObject object) {
+        this.checkSize(object);
+
+        try {
+            this.slots.acquire();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+
+            throw new SdkClientException(String.format("Queueing '%s' for bucket '%s' was interrupted",
+                    object.key(), bucketName), exception);
+        }
+
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return this.put(bucketName, object);
+                } finally {
+                    this.slots.release();
+                }
+            }, this.batchExecutor);
+        } catch (RuntimeException exception) {
+            this.slots.release();
+            throw exception;
+        }
+    }
+
+    /**
+     * Uploads every object and waits for all of them. Failed puts don't stop the others, they are returned.
+     */
+    public BatchUploadResult uploadAll(String bucketName, List<SmallObject> objects) {
+        long start = System.nanoTime();
+        LongAdder uploaded = new LongAdder();
+        LongAdder bytes = new LongAdder();
+        Map<String, String> failed = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> puts = new ArrayList<>(objects.size());
+
+        for (SmallObject object : objects) {
+            this.checkSize(object);
+        }
+
+        for (SmallObject object : objects) {
+            puts.add(this.submit(bucketName, object).handle((result, exception) -> {
+                if (exception == null) {
+                    uploaded.increment();
+                    bytes.add(object.content().length);
+                } else {
+                    Throwable cause = exception instanceof CompletionException ? exception.getCause() : exception;
+                    failed.put(object.key(), String.valueOf(cause.getMessage()));
+                }
+
+                return null;
+            }));
+        }
+
+        CompletableFuture.allOf(puts.toArray(CompletableFuture<?>[]::new)).join();
+
+        return new BatchUploadResult(uploaded.sum(), bytes.sum(), new TreeMap<>(failed),
+                Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private PutObjectResult put(String bucketName, SmallObject object) {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(object.content().length);
+
+        if (object.contentType() != null) {
+            metadata.setContentType(object.contentType());
+        }
+
+        return this.scheduler.execute(bucketName, object.key(), () -> this.s3Client.putObject(
+                new PutObjectRequest(bucketName, object.key(), new ByteArrayInputStream(object.content()), metadata)));
+    }
+
+    private void checkSize(SmallObject object) {
+        if (object.content().length > this.batchConfig.maxObjectSize()) {
+            throw new IllegalArgumentException(String.format("Object '%s' has %d bytes, batches take at most %d",
+                    object.key(), object.content().length, this.batchConfig.maxObjectSize()));
+        }
+    }
+}
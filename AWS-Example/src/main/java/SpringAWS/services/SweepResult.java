@@ -0,0 +1,18 @@
+package SpringAWS.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+
+import java.time.Duration;
+
+@Getter
+@Accessors(fluent = true)
+@AllArgsConstructor
+public class SweepResult {
+    private final long blobs;
+    // Distinct blobs some version of a key refers to
+    private final long referenced;
+    private final long deleted;
+    private final Duration elapsed;
+}
@@ -0,0 +1,144 @@
+package SpringAWS.services;
+
+import SpringAWS.configs.S3TransferConfig;
+import com.amazonaws.util.BinaryUtils;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Progress of resumable transfers, one small append-only file per transfer in aws.s3.transfer.journal-directory.
+ * A record is a line of URL encoded fields and only counts once the line is complete, so a process killed while
+ * appending loses at most that record. Records aren't forced to disk: like the transferred bytes still in the
+ * page cache, they outlive the process but not necessarily the machine.
+ * <p>
+ * Journaling is best effort. A transfer whose journal can't be written goes on, it just can't be resumed.
+ */
+@Component
+public class TransferJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(TransferJournal.class);
+
+    @Autowired
+    private S3TransferConfig transferConfig;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (this.transferConfig.resumable()) {
+            Files.createDirectories(this.transferConfig.journalDirectory());
+        }
+    }
+
+    public boolean enabled() {
+        return this.transferConfig.resumable();
+    }
+
+    /**
+     * The journal of the transfer with the given identity, with whatever earlier attempts recorded in it.
+     */
+    Session session(String... identity) {
+        Path file = this.transferConfig.journalDirectory().resolve(fileName(identity));
+        List<String[]> records = new ArrayList<>();
+
+        try {
+            String content = Files.readString(file, StandardCharsets.UTF_8);
+            int start = 0;
+
+            // A line without its newline is a record the previous process didn't finish writing
+            for (int end = content.indexOf('\n'); end >= 0; start = end + 1, end = content.indexOf('\n', start)) {
+                records.add(Arrays.stream(content.substring(start, end).split(" ", -1))
+                        .map(field -> URLDecoder.decode(field, StandardCharsets.UTF_8))
+                        .toArray(String[]::new));
+            }
+        } catch (NoSuchFileException ignored) {
+            // Nothing journaled yet
+        } catch (IOException | IllegalArgumentException exception) {
+            log.warn("Ignoring unreadable transfer journal {}: {}", file, exception.toString());
+            records.clear();
+        }
+
+        return new Session(file, records);
+    }
+
+    private static String fileName(String... identity) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+            return BinaryUtils.toHex(digest.digest(String.join("\u0000", identity).getBytes(StandardCharsets.UTF_8)))
+                    + ".journal";
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    static final class Session {
+        private final Path file;
+        private final List<String[]> records;
+
+        private Session(Path file, List<String[]> records) {
+            this.file = file;
+            this.records = records;
+        }
+
+        /**
+         * The records of earlier attempts, the first one being the header they started with.
+         */
+        List<String[]> records() {
+            return Collections.unmodifiableList(this.records);
+        }
+
+        /**
+         * Drops earlier records and starts the journal over with the given header.
+         */
+        synchronized void start(String... header) {
+            this.write(header, CREATE, TRUNCATE_EXISTING, WRITE);
+        }
+
+        synchronized void append(String... record) {
+            this.write(record, CREATE, APPEND, WRITE);
+        }
+
+        /**
+         * The transfer completed, or can't be resumed anyway.
+         */
+        synchronized void finish() {
+            try {
+                Files.deleteIfExists(this.file);
+            } catch (IOException exception) {
+                log.warn("Could not delete transfer journal {}: {}", this.file, exception.toString());
+            }
+        }
+
+        private void write(String[] record, OpenOption... options) {
+            String line = Arrays.stream(record)
+                    .map(field -> URLEncoder.encode(field, StandardCharsets.UTF_8))
+                    .collect(Collectors.joining(" ", "", "\n"));
+
+            try {
+                Files.writeString(this.file, line, StandardCharsets.UTF_8, options);
+            } catch (IOException exception) {
+                log.warn("Could not journal transfer progress to {}: {}", this.file, exception.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package SpringAWS.controllers;
+
+import SpringAWS.configs.S3FolderConfig;
+import SpringAWS.services.S3Service;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.util.IOUtils;
+import com.jayway.jsonpath.JsonPath;
+import io.findify.s3mock.S3Mock;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = {
+        "aws.s3.endpoint=http://localhost:" + S3ControllerMockIntegrationTest.PORT,
+        "aws.s3.bucket=" + S3ControllerMockIntegrationTest.TEST_BUCKET,
+        "aws.s3.cache.disk.directory=target/s3-object-cache"
+})
+@AutoConfigureMockMvc
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class S3ControllerMockIntegrationTest {
+
+    // region Dependency Injection
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AmazonS3 s3Client;
+
+    @Autowired
+    private S3FolderConfig bucketFolders;
+
+    @Autowired
+    private S3Service s3Service;
+
+    // endregion
+
+    // region Statics & Constants
+    public static S3Mock api;
+
+    public static final int PORT = 8002;
+    public static final String TEST_BUCKET = "controller-test-bucket";
+    private final static String FILES_DIRECTORY = String.format("%s/src/test/java/IntegrationFiles",
+            System.getProperty("user.dir"));
+
+    // endregion
+
+    // region Init Localhost Endpoint
+    @BeforeAll
+    public static void init() {
+        api = new S3Mock.Builder()
+                .withPort(PORT)
+                .withInMemoryBackend()
+                .build();
+
+        api.start();
+    }
+
+    @Test
+    @Order(1)
+    public void createBucket_validName() {
+        s3Client.createBucket(TEST_BUCKET);
+
+        assertTrue(s3Client.doesBucketExistV2(TEST_BUCKET));
+    }
+
+    // endregion
+
+    // region Streaming Upload & Cached Download
+    @Test
+    @Order(2)
+    public void putObject_streamsRequestBody() throws Exception {
+        final byte[] expectedBytes = Files.readAllBytes(new File(FILES_DIRECTORY, "the-rock-reg-file.jpg").toPath());
+        final String expectedKey = this.bucketFolders.images() + "/the-rock-stream.jpg";
+
+        mockMvc.perform(put("/objects/images/the-rock-stream.jpg")
+                        .contentType(MediaType.IMAGE_JPEG)
+                        .content(expectedBytes))
+                .andExpect(status().isCreated())
+                .andExpect(content().string(expectedKey));
+
+        try (S3Object actualObject = s3Client.getObject(TEST_BUCKET, expectedKey)) {
+            assertArrayEquals(expectedBytes, IOUtils.toByteArray(actualObject.getObjectContent()));
+        }
+    }
+
+    @Test
+    @Order(2)
+    public void putObject_unknownFolder() throws Exception {
+        mockMvc.perform(put("/objects/videos/clip.mp4").content(new byte[]{1, 2, 3}))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @Order(3)
+    public void getObject_servedFromDiskCache() throws Exception {
+        final byte[] expectedBytes = Files.readAllBytes(new File(FILES_DIRECTORY, "the-rock-reg-file.jpg").toPath());
+        final long initialHits = s3Service.diskCacheStats().get("hits");
+
+        mockMvc.perform(get("/objects/images/the-rock-stream.jpg"))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(expectedBytes));
+
+        mockMvc.perform(get("/objects/images/the-rock-stream.jpg"))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(expectedBytes));
+
+        assertEquals(initialHits + 1, s3Service.diskCacheStats().get("hits"));
+    }
+
+    @Test
+    @Order(4)
+    public void getObject_invalidatedByUpload() throws Exception {
+        final byte[] expectedBytes = Files.readAllBytes(new File(FILES_DIRECTORY, "terminator.jpg").toPath());
+
+        mockMvc.perform(put("/objects/images/the-rock-stream.jpg").content(expectedBytes))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get("/objects/images/the-rock-stream.jpg"))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(expectedBytes));
+    }
+
+    @Test
+    @Order(4)
+    public void getObject_missingObject() throws Exception {
+        mockMvc.perform(get("/objects/images/missing.jpg"))
+                .andExpect(status().isNotFound());
+    }
+
+    // endregion
+
+    // region Client Connection Pools
+    @Test
+    @Order(3)
+    public void connectionPools_reportsPrimaryClient() throws Exception {
+        mockMvc.perform(get("/client/pools"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.s3client.max").value(200))
+                .andExpect(jsonPath("$.s3client.leased").isNumber());
+    }
+
+    // endregion
+
+    // region Server-Side Copy
+    @Test
+    @Order(5)
+    public void startCopy_reportsProgress() throws Exception {
+        final String key = this.bucketFolders.images() + "/copy-me.png";
+        s3Client.putObject(TEST_BUCKET, key, "image");
+
+        String location = mockMvc.perform(post("/copies")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"sourcePrefix\": \"images/\", \"targetPrefix\": \"archive/images/\"}"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.targetBucket").value(TEST_BUCKET))
+                .andReturn().getResponse().getHeader("Location");
+
+        assertNotNull(location);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+
+        while (!s3Service.copyJob(location.substring("/copies/".length())).get().finished()
+                && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+
+        mockMvc.perform(get(location))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.state").value("COMPLETED"))
+                .andExpect(jsonPath("$.failed").value(0));
+
+        assertEquals("image", s3Client.getObjectAsString(TEST_BUCKET, "archive/" + key));
+        assertTrue(s3Client.doesObjectExist(TEST_BUCKET, key));
+    }
+
+    @Test
+    @Order(5)
+    public void copyProgress_unknownJob() throws Exception {
+        mockMvc.perform(get("/copies/unknown"))
+                .andExpect(status().isNotFound());
+    }
+
+    // endregion
+
+    // region Presigned URLs
+    @Test
+    @Order(5)
+    public void presignUrls_reusesGalleryUrls() throws Exception {
+        final String gallery = "{\"folder\": \"images\", \"keys\": [\"gallery/1.jpg\", \"gallery/2.jpg\"]}";
+        s3Client.putObject(TEST_BUCKET, this.bucketFolders.images() + "/gallery/1.jpg", "first");
+        s3Client.putObject(TEST_BUCKET, this.bucketFolders.images() + "/gallery/2.jpg", "second");
+        final long initialHits = s3Service.presignedUrlCacheStats().get("hits");
+
+        String first = mockMvc.perform(post("/presigned-urls")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(gallery))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.method").value("GET"))
+                .andExpect(jsonPath("$.urls[1].key").value("gallery/2.jpg"))
+                .andReturn().getResponse().getContentAsString();
+        String second = mockMvc.perform(post("/presigned-urls")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(gallery))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertEquals(first, second);
+        assertEquals(initialHits + 2, s3Service.presignedUrlCacheStats().get("hits"));
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(JsonPath.read(first, "$.urls[1].url"))
+                .openConnection();
+
+        try (InputStream content = connection.getInputStream()) {
+            assertEquals("second", new String(content.readAllBytes()));
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Test
+    @Order(5)
+    public void presignUrls_putUploadsDirectly() throws Exception {
+        String response = mockMvc.perform(post("/presigned-urls")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"method\": \"put\", \"folder\": \"docs\", \"keys\": [\"direct.txt\"]}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(JsonPath.read(response, "$.urls[0].url"))
+                .openConnection();
+        connection.setRequestMethod("PUT");
+        connection.setDoOutput(true);
+
+        try (OutputStream body = connection.getOutputStream()) {
+            body.write("uploaded directly".getBytes());
+        }
+
+        assertEquals(200, connection.getResponseCode());
+        connection.disconnect();
+        assertEquals("uploaded directly",
+                s3Client.getObjectAsString(TEST_BUCKET, this.bucketFolders.docs() + "/direct.txt"));
+    }
+
+    @Test
+    @Order(5)
+    public void presignUrls_rejectsUnsupportedMethod() throws Exception {
+        mockMvc.perform(post("/presigned-urls")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"method\": \"DELETE\", \"folder\": \"docs\", \"keys\": [\"direct.txt\"]}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    // endregion
+
+    // region Metrics
+    @Test
+    @Order(6)
+    public void metrics_timeEveryS3Call() throws Exception {
+        mockMvc.perform(get("/actuator/metrics/s3.requests")
+                        .param("tag", "operation:PutObject")
+                        .param("tag", "bucket:" + TEST_BUCKET)
+                        .param("tag", "outcome:SUCCESS"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.measurements[0].statistic").value("COUNT"))
+                .andExpect(jsonPath("$.measurements[0].value").value(greaterThan(0.0)));
+
+        // Left behind by getObject_missingObject
+        mockMvc.perform(get("/actuator/metrics/s3.requests")
+                        .param("tag", "operation:GetObject")
+                        .param("tag", "outcome:CLIENT_ERROR")
+                        .param("tag", "status:404"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/actuator/metrics/s3.bytes.sent").param("tag", "operation:PutObject"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/actuator/metrics/s3.client.connections")
+                        .param("tag", "client:s3client")
+                        .param("tag", "state:max"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.measurements[0].value").value(200.0));
+    }
+
+    // endregion
+
+    // region Shutdown API
+    @AfterAll
+    public static void tearDown() {
+        api.shutdown();
+    }
+    // endregion
+}
@@ -0,0 +1,202 @@
+package SpringAWS.controllers;
+
+import SpringAWS.services.DedupResult;
+import SpringAWS.services.S3Service;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.util.IOUtils;
+import io.findify.s3mock.S3Mock;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "aws.s3.endpoint=http://localhost:" + S3ReactiveHandlerMockIntegrationTest.PORT,
+        "aws.s3.bucket=" + S3ReactiveHandlerMockIntegrationTest.TEST_BUCKET,
+        "aws.s3.reactive.enabled=true",
+        "aws.s3.reactive.port=" + S3ReactiveHandlerMockIntegrationTest.REACTIVE_PORT
+})
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class S3ReactiveHandlerMockIntegrationTest {
+
+    // region Dependency Injection
+    @Autowired
+    private AmazonS3 s3Client;
+
+    @Autowired
+    private S3Service s3Service;
+
+    // endregion
+
+    // region Statics & Constants
+    public static S3Mock api;
+
+    public static final int PORT = 8004;
+    public static final int REACTIVE_PORT = 8005;
+    public static final String TEST_BUCKET = "reactive-test-bucket";
+    private static final int OBJECT_SIZE = 3 * 1024 * 1024 + 17;
+
+    private static byte[] objectBytes;
+    private static WebTestClient webClient;
+
+    // endregion
+
+    // region Init Localhost Endpoint
+    @BeforeAll
+    public static void init() {
+        api = new S3Mock.Builder()
+                .withPort(PORT)
+                .withInMemoryBackend()
+                .build();
+
+        api.start();
+
+        objectBytes = new byte[OBJECT_SIZE];
+        new Random(13).nextBytes(objectBytes);
+
+        webClient = WebTestClient.bindToServer()
+                .baseUrl("http://localhost:" + REACTIVE_PORT)
+                .responseTimeout(Duration.ofSeconds(30))
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(2 * OBJECT_SIZE))
+                .build();
+    }
+
+    @Test
+    @Order(1)
+    public void createBucket_validName() {
+        s3Client.createBucket(TEST_BUCKET);
+
+        assertTrue(s3Client.doesBucketExistV2(TEST_BUCKET));
+    }
+
+    // endregion
+
+    // region Streaming Upload
+    @Test
+    @Order(2)
+    public void putObject_streamsRequestBody() throws Exception {
+        webClient.put().uri("/objects/images/reactive.bin")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .contentLength(OBJECT_SIZE)
+                .bodyValue(objectBytes)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(String.class).isEqualTo("images/reactive.bin");
+
+        try (S3Object object = s3Client.getObject(TEST_BUCKET, "images/reactive.bin")) {
+            assertArrayEquals(objectBytes, IOUtils.toByteArray(object.getObjectContent()));
+        }
+    }
+
+    @Test
+    @Order(2)
+    public void putObject_lengthRequired() {
+        Flux<DataBuffer> chunked = Flux.just("a", "b")
+                .map(chunk -> DefaultDataBufferFactory.sharedInstance.wrap(chunk.getBytes()));
+
+        webClient.put().uri("/objects/docs/chunked.txt")
+                .body(chunked, DataBuffer.class)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.LENGTH_REQUIRED);
+    }
+
+    @Test
+    @Order(2)
+    public void putObject_unknownFolder() {
+        webClient.put().uri("/objects/videos/clip.mp4")
+                .bodyValue("clip")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    // endregion
+
+    // region Streaming Download & Listing
+    @Test
+    @Order(3)
+    public void getObject_streamsResponseBody() {
+        byte[] body = webClient.get().uri("/objects/images/reactive.bin")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentLength(OBJECT_SIZE)
+                .expectBody(byte[].class).returnResult().getResponseBody();
+
+        assertArrayEquals(objectBytes, body);
+    }
+
+    @Test
+    @Order(3)
+    public void getObject_missingObject() {
+        webClient.get().uri("/objects/images/missing.bin")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    @Order(3)
+    public void getObject_followsDeduplicatedReference() {
+        DedupResult upload = s3Service.putObjectDeduplicated(TEST_BUCKET, "images/deduplicated.bin",
+                new ByteArrayInputStream(objectBytes), "application/octet-stream");
+
+        byte[] body = webClient.get().uri("/objects/images/deduplicated.bin")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentLength(OBJECT_SIZE)
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"" + upload.sha256() + "\"")
+                .expectBody(byte[].class).returnResult().getResponseBody();
+
+        assertArrayEquals(objectBytes, body);
+
+        webClient.get().uri("/objects/images/deduplicated.bin")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"" + upload.sha256() + "\"")
+                .exchange()
+                .expectStatus().isNotModified();
+    }
+
+    @Test
+    @Order(3)
+    @SuppressWarnings("rawtypes")
+    public void listObjects_streamsNdjson() {
+        s3Client.putObject(TEST_BUCKET, "docs/a.txt", "a");
+        s3Client.putObject(TEST_BUCKET, "docs/b.txt", "bb");
+
+        List<Map> summaries = webClient.get().uri("/objects/docs")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(Map.class)
+                .getResponseBody()
+                .collectList()
+                .block(Duration.ofSeconds(30));
+
+        assertNotNull(summaries);
+        assertEquals(2, summaries.size());
+        assertEquals("docs/a.txt", summaries.get(0).get("key"));
+        assertEquals(2, ((Number) summaries.get(1).get("size")).intValue());
+    }
+
+    // endregion
+
+    // region Shutdown API
+    @AfterAll
+    public static void tearDown() {
+        api.shutdown();
+    }
+    // endregion
+}
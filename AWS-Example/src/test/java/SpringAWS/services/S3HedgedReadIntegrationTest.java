@@ -0,0 +1,274 @@
+package SpringAWS.services;
+
+import SpringAWS.configs.S3FolderConfig;
+import SpringAWS.testing.LocalS3Server;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.util.IOUtils;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stalls single GETs on {@link LocalS3Server} the way one slow S3 host shows up in the latency tail, and
+ * checks the hedge answers instead.
+ */
+@SpringBootTest(properties = {
+        "aws.s3.endpoint=http://localhost:" + S3HedgedReadIntegrationTest.PORT,
+        "aws.s3.hedging.enabled=true",
+        "aws.s3.hedging.min-delay=200ms",
+        "aws.s3.hedging.hedge-burst=" + S3HedgedReadIntegrationTest.HEDGE_BURST,
+        "aws.s3.hedging.max-threads=" + S3HedgedReadIntegrationTest.MAX_THREADS,
+        // Every read goes to S3, as a conditional GET once cached
+        "aws.s3.cache.disk.revalidate-after=0s",
+        "aws.s3.cache.disk.directory=target/hedging-object-cache"
+})
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class S3HedgedReadIntegrationTest {
+
+    // region Dependency Injection
+    @Autowired
+    private S3Service s3Service;
+
+    @Autowired
+    private AmazonS3 s3Client;
+
+    @Autowired
+    private S3FolderConfig bucketFolders;
+
+    // endregion
+
+    // region Statics & Constants
+    public static LocalS3Server api;
+
+    public static final int PORT = 8013;
+    public static final String TEST_BUCKET = "hedging-test-bucket";
+    public static final int HEDGE_BURST = 3;
+    public static final int MAX_THREADS = 10;
+    private static final String CONTENT = "not really a jpeg";
+    private static final int CONCURRENT_READS = MAX_THREADS;
+
+    // endregion
+
+    // region Init Localhost Endpoint
+    @BeforeAll
+    public static void init() {
+        api = new LocalS3Server.Builder()
+                .withPort(PORT)
+                .build();
+
+        api.start();
+    }
+
+    @Test
+    @Order(1)
+    public void createBucket_withObjects() {
+        s3Client.createBucket(TEST_BUCKET);
+        s3Client.putObject(TEST_BUCKET, this.imageKey(0), CONTENT);
+        s3Client.putObject(TEST_BUCKET, this.bucketFolders.docs() + "/hedging.txt", CONTENT);
+
+        for (int index = 1; index < CONCURRENT_READS; index++) {
+            s3Client.putObject(TEST_BUCKET, this.imageKey(index), CONTENT);
+        }
+
+        assertTrue(s3Client.doesObjectExist(TEST_BUCKET, this.imageKey(0)));
+    }
+
+    // endregion
+
+    // region Hedged Reads
+    @Test
+    @Order(2)
+    public void openCachedObject_fastGetsNotHedged() throws IOException {
+        Map<String, Long> before = s3Service.hedgingStats();
+        long gets = api.requestCount("GetObject");
+
+        for (int index = 0; index < 100; index++) {
+            assertEquals(CONTENT, this.read(this.imageKey(0)));
+        }
+
+        Map<String, Long> after = s3Service.hedgingStats();
+
+        assertEquals(before.get("requests") + 100, after.get("requests"));
+        assertEquals(before.get("fired"), after.get("fired"));
+        assertEquals(gets + 100, api.requestCount("GetObject"));
+        assertTrue(after.get("delayMillis") >= 200);
+    }
+
+    @Test
+    @Order(3)
+    public void openCachedObject_stalledGetAnsweredByHedge() throws IOException {
+        Map<String, Long> before = s3Service.hedgingStats();
+        long gets = api.requestCount("GetObject");
+        long stalled = api.requestCount("Stalled");
+
+        api.stallNext(1, Duration.ofSeconds(3));
+
+        long started = System.nanoTime();
+        String content = this.read(this.imageKey(0));
+        long elapsed = System.nanoTime() - started;
+
+        Map<String, Long> after = s3Service.hedgingStats();
+
+        assertEquals(CONTENT, content);
+        assertTrue(elapsed < TimeUnit.SECONDS.toNanos(2), () -> "Read took " + elapsed / 1_000_000 + "ms");
+        assertEquals(before.get("fired") + 1, after.get("fired"));
+        assertEquals(before.get("won") + 1, after.get("won"));
+        // The original is still stalled, only the hedge got through
+        assertEquals(stalled + 1, api.requestCount("Stalled"));
+        assertEquals(gets + 1, api.requestCount("GetObject"));
+    }
+
+    @Test
+    @Order(4)
+    public void openCachedObject_otherFoldersNotHedged() throws IOException {
+        final String expectedKey = this.bucketFolders.docs() + "/hedging.txt";
+        Map<String, Long> before = s3Service.hedgingStats();
+
+        api.stallNext(1, Duration.ofMillis(500));
+
+        long started = System.nanoTime();
+
+        assertEquals(CONTENT, this.read(expectedKey));
+        assertTrue(System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(before, s3Service.hedgingStats());
+    }
+
+    @Test
+    @Order(5)
+    public void openCachedObject_hedgesCappedByBudget() throws Exception {
+        Map<String, Long> before = s3Service.hedgingStats();
+        ExecutorService readers = Executors.newFixedThreadPool(CONCURRENT_READS);
+
+        // Every GET is slow now, the originals and their hedges alike
+        api.stallNext(CONCURRENT_READS + HEDGE_BURST, Duration.ofSeconds(1));
+
+        try {
+            List<CompletableFuture<String>> reads = IntStream.range(0, CONCURRENT_READS)
+                    .mapToObj(index -> CompletableFuture.supplyAsync(() -> {
+                        try {
+                            return this.read(this.imageKey(index));
+                        } catch (IOException exception) {
+                            throw new RuntimeException(exception);
+                        }
+                    }, readers))
+                    .collect(Collectors.toList());
+
+            for (CompletableFuture<String> read : reads) {
+                assertEquals(CONTENT, read.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            readers.shutdownNow();
+            api.stallNext(0, Duration.ZERO);
+        }
+
+        Map<String, Long> after = s3Service.hedgingStats();
+
+        assertTrue(after.get("fired") - before.get("fired") <= HEDGE_BURST, after::toString);
+        assertTrue(after.get("budgetExhausted") > before.get("budgetExhausted"), after::toString);
+        // The stalled originals take up the whole pool, hedges that the budget allowed don't get a thread
+        assertTrue(after.get("poolExhausted") > before.get("poolExhausted"), after::toString);
+    }
+
+    @Test
+    @Order(6)
+    public void openCachedObject_interruptedReadReleasesResponse() throws Exception {
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+
+        api.stallNext(1, Duration.ofMillis(500));
+
+        try {
+            Future<String> read = reader.submit(() -> this.read(this.imageKey(1)));
+            Thread.sleep(100);
+            reader.shutdownNow();
+
+            ExecutionException exception = assertThrows(ExecutionException.class, () -> read.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(SdkClientException.class, exception.getCause());
+        } finally {
+            api.stallNext(0, Duration.ZERO);
+        }
+
+        // The response that arrives after the reader gave up is aborted, not left holding a connection
+        Thread.sleep(600);
+
+        for (int index = 0; index < CONCURRENT_READS; index++) {
+            assertEquals(CONTENT, this.read(this.imageKey(index)));
+        }
+    }
+
+    @Test
+    @Order(7)
+    public void openCachedObject_interruptedLeaderHandsOver() throws Exception {
+        final String expectedKey = this.imageKey(2);
+        final int waiters = 3;
+        ExecutorService leader = Executors.newSingleThreadExecutor();
+        ExecutorService others = Executors.newFixedThreadPool(waiters);
+        long stalled = api.requestCount("Stalled");
+        long coalesced = s3Service.diskCacheStats().get("coalesced");
+
+        // Stalls the leader's GET and its hedge, if one fires
+        api.stallNext(2, Duration.ofSeconds(1));
+
+        try {
+            Future<String> interrupted = leader.submit(() -> this.read(expectedKey));
+
+            while (api.requestCount("Stalled") == stalled) {
+                Thread.sleep(10);
+            }
+
+            List<Future<String>> joined = IntStream.range(0, waiters)
+                    .mapToObj(index -> others.submit(() -> this.read(expectedKey)))
+                    .collect(Collectors.toList());
+
+            while (s3Service.diskCacheStats().get("coalesced") < coalesced + waiters) {
+                Thread.sleep(10);
+            }
+
+            leader.shutdownNow();
+
+            ExecutionException exception = assertThrows(ExecutionException.class,
+                    () -> interrupted.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(SdkClientException.class, exception.getCause());
+
+            // The leader's interruption isn't theirs, one of them sends the GET again
+            for (Future<String> read : joined) {
+                assertEquals(CONTENT, read.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            api.stallNext(0, Duration.ZERO);
+            others.shutdownNow();
+        }
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        api.shutdown();
+    }
+    // endregion
+
+    private String imageKey(int index) {
+        return this.bucketFolders.images() + "/hedging-" + index + ".jpg";
+    }
+
+    private String read(String key) throws IOException {
+        try (CachedObject object = s3Service.openCachedObject(TEST_BUCKET, key)) {
+            return new String(IOUtils.toByteArray(Channels.newInputStream(object.channel())));
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package SpringAWS.services;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.BucketLifecycleConfiguration;
+import com.amazonaws.services.s3.model.lifecycle.LifecyclePrefixPredicate;
+import com.amazonaws.services.s3.model.lifecycle.LifecycleTagPredicate;
+import io.findify.s3mock.S3Mock;
+import org.junit.jupiter.api.*;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * S3Mock has no lifecycle routes, so the client is spied on to stand in for S3's side of apply.
+ */
+@SpringBootTest(properties = {
+        "aws.s3.endpoint=http://localhost:" + S3LifecycleMockIntegrationTest.PORT,
+        "aws.s3.lifecycle.rules[0].bucket=" + S3LifecycleMockIntegrationTest.TEST_BUCKET,
+        "aws.s3.lifecycle.rules[0].id=archive-logs",
+        "aws.s3.lifecycle.rules[0].prefix=logs/",
+        "aws.s3.lifecycle.rules[0].transitions[0].days=30",
+        "aws.s3.lifecycle.rules[0].transitions[0].storage-class=STANDARD_IA",
+        "aws.s3.lifecycle.rules[0].transitions[1].days=90",
+        "aws.s3.lifecycle.rules[0].transitions[1].storage-class=GLACIER",
+        "aws.s3.lifecycle.rules[0].expiration-days=365",
+        "aws.s3.lifecycle.rules[1].bucket=" + S3LifecycleMockIntegrationTest.TEST_BUCKET,
+        "aws.s3.lifecycle.rules[1].id=archive-tagged",
+        "aws.s3.lifecycle.rules[1].tags.archive=true",
+        "aws.s3.lifecycle.rules[1].transitions[0].days=0",
+        "aws.s3.lifecycle.rules[1].transitions[0].storage-class=DEEP_ARCHIVE",
+        "aws.s3.lifecycle.rules[1].abort-incomplete-upload-days=7",
+        "aws.s3.lifecycle.rules[2].bucket=" + S3LifecycleMockIntegrationTest.TEST_BUCKET,
+        "aws.s3.lifecycle.rules[2].id=expire-noncurrent",
+        "aws.s3.lifecycle.rules[2].noncurrent-version-expiration-days=30"
+})
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class S3LifecycleMockIntegrationTest {
+
+    // region Dependency Injection
+    @Autowired
+    private S3Service s3Service;
+
+    @SpyBean
+    private AmazonS3 s3Client;
+
+    // endregion
+
+    // region Statics & Constants
+    public static S3Mock api;
+
+    public static final int PORT = 8010;
+    public static final String TEST_BUCKET = "lifecycle-test-bucket";
+    private static final int LOG_COUNT = 50;
+    // Past the 128KB S3 transitions at least
+    private static final int LOG_SIZE = 256 * 1024;
+    private static final int SMALL_LOG_SIZE = 1024;
+
+    // endregion
+
+    // region Init Localhost Endpoint
+    @BeforeAll
+    public static void init() {
+        api = new S3Mock.Builder()
+                .withPort(PORT)
+                .withInMemoryBackend()
+                .build();
+
+        api.start();
+    }
+
+    @Test
+    @Order(1)
+    public void createBucket_validName() {
+        s3Client.createBucket(TEST_BUCKET);
+
+        for (int index = 0; index < LOG_COUNT; index++) {
+            s3Service.putObjectStream(TEST_BUCKET, "logs/app-" + index + ".log",
+                    new ByteArrayInputStream(new byte[LOG_SIZE]), LOG_SIZE, "text/plain");
+        }
+
+        s3Service.putObjectStream(TEST_BUCKET, "logs/small.log", new ByteArrayInputStream(new byte[SMALL_LOG_SIZE]),
+                SMALL_LOG_SIZE, "text/plain");
+        s3Service.putObjectStream(TEST_BUCKET, "images/keep.jpg", new ByteArrayInputStream(new byte[LOG_SIZE]),
+                LOG_SIZE, "image/jpeg");
+
+        assertTrue(s3Client.doesBucketExistV2(TEST_BUCKET));
+    }
+
+    // endregion
+
+    // region Applying Rules
+    @Test
+    @Order(2)
+    public void configurationFor_configuredRules() {
+        Map<String, BucketLifecycleConfiguration.Rule> rules = s3Service.lifecycleConfiguration()
+                .configurationFor(TEST_BUCKET).getRules().stream()
+                .collect(Collectors.toMap(BucketLifecycleConfiguration.Rule::getId, rule -> rule));
+
+        BucketLifecycleConfiguration.Rule logs = rules.get("archive-logs");
+        assertEquals("logs/", ((LifecyclePrefixPredicate) logs.getFilter().getPredicate()).getPrefix());
+        assertEquals(2, logs.getTransitions().size());
+        assertEquals(365, logs.getExpirationInDays());
+        assertEquals(BucketLifecycleConfiguration.ENABLED, logs.getStatus());
+
+        // No prefix next to the tag, as S3 would return it
+        BucketLifecycleConfiguration.Rule tagged = rules.get("archive-tagged");
+        assertEquals("archive", ((LifecycleTagPredicate) tagged.getFilter().getPredicate()).getTag().getKey());
+        assertEquals(7, tagged.getAbortIncompleteMultipartUpload().getDaysAfterInitiation());
+
+        assertTrue(s3Service.lifecycleConfiguration().configurationFor("other-bucket").getRules().isEmpty());
+    }
+
+    @Test
+    @Order(3)
+    public void applyLifecycle_idempotent() {
+        ArgumentCaptor<BucketLifecycleConfiguration> written = ArgumentCaptor.forClass(BucketLifecycleConfiguration.class);
+        clearInvocations(s3Client);
+        doReturn(null).when(s3Client).getBucketLifecycleConfiguration(TEST_BUCKET);
+        doNothing().when(s3Client).setBucketLifecycleConfiguration(eq(TEST_BUCKET), written.capture());
+
+        assertTrue(s3Service.applyLifecycle(TEST_BUCKET));
+        assertEquals(3, written.getValue().getRules().size());
+
+        // S3 hands the rules back in its own order
+        List<BucketLifecycleConfiguration.Rule> reversed = new ArrayList<>(written.getValue().getRules());
+        Collections.reverse(reversed);
+        BucketLifecycleConfiguration stored = new BucketLifecycleConfiguration().withRules(reversed);
+        doReturn(stored).when(s3Client).getBucketLifecycleConfiguration(TEST_BUCKET);
+
+        assertFalse(s3Service.applyLifecycle(TEST_BUCKET));
+        verify(s3Client, times(1)).setBucketLifecycleConfiguration(eq(TEST_BUCKET), any());
+    }
+
+    @Test
+    @Order(3)
+    public void applyLifecycle_changedRules() {
+        BucketLifecycleConfiguration stored = s3Service.lifecycleConfiguration().configurationFor(TEST_BUCKET);
+        stored.getRules().get(0).setExpirationInDays(730);
+        doReturn(stored).when(s3Client).getBucketLifecycleConfiguration(TEST_BUCKET);
+        doNothing().when(s3Client).setBucketLifecycleConfiguration(eq(TEST_BUCKET), any());
+
+        assertTrue(s3Service.applyLifecycle(TEST_BUCKET));
+    }
+
+    @Test
+    @Order(3)
+    public void applyLifecycle_unconfiguredBucket() {
+        assertThrows(IllegalArgumentException.class, () -> s3Service.applyLifecycle("other-bucket"));
+    }
+
+    // endregion
+
+    // region Simulation
+    @Test
+    @Order(4)
+    public void simulateLifecycle_today() {
+        LifecycleReport report = s3Service.simulateLifecycle(TEST_BUCKET, Duration.ZERO);
+
+        // The noncurrent rule covers the whole bucket, but isn't simulated
+        assertEquals(LOG_COUNT + 1, report.scannedObjects());
+        assertEquals(LOG_COUNT + 1, this.rule(report, "archive-logs").objects());
+        assertTrue(this.rule(report, "archive-logs").actions().isEmpty());
+        assertEquals(0, report.monthlySavings());
+        assertEquals(0, report.transitionCost());
+    }
+
+    @Test
+    @Order(4)
+    public void simulateLifecycle_transitions() {
+        LifecycleRuleImpact logs = this.rule(s3Service.simulateLifecycle(TEST_BUCKET, Duration.ofDays(40)),
+                "archive-logs");
+
+        LifecycleActionImpact transition = logs.actions().get("TRANSITION_TO_STANDARD_IA");
+        // The small log stays in STANDARD
+        assertEquals(1, logs.actions().size());
+        assertEquals(LOG_COUNT, transition.objects());
+        assertEquals((long) LOG_COUNT * LOG_SIZE, transition.bytes());
+        assertTrue(transition.monthlySavings() > 0);
+        assertEquals(LOG_COUNT * 0.01 / 1000, transition.transitionCost(), 1e-12);
+
+        // Past the second transition objects go straight to where they'd end up
+        LifecycleRuleImpact later = this.rule(s3Service.simulateLifecycle(TEST_BUCKET, Duration.ofDays(100)),
+                "archive-logs");
+        assertEquals(LOG_COUNT, later.actions().get("TRANSITION_TO_GLACIER").objects());
+        assertTrue(later.monthlySavings() > logs.monthlySavings());
+        assertEquals(LOG_COUNT * 0.03 / 1000, later.transitionCost(), 1e-12);
+    }
+
+    @Test
+    @Order(4)
+    public void simulateLifecycle_expiration() {
+        LifecycleReport report = s3Service.simulateLifecycle(TEST_BUCKET, Duration.ofDays(400));
+        LifecycleRuleImpact logs = this.rule(report, "archive-logs");
+
+        // Expiring isn't held back by size
+        assertEquals(LOG_COUNT + 1, logs.actions().get("EXPIRE").objects());
+        assertEquals(logs.monthlySavings(), report.monthlySavings(), 1e-12);
+        assertEquals(0, logs.transitionCost());
+        assertTrue(report.monthlySavings() > 0);
+    }
+
+    @Test
+    @Order(4)
+    public void simulateLifecycle_tagRuleNotSimulated() {
+        LifecycleRuleImpact tagged = this.rule(s3Service.simulateLifecycle(TEST_BUCKET, Duration.ofDays(400)),
+                "archive-tagged");
+
+        assertFalse(tagged.simulated());
+        assertEquals(0, tagged.objects());
+    }
+
+    @Test
+    @Order(4)
+    public void simulateLifecycle_noncurrentRuleNotSimulated() {
+        LifecycleRuleImpact noncurrent = this.rule(s3Service.simulateLifecycle(TEST_BUCKET, Duration.ofDays(400)),
+                "expire-noncurrent");
+
+        assertFalse(noncurrent.simulated());
+        assertEquals(0, noncurrent.objects());
+    }
+
+    @Test
+    @Order(4)
+    public void simulateLifecycle_unconfiguredBucket() {
+        assertThrows(IllegalArgumentException.class,
+                () -> s3Service.simulateLifecycle("other-bucket", Duration.ZERO));
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        api.shutdown();
+    }
+    // endregion
+
+    private LifecycleRuleImpact rule(LifecycleReport report, String ruleId) {
+        return report.rules().stream()
+                .filter(rule -> rule.ruleId().equals(ruleId))
+                .findFirst()
+                .orElseThrow();
+    }
+}
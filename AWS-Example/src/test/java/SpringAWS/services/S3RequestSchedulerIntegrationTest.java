@@ -0,0 +1,261 @@
+package SpringAWS.services;
+
+import SpringAWS.configs.S3FolderConfig;
+import SpringAWS.testing.LocalS3Server;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.transfer.model.UploadResult;
+import com.amazonaws.util.IOUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Throttles requests on {@link LocalS3Server} the way S3 answers an overloaded prefix, and checks the
+ * scheduler backs off instead of piling retries on top.
+ */
+@SpringBootTest(properties = {
+        "aws.s3.endpoint=http://localhost:" + S3RequestSchedulerIntegrationTest.PORT,
+        "aws.s3.transfer.part-size=5MB",
+        "aws.s3.transfer.part-retries=10",
+        "aws.s3.scheduler.max-retries=10",
+        "aws.s3.scheduler.base-delay=5ms",
+        "aws.s3.scheduler.max-delay=100ms",
+        "aws.s3.scheduler.retry-budget-burst=" + S3RequestSchedulerIntegrationTest.RETRY_BUDGET_BURST
+})
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class S3RequestSchedulerIntegrationTest {
+
+    // region Dependency Injection
+    @Autowired
+    private S3Service s3Service;
+
+    @Autowired
+    private AmazonS3 s3Client;
+
+    @Autowired
+    private RequestScheduler scheduler;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Autowired
+    private S3FolderConfig bucketFolders;
+
+    // endregion
+
+    // region Statics & Constants
+    public static LocalS3Server api;
+
+    public static final int PORT = 8012;
+    public static final String TEST_BUCKET = "scheduler-test-bucket";
+    public static final int RETRY_BUDGET_BURST = 500;
+    private static final int SERVER_CAPACITY = 8;
+    private static final int MANY_OBJECTS = 1000;
+
+    // endregion
+
+    // region Init Localhost Endpoint
+    @BeforeAll
+    public static void init() {
+        api = new LocalS3Server.Builder()
+                .withPort(PORT)
+                .build();
+
+        api.start();
+    }
+
+    @Test
+    @Order(1)
+    public void createBucket_validName() {
+        s3Client.createBucket(TEST_BUCKET);
+
+        assertTrue(s3Client.doesBucketExistV2(TEST_BUCKET));
+    }
+
+    // endregion
+
+    // region Adaptive Limits
+    @Test
+    @Order(2)
+    public void uploadSmallObjects_limitConvergesOnThrottledPrefix() {
+        final String prefix = this.bucketFolders.images() + "/throttled/";
+        List<SmallObject> objects = IntStream.range(0, MANY_OBJECTS)
+                .mapToObj(index -> new SmallObject(prefix + "object-" + index, new byte[]{(byte) index}, "image/jpeg"))
+                .collect(Collectors.toList());
+        long slowDowns = api.requestCount("SlowDown");
+
+        api.slowDownAbove(SERVER_CAPACITY);
+
+        try {
+            BatchUploadResult result = s3Service.uploadSmallObjects(TEST_BUCKET, objects);
+
+            assertEquals(MANY_OBJECTS, result.uploaded(), () -> result.failed().toString());
+        } finally {
+            api.slowDownAbove(Integer.MAX_VALUE);
+        }
+
+        Map<String, Number> limit = scheduler.snapshot().get(TEST_BUCKET + "/" + this.bucketFolders.images() + "/");
+        long throttled = api.requestCount("SlowDown") - slowDowns;
+
+        // 64 puts at once were cut down towards what the server takes, instead of retrying into it
+        assertTrue(throttled > 0);
+        assertTrue(throttled < MANY_OBJECTS, () -> throttled + " throttled attempts");
+        assertTrue(limit.get("limit").intValue() < 64, () -> "Limit stayed at " + limit.get("limit"));
+        assertTrue(limit.get("throttleRate").doubleValue() > 0);
+        assertEquals(limit.get("limit").doubleValue(), registry.get("s3.scheduler.limit")
+                .tag("bucket", TEST_BUCKET).tag("prefix", this.bucketFolders.images() + "/").gauge().value());
+    }
+
+    @Test
+    @Order(3)
+    public void uploadMultipart_throttledPartsRetriedWithFreshContent() throws Exception {
+        final String expectedKey = this.bucketFolders.docs() + "/throttled-multipart.bin";
+        byte[] expectedBytes = new byte[12 * 1024 * 1024 + 5];
+        new Random(22).nextBytes(expectedBytes);
+        long slowDowns = api.requestCount("SlowDown");
+
+        api.slowDownAbove(1);
+
+        UploadResult result;
+
+        try {
+            result = s3Service.uploadMultipart(TEST_BUCKET, expectedKey, new ByteArrayInputStream(expectedBytes),
+                    new ObjectMetadata());
+        } finally {
+            api.slowDownAbove(Integer.MAX_VALUE);
+        }
+
+        assertTrue(result.getETag().endsWith("-3"));
+        assertTrue(api.requestCount("SlowDown") > slowDowns);
+
+        try (S3Object object = s3Client.getObject(TEST_BUCKET, expectedKey)) {
+            assertArrayEquals(expectedBytes, IOUtils.toByteArray(object.getObjectContent()));
+        }
+    }
+
+    // endregion
+
+    // region Retries
+    @Test
+    @Order(4)
+    public void putObject_sdkLeavesScheduledRetriesToScheduler() {
+        final String expectedKey = this.bucketFolders.images() + "/always-throttled.jpg";
+        long slowDowns = api.requestCount("SlowDown");
+
+        api.slowDownAbove(0);
+
+        try {
+            // Unscheduled requests are retried by the SDK, aws.s3.client.max-error-retry=3
+            assertThrows(AmazonS3Exception.class, () -> s3Client.putObject(TEST_BUCKET, expectedKey, "x"));
+            assertEquals(4, api.requestCount("SlowDown") - slowDowns);
+
+            slowDowns = api.requestCount("SlowDown");
+
+            // Scheduled ones only by the scheduler, not 4 SDK attempts for each of its 11
+            CompletionException exception = assertThrows(CompletionException.class, () -> s3Service
+                    .submitSmallObject(TEST_BUCKET, new SmallObject(expectedKey, new byte[]{1}, "image/jpeg")).join());
+            assertEquals(503, ((AmazonS3Exception) exception.getCause()).getStatusCode());
+            assertEquals(11, api.requestCount("SlowDown") - slowDowns);
+        } finally {
+            api.slowDownAbove(Integer.MAX_VALUE);
+        }
+    }
+
+    @Test
+    @Order(5)
+    public void uploadSmallObjects_retryBudgetBoundsRetries() {
+        final String prefix = this.bucketFolders.docs() + "/budget/";
+        List<SmallObject> objects = IntStream.range(0, MANY_OBJECTS)
+                .mapToObj(index -> new SmallObject(prefix + "object-" + index, new byte[]{(byte) index}, "text/plain"))
+                .collect(Collectors.toList());
+        long slowDowns = api.requestCount("SlowDown");
+
+        api.slowDownAbove(0);
+
+        try {
+            BatchUploadResult result = s3Service.uploadSmallObjects(TEST_BUCKET, objects);
+
+            assertEquals(0, result.uploaded());
+            assertEquals(MANY_OBJECTS, result.failed().size());
+        } finally {
+            api.slowDownAbove(Integer.MAX_VALUE);
+        }
+
+        long attempts = api.requestCount("SlowDown") - slowDowns;
+
+        // Without the budget every put would have been tried 11 times, now retries are what was saved up
+        // plus a tenth of the requests
+        assertTrue(attempts <= MANY_OBJECTS + RETRY_BUDGET_BURST + MANY_OBJECTS / 10,
+                () -> attempts + " attempts");
+        assertTrue(registry.get("s3.scheduler.retries").tag("outcome", "budget-exhausted").counter().count() > 0);
+    }
+
+    @Test
+    @Order(6)
+    public void putObject_recoversOnceUnthrottled() {
+        final String expectedKey = this.bucketFolders.docs() + "/after-throttling.txt";
+
+        assertNotNull(s3Service.submitSmallObject(TEST_BUCKET,
+                new SmallObject(expectedKey, new byte[]{1, 2, 3}, "text/plain")).join().getETag());
+        assertEquals(3, s3Client.getObjectMetadata(TEST_BUCKET, expectedKey).getContentLength());
+    }
+
+    @Test
+    @Order(7)
+    public void execute_nestedRequestLeavesEnclosingScheduled() {
+        boolean owned = scheduler.execute(TEST_BUCKET, "nested/outer", () -> {
+            scheduler.execute(TEST_BUCKET, "nested/inner", () -> null);
+
+            return RequestScheduler.ownsRetries();
+        });
+
+        assertTrue(owned);
+        assertFalse(RequestScheduler.ownsRetries());
+    }
+
+    // endregion
+
+    // region Listings
+    @Test
+    @Order(7)
+    public void listObjects_pagesScheduledUnderPrefixLimit() {
+        final String prefix = this.bucketFolders.images() + "/";
+        Counter pages = registry.counter("s3.scheduler.attempts", "bucket", TEST_BUCKET, "prefix", prefix,
+                "outcome", "success");
+        double before = pages.count();
+        long listings = api.requestCount("ListObjectsV2");
+
+        assertEquals(MANY_OBJECTS, s3Service.listObjects(TEST_BUCKET, prefix + "throttled/").count());
+        assertEquals(api.requestCount("ListObjectsV2") - listings, pages.count() - before);
+
+        // The scan's shards images/throttled/ and so on share the limit of images/
+        try (BucketScan scan = s3Service.scan(TEST_BUCKET, prefix)) {
+            while (scan.hasNext()) {
+                scan.next();
+            }
+        }
+
+        assertEquals(api.requestCount("ListObjectsV2") - listings, pages.count() - before);
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        api.shutdown();
+    }
+    // endregion
+}
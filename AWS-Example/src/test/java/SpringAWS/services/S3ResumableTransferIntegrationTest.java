@@ -0,0 +1,252 @@
+package SpringAWS.services;
+
+import SpringAWS.configs.S3FolderConfig;
+import SpringAWS.testing.LocalS3Server;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListMultipartUploadsRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.util.IOUtils;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Cuts transfers short on {@link LocalS3Server} and checks the next attempt only transfers what is missing.
+ * One transfer thread and no retries, neither the scheduler's nor the SDK's, so exactly the parts and ranges
+ * before the failure get through.
+ */
+@SpringBootTest(properties = {
+        "aws.s3.endpoint=http://localhost:" + S3ResumableTransferIntegrationTest.PORT,
+        "aws.s3.transfer.part-size=5MB",
+        "aws.s3.transfer.range-size=5MB",
+        "aws.s3.transfer.single-stream-threshold=1MB",
+        "aws.s3.transfer.threads=1",
+        "aws.s3.transfer.part-retries=0",
+        "aws.s3.scheduler.max-retries=0",
+        "aws.s3.client.max-error-retry=0",
+        "aws.s3.transfer.resumable=true",
+        "aws.s3.transfer.journal-directory=" + S3ResumableTransferIntegrationTest.JOURNAL_DIRECTORY
+})
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class S3ResumableTransferIntegrationTest {
+
+    // region Dependency Injection
+    @Autowired
+    private S3Service s3Service;
+
+    @Autowired
+    private AmazonS3 s3Client;
+
+    @Autowired
+    private S3FolderConfig bucketFolders;
+
+    // endregion
+
+    // region Statics & Constants
+    public static LocalS3Server api;
+
+    public static final int PORT = 8014;
+    public static final String TEST_BUCKET = "resumable-test-bucket";
+    public static final String JOURNAL_DIRECTORY = "target/transfer-journal";
+    // Four parts and ranges of 5MB, the last one short
+    private static final int LARGE_OBJECT_SIZE = 15 * 1024 * 1024 + 123;
+    private static final int TRANSFERS_BEFORE_FAILURE = 2;
+
+    @TempDir
+    public static Path tempDirectory;
+    private static byte[] largeObjectBytes;
+
+    // endregion
+
+    // region Init Localhost Endpoint
+    @BeforeAll
+    public static void init() throws IOException {
+        // Journals of an earlier run name other temp files, but would be counted
+        if (Files.exists(Paths.get(JOURNAL_DIRECTORY))) {
+            try (Stream<Path> journals = Files.list(Paths.get(JOURNAL_DIRECTORY))) {
+                for (Path journal : (Iterable<Path>) journals::iterator) {
+                    Files.delete(journal);
+                }
+            }
+        }
+
+        api = new LocalS3Server.Builder()
+                .withPort(PORT)
+                .build();
+
+        api.start();
+
+        largeObjectBytes = new byte[LARGE_OBJECT_SIZE];
+        new Random(2501).nextBytes(largeObjectBytes);
+    }
+
+    @Test
+    @Order(1)
+    public void createBucket_validName() {
+        s3Client.createBucket(TEST_BUCKET);
+
+        assertTrue(s3Client.doesBucketExistV2(TEST_BUCKET));
+    }
+
+    // endregion
+
+    // region Resumed Uploads
+    @Test
+    @Order(2)
+    public void uploadMultipart_resumedAfterFailure() throws Exception {
+        final File expectedFile = tempDirectory.resolve("resumed-upload.bin").toFile();
+        final String expectedKey = this.bucketFolders.docs() + "/resumed-upload.bin";
+        Files.write(expectedFile.toPath(), largeObjectBytes);
+
+        api.failAfter("UploadPart", TRANSFERS_BEFORE_FAILURE);
+
+        try {
+            assertThrows(SdkClientException.class,
+                    () -> s3Service.uploadMultipart(TEST_BUCKET, expectedKey, expectedFile, new ObjectMetadata()));
+        } finally {
+            api.failAfter("UploadPart", Long.MAX_VALUE);
+        }
+
+        // Left open for the next attempt
+        assertEquals(1, this.openUploads());
+        assertEquals(1, this.journals());
+
+        long initiated = api.requestCount("CreateMultipartUpload");
+        long parts = api.requestCount("UploadPart");
+
+        s3Service.uploadMultipart(TEST_BUCKET, expectedKey, expectedFile, new ObjectMetadata());
+
+        assertEquals(initiated, api.requestCount("CreateMultipartUpload"));
+        assertEquals(parts + 4 - TRANSFERS_BEFORE_FAILURE, api.requestCount("UploadPart"));
+        assertArrayEquals(largeObjectBytes, IOUtils.toByteArray(
+                s3Client.getObject(TEST_BUCKET, expectedKey).getObjectContent()));
+        assertEquals(0, this.openUploads());
+        assertEquals(0, this.journals());
+    }
+
+    @Test
+    @Order(3)
+    public void uploadMultipart_changedFileStartsOver() throws Exception {
+        final File expectedFile = tempDirectory.resolve("changed-upload.bin").toFile();
+        final String expectedKey = this.bucketFolders.docs() + "/changed-upload.bin";
+        final byte[] changedBytes = Arrays.copyOf(largeObjectBytes, LARGE_OBJECT_SIZE - 1);
+        Files.write(expectedFile.toPath(), largeObjectBytes);
+
+        api.failAfter("UploadPart", TRANSFERS_BEFORE_FAILURE);
+
+        try {
+            assertThrows(SdkClientException.class,
+                    () -> s3Service.uploadMultipart(TEST_BUCKET, expectedKey, expectedFile, new ObjectMetadata()));
+        } finally {
+            api.failAfter("UploadPart", Long.MAX_VALUE);
+        }
+
+        Files.write(expectedFile.toPath(), changedBytes);
+
+        long initiated = api.requestCount("CreateMultipartUpload");
+        long aborted = api.requestCount("AbortMultipartUpload");
+        long parts = api.requestCount("UploadPart");
+
+        s3Service.uploadMultipart(TEST_BUCKET, expectedKey, expectedFile, new ObjectMetadata());
+
+        assertEquals(initiated + 1, api.requestCount("CreateMultipartUpload"));
+        assertEquals(aborted + 1, api.requestCount("AbortMultipartUpload"));
+        assertEquals(parts + 4, api.requestCount("UploadPart"));
+        assertArrayEquals(changedBytes, IOUtils.toByteArray(
+                s3Client.getObject(TEST_BUCKET, expectedKey).getObjectContent()));
+        assertEquals(0, this.openUploads());
+    }
+
+    // endregion
+
+    // region Resumed Downloads
+    @Test
+    @Order(4)
+    public void download_resumedAfterFailure() throws Exception {
+        final String expectedKey = this.bucketFolders.docs() + "/resumed-download.bin";
+        final Path downloaded = tempDirectory.resolve("resumed-download.bin");
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(LARGE_OBJECT_SIZE);
+        s3Client.putObject(TEST_BUCKET, expectedKey, new ByteArrayInputStream(largeObjectBytes), metadata);
+
+        api.failAfter("GetObject", TRANSFERS_BEFORE_FAILURE);
+
+        try {
+            assertThrows(SdkClientException.class, () -> s3Service.download(TEST_BUCKET, expectedKey, downloaded));
+        } finally {
+            api.failAfter("GetObject", Long.MAX_VALUE);
+        }
+
+        // The ranges that made it are kept
+        assertEquals(LARGE_OBJECT_SIZE, Files.size(downloaded));
+        assertEquals(1, this.journals());
+
+        long gets = api.requestCount("GetObject");
+        DownloadResult result = s3Service.download(TEST_BUCKET, expectedKey, downloaded);
+
+        assertEquals(gets + 4 - TRANSFERS_BEFORE_FAILURE, api.requestCount("GetObject"));
+        assertEquals(4 - TRANSFERS_BEFORE_FAILURE, result.rangeLatencies().size());
+        assertArrayEquals(largeObjectBytes, Files.readAllBytes(downloaded));
+        assertEquals(0, this.journals());
+    }
+
+    @Test
+    @Order(5)
+    public void download_changedObjectStartsOver() throws Exception {
+        final String expectedKey = this.bucketFolders.docs() + "/changed-download.bin";
+        final Path downloaded = tempDirectory.resolve("changed-download.bin");
+        final byte[] changedBytes = largeObjectBytes.clone();
+        changedBytes[0]++;
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(LARGE_OBJECT_SIZE);
+        s3Client.putObject(TEST_BUCKET, expectedKey, new ByteArrayInputStream(largeObjectBytes), metadata);
+
+        api.failAfter("GetObject", TRANSFERS_BEFORE_FAILURE);
+
+        try {
+            assertThrows(SdkClientException.class, () -> s3Service.download(TEST_BUCKET, expectedKey, downloaded));
+        } finally {
+            api.failAfter("GetObject", Long.MAX_VALUE);
+        }
+
+        s3Client.putObject(TEST_BUCKET, expectedKey, new ByteArrayInputStream(changedBytes), metadata);
+
+        long gets = api.requestCount("GetObject");
+        DownloadResult result = s3Service.download(TEST_BUCKET, expectedKey, downloaded);
+
+        assertEquals(gets + 4, api.requestCount("GetObject"));
+        assertEquals(4, result.rangeLatencies().size());
+        assertArrayEquals(changedBytes, Files.readAllBytes(downloaded));
+        assertEquals(0, this.journals());
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        api.shutdown();
+    }
+    // endregion
+
+    private int openUploads() {
+        return s3Client.listMultipartUploads(new ListMultipartUploadsRequest(TEST_BUCKET)).getMultipartUploads().size();
+    }
+
+    private long journals() throws IOException {
+        try (Stream<Path> journals = Files.list(Paths.get(JOURNAL_DIRECTORY))) {
+            return journals.count();
+        }
+    }
+}
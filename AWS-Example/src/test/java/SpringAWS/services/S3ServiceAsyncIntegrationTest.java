@@ -0,0 +1,213 @@
+package SpringAWS.services;
+
+import SpringAWS.testing.LocalS3Server;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.util.IOUtils;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the S3Service *Async methods on the SDK v2 Netty client against {@link LocalS3Server}, which tells
+ * how many connections the requests arrived on.
+ */
+@SpringBootTest(properties = {
+        "aws.s3.endpoint=http://localhost:" + S3ServiceAsyncIntegrationTest.PORT,
+        "aws.s3.async-operations=async",
+        "aws.s3.async-client.max-connections=" + S3ServiceAsyncIntegrationTest.MAX_CONNECTIONS,
+        "aws.s3.transfer.copy-threshold=5MB",
+        "aws.s3.transfer.copy-part-size=5MB"
+})
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class S3ServiceAsyncIntegrationTest {
+
+    // region Dependency Injection
+    @Autowired
+    private S3Service s3Service;
+
+    @Autowired
+    private AmazonS3 s3Client;
+
+    @Autowired
+    private AsyncObjectOperations asyncOperations;
+
+    // endregion
+
+    // region Statics & Constants
+    public static LocalS3Server api;
+
+    public static final int PORT = 8006;
+    public static final String TEST_BUCKET = "async-test-bucket";
+    public static final int MAX_CONNECTIONS = 8;
+    private static final int LARGE_OBJECT_SIZE = 12 * 1024 * 1024 + 7;
+
+    private static byte[] largeObjectBytes;
+
+    // endregion
+
+    // region Init Localhost Endpoint
+    @BeforeAll
+    public static void init() {
+        api = new LocalS3Server.Builder()
+                .withPort(PORT)
+                .build();
+
+        api.start();
+
+        largeObjectBytes = new byte[LARGE_OBJECT_SIZE];
+        new Random(1516).nextBytes(largeObjectBytes);
+    }
+
+    @Test
+    @Order(1)
+    public void createBucket_validName() {
+        s3Client.createBucket(TEST_BUCKET);
+
+        assertTrue(s3Client.doesBucketExistV2(TEST_BUCKET));
+        assertInstanceOf(NettyObjectOperations.class, asyncOperations);
+    }
+
+    // endregion
+
+    // region Pipelined Requests
+    @Test
+    @Order(2)
+    public void putAndGet_manyRequestsOverFewConnections() {
+        final String prefix = "pipelined/";
+        final int objectCount = 200;
+        long connections = api.connectionCount();
+        List<CompletableFuture<PutObjectResult>> puts = new ArrayList<>();
+
+        for (int index = 0; index < objectCount; index++) {
+            puts.add(s3Service.putObjectAsync(TEST_BUCKET, prefix + index, ("object " + index).getBytes(),
+                    "text/plain"));
+        }
+
+        CompletableFuture.allOf(puts.toArray(new CompletableFuture[0])).join();
+
+        List<CompletableFuture<byte[]>> gets = new ArrayList<>();
+
+        for (int index = 0; index < objectCount; index++) {
+            gets.add(s3Service.getObjectAsync(TEST_BUCKET, prefix + index));
+        }
+
+        for (int index = 0; index < objectCount; index++) {
+            assertEquals("object " + index, new String(gets.get(index).join()));
+        }
+
+        // 400 requests, and the client never opened more connections than its pool holds
+        assertTrue(api.connectionCount() - connections <= MAX_CONNECTIONS);
+        assertEquals(objectCount, s3Client.listObjectsV2(TEST_BUCKET, prefix).getKeyCount());
+    }
+
+    @Test
+    @Order(2)
+    public void getObjectMetadata_matchesSyncClient() {
+        final String key = "metadata/object.txt";
+        s3Client.putObject(TEST_BUCKET, key, "some content");
+
+        ObjectMetadata expected = s3Client.getObjectMetadata(TEST_BUCKET, key);
+        ObjectMetadata actual = s3Service.getObjectMetadataAsync(TEST_BUCKET, key).join().orElseThrow();
+
+        assertEquals(expected.getContentLength(), actual.getContentLength());
+        assertEquals(expected.getETag(), actual.getETag());
+        assertFalse(s3Service.getObjectMetadataAsync(TEST_BUCKET, "metadata/missing").join().isPresent());
+    }
+
+    @Test
+    @Order(2)
+    public void getObject_missingObjectFailsLikeSyncClient() {
+        CompletionException exception = assertThrows(CompletionException.class,
+                () -> s3Service.getObjectAsync(TEST_BUCKET, "missing/object.txt").join());
+
+        assertInstanceOf(AmazonS3Exception.class, exception.getCause());
+        assertEquals(404, ((AmazonS3Exception) exception.getCause()).getStatusCode());
+    }
+
+    // endregion
+
+    // region Copy & Delete
+    @Test
+    @Order(3)
+    public void copyObject_smallObjectSingleRequest() {
+        final String sourceKey = "copy/source.txt";
+        s3Client.putObject(TEST_BUCKET, sourceKey, "copy me");
+
+        CopyResult result = s3Service.copyObjectAsync(TEST_BUCKET, sourceKey, TEST_BUCKET, "copy/target.txt").join();
+
+        assertEquals(0, result.parts());
+        assertEquals(7, result.bytes());
+        assertEquals("copy me", s3Client.getObjectAsString(TEST_BUCKET, "copy/target.txt"));
+    }
+
+    @Test
+    @Order(3)
+    public void copyObject_largeObjectUsesCopyParts() throws Exception {
+        final String sourceKey = "copy/large-source.bin";
+        s3Service.putObjectAsync(TEST_BUCKET, sourceKey, largeObjectBytes, "application/octet-stream").join();
+
+        CopyResult result = s3Service.copyObjectAsync(TEST_BUCKET, sourceKey, TEST_BUCKET, "copy/large-target.bin")
+                .join();
+
+        assertEquals(3, result.parts());
+        assertArrayEquals(largeObjectBytes, readObject("copy/large-target.bin"));
+    }
+
+    @Test
+    @Order(3)
+    public void getAndCopy_followDeduplicatedReference() {
+        final String expectedKey = "dedup/reference.bin";
+        final String copyBucket = "async-copy-bucket";
+        final byte[] content = Arrays.copyOf(largeObjectBytes, 4096);
+        s3Client.createBucket(copyBucket);
+
+        DedupResult upload = s3Service.putObjectDeduplicated(TEST_BUCKET, expectedKey,
+                new ByteArrayInputStream(content), "application/octet-stream");
+
+        assertArrayEquals(content, s3Service.getObjectAsync(TEST_BUCKET, expectedKey).join());
+
+        // The reference is copied with its blob, which the other bucket didn't store yet
+        s3Service.copyObjectAsync(TEST_BUCKET, expectedKey, copyBucket, expectedKey).join();
+
+        assertTrue(s3Client.doesObjectExist(copyBucket, upload.blobKey()));
+        assertArrayEquals(content, s3Service.getObjectAsync(copyBucket, expectedKey).join());
+    }
+
+    @Test
+    @Order(4)
+    public void deleteObject_removesObject() {
+        s3Service.deleteObjectAsync(TEST_BUCKET, "copy/source.txt").join();
+
+        assertFalse(s3Client.doesObjectExist(TEST_BUCKET, "copy/source.txt"));
+        assertTrue(s3Client.doesObjectExist(TEST_BUCKET, "copy/target.txt"));
+    }
+
+    // endregion
+
+    // region Helpers & Shutdown API
+    private byte[] readObject(String key) throws Exception {
+        try (S3Object object = s3Client.getObject(TEST_BUCKET, key)) {
+            return IOUtils.toByteArray(object.getObjectContent());
+        }
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        api.shutdown();
+    }
+    // endregion
+}
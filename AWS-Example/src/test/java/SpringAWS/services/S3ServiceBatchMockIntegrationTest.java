@@ -0,0 +1,188 @@
+package SpringAWS.services;
+
+import SpringAWS.configs.S3FolderConfig;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.util.IOUtils;
+import io.findify.s3mock.S3Mock;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "aws.s3.endpoint=http://localhost:" + S3ServiceBatchMockIntegrationTest.PORT,
+        "aws.s3.batch.concurrency=16",
+        "aws.s3.batch.max-object-size=64KB"
+})
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class S3ServiceBatchMockIntegrationTest {
+
+    // region Dependency Injection
+    @Autowired
+    private S3Service s3Service;
+
+    @Autowired
+    private AmazonS3 s3Client;
+
+    @Autowired
+    private S3FolderConfig bucketFolders;
+
+    // endregion
+
+    // region Statics & Constants
+    public static S3Mock api;
+
+    public static final int PORT = 8009;
+    public static final String TEST_BUCKET = "batch-test-bucket";
+    private static final int OBJECT_COUNT = 200;
+
+    // endregion
+
+    // region Init Localhost Endpoint
+    @BeforeAll
+    public static void init() {
+        api = new S3Mock.Builder()
+                .withPort(PORT)
+                .withInMemoryBackend()
+                .build();
+
+        api.start();
+    }
+
+    @Test
+    @Order(1)
+    public void createBucket_validName() {
+        s3Client.createBucket(TEST_BUCKET);
+
+        assertTrue(s3Client.doesBucketExistV2(TEST_BUCKET));
+    }
+
+    // endregion
+
+    // region Batched Uploads
+    @Test
+    @Order(2)
+    public void uploadSmallObjects_allObjects() throws Exception {
+        final String prefix = this.bucketFolders.images() + "/thumbnails/";
+        List<SmallObject> objects = this.thumbnails(prefix);
+
+        BatchUploadResult result = s3Service.uploadSmallObjects(TEST_BUCKET, objects);
+
+        assertEquals(OBJECT_COUNT, result.uploaded());
+        assertTrue(result.failed().isEmpty());
+        assertEquals(objects.stream().mapToLong(object -> object.content().length).sum(), result.bytes());
+        assertEquals(OBJECT_COUNT, s3Service.listObjects(TEST_BUCKET, prefix).count());
+        assertArrayEquals(objects.get(42).content(), this.readObject(objects.get(42).key()));
+        assertEquals("image/jpeg", s3Client.getObjectMetadata(TEST_BUCKET, objects.get(7).key()).getContentType());
+    }
+
+    @Test
+    @Order(2)
+    public void submitSmallObject_completesFuture() throws Exception {
+        final String expectedKey = this.bucketFolders.images() + "/submitted.jpg";
+        final byte[] expectedBytes = "submitted".getBytes(StandardCharsets.UTF_8);
+
+        CompletableFuture<PutObjectResult> future = s3Service.submitSmallObject(TEST_BUCKET,
+                new SmallObject(expectedKey, expectedBytes, "image/jpeg"));
+        future.get();
+
+        assertArrayEquals(expectedBytes, this.readObject(expectedKey));
+    }
+
+    @Test
+    @Order(3)
+    public void uploadSmallObjects_reportsFailuresPerKey() {
+        List<SmallObject> objects = this.thumbnails(this.bucketFolders.images() + "/missing-bucket/");
+
+        BatchUploadResult result = s3Service.uploadSmallObjects("batch-missing-bucket", objects.subList(0, 5));
+
+        assertEquals(0, result.uploaded());
+        assertEquals(5, result.failed().size());
+        assertTrue(result.failed().containsKey(objects.get(3).key()));
+    }
+
+    @Test
+    @Order(3)
+    public void uploadSmallObjects_tooLarge() {
+        List<SmallObject> objects = List.of(new SmallObject(this.bucketFolders.images() + "/large.jpg",
+                new byte[64 * 1024 + 1], "image/jpeg"));
+
+        assertThrows(IllegalArgumentException.class, () -> s3Service.uploadSmallObjects(TEST_BUCKET, objects));
+        assertFalse(s3Service.doesObjectExist(TEST_BUCKET, this.bucketFolders.images() + "/large.jpg"));
+    }
+
+    // endregion
+
+    // region Packs
+    @Test
+    @Order(4)
+    public void pack_membersReadWithRanges() {
+        final String packKey = this.bucketFolders.images() + "/thumbnails.pack";
+        List<SmallObject> objects = this.thumbnails("");
+
+        PackIndex index = s3Service.pack(TEST_BUCKET, packKey, objects);
+
+        assertEquals(OBJECT_COUNT, index.members().size());
+        assertEquals(index.bytes(), s3Client.getObjectMetadata(TEST_BUCKET, packKey).getContentLength());
+        assertTrue(s3Service.doesObjectExist(TEST_BUCKET, packKey + ObjectPacker.INDEX_SUFFIX));
+
+        for (SmallObject object : List.of(objects.get(0), objects.get(99), objects.get(OBJECT_COUNT - 1))) {
+            assertArrayEquals(object.content(), s3Service.readPacked(TEST_BUCKET, packKey, object.key()).orElseThrow());
+        }
+
+        assertTrue(s3Service.readPacked(TEST_BUCKET, packKey, "missing.jpg").isEmpty());
+    }
+
+    @Test
+    @Order(5)
+    public void readPacked_indexLoadedFromBucket() {
+        final String packKey = this.bucketFolders.images() + "/thumbnails.pack";
+        List<SmallObject> objects = this.thumbnails("");
+
+        // Another instance only has the index object to go by
+        s3Service.objectPacker().evict(TEST_BUCKET, packKey);
+
+        assertArrayEquals(objects.get(123).content(),
+                s3Service.readPacked(TEST_BUCKET, packKey, objects.get(123).key()).orElseThrow());
+    }
+
+    @Test
+    @Order(5)
+    public void pack_duplicateMember() {
+        final String packKey = this.bucketFolders.images() + "/duplicates.pack";
+        SmallObject object = new SmallObject("a.jpg", new byte[]{1}, "image/jpeg");
+
+        assertThrows(IllegalArgumentException.class, () -> s3Service.pack(TEST_BUCKET, packKey,
+                List.of(object, object)));
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        api.shutdown();
+    }
+    // endregion
+
+    private List<SmallObject> thumbnails(String prefix) {
+        return IntStream.range(0, OBJECT_COUNT)
+                .mapToObj(index -> new SmallObject(prefix + "thumbnail-" + index + ".jpg",
+                        ("thumbnail " + index + " ").repeat(index % 17 + 1).getBytes(StandardCharsets.UTF_8),
+                        "image/jpeg"))
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    private byte[] readObject(String key) throws Exception {
+        try (S3Object object = s3Client.getObject(TEST_BUCKET, key)) {
+            return IOUtils.toByteArray(object.getObjectContent());
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package SpringAWS.services;
+
+import SpringAWS.configs.S3FolderConfig;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.util.IOUtils;
+import io.findify.s3mock.S3Mock;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "aws.s3.endpoint=http://localhost:" + S3ServiceCompressionMockIntegrationTest.PORT,
+        "aws.s3.compression.enabled=true",
+        "aws.s3.compression.folders=docs",
+        "aws.s3.compression.codec=zstd",
+        // Only taken by putObjectDeduplicated, the other uploads here store their content under the key
+        "aws.s3.dedup.enabled=true",
+        "aws.s3.dedup.folders=docs",
+        "aws.s3.transfer.part-size=5MB",
+        "aws.s3.transfer.range-size=5MB",
+        "aws.s3.transfer.single-stream-threshold=1MB"
+})
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class S3ServiceCompressionMockIntegrationTest {
+
+    // region Dependency Injection
+    @Autowired
+    private S3Service s3Service;
+
+    @Autowired
+    private AmazonS3 s3Client;
+
+    @Autowired
+    private S3FolderConfig bucketFolders;
+
+    // endregion
+
+    // region Statics & Constants
+    public static S3Mock api;
+
+    public static final int PORT = 8007;
+    public static final String TEST_BUCKET = "compression-test-bucket";
+
+    @TempDir
+    public static Path tempDirectory;
+    private static byte[] textBytes;
+
+    // endregion
+
+    // region Init Localhost Endpoint
+    @BeforeAll
+    public static void init() {
+        api = new S3Mock.Builder()
+                .withPort(PORT)
+                .withInMemoryBackend()
+                .build();
+
+        api.start();
+
+        // Spans several parts and ranges uncompressed, so both the multipart and the ranged path are exercised
+        StringBuilder text = new StringBuilder();
+
+        for (int line = 0; text.length() < 12 * 1024 * 1024; line++) {
+            text.append("line ").append(line).append(": the quick brown fox jumps over the lazy dog\n");
+        }
+
+        textBytes = text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    @Order(1)
+    public void createBucket_validName() {
+        s3Client.createBucket(TEST_BUCKET);
+
+        assertTrue(s3Client.doesBucketExistV2(TEST_BUCKET));
+    }
+
+    // endregion
+
+    // region Compressed Uploads
+    @Test
+    @Order(2)
+    public void putObjectStream_compressesConfiguredFolder() throws Exception {
+        final String expectedKey = this.bucketFolders.docs() + "/stream.txt";
+
+        s3Service.putObjectStream(TEST_BUCKET, expectedKey, new ByteArrayInputStream(textBytes), textBytes.length,
+                "text/plain");
+
+        ObjectMetadata metadata = s3Client.getObjectMetadata(TEST_BUCKET, expectedKey);
+        assertEquals("zstd", metadata.getUserMetaDataOf(ObjectCompressor.CODEC_METADATA));
+        assertEquals(Long.toString(textBytes.length),
+                metadata.getUserMetaDataOf(ObjectCompressor.UNCOMPRESSED_LENGTH_METADATA));
+        assertTrue(metadata.getContentLength() < textBytes.length / 10);
+        assertEquals("zstd", metadata.getContentEncoding());
+        assertEquals("text/plain", metadata.getContentType());
+    }
+
+    @Test
+    @Order(2)
+    public void uploadMultipart_fromFileCompressed() throws Exception {
+        final File expectedFile = tempDirectory.resolve("large-text.txt").toFile();
+        final String expectedKey = this.bucketFolders.docs() + "/large-text.txt";
+        Files.write(expectedFile.toPath(), textBytes);
+
+        s3Service.uploadMultipart(TEST_BUCKET, expectedKey, expectedFile, new ObjectMetadata());
+
+        ObjectMetadata metadata = s3Client.getObjectMetadata(TEST_BUCKET, expectedKey);
+        assertEquals("zstd", metadata.getUserMetaDataOf(ObjectCompressor.CODEC_METADATA));
+        assertTrue(metadata.getContentLength() < textBytes.length / 10);
+    }
+
+    @Test
+    @Order(2)
+    public void putObjectStream_skipsOtherFolders() throws Exception {
+        final String expectedKey = this.bucketFolders.images() + "/plain.txt";
+
+        s3Service.putObjectStream(TEST_BUCKET, expectedKey, new ByteArrayInputStream(textBytes), textBytes.length,
+                "text/plain");
+
+        ObjectMetadata metadata = s3Client.getObjectMetadata(TEST_BUCKET, expectedKey);
+        assertNull(metadata.getUserMetaDataOf(ObjectCompressor.CODEC_METADATA));
+        assertEquals(textBytes.length, metadata.getContentLength());
+    }
+
+    @Test
+    @Order(2)
+    public void putObjectStream_skipsCompressedContentTypes() throws Exception {
+        final String expectedKey = this.bucketFolders.docs() + "/picture.png";
+        final byte[] expectedBytes = "not really a png".getBytes(StandardCharsets.UTF_8);
+
+        s3Service.putObjectStream(TEST_BUCKET, expectedKey, new ByteArrayInputStream(expectedBytes),
+                expectedBytes.length, "image/png");
+
+        ObjectMetadata metadata = s3Client.getObjectMetadata(TEST_BUCKET, expectedKey);
+        assertNull(metadata.getUserMetaDataOf(ObjectCompressor.CODEC_METADATA));
+        assertArrayEquals(expectedBytes, this.readStoredObject(expectedKey));
+    }
+
+    @Test
+    @Order(2)
+    public void putObjectDeduplicated_compressesBlob() throws Exception {
+        final String expectedKey = this.bucketFolders.docs() + "/deduplicated.txt";
+        final Path target = tempDirectory.resolve("downloaded-deduplicated.txt");
+
+        DedupResult result = s3Service.putObjectDeduplicated(TEST_BUCKET, expectedKey,
+                new ByteArrayInputStream(textBytes), "text/plain");
+
+        ObjectMetadata blob = s3Client.getObjectMetadata(TEST_BUCKET, result.blobKey());
+        assertEquals("zstd", blob.getUserMetaDataOf(ObjectCompressor.CODEC_METADATA));
+        assertTrue(blob.getContentLength() < textBytes.length / 10);
+        assertEquals(textBytes.length, s3Service.download(TEST_BUCKET, expectedKey, target).bytes());
+        assertArrayEquals(textBytes, Files.readAllBytes(target));
+    }
+
+    // endregion
+
+    // region Decompressing Reads
+    @Test
+    @Order(3)
+    public void download_decompressesObject() throws Exception {
+        final String expectedKey = this.bucketFolders.docs() + "/large-text.txt";
+        final Path target = tempDirectory.resolve("downloaded-large-text.txt");
+
+        DownloadResult result = s3Service.download(TEST_BUCKET, expectedKey, target);
+
+        assertArrayEquals(textBytes, Files.readAllBytes(target));
+        assertEquals(textBytes.length, result.bytes());
+        assertFalse(Files.exists(tempDirectory.resolve("downloaded-large-text.txt.compressed")));
+    }
+
+    @Test
+    @Order(3)
+    public void openCachedObject_decompressesObject() throws Exception {
+        final String expectedKey = this.bucketFolders.docs() + "/stream.txt";
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+        try (CachedObject cached = s3Service.openCachedObject(TEST_BUCKET, expectedKey)) {
+            cached.transferTo(Channels.newChannel(content));
+
+            assertEquals(textBytes.length, cached.contentLength());
+        }
+
+        assertArrayEquals(textBytes, content.toByteArray());
+    }
+
+    @Test
+    @Order(3)
+    public void getObjectAsync_decompressesObject() {
+        final String expectedKey = this.bucketFolders.docs() + "/stream.txt";
+
+        assertArrayEquals(textBytes, s3Service.getObjectAsync(TEST_BUCKET, expectedKey).join());
+    }
+
+    @Test
+    @Order(3)
+    public void decompress_uncompressedObjectUnchanged() throws Exception {
+        final String expectedKey = this.bucketFolders.images() + "/plain.txt";
+
+        try (S3Object object = s3Client.getObject(TEST_BUCKET, expectedKey)) {
+            byte[] content = IOUtils.toByteArray(ObjectCompressor.decompress(object.getObjectContent(),
+                    object.getObjectMetadata()));
+
+            assertArrayEquals(textBytes, content);
+        }
+    }
+
+    // endregion
+
+    // region Codecs
+    @Test
+    @Order(4)
+    public void codecs_roundTripEveryLevel() throws Exception {
+        final byte[] expectedBytes = Arrays.copyOf(textBytes, 1024 * 1024);
+
+        for (CompressionCodec codec : CompressionCodec.values()) {
+            for (int level : new int[]{codec.minLevel(), codec.defaultLevel(), codec.maxLevel()}) {
+                byte[] compressed;
+
+                try (CompressingInputStream stream = new CompressingInputStream(new ByteArrayInputStream(expectedBytes),
+                        codec, level)) {
+                    compressed = IOUtils.toByteArray(stream);
+                }
+
+                byte[] restored = IOUtils.toByteArray(codec.decompress(new ByteArrayInputStream(compressed)));
+
+                assertArrayEquals(expectedBytes, restored, codec.id() + " level " + level);
+            }
+        }
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        api.shutdown();
+    }
+    // endregion
+
+    private byte[] readStoredObject(String key) throws Exception {
+        try (S3Object object = s3Client.getObject(TEST_BUCKET, key)) {
+            return IOUtils.toByteArray(object.getObjectContent());
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package SpringAWS.services;
+
+import SpringAWS.configs.S3FolderConfig;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.HttpMethod;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import io.findify.s3mock.S3Mock;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "aws.s3.endpoint=http://localhost:" + S3ServiceDedupMockIntegrationTest.PORT,
+        "aws.s3.dedup.enabled=true",
+        "aws.s3.dedup.folders=images",
+        "aws.s3.dedup.sweep-grace=0s",
+        "aws.s3.transfer.range-size=5MB",
+        "aws.s3.transfer.single-stream-threshold=1MB",
+        // Every cached read asks S3 whether the reference changed
+        "aws.s3.cache.disk.revalidate-after=0s",
+        "aws.s3.cache.disk.directory=target/dedup-object-cache"
+})
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class S3ServiceDedupMockIntegrationTest {
+
+    // region Dependency Injection
+    @Autowired
+    private S3Service s3Service;
+
+    @Autowired
+    private AmazonS3 s3Client;
+
+    @Autowired
+    private S3FolderConfig bucketFolders;
+
+    // endregion
+
+    // region Statics & Constants
+    public static S3Mock api;
+
+    public static final int PORT = 8008;
+    public static final String TEST_BUCKET = "dedup-test-bucket";
+    public static final String COPY_BUCKET = "dedup-copy-bucket";
+    private static final int IMAGE_SIZE = 6 * 1024 * 1024 + 17;
+
+    @TempDir
+    public static Path tempDirectory;
+    private static byte[] imageBytes;
+    private static String blobKey;
+
+    // endregion
+
+    // region Init Localhost Endpoint
+    @BeforeAll
+    public static void init() {
+        api = new S3Mock.Builder()
+                .withPort(PORT)
+                .withInMemoryBackend()
+                .build();
+
+        api.start();
+
+        imageBytes = new byte[IMAGE_SIZE];
+        new Random(1416).nextBytes(imageBytes);
+    }
+
+    @Test
+    @Order(1)
+    public void createBucket_validName() {
+        s3Client.createBucket(TEST_BUCKET);
+
+        assertTrue(s3Client.doesBucketExistV2(TEST_BUCKET));
+    }
+
+    // endregion
+
+    // region Deduplicated Uploads
+    @Test
+    @Order(2)
+    public void putObjectDeduplicated_newContentTransfersBlob() {
+        final String expectedKey = this.bucketFolders.images() + "/the-rock.jpg";
+
+        DedupResult result = s3Service.putObjectDeduplicated(TEST_BUCKET, expectedKey,
+                new ByteArrayInputStream(imageBytes), "image/jpeg");
+        blobKey = result.blobKey();
+
+        assertTrue(result.transferred());
+        assertEquals(IMAGE_SIZE, result.bytes());
+        assertTrue(blobKey.endsWith("/" + result.sha256()));
+        assertEquals(result.sha256(), result.eTag());
+        assertEquals(IMAGE_SIZE, s3Client.getObjectMetadata(TEST_BUCKET, blobKey).getContentLength());
+
+        ObjectMetadata reference = s3Client.getObjectMetadata(TEST_BUCKET, expectedKey);
+        assertEquals(0, reference.getContentLength());
+        assertEquals(blobKey, reference.getUserMetaDataOf(ContentDeduplicator.BLOB_METADATA));
+        assertEquals("image/jpeg", reference.getContentType());
+    }
+
+    @Test
+    @Order(3)
+    public void putObjectDeduplicated_repeatedContentSkipsTransfer() throws Exception {
+        final File expectedFile = tempDirectory.resolve("the-rock-copy.jpg").toFile();
+        final String expectedKey = this.bucketFolders.images() + "/the-rock-copy.jpg";
+        Files.write(expectedFile.toPath(), imageBytes);
+        long savedBefore = s3Service.dedupStats().get("bytesSaved");
+
+        DedupResult fromStream = s3Service.putObjectDeduplicated(TEST_BUCKET,
+                this.bucketFolders.images() + "/the-rock.jpg", new ByteArrayInputStream(imageBytes), "image/jpeg");
+        DedupResult fromFile = s3Service.putObjectDeduplicated(TEST_BUCKET, expectedKey, expectedFile, "image/jpeg");
+
+        assertFalse(fromStream.transferred());
+        assertFalse(fromFile.transferred());
+        assertEquals(blobKey, fromStream.blobKey());
+        assertEquals(blobKey, fromFile.blobKey());
+        assertEquals(savedBefore + 2L * IMAGE_SIZE, s3Service.dedupStats().get("bytesSaved"));
+        assertEquals(1, s3Service.listObjects(TEST_BUCKET, "blobs/").count());
+    }
+
+    @Test
+    @Order(4)
+    public void putObjectDeduplicated_checksBlobInBucket() {
+        final String expectedKey = this.bucketFolders.images() + "/the-rock-again.jpg";
+        Map<String, Long> statsBefore = s3Service.dedupStats();
+
+        DedupResult result = s3Service.putObjectDeduplicated(TEST_BUCKET, expectedKey,
+                new ByteArrayInputStream(imageBytes), "image/jpeg");
+
+        assertFalse(result.transferred());
+        assertEquals(statsBefore.get("hits") + 1, s3Service.dedupStats().get("hits"));
+    }
+
+    @Test
+    @Order(4)
+    public void deduplicates_configuredFoldersOnly() {
+        assertTrue(s3Service.deduplicates(this.bucketFolders.images() + "/a.jpg"));
+        assertFalse(s3Service.deduplicates(this.bucketFolders.docs() + "/a.pdf"));
+    }
+
+    // endregion
+
+    // region Reading References
+    @Test
+    @Order(5)
+    public void download_followsReference() throws Exception {
+        final String expectedKey = this.bucketFolders.images() + "/the-rock-copy.jpg";
+        final Path target = tempDirectory.resolve("downloaded-the-rock.jpg");
+
+        DownloadResult result = s3Service.download(TEST_BUCKET, expectedKey, target);
+
+        assertEquals(IMAGE_SIZE, result.bytes());
+        assertArrayEquals(imageBytes, Files.readAllBytes(target));
+    }
+
+    @Test
+    @Order(5)
+    public void openCachedObject_followsReference() throws Exception {
+        final String expectedKey = this.bucketFolders.images() + "/the-rock.jpg";
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+        try (CachedObject cached = s3Service.openCachedObject(TEST_BUCKET, expectedKey)) {
+            cached.transferTo(Channels.newChannel(content));
+
+            assertEquals("image/jpeg", cached.contentType());
+        }
+
+        assertArrayEquals(imageBytes, content.toByteArray());
+    }
+
+    @Test
+    @Order(5)
+    public void getObjectMetadata_reportsContentLength() {
+        final String expectedKey = this.bucketFolders.images() + "/the-rock.jpg";
+        final String expectedETag = blobKey.substring(blobKey.lastIndexOf('/') + 1);
+
+        ObjectMetadata metadata = s3Service.getObjectMetadata(TEST_BUCKET, expectedKey).orElseThrow();
+        assertEquals(IMAGE_SIZE, metadata.getContentLength());
+        assertEquals(expectedETag, metadata.getETag());
+        assertEquals(IMAGE_SIZE, s3Service.getObjectMetadataAsync(TEST_BUCKET, expectedKey).join().orElseThrow()
+                .getContentLength());
+    }
+
+    @Test
+    @Order(5)
+    public void getObjectAsync_followsReference() {
+        final String expectedKey = this.bucketFolders.images() + "/the-rock.jpg";
+
+        assertArrayEquals(imageBytes, s3Service.getObjectAsync(TEST_BUCKET, expectedKey).join());
+    }
+
+    @Test
+    @Order(5)
+    public void presignedUrls_getSignedForBlob() {
+        final String expectedKey = this.bucketFolders.images() + "/the-rock-copy.jpg";
+        final String regularKey = this.bucketFolders.docs() + "/regular.pdf";
+
+        List<PresignedUrl> urls = s3Service.presignedUrls(TEST_BUCKET, List.of(expectedKey, regularKey),
+                HttpMethod.GET, null);
+
+        assertEquals(expectedKey, urls.get(0).key());
+        assertTrue(urls.get(0).url().getPath().endsWith("/" + blobKey), urls.get(0).url()::toString);
+        assertTrue(urls.get(1).url().getPath().endsWith("/" + regularKey), urls.get(1).url()::toString);
+    }
+
+    // endregion
+
+    // region Deleted & Unreferenced Blobs
+    @Test
+    @Order(6)
+    public void putObjectDeduplicated_blobDeletedTransfersAgain() {
+        final String expectedKey = this.bucketFolders.images() + "/the-rock.jpg";
+
+        s3Service.deleteAll(TEST_BUCKET, "blobs/");
+        DedupResult result = s3Service.putObjectDeduplicated(TEST_BUCKET, expectedKey,
+                new ByteArrayInputStream(imageBytes), "image/jpeg");
+
+        assertTrue(result.transferred());
+        assertEquals(IMAGE_SIZE, s3Client.getObjectMetadata(TEST_BUCKET, result.blobKey()).getContentLength());
+    }
+
+    @Test
+    @Order(7)
+    public void sweepBlobs_deletesUnreferencedBlobsOnly() {
+        final String expectedKey = this.bucketFolders.images() + "/replaced.jpg";
+        final byte[] replacedBytes = Arrays.copyOf(imageBytes, 1024);
+
+        String replacedBlob = s3Service.putObjectDeduplicated(TEST_BUCKET, expectedKey,
+                new ByteArrayInputStream(replacedBytes), "image/jpeg").blobKey();
+        s3Service.putObjectDeduplicated(TEST_BUCKET, expectedKey, new ByteArrayInputStream(imageBytes), "image/jpeg");
+
+        SweepResult result = s3Service.sweepBlobs(TEST_BUCKET);
+
+        assertEquals(2, result.blobs());
+        assertEquals(1, result.referenced());
+        assertEquals(1, result.deleted());
+        assertFalse(s3Client.doesObjectExist(TEST_BUCKET, replacedBlob));
+        assertTrue(s3Client.doesObjectExist(TEST_BUCKET, blobKey));
+    }
+
+    // endregion
+
+    // region Overwritten & Copied References
+    @Test
+    @Order(8)
+    public void openCachedObject_overwrittenReferenceServesNewContent() throws Exception {
+        final String expectedKey = this.bucketFolders.images() + "/overwritten.jpg";
+        final String otherKey = this.bucketFolders.images() + "/other.jpg";
+        final byte[] newBytes = Arrays.copyOf(imageBytes, 2048);
+
+        DedupResult first = s3Service.putObjectDeduplicated(TEST_BUCKET, expectedKey,
+                new ByteArrayInputStream(imageBytes), "image/jpeg");
+        DedupResult second = s3Service.putObjectDeduplicated(TEST_BUCKET, otherKey,
+                new ByteArrayInputStream(newBytes), "image/jpeg");
+
+        assertNotEquals(first.eTag(), second.eTag());
+
+        try (CachedObject cached = s3Service.openCachedObject(TEST_BUCKET, expectedKey)) {
+            assertEquals(first.eTag(), cached.eTag());
+        }
+
+        // Overwritten the way another instance would, past this one's invalidation: an empty reference again
+        ObjectMetadata reference = s3Client.getObjectMetadata(TEST_BUCKET, otherKey);
+        ObjectMetadata overwrite = new ObjectMetadata();
+        overwrite.setContentLength(0);
+        overwrite.setContentType("image/jpeg");
+        overwrite.setUserMetadata(reference.getUserMetadata());
+        s3Client.putObject(new PutObjectRequest(TEST_BUCKET, expectedKey, new ByteArrayInputStream(new byte[0]),
+                overwrite));
+
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+        try (CachedObject cached = s3Service.openCachedObject(TEST_BUCKET, expectedKey)) {
+            cached.transferTo(Channels.newChannel(content));
+
+            assertEquals(second.eTag(), cached.eTag());
+        }
+
+        assertArrayEquals(newBytes, content.toByteArray());
+    }
+
+    @Test
+    @Order(8)
+    public void copyAll_otherBucketCopiesBlobs() throws Exception {
+        final String sourcePrefix = this.bucketFolders.images() + "/";
+        final String expectedKey = sourcePrefix + "the-rock.jpg";
+        s3Client.createBucket(COPY_BUCKET);
+
+        CopyJob job = s3Service.copyAll(TEST_BUCKET, sourcePrefix, COPY_BUCKET, sourcePrefix, false);
+
+        while (!job.finished()) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(CopyJob.State.COMPLETED, job.state(), job.progress()::toString);
+        assertTrue(s3Client.doesObjectExist(COPY_BUCKET, blobKey));
+        assertEquals(blobKey, s3Client.getObjectMetadata(COPY_BUCKET, expectedKey)
+                .getUserMetaDataOf(ContentDeduplicator.BLOB_METADATA));
+
+        DownloadResult result = s3Service.download(COPY_BUCKET, expectedKey, tempDirectory.resolve("copied.jpg"));
+
+        assertEquals(IMAGE_SIZE, result.bytes());
+        assertArrayEquals(imageBytes, Files.readAllBytes(tempDirectory.resolve("copied.jpg")));
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        api.shutdown();
+    }
+    // endregion
+}
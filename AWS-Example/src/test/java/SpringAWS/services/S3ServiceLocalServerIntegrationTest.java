@@ -0,0 +1,638 @@
+package SpringAWS.services;
+
+import SpringAWS.configs.S3FolderConfig;
+import SpringAWS.testing.LocalS3Server;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.*;
+import com.amazonaws.util.IOUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs against {@link LocalS3Server}, which unlike S3Mock supports versioning, continuation tokens and
+ * conditional GETs, so these paths are covered without real AWS.
+ */
+@SpringBootTest(properties = {
+        "aws.s3.endpoint=http://localhost:" + S3ServiceLocalServerIntegrationTest.PORT,
+        "aws.s3.transfer.part-size=5MB",
+        "aws.s3.transfer.range-size=5MB",
+        "aws.s3.transfer.single-stream-threshold=1MB",
+        "aws.s3.transfer.copy-threshold=5MB",
+        "aws.s3.transfer.copy-part-size=5MB",
+        "aws.s3.dedup.sweep-grace=0s",
+        "aws.s3.lifecycle.rules[0].bucket=" + S3ServiceLocalServerIntegrationTest.TEST_BUCKET,
+        "aws.s3.lifecycle.rules[0].id=expire-logs",
+        "aws.s3.lifecycle.rules[0].prefix=logs/",
+        "aws.s3.lifecycle.rules[0].expiration-days=30",
+        "aws.s3.lifecycle.rules[1].bucket=" + S3ServiceLocalServerIntegrationTest.TEST_BUCKET,
+        "aws.s3.lifecycle.rules[1].id=archive-reports",
+        "aws.s3.lifecycle.rules[1].prefix=reports/",
+        "aws.s3.lifecycle.rules[1].transitions[0].days=0",
+        "aws.s3.lifecycle.rules[1].transitions[0].storage-class=STANDARD_IA"
+})
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class S3ServiceLocalServerIntegrationTest {
+
+    // region Dependency Injection
+    @Autowired
+    private S3Service s3Service;
+
+    @Autowired
+    private AmazonS3 s3Client;
+
+    @Autowired
+    private S3FolderConfig bucketFolders;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    // endregion
+
+    // region Statics & Constants
+    public static LocalS3Server api;
+
+    public static final int PORT = 8011;
+    public static final String TEST_BUCKET = "local-test-bucket";
+    public static final String VERSIONING_BUCKET = "local-versioning-bucket";
+    private static final int LARGE_OBJECT_SIZE = 12 * 1024 * 1024 + 123;
+    // More than two listing pages of 1000
+    private static final int MANY_OBJECTS = 2345;
+    private static final int CONCURRENT_READS = 20;
+
+    @TempDir
+    public static Path tempDirectory;
+    private static byte[] largeObjectBytes;
+    private static String firstVersion;
+    private static String secondVersion;
+
+    // endregion
+
+    // region Init Localhost Endpoint
+    @BeforeAll
+    public static void init() {
+        api = new LocalS3Server.Builder()
+                .withPort(PORT)
+                .build();
+
+        api.start();
+
+        largeObjectBytes = new byte[LARGE_OBJECT_SIZE];
+        new Random(1416).nextBytes(largeObjectBytes);
+    }
+
+    @Test
+    @Order(1)
+    public void createBucket_validName() {
+        s3Client.createBucket(TEST_BUCKET);
+
+        assertTrue(s3Client.doesBucketExistV2(TEST_BUCKET));
+        assertFalse(s3Client.doesBucketExistV2("missing-bucket"));
+    }
+
+    @Test
+    @Order(1)
+    public void createBucket_createVersioningBucket() {
+        s3Client.createBucket(VERSIONING_BUCKET);
+        s3Client.setBucketVersioningConfiguration(new SetBucketVersioningConfigurationRequest(VERSIONING_BUCKET,
+                new BucketVersioningConfiguration(BucketVersioningConfiguration.ENABLED)));
+
+        assertEquals(BucketVersioningConfiguration.ENABLED,
+                s3Client.getBucketVersioningConfiguration(VERSIONING_BUCKET).getStatus());
+    }
+
+    // endregion
+
+    // region Objects
+    @Test
+    @Order(2)
+    public void putObject_metadataRoundTrip() throws Exception {
+        final String expectedKey = this.bucketFolders.docs() + "/notes with spaces+plus.txt";
+        final byte[] expectedBytes = "local notes".getBytes(StandardCharsets.UTF_8);
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentType("text/plain");
+        metadata.setContentLength(expectedBytes.length);
+        metadata.addUserMetadata("author", "yoni");
+
+        PutObjectResult result = s3Client.putObject(TEST_BUCKET, expectedKey, new ByteArrayInputStream(expectedBytes),
+                metadata);
+        ObjectMetadata actual = s3Client.getObjectMetadata(TEST_BUCKET, expectedKey);
+
+        assertNull(result.getVersionId());
+        assertEquals(result.getETag(), actual.getETag());
+        assertEquals(expectedBytes.length, actual.getContentLength());
+        assertEquals("text/plain", actual.getContentType());
+        assertEquals("yoni", actual.getUserMetaDataOf("author"));
+        assertArrayEquals(expectedBytes, this.readObject(TEST_BUCKET, expectedKey));
+    }
+
+    @Test
+    @Order(2)
+    public void getObject_range() throws Exception {
+        final String expectedKey = this.bucketFolders.docs() + "/ranged.bin";
+        s3Client.putObject(TEST_BUCKET, expectedKey, new ByteArrayInputStream(largeObjectBytes, 0, 4096),
+                this.lengthOf(4096));
+
+        try (S3Object object = s3Client.getObject(new GetObjectRequest(TEST_BUCKET, expectedKey).withRange(100, 199))) {
+            assertArrayEquals(Arrays.copyOfRange(largeObjectBytes, 100, 200),
+                    IOUtils.toByteArray(object.getObjectContent()));
+            assertEquals(100, object.getObjectMetadata().getContentLength());
+        }
+
+        try (S3Object object = s3Client.getObject(new GetObjectRequest(TEST_BUCKET, expectedKey).withRange(4000))) {
+            assertArrayEquals(Arrays.copyOfRange(largeObjectBytes, 4000, 4096),
+                    IOUtils.toByteArray(object.getObjectContent()));
+        }
+
+        assertThrows(AmazonS3Exception.class,
+                () -> s3Client.getObject(new GetObjectRequest(TEST_BUCKET, expectedKey).withRange(5000, 6000)));
+    }
+
+    @Test
+    @Order(2)
+    public void getObject_abortedReadCountsBytesRead() throws Exception {
+        final String expectedKey = this.bucketFolders.docs() + "/aborted.bin";
+        final int expectedRead = 1000;
+        s3Client.putObject(TEST_BUCKET, expectedKey, new ByteArrayInputStream(largeObjectBytes),
+                this.lengthOf(LARGE_OBJECT_SIZE));
+        Counter received = registry.counter("s3.bytes.received",
+                "client", "s3client", "operation", "GetObject", "bucket", TEST_BUCKET);
+        double before = received.count();
+
+        try (S3Object object = s3Client.getObject(TEST_BUCKET, expectedKey)) {
+            assertEquals(expectedRead, object.getObjectContent().readNBytes(expectedRead).length);
+            object.getObjectContent().abort();
+        }
+
+        // Not the announced length of the object
+        assertEquals(expectedRead, received.count() - before);
+    }
+
+    @Test
+    @Order(2)
+    public void getObject_matchingETagConstraint() {
+        final String expectedKey = this.bucketFolders.docs() + "/conditional.txt";
+        s3Client.putObject(TEST_BUCKET, expectedKey, "conditional");
+
+        assertNull(s3Client.getObject(new GetObjectRequest(TEST_BUCKET, expectedKey)
+                .withMatchingETagConstraint("\"0123456789abcdef0123456789abcdef\"")));
+        assertNotNull(s3Client.getObject(new GetObjectRequest(TEST_BUCKET, expectedKey)
+                .withMatchingETagConstraint(s3Client.getObjectMetadata(TEST_BUCKET, expectedKey).getETag())));
+    }
+
+    @Test
+    @Order(2)
+    public void getObject_missingKey() {
+        AmazonS3Exception exception = assertThrows(AmazonS3Exception.class,
+                () -> s3Client.getObject(TEST_BUCKET, "missing/key"));
+
+        assertEquals("NoSuchKey", exception.getErrorCode());
+        assertTrue(s3Service.getObjectMetadata(TEST_BUCKET, "missing/key").isEmpty());
+    }
+
+    // endregion
+
+    // region Coalesced Reads
+    @Test
+    @Order(2)
+    public void openCachedObject_concurrentReadsShareOneGet() throws Exception {
+        final String expectedKey = this.bucketFolders.images() + "/popular.jpg";
+        s3Client.putObject(TEST_BUCKET, expectedKey, "popular");
+        long gets = api.requestCount("GetObject");
+        long coalesced = s3Service.diskCacheStats().get("coalesced");
+
+        // Keeps the first GET in flight until every reader asked for the object
+        api.stallNext(1, Duration.ofMillis(500));
+
+        List<String> contents = concurrently(() -> this.readCached(expectedKey));
+
+        assertEquals(Collections.nCopies(CONCURRENT_READS, "popular"), contents);
+        assertEquals(gets + 1, api.requestCount("GetObject"));
+        assertEquals(coalesced + CONCURRENT_READS - 1, s3Service.diskCacheStats().get("coalesced"));
+    }
+
+    @Test
+    @Order(2)
+    public void getObjectMetadata_concurrentHeadsShareOneRequest() throws Exception {
+        final String expectedKey = this.bucketFolders.images() + "/popular-head.jpg";
+        s3Client.putObject(TEST_BUCKET, expectedKey, "popular");
+        long heads = api.requestCount("HeadObject");
+
+        api.stallNext(1, Duration.ofMillis(500));
+
+        List<Long> lengths = concurrently(() -> s3Service.getObjectMetadata(TEST_BUCKET, expectedKey)
+                .orElseThrow()
+                .getContentLength());
+
+        assertEquals(Collections.nCopies(CONCURRENT_READS, 7L), lengths);
+        assertEquals(heads + 1, api.requestCount("HeadObject"));
+    }
+
+    @Test
+    @Order(2)
+    public void openCachedObject_readAfterWriteNotJoined() throws Exception {
+        final String expectedKey = this.bucketFolders.images() + "/rewritten.jpg";
+        s3Client.putObject(TEST_BUCKET, expectedKey, "old");
+        long stalled = api.requestCount("Stalled");
+
+        api.stallNext(1, Duration.ofSeconds(2));
+
+        CompletableFuture<String> before = CompletableFuture.supplyAsync(() -> this.readCached(expectedKey));
+
+        while (api.requestCount("Stalled") == stalled) {
+            Thread.sleep(10);
+        }
+
+        s3Service.putObjectStream(TEST_BUCKET, expectedKey, new ByteArrayInputStream("new".getBytes()), 3,
+                "image/jpeg");
+
+        // Sent its own GET instead of waiting for the one in flight, which may predate the write
+        assertEquals("new", this.readCached(expectedKey));
+        assertFalse(before.isDone());
+        before.get(10, TimeUnit.SECONDS);
+    }
+
+    // endregion
+
+    // region Multipart & Copies
+    @Test
+    @Order(3)
+    public void uploadMultipart_downloadRanged() throws Exception {
+        final File expectedFile = tempDirectory.resolve("large-file.bin").toFile();
+        final Path downloaded = tempDirectory.resolve("large-file-downloaded.bin");
+        final String expectedKey = this.bucketFolders.docs() + "/large-file.bin";
+        Files.write(expectedFile.toPath(), largeObjectBytes);
+
+        s3Service.uploadMultipart(TEST_BUCKET, expectedKey, expectedFile, new ObjectMetadata());
+        DownloadResult result = s3Service.download(TEST_BUCKET, expectedKey, downloaded);
+
+        assertTrue(s3Client.getObjectMetadata(TEST_BUCKET, expectedKey).getETag().endsWith("-3"));
+        assertEquals(LARGE_OBJECT_SIZE, result.bytes());
+        assertEquals(3, result.rangeLatencies().size());
+        assertArrayEquals(largeObjectBytes, Files.readAllBytes(downloaded));
+    }
+
+    @Test
+    @Order(3)
+    public void uploadMultipart_tooSmallParts() {
+        final String expectedKey = this.bucketFolders.docs() + "/too-small.bin";
+        String uploadId = s3Client.initiateMultipartUpload(new InitiateMultipartUploadRequest(TEST_BUCKET, expectedKey))
+                .getUploadId();
+        List<PartETag> parts = IntStream.rangeClosed(1, 2)
+                .mapToObj(partNumber -> s3Client.uploadPart(new UploadPartRequest()
+                        .withBucketName(TEST_BUCKET).withKey(expectedKey).withUploadId(uploadId)
+                        .withPartNumber(partNumber).withPartSize(1024)
+                        .withInputStream(new ByteArrayInputStream(largeObjectBytes, 0, 1024))).getPartETag())
+                .collect(Collectors.toList());
+
+        AmazonS3Exception exception = assertThrows(AmazonS3Exception.class, () -> s3Client.completeMultipartUpload(
+                new CompleteMultipartUploadRequest(TEST_BUCKET, expectedKey, uploadId, parts)));
+
+        assertEquals("EntityTooSmall", exception.getErrorCode());
+        assertEquals(2, s3Client.listParts(new ListPartsRequest(TEST_BUCKET, expectedKey, uploadId)).getParts().size());
+
+        s3Client.abortMultipartUpload(new AbortMultipartUploadRequest(TEST_BUCKET, expectedKey, uploadId));
+    }
+
+    @Test
+    @Order(4)
+    public void copyObject_multipartCopy() throws Exception {
+        final String sourceKey = this.bucketFolders.docs() + "/large-file.bin";
+        final String targetKey = this.bucketFolders.docs() + "/large-file-copy.bin";
+
+        CopyResult result = s3Service.copyObject(TEST_BUCKET, sourceKey, TEST_BUCKET, targetKey);
+
+        assertEquals(3, result.parts());
+        assertEquals(LARGE_OBJECT_SIZE, result.bytes());
+        assertArrayEquals(largeObjectBytes, this.readObject(TEST_BUCKET, targetKey));
+    }
+
+    @Test
+    @Order(4)
+    public void copyObject_singleCopy() throws Exception {
+        final String sourceKey = this.bucketFolders.docs() + "/ranged.bin";
+        final String targetKey = this.bucketFolders.images() + "/ranged-copy.bin";
+
+        s3Service.copyObject(TEST_BUCKET, sourceKey, VERSIONING_BUCKET, targetKey);
+
+        assertArrayEquals(Arrays.copyOf(largeObjectBytes, 4096), this.readObject(VERSIONING_BUCKET, targetKey));
+        assertEquals(s3Client.getObjectMetadata(TEST_BUCKET, sourceKey).getETag(),
+                s3Client.getObjectMetadata(VERSIONING_BUCKET, targetKey).getETag());
+    }
+
+    // endregion
+
+    // region Versioning
+    @Test
+    @Order(5)
+    public void putObject_versions() {
+        final String expectedKey = this.bucketFolders.images() + "/versioned.txt";
+
+        firstVersion = s3Client.putObject(VERSIONING_BUCKET, expectedKey, "first").getVersionId();
+        secondVersion = s3Client.putObject(VERSIONING_BUCKET, expectedKey, "second").getVersionId();
+
+        List<String> versions = s3Service.listVersions(VERSIONING_BUCKET, expectedKey)
+                .map(S3VersionSummary::getVersionId)
+                .collect(Collectors.toList());
+
+        assertNotEquals(firstVersion, secondVersion);
+        assertEquals(List.of(secondVersion, firstVersion), versions);
+    }
+
+    @Test
+    @Order(6)
+    public void getObject_versions() throws Exception {
+        final String expectedKey = this.bucketFolders.images() + "/versioned.txt";
+
+        assertEquals(secondVersion, s3Client.getObjectMetadata(VERSIONING_BUCKET, expectedKey).getVersionId());
+
+        try (S3Object object = s3Client.getObject(new GetObjectRequest(VERSIONING_BUCKET, expectedKey, firstVersion))) {
+            assertEquals("first", new String(IOUtils.toByteArray(object.getObjectContent()), StandardCharsets.UTF_8));
+        }
+
+        assertThrows(AmazonS3Exception.class,
+                () -> s3Client.getObject(new GetObjectRequest(VERSIONING_BUCKET, expectedKey, "1234")));
+    }
+
+    @Test
+    @Order(6)
+    public void getObjectMetadata_concurrentVersionsKeptApart() throws Exception {
+        final String expectedKey = this.bucketFolders.images() + "/versioned.txt";
+        List<String> versionIds = Arrays.asList(null, firstVersion, secondVersion);
+        long heads = api.requestCount("HeadObject");
+        AtomicInteger reads = new AtomicInteger();
+
+        // One HEAD per version in flight until every reader asked
+        api.stallNext(versionIds.size(), Duration.ofMillis(500));
+
+        List<String> mismatches = concurrently(() -> {
+            String versionId = versionIds.get(reads.getAndIncrement() % versionIds.size());
+            String actual = s3Service.getObjectMetadata(VERSIONING_BUCKET, expectedKey, versionId)
+                    .orElseThrow()
+                    .getVersionId();
+            String expected = versionId != null ? versionId : secondVersion;
+
+            return expected.equals(actual) ? null : versionId + " answered " + actual;
+        });
+
+        assertEquals(Collections.nCopies(CONCURRENT_READS, null), mismatches);
+        assertEquals(heads + versionIds.size(), api.requestCount("HeadObject"));
+    }
+
+    @Test
+    @Order(6)
+    public void openCachedObject_concurrentVersionsKeptApart() throws Exception {
+        final String expectedKey = this.bucketFolders.images() + "/versioned.txt";
+        List<String> versionIds = Arrays.asList(null, firstVersion, secondVersion);
+        List<String> expectedContents = List.of("second", "first", "second");
+        long gets = api.requestCount("GetObject");
+        AtomicInteger reads = new AtomicInteger();
+
+        // One GET per version in flight until every reader asked
+        api.stallNext(versionIds.size(), Duration.ofMillis(500));
+
+        List<String> mismatches = concurrently(() -> {
+            int version = reads.getAndIncrement() % versionIds.size();
+
+            try (CachedObject object = s3Service.openCachedObject(VERSIONING_BUCKET, expectedKey,
+                    versionIds.get(version))) {
+                String actual = new String(IOUtils.toByteArray(Channels.newInputStream(object.channel())),
+                        StandardCharsets.UTF_8);
+
+                return expectedContents.get(version).equals(actual) ? null : versionIds.get(version) + " read " + actual;
+            }
+        });
+
+        assertEquals(Collections.nCopies(CONCURRENT_READS, null), mismatches);
+        assertEquals(gets + versionIds.size(), api.requestCount("GetObject"));
+    }
+
+    @Test
+    @Order(7)
+    public void deleteObject_deleteMarker() throws Exception {
+        final String expectedKey = this.bucketFolders.images() + "/versioned.txt";
+
+        s3Service.deleteObject(VERSIONING_BUCKET, expectedKey);
+
+        assertFalse(s3Service.doesObjectExist(VERSIONING_BUCKET, expectedKey));
+        assertEquals(0, s3Service.listObjects(VERSIONING_BUCKET, expectedKey).count());
+        assertEquals(3, s3Service.listVersions(VERSIONING_BUCKET, expectedKey).count());
+
+        // Older versions stay readable until deleted by version id
+        s3Client.deleteVersion(VERSIONING_BUCKET, expectedKey, secondVersion);
+
+        try (S3Object object = s3Client.getObject(new GetObjectRequest(VERSIONING_BUCKET, expectedKey, firstVersion))) {
+            assertEquals("first", new String(IOUtils.toByteArray(object.getObjectContent()), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    @Order(7)
+    public void sweepBlobs_deletesEveryVersionOfUnreferencedBlobs() {
+        final String sweptKey = this.bucketFolders.images() + "/swept.txt";
+        final String keptKey = this.bucketFolders.images() + "/kept.txt";
+
+        String sweptBlob = s3Service.putObjectDeduplicated(VERSIONING_BUCKET, sweptKey,
+                new ByteArrayInputStream("swept".getBytes()), "text/plain").blobKey();
+        String keptBlob = s3Service.putObjectDeduplicated(VERSIONING_BUCKET, keptKey,
+                new ByteArrayInputStream("kept".getBytes()), "text/plain").blobKey();
+        // Concurrent uploads of the same new content both write the blob
+        s3Client.putObject(VERSIONING_BUCKET, sweptBlob, "swept");
+
+        for (S3VersionSummary version : s3Client.listVersions(VERSIONING_BUCKET, sweptKey).getVersionSummaries()) {
+            s3Client.deleteVersion(VERSIONING_BUCKET, sweptKey, version.getVersionId());
+        }
+
+        SweepResult result = s3Service.sweepBlobs(VERSIONING_BUCKET);
+
+        assertEquals(2, result.blobs());
+        assertEquals(1, result.referenced());
+        assertEquals(1, result.deleted());
+        // Gone for good, not hidden behind a delete marker
+        assertEquals(0, s3Client.listVersions(VERSIONING_BUCKET, sweptBlob).getVersionSummaries().size());
+        assertEquals(1, s3Client.listVersions(VERSIONING_BUCKET, keptBlob).getVersionSummaries().size());
+    }
+
+    @Test
+    @Order(8)
+    public void deleteAll_allVersions() {
+        BulkDeleteResult result = s3Service.deleteAll(VERSIONING_BUCKET, "", true);
+
+        assertTrue(result.failed().isEmpty());
+        assertEquals(0, s3Service.listVersions(VERSIONING_BUCKET, "").count());
+
+        s3Client.deleteBucket(VERSIONING_BUCKET);
+        assertFalse(s3Client.doesBucketExistV2(VERSIONING_BUCKET));
+    }
+
+    // endregion
+
+    // region Paged Listings
+    @Test
+    @Order(9)
+    public void listObjects_continuationTokens() {
+        final String prefix = this.bucketFolders.images() + "/many/";
+        List<SmallObject> objects = IntStream.range(0, MANY_OBJECTS)
+                .mapToObj(index -> new SmallObject(prefix + "object-" + index, new byte[]{(byte) index}, "image/jpeg"))
+                .collect(Collectors.toList());
+        long listings = api.requestCount("ListObjectsV2");
+
+        assertEquals(MANY_OBJECTS, s3Service.uploadSmallObjects(TEST_BUCKET, objects).uploaded());
+        assertEquals(MANY_OBJECTS, s3Service.listObjects(TEST_BUCKET, prefix).map(S3ObjectSummary::getKey)
+                .distinct().count());
+        assertEquals(3, api.requestCount("ListObjectsV2") - listings);
+    }
+
+    @Test
+    @Order(10)
+    public void deleteAll_multiplePages() {
+        final String prefix = this.bucketFolders.images() + "/many/";
+        long storedBytes = api.storedBytes();
+
+        BulkDeleteResult result = s3Service.deleteAll(TEST_BUCKET, prefix);
+
+        assertEquals(MANY_OBJECTS, result.deleted());
+        assertEquals(0, s3Service.listObjects(TEST_BUCKET, prefix).count());
+        assertTrue(api.storedBytes() < storedBytes);
+    }
+
+    @Test
+    @Order(10)
+    public void pack_archiveDeletedWhenIndexFails() {
+        final String packKey = this.bucketFolders.images() + "/failed.pack";
+        List<SmallObject> objects = List.of(new SmallObject("a.jpg", new byte[]{1}, "image/jpeg"),
+                new SmallObject("b.jpg", new byte[]{2}, "image/jpeg"));
+
+        // The archive gets through, its index doesn't
+        api.failAfter("PutObject", 1);
+
+        try {
+            assertThrows(AmazonS3Exception.class, () -> s3Service.pack(TEST_BUCKET, packKey, objects));
+        } finally {
+            api.failAfter("PutObject", Long.MAX_VALUE);
+        }
+
+        assertFalse(s3Service.doesObjectExist(TEST_BUCKET, packKey));
+        assertFalse(s3Service.doesObjectExist(TEST_BUCKET, packKey + ObjectPacker.INDEX_SUFFIX));
+    }
+
+    // endregion
+
+    // region Lifecycle
+    @Test
+    @Order(11)
+    public void applyLifecycle_idempotent() {
+        assertTrue(s3Service.applyLifecycle(TEST_BUCKET));
+        assertFalse(s3Service.applyLifecycle(TEST_BUCKET));
+        assertEquals(1, api.requestCount("PutBucketLifecycleConfiguration"));
+    }
+
+    @Test
+    @Order(11)
+    public void simulateLifecycle_onlyDownTheWaterfall() {
+        final int size = 256 * 1024;
+
+        for (StorageClass storageClass : List.of(StorageClass.Standard, StorageClass.Glacier)) {
+            s3Client.putObject(new PutObjectRequest(TEST_BUCKET, "reports/" + storageClass + ".csv",
+                    new ByteArrayInputStream(new byte[size]), this.lengthOf(size)).withStorageClass(storageClass));
+        }
+
+        LifecycleRuleImpact reports = s3Service.simulateLifecycle(TEST_BUCKET, Duration.ZERO).rules().stream()
+                .filter(rule -> rule.ruleId().equals("archive-reports"))
+                .findFirst()
+                .orElseThrow();
+
+        // The GLACIER object is past STANDARD_IA already
+        assertEquals(2, reports.objects());
+        assertEquals(1, reports.actions().get("TRANSITION_TO_STANDARD_IA").objects());
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        api.shutdown();
+    }
+    // endregion
+
+    private ObjectMetadata lengthOf(long length) {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(length);
+
+        return metadata;
+    }
+
+    private String readCached(String key) {
+        try (CachedObject object = s3Service.openCachedObject(TEST_BUCKET, key)) {
+            return new String(IOUtils.toByteArray(Channels.newInputStream(object.channel())), StandardCharsets.UTF_8);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    /**
+     * Runs the read on CONCURRENT_READS threads at once.
+     */
+    private static <T> List<T> concurrently(Callable<T> read) throws Exception {
+        ExecutorService readers = Executors.newFixedThreadPool(CONCURRENT_READS);
+        CountDownLatch start = new CountDownLatch(1);
+
+        try {
+            List<Future<T>> results = new ArrayList<>();
+
+            for (int index = 0; index < CONCURRENT_READS; index++) {
+                results.add(readers.submit(() -> {
+                    start.await();
+
+                    return read.call();
+                }));
+            }
+
+            start.countDown();
+
+            List<T> values = new ArrayList<>();
+
+            for (Future<T> result : results) {
+                values.add(result.get(10, TimeUnit.SECONDS));
+            }
+
+            return values;
+        } finally {
+            readers.shutdownNow();
+        }
+    }
+
+    private byte[] readObject(String bucketName, String key) throws Exception {
+        try (S3Object object = s3Client.getObject(bucketName, key)) {
+            return IOUtils.toByteArray(object.getObjectContent());
+        }
+    }
+}
@@ -0,0 +1,405 @@
+package SpringAWS.services;
+
+import SpringAWS.configs.S3FolderConfig;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.util.IOUtils;
+import io.findify.s3mock.S3Mock;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "aws.s3.endpoint=http://localhost:" + S3ServiceTransferMockIntegrationTest.PORT,
+        "aws.s3.transfer.part-size=5MB",
+        "aws.s3.transfer.threads=4",
+        "aws.s3.transfer.range-size=5MB",
+        "aws.s3.transfer.single-stream-threshold=1MB",
+        "aws.s3.transfer.copy-threshold=5MB",
+        "aws.s3.transfer.copy-part-size=5MB"
+})
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class S3ServiceTransferMockIntegrationTest {
+
+    // region Dependency Injection
+    @Autowired
+    private S3Service s3Service;
+
+    @Autowired
+    private AmazonS3 s3Client;
+
+    @Autowired
+    private S3FolderConfig bucketFolders;
+
+    // endregion
+
+    // region Statics & Constants
+    public static S3Mock api;
+
+    public static final int PORT = 8003;
+    public static final String TEST_BUCKET = "transfer-test-bucket";
+    private static final int LARGE_OBJECT_SIZE = 12 * 1024 * 1024 + 123;
+
+    @TempDir
+    public static Path tempDirectory;
+    private static byte[] largeObjectBytes;
+
+    // endregion
+
+    // region Init Localhost Endpoint
+    @BeforeAll
+    public static void init() {
+        api = new S3Mock.Builder()
+                .withPort(PORT)
+                .withInMemoryBackend()
+                .build();
+
+        api.start();
+
+        largeObjectBytes = new byte[LARGE_OBJECT_SIZE];
+        new Random(1416).nextBytes(largeObjectBytes);
+    }
+
+    @Test
+    @Order(1)
+    public void createBucket_validName() {
+        s3Client.createBucket(TEST_BUCKET);
+
+        assertTrue(s3Client.doesBucketExistV2(TEST_BUCKET));
+    }
+
+    // endregion
+
+    // region Multipart Upload
+    @Test
+    @Order(2)
+    public void uploadMultipart_fromFile() throws Exception {
+        final File expectedFile = tempDirectory.resolve("large-file.bin").toFile();
+        final String expectedKey = this.bucketFolders.docs() + "/large-file.bin";
+        Files.write(expectedFile.toPath(), largeObjectBytes);
+
+        s3Service.uploadMultipart(TEST_BUCKET, expectedKey, expectedFile, new ObjectMetadata());
+
+        assertArrayEquals(largeObjectBytes, this.readObject(expectedKey));
+    }
+
+    @Test
+    @Order(2)
+    public void uploadMultipart_fromInputStream() throws Exception {
+        final String expectedKey = this.bucketFolders.docs() + "/large-stream.bin";
+
+        s3Service.uploadMultipart(TEST_BUCKET, expectedKey,
+                new ByteArrayInputStream(largeObjectBytes), new ObjectMetadata());
+
+        assertArrayEquals(largeObjectBytes, this.readObject(expectedKey));
+    }
+
+    @Test
+    @Order(2)
+    public void uploadMultipart_smallStreamUsesSinglePut() throws Exception {
+        final byte[] expectedBytes = {1, 4, 1, 6};
+        final String expectedKey = this.bucketFolders.docs() + "/small-stream.bin";
+
+        s3Service.uploadMultipart(TEST_BUCKET, expectedKey,
+                new ByteArrayInputStream(expectedBytes), new ObjectMetadata());
+
+        assertArrayEquals(expectedBytes, this.readObject(expectedKey));
+    }
+
+    @Test
+    @Order(2)
+    public void uploadMultipart_missingBucket() {
+        final String expectedKey = this.bucketFolders.docs() + "/large-stream.bin";
+
+        assertThrows(SdkClientException.class, () -> s3Service.uploadMultipart("missing-bucket", expectedKey,
+                new ByteArrayInputStream(largeObjectBytes), new ObjectMetadata()));
+    }
+
+    // endregion
+
+    // region Ranged Download
+    @Test
+    @Order(3)
+    public void download_parallelRanges() throws Exception {
+        final String expectedKey = this.bucketFolders.docs() + "/large-file.bin";
+        final Path target = tempDirectory.resolve("downloaded-large-file.bin");
+
+        DownloadResult result = s3Service.download(TEST_BUCKET, expectedKey, target);
+
+        assertEquals(LARGE_OBJECT_SIZE, result.bytes());
+        assertEquals(3, result.rangeLatencies().size());
+        assertTrue(result.bytesPerSecond() > 0);
+        assertArrayEquals(largeObjectBytes, Files.readAllBytes(target));
+    }
+
+    @Test
+    @Order(3)
+    public void download_smallObjectSingleStream() throws Exception {
+        final String expectedKey = this.bucketFolders.docs() + "/small-stream.bin";
+        final Path target = tempDirectory.resolve("downloaded-small-stream.bin");
+
+        DownloadResult result = s3Service.download(TEST_BUCKET, expectedKey, target);
+
+        assertEquals(1, result.rangeLatencies().size());
+        assertArrayEquals(new byte[]{1, 4, 1, 6}, Files.readAllBytes(target));
+    }
+
+    @Test
+    @Order(3)
+    public void download_missingObject() {
+        final String expectedKey = this.bucketFolders.docs() + "/missing.bin";
+        final Path target = tempDirectory.resolve("missing.bin");
+
+        assertThrows(SdkClientException.class, () -> s3Service.download(TEST_BUCKET, expectedKey, target));
+        assertFalse(Files.exists(target));
+    }
+
+    // endregion
+
+    // region Metadata Cache
+    @Test
+    @Order(4)
+    public void getObjectMetadata_cachesHitsAndMisses() {
+        final String expectedKey = this.bucketFolders.docs() + "/cached.bin";
+        long initialHits = s3Service.metadataCacheStats().get("hits");
+
+        assertFalse(s3Service.doesObjectExist(TEST_BUCKET, expectedKey));
+        assertFalse(s3Service.doesObjectExist(TEST_BUCKET, expectedKey));
+        assertEquals(initialHits + 1, s3Service.metadataCacheStats().get("hits"));
+
+        s3Service.putObjectStream(TEST_BUCKET, expectedKey, new ByteArrayInputStream(new byte[]{1, 4}), 2, null);
+
+        assertTrue(s3Service.doesObjectExist(TEST_BUCKET, expectedKey));
+        assertEquals(2, s3Service.getObjectMetadata(TEST_BUCKET, expectedKey).get().getContentLength());
+        assertEquals(initialHits + 2, s3Service.metadataCacheStats().get("hits"));
+
+        s3Service.deleteObject(TEST_BUCKET, expectedKey);
+
+        assertFalse(s3Service.doesObjectExist(TEST_BUCKET, expectedKey));
+    }
+
+    @Test
+    @Order(4)
+    public void doesBucketExist_cachesLookups() {
+        assertTrue(s3Service.doesBucketExist(TEST_BUCKET));
+        assertFalse(s3Service.doesBucketExist("missing-bucket"));
+
+        Map<String, Long> before = s3Service.metadataCacheStats();
+
+        // Answered from the cache this time, hits and misses alike
+        assertTrue(s3Service.doesBucketExist(TEST_BUCKET));
+        assertFalse(s3Service.doesBucketExist("missing-bucket"));
+
+        Map<String, Long> after = s3Service.metadataCacheStats();
+
+        assertEquals(before.get("hits") + 2, after.get("hits"));
+        assertEquals(before.get("misses"), after.get("misses"));
+    }
+
+    // endregion
+
+    // region Lazy Listing
+    @Test
+    @Order(5)
+    public void listObjects_streamsSummaries() {
+        final String prefix = this.bucketFolders.docs() + "/";
+
+        try (Stream<S3ObjectSummary> summaries = s3Service.listObjects(TEST_BUCKET, prefix)) {
+            List<String> actualKeys = summaries.map(S3ObjectSummary::getKey).collect(Collectors.toList());
+
+            assertTrue(actualKeys.contains(prefix + "large-file.bin"));
+            assertTrue(actualKeys.contains(prefix + "large-stream.bin"));
+            assertTrue(actualKeys.stream().allMatch(key -> key.startsWith(prefix)));
+        }
+    }
+
+    @Test
+    @Order(5)
+    public void listObjects_missingBucket() {
+        try (Stream<S3ObjectSummary> summaries = s3Service.listObjects("missing-bucket", "")) {
+            assertThrows(AmazonS3Exception.class, summaries::count);
+        }
+    }
+
+    // endregion
+
+    // region Parallel Scan
+    @Test
+    @Order(5)
+    public void scan_mergesAllShards() {
+        final String prefix = "scan/";
+        final List<String> expectedKeys = Arrays.asList(prefix + "top.txt", prefix + "images/a.png",
+                prefix + "images/2021/b.png", prefix + "images/2021/deep/c.png", prefix + "docs/d.txt");
+
+        expectedKeys.forEach(key -> s3Client.putObject(TEST_BUCKET, key, key));
+
+        try (BucketScan scan = s3Service.scan(TEST_BUCKET, prefix);
+             Stream<S3ObjectSummary> summaries = scan.stream()) {
+            Set<String> actualKeys = summaries.map(S3ObjectSummary::getKey).collect(Collectors.toSet());
+
+            assertEquals(new HashSet<>(expectedKeys), actualKeys);
+            assertEquals(expectedKeys.size(), scan.keys());
+            assertTrue(scan.finished());
+            // scan/, then images/ and docs/ at the first level, then images/2021/ is listed flat
+            assertEquals(4, scan.shards());
+        }
+    }
+
+    // endregion
+
+    // region Server-Side Copy
+    @Test
+    @Order(6)
+    public void copyObject_largeObjectUsesCopyParts() throws Exception {
+        final String sourceKey = this.bucketFolders.docs() + "/large-file.bin";
+        final String targetKey = "copies/large-file.bin";
+
+        CopyResult result = s3Service.copyObject(TEST_BUCKET, sourceKey, TEST_BUCKET, targetKey);
+
+        assertEquals(LARGE_OBJECT_SIZE, result.bytes());
+        assertEquals(3, result.parts());
+        assertArrayEquals(largeObjectBytes, readObject(targetKey));
+    }
+
+    @Test
+    @Order(6)
+    public void copyAll_movesPrefix() throws Exception {
+        final String sourcePrefix = "move-source/";
+        final String targetPrefix = "move-target/";
+        final int objectCount = 25;
+
+        for (int index = 0; index < objectCount; index++) {
+            s3Client.putObject(TEST_BUCKET, sourcePrefix + "nested/" + index + ".txt", "object " + index);
+        }
+
+        CopyJob job = s3Service.copyAll(TEST_BUCKET, sourcePrefix, TEST_BUCKET, targetPrefix, true);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+
+        while (!job.finished() && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+
+        assertEquals(CopyJob.State.COMPLETED, job.state());
+        assertEquals(objectCount, job.copied());
+        assertEquals((long) objectCount, job.progress().get("listed"));
+        assertTrue(s3Client.listObjectsV2(TEST_BUCKET, sourcePrefix).getObjectSummaries().isEmpty());
+        assertEquals(objectCount, s3Client.listObjectsV2(TEST_BUCKET, targetPrefix).getKeyCount());
+        assertEquals("object 7", s3Client.getObjectAsString(TEST_BUCKET, targetPrefix + "nested/7.txt"));
+    }
+
+    @Test
+    @Order(6)
+    public void copyAll_rejectsTargetInsideSource() {
+        assertThrows(IllegalArgumentException.class,
+                () -> s3Service.copyAll(TEST_BUCKET, "docs/", TEST_BUCKET, "docs/backup/", false));
+    }
+
+    // endregion
+
+    // region Async Operations (executor backed)
+    @Test
+    @Order(6)
+    public void asyncOperations_putGetAndDelete() {
+        final String key = "async/object.txt";
+
+        s3Service.putObjectAsync(TEST_BUCKET, key, "object".getBytes(), "text/plain").join();
+
+        assertEquals("object", new String(s3Service.getObjectAsync(TEST_BUCKET, key).join()));
+        assertEquals(6, s3Service.getObjectMetadataAsync(TEST_BUCKET, key).join().orElseThrow().getContentLength());
+        s3Service.deleteObjectAsync(TEST_BUCKET, key).join();
+        assertFalse(s3Service.getObjectMetadataAsync(TEST_BUCKET, key).join().isPresent());
+    }
+
+    @Test
+    @Order(6)
+    public void asyncOperations_largeCopyUsesCopyParts() throws Exception {
+        final String sourceKey = this.bucketFolders.docs() + "/large-file.bin";
+        final String targetKey = "async-copies/large-file.bin";
+
+        CopyResult result = s3Service.copyObjectAsync(TEST_BUCKET, sourceKey, TEST_BUCKET, targetKey).join();
+
+        assertEquals(3, result.parts());
+        assertArrayEquals(largeObjectBytes, readObject(targetKey));
+    }
+
+    @Test
+    @Order(6)
+    public void asyncOperations_missingObjectFails() {
+        CompletionException exception = assertThrows(CompletionException.class,
+                () -> s3Service.getObjectAsync(TEST_BUCKET, "async/missing").join());
+
+        assertEquals(404, ((AmazonS3Exception) exception.getCause()).getStatusCode());
+    }
+
+    // endregion
+
+    // region Batched Delete
+    @Test
+    @Order(7)
+    public void deleteAll_removesWholePrefix() throws Exception {
+        final String prefix = this.bucketFolders.images() + "/thumbnails/";
+        // S3Mock ignores continuation tokens, so stay within a single listing page
+        final int objectCount = 999;
+        ExecutorService uploaders = Executors.newFixedThreadPool(16);
+        List<Future<?>> uploads = new ArrayList<>();
+
+        for (int index = 0; index < objectCount; index++) {
+            final String key = prefix + index + ".jpg";
+            uploads.add(uploaders.submit(() -> s3Client.putObject(TEST_BUCKET, key, "thumbnail")));
+        }
+
+        for (Future<?> upload : uploads) {
+            upload.get();
+        }
+
+        uploaders.shutdown();
+
+        BulkDeleteResult result = s3Service.deleteAll(TEST_BUCKET, prefix);
+
+        assertEquals(objectCount, result.deleted());
+        assertTrue(result.failed().isEmpty());
+        assertTrue(s3Client.listObjectsV2(TEST_BUCKET, prefix).getObjectSummaries().isEmpty());
+        assertTrue(s3Client.doesObjectExist(TEST_BUCKET, this.bucketFolders.docs() + "/large-file.bin"));
+    }
+
+    // endregion
+
+    // region Helpers & Shutdown API
+    private byte[] readObject(String key) throws Exception {
+        try (S3Object object = s3Client.getObject(TEST_BUCKET, key)) {
+            return IOUtils.toByteArray(object.getObjectContent());
+        }
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        api.shutdown();
+    }
+    // endregion
+}
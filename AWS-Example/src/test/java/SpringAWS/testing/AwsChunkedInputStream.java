@@ -0,0 +1,91 @@
+package SpringAWS.testing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes aws-chunked request bodies ("hex-size;chunk-signature=...\r\n" + data + "\r\n", ending with a
+ * zero size chunk and optional trailers), which the SDKs send for streaming signed uploads. Signatures
+ * aren't checked.
+ */
+final class AwsChunkedInputStream extends InputStream {
+    private final InputStream inputStream;
+    private long chunkRemaining;
+    private boolean finished;
+
+    AwsChunkedInputStream(InputStream inputStream) {
+        this.inputStream = inputStream;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+
+        return this.read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (this.finished) {
+            return -1;
+        }
+
+        if (this.chunkRemaining == 0 && !this.nextChunk()) {
+            return -1;
+        }
+
+        int read = this.inputStream.read(buffer, offset, (int) Math.min(length, this.chunkRemaining));
+
+        if (read < 0) {
+            throw new EOFException("Request body ended within a chunk");
+        }
+
+        this.chunkRemaining -= read;
+
+        if (this.chunkRemaining == 0) {
+            // The CRLF closing the chunk's data
+            this.readLine();
+        }
+
+        return read;
+    }
+
+    private boolean nextChunk() throws IOException {
+        String header = this.readLine();
+        int extension = header.indexOf(';');
+        long size = Long.parseLong((extension < 0 ? header : header.substring(0, extension)).trim(), 16);
+
+        if (size == 0) {
+            // Trailers such as x-amz-checksum-crc32 up to an empty line
+            String trailer;
+
+            do {
+                trailer = this.readLine();
+            } while (!trailer.isEmpty());
+
+            this.finished = true;
+
+            return false;
+        }
+
+        this.chunkRemaining = size;
+
+        return true;
+    }
+
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        int character;
+
+        while ((character = this.inputStream.read()) >= 0 && character != '\n') {
+            if (character != '\r') {
+                line.write(character);
+            }
+        }
+
+        return line.toString(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,103 @@
+package SpringAWS.testing;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Immutable, reference counted object content. Copies, copied parts and completed multipart uploads
+ * share the extents of their sources instead of duplicating bytes, so server-side copies are free here
+ * and only cost what our own code spends on them.
+ */
+final class Blob {
+    private final BlobStore store;
+    // What is read, in order
+    private final List<BlobStore.Extent> extents;
+    // What is freed once unreferenced, views of other blobs own nothing
+    private final List<BlobStore.Extent> owned;
+    private final List<Blob> sources;
+    private final long length;
+    private final byte[] md5;
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    private Blob(BlobStore store, List<BlobStore.Extent> extents, List<BlobStore.Extent> owned, List<Blob> sources,
+                 long length, byte[] md5) {
+        this.store = store;
+        this.extents = extents;
+        this.owned = owned;
+        this.sources = sources;
+        this.length = length;
+        this.md5 = md5;
+    }
+
+    static Blob owning(BlobStore store, List<BlobStore.Extent> extents, long length, byte[] md5) {
+        return new Blob(store, extents, extents, List.of(), length, md5);
+    }
+
+    /**
+     * The parts one after another, as a completed multipart upload. Takes over the callers' references.
+     */
+    static Blob concat(BlobStore store, List<Blob> parts, byte[] md5) {
+        List<BlobStore.Extent> extents = new ArrayList<>();
+        long length = 0;
+
+        for (Blob part : parts) {
+            extents.addAll(part.extents);
+            length += part.length;
+        }
+
+        return new Blob(store, extents, List.of(), List.copyOf(parts), length, md5);
+    }
+
+    /**
+     * The bytes [from, to) of this blob, sharing its extents.
+     */
+    Blob slice(long from, long to) {
+        List<BlobStore.Extent> sliced = new ArrayList<>();
+        long position = 0;
+
+        for (BlobStore.Extent extent : this.extents) {
+            long extentEnd = position + extent.length();
+
+            if (extentEnd > from && position < to) {
+                sliced.add(extent.slice((int) Math.max(0, from - position),
+                        (int) Math.min(extent.length(), to - position)));
+            }
+
+            position = extentEnd;
+        }
+
+        byte[] md5 = Digests.md5Of(this.store, sliced);
+
+        return new Blob(this.store, sliced, List.of(), List.of(this.retain()), to - from, md5);
+    }
+
+    long length() {
+        return this.length;
+    }
+
+    byte[] md5() {
+        return this.md5;
+    }
+
+    void transferTo(OutputStream outputStream, long from, long to) throws IOException {
+        this.store.transfer(this.extents, from, to, outputStream);
+    }
+
+    Blob retain() {
+        if (this.references.getAndIncrement() <= 0) {
+            throw new IllegalStateException("Blob was already released");
+        }
+
+        return this;
+    }
+
+    void release() {
+        if (this.references.decrementAndGet() == 0) {
+            this.owned.forEach(this.store::free);
+            this.sources.forEach(Blob::release);
+        }
+    }
+}
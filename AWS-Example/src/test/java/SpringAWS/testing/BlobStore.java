@@ -0,0 +1,237 @@
+package SpringAWS.testing;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Object content of the local server, kept off the Java heap so that gigabytes of test data don't turn
+ * into GC pauses that would show up in our own latencies.
+ * <p>
+ * Content lives in 64MB segments, either memory-mapped from a temporary file (the default, bounded by
+ * disk rather than -XX:MaxDirectMemorySize) or direct buffers. Segments are carved into power-of-two
+ * extents from 4KB to 1MB, a blob being a list of extents. Freed extents go back to a free list of their
+ * size class, so deleting and rewriting objects in load tests reuses memory instead of growing the file.
+ */
+final class BlobStore implements Closeable {
+    static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final int MIN_EXTENT_SHIFT = 12;
+    private static final int MAX_EXTENT_SHIFT = 20;
+    private static final int MAX_EXTENT = 1 << MAX_EXTENT_SHIFT;
+    private static final int COPY_BUFFER = 64 * 1024;
+    private static final ThreadLocal<byte[]> BUFFERS = ThreadLocal.withInitial(() -> new byte[COPY_BUFFER]);
+
+    private final boolean mapped;
+    private final FileChannel channel;
+    private final List<ByteBuffer> segments = new CopyOnWriteArrayList<>();
+    private final List<ConcurrentLinkedQueue<Extent>> freeExtents = new ArrayList<>();
+    private final AtomicLong usedBytes = new AtomicLong();
+    private int segmentOffset = SEGMENT_SIZE;
+
+    BlobStore(boolean mapped) {
+        this.mapped = mapped;
+
+        for (int shift = MIN_EXTENT_SHIFT; shift <= MAX_EXTENT_SHIFT; shift++) {
+            this.freeExtents.add(new ConcurrentLinkedQueue<>());
+        }
+
+        try {
+            Path file = mapped ? Files.createTempFile("local-s3-", ".blobs") : null;
+            this.channel = mapped ? FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE) : null;
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    /**
+     * Stores the stream's content, computing its MD5 on the way.
+     *
+     * @param expectedLength the length if known, -1 otherwise; sizes the extents to waste less
+     */
+    Blob write(InputStream inputStream, long expectedLength) throws IOException {
+        MessageDigest md5 = Digests.md5();
+        List<Extent> extents = new ArrayList<>();
+        byte[] buffer = BUFFERS.get();
+        long remaining = expectedLength;
+        long length = 0;
+
+        try {
+            while (true) {
+                Extent extent = this.allocate(remaining >= 0 ? remaining : MAX_EXTENT);
+                int filled = 0;
+
+                while (filled < extent.capacity()) {
+                    int read = inputStream.read(buffer, 0, Math.min(buffer.length, extent.capacity() - filled));
+
+                    if (read < 0) {
+                        break;
+                    }
+
+                    this.segments.get(extent.segment()).put(extent.offset() + filled, buffer, 0, read);
+                    md5.update(buffer, 0, read);
+                    filled += read;
+                }
+
+                if (filled == 0) {
+                    this.free(extent);
+
+                    break;
+                }
+
+                extents.add(extent.withLength(filled));
+                length += filled;
+
+                if (remaining >= 0) {
+                    remaining = Math.max(0, remaining - filled);
+                }
+
+                if (filled < extent.capacity()) {
+                    break;
+                }
+            }
+        } catch (IOException | RuntimeException exception) {
+            extents.forEach(this::free);
+
+            throw exception;
+        }
+
+        return Blob.owning(this, extents, length, md5.digest());
+    }
+
+    Blob write(byte[] content) {
+        try {
+            return this.write(new ByteArrayInputStream(content), content.length);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    /**
+     * Writes the bytes [from, to) of the extents to the stream.
+     */
+    void transfer(List<Extent> extents, long from, long to, OutputStream outputStream) throws IOException {
+        byte[] buffer = BUFFERS.get();
+        long position = 0;
+
+        for (Extent extent : extents) {
+            long extentEnd = position + extent.length();
+
+            if (extentEnd > from && position < to) {
+                int start = (int) Math.max(0, from - position);
+                int end = (int) Math.min(extent.length(), to - position);
+                ByteBuffer segment = this.segments.get(extent.segment());
+
+                for (int offset = start; offset < end; offset += buffer.length) {
+                    int chunk = Math.min(buffer.length, end - offset);
+                    segment.get(extent.offset() + offset, buffer, 0, chunk);
+                    outputStream.write(buffer, 0, chunk);
+                }
+            }
+
+            position = extentEnd;
+
+            if (position >= to) {
+                break;
+            }
+        }
+    }
+
+    void free(Extent extent) {
+        this.usedBytes.addAndGet(-extent.capacity());
+        this.freeExtents.get(shiftOf(extent.capacity()) - MIN_EXTENT_SHIFT).add(extent.withLength(0));
+    }
+
+    /**
+     * Bytes held by live extents, including what their last extent leaves unused.
+     */
+    long usedBytes() {
+        return this.usedBytes.get();
+    }
+
+    long reservedBytes() {
+        return (long) this.segments.size() * SEGMENT_SIZE;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.segments.clear();
+
+        if (this.channel != null) {
+            // Deleted on close, the mappings stay valid until they are collected
+            this.channel.close();
+        }
+    }
+
+    private Extent allocate(long wanted) {
+        int shift = shiftOf((int) Math.min(Math.max(wanted, 1), MAX_EXTENT));
+        Extent extent = this.freeExtents.get(shift - MIN_EXTENT_SHIFT).poll();
+
+        if (extent == null) {
+            extent = this.carve(1 << shift);
+        }
+
+        this.usedBytes.addAndGet(extent.capacity());
+
+        return extent;
+    }
+
+    private synchronized Extent carve(int capacity) {
+        if (this.segmentOffset + capacity > SEGMENT_SIZE) {
+            this.segments.add(this.newSegment());
+            this.segmentOffset = 0;
+        }
+
+        Extent extent = new Extent(this.segments.size() - 1, this.segmentOffset, capacity, 0);
+        this.segmentOffset += capacity;
+
+        return extent;
+    }
+
+    private ByteBuffer newSegment() {
+        if (!this.mapped) {
+            return ByteBuffer.allocateDirect(SEGMENT_SIZE);
+        }
+
+        try {
+            return this.channel.map(FileChannel.MapMode.READ_WRITE, (long) this.segments.size() * SEGMENT_SIZE,
+                    SEGMENT_SIZE);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    // Smallest size class holding the bytes
+    private static int shiftOf(int bytes) {
+        int shift = 32 - Integer.numberOfLeadingZeros(Math.max(bytes, 1) - 1);
+
+        return Math.max(MIN_EXTENT_SHIFT, shift);
+    }
+
+    /**
+     * A run of bytes in one segment: capacity is what was allocated, length what is in use.
+     */
+    record Extent(int segment, int offset, int capacity, int length) {
+        Extent withLength(int length) {
+            return new Extent(this.segment, this.offset, this.capacity, length);
+        }
+
+        Extent slice(int from, int to) {
+            return new Extent(this.segment, this.offset + from, 0, to - from);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package SpringAWS.testing;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+final class Digests {
+    private static final HexFormat HEX = HexFormat.of();
+
+    private Digests() {
+    }
+
+    static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    static byte[] md5Of(BlobStore store, List<BlobStore.Extent> extents) {
+        MessageDigest md5 = md5();
+
+        try (DigestOutputStream outputStream = new DigestOutputStream(OutputStream.nullOutputStream(), md5)) {
+            store.transfer(extents, 0, Long.MAX_VALUE, outputStream);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+
+        return md5.digest();
+    }
+
+    /**
+     * S3's ETag of a single PUT, the quoted hex MD5 of the content.
+     */
+    static String eTag(byte[] md5) {
+        return "\"" + HEX.formatHex(md5) + "\"";
+    }
+
+    /**
+     * S3's ETag of a multipart upload, the MD5 of the parts' MD5s followed by the part count.
+     */
+    static String multipartETag(List<byte[]> partMd5s) {
+        MessageDigest md5 = md5();
+        partMd5s.forEach(md5::update);
+
+        return "\"" + HEX.formatHex(md5.digest()) + "-" + partMd5s.size() + "\"";
+    }
+}
@@ -0,0 +1,346 @@
+package SpringAWS.testing;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+
+/**
+ * Keys of a bucket in order, each with its versions newest first. Every key has its own lock, so
+ * concurrent requests only contend when they touch the same key.
+ */
+final class LocalBucket {
+    static final String ENABLED = "Enabled";
+    static final String SUSPENDED = "Suspended";
+
+    private final String name;
+    private final Instant created = Instant.now();
+    private final ConcurrentSkipListMap<String, KeyVersions> keys = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<String, MultipartUpload> uploads = new ConcurrentHashMap<>();
+    // Null until versioning was configured once, S3 can't go back to unversioned
+    private volatile String versioning;
+    private volatile byte[] lifecycle;
+
+    LocalBucket(String name) {
+        this.name = name;
+    }
+
+    String name() {
+        return this.name;
+    }
+
+    Instant created() {
+        return this.created;
+    }
+
+    String versioning() {
+        return this.versioning;
+    }
+
+    void setVersioning(String versioning) {
+        this.versioning = versioning;
+    }
+
+    byte[] lifecycle() {
+        return this.lifecycle;
+    }
+
+    void setLifecycle(byte[] lifecycle) {
+        this.lifecycle = lifecycle;
+    }
+
+    ConcurrentMap<String, MultipartUpload> uploads() {
+        return this.uploads;
+    }
+
+    boolean isEmpty() {
+        return this.keys.isEmpty() && this.uploads.isEmpty();
+    }
+
+    /**
+     * Stores a new current version, replacing the "null" version unless versioning is enabled.
+     */
+    ObjectVersion put(String key, Blob blob, String eTag, Map<String, String> headers) {
+        return this.update(key, versions -> {
+            String versionId = ENABLED.equals(this.versioning) ? newVersionId() : ObjectVersion.NULL_VERSION;
+            ObjectVersion version = new ObjectVersion(key, versionId, blob, eTag, headers, Instant.now());
+
+            if (versionId.equals(ObjectVersion.NULL_VERSION)) {
+                versions.remove(versionId);
+            }
+
+            versions.versions.add(0, version);
+
+            return version;
+        });
+    }
+
+    /**
+     * Deletes the version, or without a version id the key: removing its "null" version when unversioned,
+     * adding a delete marker otherwise.
+     *
+     * @return the removed version or the added delete marker, null if there was nothing to delete
+     */
+    ObjectVersion delete(String key, String versionId) {
+        if (versionId == null && this.versioning == null) {
+            return this.update(key, versions -> versions.remove(ObjectVersion.NULL_VERSION));
+        }
+
+        if (versionId != null) {
+            return this.update(key, versions -> versions.remove(versionId));
+        }
+
+        return this.update(key, versions -> {
+            ObjectVersion marker;
+
+            if (ENABLED.equals(this.versioning)) {
+                marker = ObjectVersion.deleteMarker(key, newVersionId());
+            } else {
+                versions.remove(ObjectVersion.NULL_VERSION);
+                marker = ObjectVersion.deleteMarker(key, ObjectVersion.NULL_VERSION);
+            }
+
+            versions.versions.add(0, marker);
+
+            return marker;
+        });
+    }
+
+    /**
+     * The version, or the current one without a version id, its blob retained for the caller to release.
+     *
+     * @return null if there is no such version
+     */
+    ObjectVersion acquire(String key, String versionId) {
+        KeyVersions versions = this.keys.get(key);
+
+        if (versions == null) {
+            return null;
+        }
+
+        synchronized (versions) {
+            ObjectVersion version = versionId == null
+                    ? (versions.versions.isEmpty() ? null : versions.versions.get(0))
+                    : versions.find(versionId);
+
+            if (version != null && version.blob() != null) {
+                version.blob().retain();
+            }
+
+            return version;
+        }
+    }
+
+    /**
+     * One page of current objects after the marker, common prefixes rolled up as S3 does.
+     *
+     * @param after exclusive start, a key or common prefix returned before
+     */
+    Page<ObjectVersion> list(String prefix, String delimiter, String after, int maxKeys) {
+        Page<ObjectVersion> page = new Page<>();
+        String lastPrefix = null;
+        Map.Entry<String, KeyVersions> entry = after == null || after.compareTo(prefix) < 0
+                ? this.keys.ceilingEntry(prefix)
+                : this.keys.higherEntry(after);
+
+        while (entry != null && entry.getKey().startsWith(prefix)) {
+            String key = entry.getKey();
+            String commonPrefix = commonPrefix(key, prefix, delimiter);
+            ObjectVersion current = entry.getValue().current();
+
+            if (commonPrefix != null && (commonPrefix.equals(lastPrefix)
+                    || (after != null && commonPrefix.compareTo(after) <= 0))) {
+                entry = this.keys.higherEntry(key);
+
+                continue;
+            }
+
+            if (current != null) {
+                if (page.size() == maxKeys) {
+                    page.truncated = true;
+
+                    break;
+                }
+
+                if (commonPrefix != null) {
+                    page.commonPrefixes.add(commonPrefix);
+                    page.last = commonPrefix;
+                    lastPrefix = commonPrefix;
+                    // Nothing under the common prefix is listed, skip past all of it
+                    entry = this.keys.higherEntry(commonPrefix + Character.MAX_VALUE);
+
+                    continue;
+                }
+
+                page.items.add(current);
+                page.last = key;
+            }
+
+            entry = this.keys.higherEntry(key);
+        }
+
+        return page;
+    }
+
+    /**
+     * One page of versions and delete markers, newest first per key.
+     *
+     * @param keyMarker       exclusive start key, or with a version id marker the key to continue in
+     * @param versionIdMarker exclusive start version within the key marker
+     */
+    Page<ObjectVersion> listVersions(String prefix, String delimiter, String keyMarker, String versionIdMarker,
+                                     int maxKeys) {
+        Page<ObjectVersion> page = new Page<>();
+        String lastPrefix = null;
+        Map.Entry<String, KeyVersions> entry = keyMarker == null || keyMarker.compareTo(prefix) < 0
+                ? this.keys.ceilingEntry(prefix)
+                : (versionIdMarker != null ? this.keys.ceilingEntry(keyMarker) : this.keys.higherEntry(keyMarker));
+
+        while (entry != null && entry.getKey().startsWith(prefix)) {
+            String key = entry.getKey();
+            String commonPrefix = commonPrefix(key, prefix, delimiter);
+
+            if (commonPrefix != null) {
+                if (!commonPrefix.equals(lastPrefix) && (keyMarker == null || commonPrefix.compareTo(keyMarker) > 0)) {
+                    if (page.size() == maxKeys) {
+                        page.truncated = true;
+
+                        break;
+                    }
+
+                    page.commonPrefixes.add(commonPrefix);
+                    page.last = commonPrefix;
+                    page.lastVersionId = null;
+                    lastPrefix = commonPrefix;
+                }
+
+                entry = this.keys.higherEntry(commonPrefix + Character.MAX_VALUE);
+
+                continue;
+            }
+
+            List<ObjectVersion> versions = entry.getValue().snapshot();
+            int start = 0;
+
+            if (key.equals(keyMarker) && versionIdMarker != null) {
+                while (start < versions.size() && !versions.get(start).versionId().equals(versionIdMarker)) {
+                    start++;
+                }
+
+                start++;
+            }
+
+            for (int index = start; index < versions.size(); index++) {
+                if (page.size() == maxKeys) {
+                    page.truncated = true;
+
+                    return page;
+                }
+
+                page.items.add(versions.get(index));
+                page.last = key;
+                page.lastVersionId = versions.get(index).versionId();
+            }
+
+            entry = this.keys.higherEntry(key);
+        }
+
+        return page;
+    }
+
+    private static String commonPrefix(String key, String prefix, String delimiter) {
+        if (delimiter == null || delimiter.isEmpty()) {
+            return null;
+        }
+
+        int index = key.indexOf(delimiter, prefix.length());
+
+        return index < 0 ? null : key.substring(0, index + delimiter.length());
+    }
+
+    private <T> T update(String key, Function<KeyVersions, T> update) {
+        while (true) {
+            KeyVersions versions = this.keys.computeIfAbsent(key, ignored -> new KeyVersions());
+
+            synchronized (versions) {
+                // Emptied and unlinked by a concurrent delete, retry on a fresh entry
+                if (versions.unlinked) {
+                    continue;
+                }
+
+                T result = update.apply(versions);
+
+                if (versions.versions.isEmpty()) {
+                    versions.unlinked = true;
+                    this.keys.remove(key, versions);
+                }
+
+                return result;
+            }
+        }
+    }
+
+    private static String newVersionId() {
+        return UUID.randomUUID().toString().replace("-", "");
+    }
+
+    /**
+     * A listing page, {@code last} and {@code lastVersionId} being where the next page starts.
+     */
+    static final class Page<T> {
+        final List<T> items = new ArrayList<>();
+        final List<String> commonPrefixes = new ArrayList<>();
+        boolean truncated;
+        String last;
+        String lastVersionId;
+
+        int size() {
+            return this.items.size() + this.commonPrefixes.size();
+        }
+    }
+
+    private static final class KeyVersions {
+        private final List<ObjectVersion> versions = new ArrayList<>(1);
+        private boolean unlinked;
+
+        synchronized ObjectVersion current() {
+            ObjectVersion current = this.versions.isEmpty() ? null : this.versions.get(0);
+
+            return current == null || current.deleteMarker() ? null : current;
+        }
+
+        synchronized List<ObjectVersion> snapshot() {
+            return new ArrayList<>(this.versions);
+        }
+
+        private ObjectVersion find(String versionId) {
+            for (ObjectVersion version : this.versions) {
+                if (version.versionId().equals(versionId)) {
+                    return version;
+                }
+            }
+
+            return null;
+        }
+
+        // Releases the removed version's content
+        private ObjectVersion remove(String versionId) {
+            ObjectVersion version = this.find(versionId);
+
+            if (version != null) {
+                this.versions.remove(version);
+
+                if (version.blob() != null) {
+                    version.blob().release();
+                }
+            }
+
+            return version;
+        }
+    }
+}
@@ -0,0 +1,1217 @@
+package SpringAWS.testing;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.w3c.dom.Element;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Embeddable S3-compatible server for integration and load tests, a faster stand-in for S3Mock that also
+ * covers versioning, multipart uploads and copies, ranged and conditional GETs and real continuation tokens.
+ * <p>
+ * Requests are served by a thread per connection over the JDK's HTTP server, keys are locked one at a time
+ * and content is kept off-heap in a {@link BlobStore}, copies sharing the source's bytes. Signatures aren't
+ * checked, the SDKs only need to be pointed at it with path-style access:
+ * <pre>
+ * LocalS3Server server = new LocalS3Server.Builder().withPort(8011).build();
+ * server.start();
+ * ...
+ * server.shutdown();
+ * </pre>
+ */
+public final class LocalS3Server {
+    static final String OWNER_ID = "75aa57f09aa0c8caeab4f8c24e99d10f8e7faeebf76c078efc7c6caea54ba06a";
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneOffset.UTC);
+    private static final int MAX_KEYS = 1000;
+    // Request headers kept with an object and returned on GET and HEAD, next to x-amz-meta-*
+    private static final Set<String> STORED_HEADERS = Set.of("content-type", "cache-control", "content-disposition",
+            "content-encoding", "content-language", "expires", "x-amz-storage-class",
+            "x-amz-website-redirect-location");
+
+    static {
+        // The JDK server closes a kept-alive connection right after its response once 200 are idle, and idle
+        // ones after 30s, which pooled clients only notice as broken pipes. It also writes headers and body
+        // separately, so small responses wait out delayed ACKs unless Nagle is off. All read when it loads.
+        setIfAbsent("sun.net.httpserver.maxIdleConnections", "100000");
+        setIfAbsent("sun.net.httpserver.idleInterval", "300");
+        setIfAbsent("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final int requestedPort;
+    private final boolean mappedStorage;
+    private final long minimumPartSize;
+    private final long latencyNanos;
+    private final ConcurrentMap<String, LocalBucket> buckets = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> requestCounts = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Long> failAbove = new ConcurrentHashMap<>();
+    private final Set<InetSocketAddress> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicLong requestIds = new AtomicLong();
+    private final AtomicInteger objectRequestsInFlight = new AtomicInteger();
+    private volatile int slowDownAbove = Integer.MAX_VALUE;
+    private final AtomicInteger stalledRequests = new AtomicInteger();
+    private volatile long stallNanos;
+    private BlobStore store;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    private LocalS3Server(Builder builder) {
+        this.requestedPort = builder.port;
+        this.mappedStorage = builder.mappedStorage;
+        this.minimumPartSize = builder.minimumPartSize;
+        this.latencyNanos = builder.latency.toNanos();
+    }
+
+    public synchronized void start() {
+        AtomicLong threads = new AtomicLong();
+
+        try {
+            this.store = new BlobStore(this.mappedStorage);
+            this.server = HttpServer.create(new InetSocketAddress(this.requestedPort), 1024);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "local-s3-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+
+            return thread;
+        });
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(this.executor);
+        this.server.start();
+    }
+
+    public synchronized void shutdown() {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+
+        try {
+            this.store.close();
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    public int port() {
+        return this.server.getAddress().getPort();
+    }
+
+    /**
+     * Requests served per operation, e.g. GetObject or ListObjectsV2, for tests asserting on round trips.
+     */
+    public Map<String, Long> requestCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        this.requestCounts.forEach((operation, count) -> counts.put(operation, count.sum()));
+
+        return counts;
+    }
+
+    public long requestCount(String operation) {
+        LongAdder count = this.requestCounts.get(operation);
+
+        return count == null ? 0 : count.sum();
+    }
+
+    /**
+     * Client connections requests arrived on so far, told apart by their remote address, for tests asserting
+     * that clients keep their connections alive.
+     */
+    public int connectionCount() {
+        return this.connections.size();
+    }
+
+    /**
+     * Answers object requests with 503 SlowDown while more than the given number are in flight, the way S3
+     * throttles a prefix pushed past its request rate. {@link Integer#MAX_VALUE} turns it off again.
+     * Rejected requests are counted as "SlowDown".
+     */
+    public void slowDownAbove(int concurrentRequests) {
+        this.slowDownAbove = concurrentRequests;
+    }
+
+    /**
+     * Holds the next object requests for the given time before answering them, like a request S3 is slow to
+     * serve. Stalled requests are counted as "Stalled".
+     */
+    public void stallNext(int requests, Duration stall) {
+        this.stallNanos = stall.toNanos();
+        this.stalledRequests.set(requests);
+    }
+
+    /**
+     * Lets the next requests of the operation through and answers the ones after them with 500 InternalError,
+     * like a transfer cut short by an outage. {@link Long#MAX_VALUE} turns it off again. Failed requests are
+     * counted as the operation they were.
+     */
+    public void failAfter(String operation, long requests) {
+        if (requests == Long.MAX_VALUE) {
+            this.failAbove.remove(operation);
+        } else {
+            this.failAbove.put(operation, this.requestCount(operation) + requests);
+        }
+    }
+
+    /**
+     * Off-heap bytes held by stored objects and parts.
+     */
+    public long storedBytes() {
+        return this.store.usedBytes();
+    }
+
+    private void handle(HttpExchange exchange) {
+        try {
+            exchange.getResponseHeaders().set("x-amz-request-id", Long.toHexString(this.requestIds.incrementAndGet()));
+            this.connections.add(exchange.getRemoteAddress());
+            Request request = new Request(exchange);
+
+            if (this.latencyNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(this.latencyNanos);
+            }
+
+            if (request.key == null) {
+                this.route(request);
+
+                return;
+            }
+
+            try {
+                if (this.objectRequestsInFlight.incrementAndGet() > this.slowDownAbove) {
+                    request.count("SlowDown");
+                    // S3 answers before 100-continue, here the body is on its way already and must be read
+                    exchange.getRequestBody().transferTo(OutputStream.nullOutputStream());
+
+                    throw new S3Error(503, "SlowDown", "Please reduce your request rate.");
+                }
+
+                if (this.stalledRequests.getAndUpdate(remaining -> Math.max(0, remaining - 1)) > 0) {
+                    request.count("Stalled");
+                    TimeUnit.NANOSECONDS.sleep(this.stallNanos);
+                }
+
+                this.route(request);
+            } finally {
+                this.objectRequestsInFlight.decrementAndGet();
+            }
+        } catch (S3Error error) {
+            this.sendError(exchange, error);
+        } catch (RuntimeException | IOException exception) {
+            this.sendError(exchange, new S3Error(500, "InternalError", String.valueOf(exception.getMessage())));
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            this.sendError(exchange, new S3Error(503, "ServiceUnavailable", "Server is shutting down."));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void route(Request request) throws IOException {
+        String method = request.exchange.getRequestMethod();
+
+        if (request.bucket == null) {
+            if (!method.equals("GET")) {
+                throw notImplemented(request);
+            }
+
+            this.listBuckets(request.count("ListBuckets"));
+
+            return;
+        }
+
+        if (request.key == null) {
+            this.routeBucket(request, method);
+        } else {
+            this.routeObject(request, method);
+        }
+    }
+
+    private void routeBucket(Request request, String method) throws IOException {
+        switch (method) {
+            case "PUT" -> {
+                if (request.has("versioning")) {
+                    this.putVersioning(request.count("PutBucketVersioning"));
+                } else if (request.has("lifecycle")) {
+                    this.bucket(request).setLifecycle(request.body().readAllBytes());
+                    this.send(request.count("PutBucketLifecycleConfiguration"), 200);
+                } else if (request.has("acl") || request.has("tagging") || request.has("policy")) {
+                    this.bucket(request);
+                    this.send(request.count("PutBucketSubresource"), 200);
+                } else {
+                    this.createBucket(request.count("CreateBucket"));
+                }
+            }
+            case "GET" -> {
+                if (request.has("versioning")) {
+                    this.getVersioning(request.count("GetBucketVersioning"));
+                } else if (request.has("lifecycle")) {
+                    this.getLifecycle(request.count("GetBucketLifecycleConfiguration"));
+                } else if (request.has("acl")) {
+                    this.getAcl(request.count("GetBucketAcl"));
+                } else if (request.has("location")) {
+                    this.bucket(request);
+                    this.sendXml(request.count("GetBucketLocation"), 200,
+                            Xml.document("LocationConstraint").close("LocationConstraint"));
+                } else if (request.has("uploads")) {
+                    this.listUploads(request.count("ListMultipartUploads"));
+                } else if (request.has("versions")) {
+                    this.listVersions(request.count("ListObjectVersions"));
+                } else if ("2".equals(request.query.get("list-type"))) {
+                    this.listObjects(request.count("ListObjectsV2"), true);
+                } else if (request.query.isEmpty() || request.has("prefix") || request.has("marker")
+                        || request.has("delimiter") || request.has("max-keys") || request.has("encoding-type")) {
+                    this.listObjects(request.count("ListObjects"), false);
+                } else {
+                    throw notImplemented(request);
+                }
+            }
+            case "HEAD" -> {
+                this.bucket(request.count("HeadBucket"));
+                this.send(request, 200);
+            }
+            case "DELETE" -> {
+                if (request.has("lifecycle")) {
+                    this.bucket(request).setLifecycle(null);
+                    this.send(request.count("DeleteBucketLifecycle"), 204);
+                } else {
+                    this.deleteBucket(request.count("DeleteBucket"));
+                }
+            }
+            case "POST" -> {
+                if (!request.has("delete")) {
+                    throw notImplemented(request);
+                }
+
+                this.deleteObjects(request.count("DeleteObjects"));
+            }
+            default -> throw notImplemented(request);
+        }
+    }
+
+    private void routeObject(Request request, String method) throws IOException {
+        boolean copy = request.header("x-amz-copy-source") != null;
+
+        switch (method) {
+            case "PUT" -> {
+                if (request.has("uploadId")) {
+                    if (copy) {
+                        this.uploadPartCopy(request.count("UploadPartCopy"));
+                    } else {
+                        this.uploadPart(request.count("UploadPart"));
+                    }
+                } else if (request.has("acl") || request.has("tagging")) {
+                    throw notImplemented(request);
+                } else if (copy) {
+                    this.copyObject(request.count("CopyObject"));
+                } else {
+                    this.putObject(request.count("PutObject"));
+                }
+            }
+            case "GET" -> {
+                if (request.has("uploadId")) {
+                    this.listParts(request.count("ListParts"));
+                } else if (request.has("acl") || request.has("tagging")) {
+                    throw notImplemented(request);
+                } else {
+                    this.getObject(request.count("GetObject"), false);
+                }
+            }
+            case "HEAD" -> this.getObject(request.count("HeadObject"), true);
+            case "DELETE" -> {
+                if (request.has("uploadId")) {
+                    this.abortUpload(request.count("AbortMultipartUpload"));
+                } else {
+                    this.deleteObject(request.count("DeleteObject"));
+                }
+            }
+            case "POST" -> {
+                if (request.has("uploads")) {
+                    this.initiateUpload(request.count("CreateMultipartUpload"));
+                } else if (request.has("uploadId")) {
+                    this.completeUpload(request.count("CompleteMultipartUpload"));
+                } else {
+                    throw notImplemented(request);
+                }
+            }
+            default -> throw notImplemented(request);
+        }
+    }
+
+    // region Buckets
+    private void listBuckets(Request request) throws IOException {
+        Xml xml = Xml.document("ListAllMyBucketsResult").owner("Owner").start("Buckets");
+
+        this.buckets.values().stream()
+                .sorted(Comparator.comparing(LocalBucket::name))
+                .forEach(bucket -> xml.start("Bucket")
+                        .element("Name", bucket.name())
+                        .element("CreationDate", bucket.created())
+                        .end("Bucket"));
+
+        this.sendXml(request, 200, xml.end("Buckets").close("ListAllMyBucketsResult"));
+    }
+
+    private void createBucket(Request request) throws IOException {
+        // As in us-east-1, creating a bucket one already owns succeeds
+        this.buckets.putIfAbsent(request.bucket, new LocalBucket(request.bucket));
+        request.exchange.getResponseHeaders().set("Location", "/" + request.bucket);
+        this.send(request, 200);
+    }
+
+    private void deleteBucket(Request request) throws IOException {
+        LocalBucket bucket = this.bucket(request);
+
+        if (!bucket.isEmpty()) {
+            throw new S3Error(409, "BucketNotEmpty", "The bucket you tried to delete is not empty");
+        }
+
+        this.buckets.remove(request.bucket, bucket);
+        this.send(request, 204);
+    }
+
+    private void putVersioning(Request request) throws IOException {
+        LocalBucket bucket = this.bucket(request);
+        String status = Xml.text(Xml.parse(request.body().readAllBytes()), "Status");
+
+        if (!LocalBucket.ENABLED.equals(status) && !LocalBucket.SUSPENDED.equals(status)) {
+            throw new S3Error(400, "MalformedXML", String.format("Unknown versioning status '%s'", status));
+        }
+
+        bucket.setVersioning(status);
+        this.send(request, 200);
+    }
+
+    private void getVersioning(Request request) throws IOException {
+        this.sendXml(request, 200, Xml.document("VersioningConfiguration")
+                .element("Status", this.bucket(request).versioning())
+                .close("VersioningConfiguration"));
+    }
+
+    private void getLifecycle(Request request) throws IOException {
+        byte[] lifecycle = this.bucket(request).lifecycle();
+
+        if (lifecycle == null) {
+            throw new S3Error(404, "NoSuchLifecycleConfiguration", "The lifecycle configuration does not exist");
+        }
+
+        this.sendXml(request, 200, lifecycle);
+    }
+
+    private void getAcl(Request request) throws IOException {
+        this.bucket(request);
+        this.sendXml(request, 200, Xml.document("AccessControlPolicy")
+                .owner("Owner")
+                .start("AccessControlList").start("Grant")
+                .start("Grantee xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" xsi:type=\"CanonicalUser\"")
+                .element("ID", OWNER_ID).element("DisplayName", "local")
+                .end("Grantee")
+                .element("Permission", "FULL_CONTROL")
+                .end("Grant").end("AccessControlList")
+                .close("AccessControlPolicy"));
+    }
+    // endregion
+
+    // region Listings
+    private void listObjects(Request request, boolean v2) throws IOException {
+        LocalBucket bucket = this.bucket(request);
+        String prefix = request.query.getOrDefault("prefix", "");
+        String delimiter = request.query.get("delimiter");
+        int maxKeys = maxKeys(request);
+        String token = request.query.get("continuation-token");
+        String after = v2
+                ? (token != null ? decodeToken(token) : request.query.get("start-after"))
+                : request.query.get("marker");
+        LocalBucket.Page<ObjectVersion> page = bucket.list(prefix, delimiter, after, maxKeys);
+        boolean urlEncoded = "url".equals(request.query.get("encoding-type"));
+        Xml xml = Xml.document("ListBucketResult", urlEncoded)
+                .element("Name", bucket.name())
+                .name("Prefix", prefix)
+                .name("Delimiter", delimiter)
+                .element("MaxKeys", maxKeys)
+                .element("IsTruncated", page.truncated)
+                .element("EncodingType", urlEncoded ? "url" : null);
+
+        if (v2) {
+            xml.element("KeyCount", page.size())
+                    .name("StartAfter", request.query.get("start-after"))
+                    .element("ContinuationToken", token)
+                    .element("NextContinuationToken", page.truncated ? encodeToken(page.last) : null);
+        } else {
+            xml.name("Marker", after == null ? "" : after)
+                    .name("NextMarker", page.truncated ? page.last : null);
+        }
+
+        for (ObjectVersion version : page.items) {
+            xml.start("Contents")
+                    .name("Key", version.key())
+                    .element("LastModified", version.lastModified())
+                    .element("ETag", version.eTag())
+                    .element("Size", version.size())
+                    .element("StorageClass", version.storageClass());
+
+            if (!v2 || "true".equals(request.query.get("fetch-owner"))) {
+                xml.owner("Owner");
+            }
+
+            xml.end("Contents");
+        }
+
+        page.commonPrefixes.forEach(commonPrefix ->
+                xml.start("CommonPrefixes").name("Prefix", commonPrefix).end("CommonPrefixes"));
+
+        this.sendXml(request, 200, xml.close("ListBucketResult"));
+    }
+
+    private void listVersions(Request request) throws IOException {
+        LocalBucket bucket = this.bucket(request);
+        String prefix = request.query.getOrDefault("prefix", "");
+        String delimiter = request.query.get("delimiter");
+        String keyMarker = emptyToNull(request.query.get("key-marker"));
+        String versionIdMarker = emptyToNull(request.query.get("version-id-marker"));
+        int maxKeys = maxKeys(request);
+        LocalBucket.Page<ObjectVersion> page = bucket.listVersions(prefix, delimiter, keyMarker, versionIdMarker,
+                maxKeys);
+        boolean urlEncoded = "url".equals(request.query.get("encoding-type"));
+        Xml xml = Xml.document("ListVersionsResult", urlEncoded)
+                .element("Name", bucket.name())
+                .name("Prefix", prefix)
+                .name("Delimiter", delimiter)
+                .name("KeyMarker", keyMarker == null ? "" : keyMarker)
+                .element("VersionIdMarker", versionIdMarker == null ? "" : versionIdMarker)
+                .element("MaxKeys", maxKeys)
+                .element("IsTruncated", page.truncated)
+                .element("EncodingType", urlEncoded ? "url" : null);
+
+        if (page.truncated) {
+            xml.name("NextKeyMarker", page.last).element("NextVersionIdMarker", page.lastVersionId);
+        }
+
+        String previousKey = null;
+
+        for (ObjectVersion version : page.items) {
+            // Versions come newest first per key, so the first of a key is its latest unless the page
+            // started within the key
+            boolean latest = !version.key().equals(previousKey)
+                    && !(version.key().equals(keyMarker) && versionIdMarker != null);
+            String element = version.deleteMarker() ? "DeleteMarker" : "Version";
+            previousKey = version.key();
+
+            xml.start(element)
+                    .name("Key", version.key())
+                    .element("VersionId", version.versionId())
+                    .element("IsLatest", latest)
+                    .element("LastModified", version.lastModified());
+
+            if (!version.deleteMarker()) {
+                xml.element("ETag", version.eTag())
+                        .element("Size", version.size())
+                        .element("StorageClass", version.storageClass());
+            }
+
+            xml.owner("Owner").end(element);
+        }
+
+        page.commonPrefixes.forEach(commonPrefix ->
+                xml.start("CommonPrefixes").name("Prefix", commonPrefix).end("CommonPrefixes"));
+
+        this.sendXml(request, 200, xml.close("ListVersionsResult"));
+    }
+
+    private void listUploads(Request request) throws IOException {
+        LocalBucket bucket = this.bucket(request);
+        String prefix = request.query.getOrDefault("prefix", "");
+        Xml xml = Xml.document("ListMultipartUploadsResult")
+                .element("Bucket", bucket.name())
+                .element("KeyMarker", "")
+                .element("UploadIdMarker", "")
+                .element("Prefix", prefix)
+                .element("MaxUploads", MAX_KEYS)
+                .element("IsTruncated", false);
+
+        bucket.uploads().values().stream()
+                .filter(upload -> upload.key().startsWith(prefix))
+                .sorted(Comparator.comparing(MultipartUpload::key).thenComparing(MultipartUpload::initiated))
+                .forEach(upload -> xml.start("Upload")
+                        .element("Key", upload.key())
+                        .element("UploadId", upload.uploadId())
+                        .owner("Initiator")
+                        .owner("Owner")
+                        .element("StorageClass", upload.headers().getOrDefault("x-amz-storage-class", "STANDARD"))
+                        .element("Initiated", upload.initiated())
+                        .end("Upload"));
+
+        this.sendXml(request, 200, xml.close("ListMultipartUploadsResult"));
+    }
+
+    private void listParts(Request request) throws IOException {
+        MultipartUpload upload = this.upload(request);
+        int marker = Integer.parseInt(request.query.getOrDefault("part-number-marker", "0"));
+        int maxParts = Integer.parseInt(request.query.getOrDefault("max-parts", String.valueOf(MAX_KEYS)));
+        List<MultipartUpload.Part> parts = upload.parts().stream()
+                .filter(part -> part.partNumber() > marker)
+                .collect(Collectors.toList());
+        boolean truncated = parts.size() > maxParts;
+        parts = parts.subList(0, Math.min(parts.size(), maxParts));
+        Xml xml = Xml.document("ListPartsResult")
+                .element("Bucket", request.bucket)
+                .element("Key", upload.key())
+                .element("UploadId", upload.uploadId())
+                .owner("Initiator")
+                .owner("Owner")
+                .element("StorageClass", "STANDARD")
+                .element("PartNumberMarker", marker)
+                .element("NextPartNumberMarker", parts.isEmpty() ? marker : parts.get(parts.size() - 1).partNumber())
+                .element("MaxParts", maxParts)
+                .element("IsTruncated", truncated);
+
+        for (MultipartUpload.Part part : parts) {
+            xml.start("Part")
+                    .element("PartNumber", part.partNumber())
+                    .element("LastModified", part.lastModified())
+                    .element("ETag", part.eTag())
+                    .element("Size", part.blob().length())
+                    .end("Part");
+        }
+
+        this.sendXml(request, 200, xml.close("ListPartsResult"));
+    }
+    // endregion
+
+    // region Objects
+    private void putObject(Request request) throws IOException {
+        LocalBucket bucket = this.bucket(request);
+        Blob blob = this.store.write(request.body(), request.bodyLength());
+        this.verifyContentMd5(request, blob);
+
+        ObjectVersion version = bucket.put(request.key, blob, Digests.eTag(blob.md5()), storedHeaders(request));
+
+        request.exchange.getResponseHeaders().set("ETag", version.eTag());
+        this.setVersionHeader(request, bucket, version);
+        this.send(request, 200);
+    }
+
+    private void getObject(Request request, boolean head) throws IOException {
+        LocalBucket bucket = this.bucket(request);
+        String versionId = request.query.get("versionId");
+        ObjectVersion version = bucket.acquire(request.key, versionId);
+        Headers headers = request.exchange.getResponseHeaders();
+
+        if (version == null) {
+            throw versionId == null
+                    ? S3Error.noSuchKey(request.key)
+                    : new S3Error(404, "NoSuchVersion", String.format("Version '%s' does not exist", versionId));
+        }
+
+        if (version.deleteMarker()) {
+            headers.set("x-amz-delete-marker", "true");
+            headers.set("x-amz-version-id", version.versionId());
+
+            throw versionId == null
+                    ? S3Error.noSuchKey(request.key)
+                    : new S3Error(405, "MethodNotAllowed", "The specified version is a delete marker");
+        }
+
+        Blob blob = version.blob();
+
+        try {
+            long length = blob.length();
+            String ifMatch = request.header("If-Match");
+            String ifNoneMatch = request.header("If-None-Match");
+
+            headers.set("ETag", version.eTag());
+            headers.set("Last-Modified", HTTP_DATE.format(version.lastModified()));
+            headers.set("Accept-Ranges", "bytes");
+            version.headers().forEach(headers::set);
+            this.setVersionHeader(request, bucket, version);
+
+            if (ifMatch != null && !eTagMatches(ifMatch, version.eTag())) {
+                throw new S3Error(412, "PreconditionFailed", "At least one of the preconditions did not hold");
+            }
+
+            if (ifNoneMatch != null && eTagMatches(ifNoneMatch, version.eTag())) {
+                this.send(request, 304);
+
+                return;
+            }
+
+            long[] range = head ? null : parseRange(request.header("Range"), length);
+            long from = range == null ? 0 : range[0];
+            long to = range == null ? length : range[1] + 1;
+
+            if (range != null) {
+                headers.set("Content-Range", String.format("bytes %d-%d/%d", from, to - 1, length));
+            }
+
+            if (head) {
+                headers.set("Content-Length", Long.toString(length));
+                sendResponseHeaders(request.exchange, 200, -1);
+
+                return;
+            }
+
+            sendResponseHeaders(request.exchange, range == null ? 200 : 206, to - from == 0 ? -1 : to - from);
+
+            try (OutputStream outputStream = request.exchange.getResponseBody()) {
+                blob.transferTo(outputStream, from, to);
+            }
+        } finally {
+            blob.release();
+        }
+    }
+
+    private void deleteObject(Request request) throws IOException {
+        LocalBucket bucket = this.bucket(request);
+        ObjectVersion deleted = bucket.delete(request.key, request.query.get("versionId"));
+
+        if (deleted != null) {
+            if (deleted.deleteMarker()) {
+                request.exchange.getResponseHeaders().set("x-amz-delete-marker", "true");
+            }
+
+            this.setVersionHeader(request, bucket, deleted);
+        }
+
+        this.send(request, 204);
+    }
+
+    private void deleteObjects(Request request) throws IOException {
+        LocalBucket bucket = this.bucket(request);
+        Element delete = Xml.parse(request.body().readAllBytes());
+        boolean quiet = "true".equals(Xml.text(delete, "Quiet"));
+        List<Element> objects = Xml.children(delete, "Object");
+        Xml xml = Xml.document("DeleteResult");
+
+        if (objects.size() > MAX_KEYS) {
+            throw new S3Error(400, "MalformedXML", "At most 1000 keys can be deleted at once");
+        }
+
+        for (Element object : objects) {
+            String key = Xml.text(object, "Key");
+            String versionId = Xml.text(object, "VersionId");
+            ObjectVersion deleted = bucket.delete(key, versionId);
+
+            if (!quiet) {
+                xml.start("Deleted").element("Key", key).element("VersionId", versionId);
+
+                if (deleted != null && deleted.deleteMarker()) {
+                    xml.element("DeleteMarker", true).element("DeleteMarkerVersionId", deleted.versionId());
+                }
+
+                xml.end("Deleted");
+            }
+        }
+
+        this.sendXml(request, 200, xml.close("DeleteResult"));
+    }
+
+    private void copyObject(Request request) throws IOException {
+        LocalBucket bucket = this.bucket(request);
+        ObjectVersion source = this.acquireCopySource(request);
+
+        try {
+            Map<String, String> headers = "REPLACE".equals(request.header("x-amz-metadata-directive"))
+                    ? storedHeaders(request)
+                    : source.headers();
+
+            if (request.header("x-amz-storage-class") != null) {
+                headers = new LinkedHashMap<>(headers);
+                headers.put("x-amz-storage-class", request.header("x-amz-storage-class"));
+            }
+
+            ObjectVersion copy = bucket.put(request.key, source.blob().retain(), source.eTag(), headers);
+
+            this.setVersionHeader(request, bucket, copy);
+
+            if (!source.versionId().equals(ObjectVersion.NULL_VERSION)) {
+                request.exchange.getResponseHeaders().set("x-amz-copy-source-version-id", source.versionId());
+            }
+
+            this.sendXml(request, 200, Xml.document("CopyObjectResult")
+                    .element("LastModified", copy.lastModified())
+                    .element("ETag", copy.eTag())
+                    .close("CopyObjectResult"));
+        } finally {
+            source.blob().release();
+        }
+    }
+    // endregion
+
+    // region Multipart Uploads
+    private void initiateUpload(Request request) throws IOException {
+        LocalBucket bucket = this.bucket(request);
+        MultipartUpload upload = new MultipartUpload(request.key, storedHeaders(request));
+        bucket.uploads().put(upload.uploadId(), upload);
+
+        this.sendXml(request, 200, Xml.document("InitiateMultipartUploadResult")
+                .element("Bucket", bucket.name())
+                .element("Key", request.key)
+                .element("UploadId", upload.uploadId())
+                .close("InitiateMultipartUploadResult"));
+    }
+
+    private void uploadPart(Request request) throws IOException {
+        MultipartUpload upload = this.upload(request);
+        int partNumber = partNumber(request);
+        Blob blob = this.store.write(request.body(), request.bodyLength());
+        this.verifyContentMd5(request, blob);
+
+        MultipartUpload.Part part = upload.putPart(partNumber, blob);
+
+        request.exchange.getResponseHeaders().set("ETag", part.eTag());
+        this.send(request, 200);
+    }
+
+    private void uploadPartCopy(Request request) throws IOException {
+        MultipartUpload upload = this.upload(request);
+        int partNumber = partNumber(request);
+        ObjectVersion source = this.acquireCopySource(request);
+        MultipartUpload.Part part;
+
+        try {
+            long[] range = parseRange(request.header("x-amz-copy-source-range"), source.blob().length());
+            Blob blob = range == null ? source.blob().retain() : source.blob().slice(range[0], range[1] + 1);
+            part = upload.putPart(partNumber, blob);
+        } finally {
+            source.blob().release();
+        }
+
+        this.sendXml(request, 200, Xml.document("CopyPartResult")
+                .element("LastModified", part.lastModified())
+                .element("ETag", part.eTag())
+                .close("CopyPartResult"));
+    }
+
+    private void completeUpload(Request request) throws IOException {
+        LocalBucket bucket = this.bucket(request);
+        MultipartUpload upload = this.upload(request);
+        List<Map.Entry<Integer, String>> parts = new ArrayList<>();
+
+        for (Element part : Xml.children(Xml.parse(request.body().readAllBytes()), "Part")) {
+            parts.add(new AbstractMap.SimpleImmutableEntry<>(Integer.parseInt(Xml.text(part, "PartNumber")),
+                    Xml.text(part, "ETag")));
+        }
+
+        MultipartUpload.Assembled assembled = upload.complete(this.store, parts, this.minimumPartSize);
+        bucket.uploads().remove(upload.uploadId(), upload);
+        ObjectVersion version = bucket.put(request.key, assembled.blob(), assembled.eTag(), upload.headers());
+
+        this.setVersionHeader(request, bucket, version);
+        this.sendXml(request, 200, Xml.document("CompleteMultipartUploadResult")
+                .element("Location", "/" + bucket.name() + "/" + request.key)
+                .element("Bucket", bucket.name())
+                .element("Key", request.key)
+                .element("ETag", version.eTag())
+                .close("CompleteMultipartUploadResult"));
+    }
+
+    private void abortUpload(Request request) throws IOException {
+        LocalBucket bucket = this.bucket(request);
+        MultipartUpload upload = bucket.uploads().remove(request.query.get("uploadId"));
+
+        if (upload == null) {
+            throw S3Error.noSuchUpload(request.query.get("uploadId"));
+        }
+
+        upload.abort();
+        this.send(request, 204);
+    }
+    // endregion
+
+    private LocalBucket bucket(Request request) {
+        return this.bucket(request.bucket);
+    }
+
+    private LocalBucket bucket(String bucketName) {
+        LocalBucket bucket = this.buckets.get(bucketName);
+
+        if (bucket == null) {
+            throw S3Error.noSuchBucket(bucketName);
+        }
+
+        return bucket;
+    }
+
+    private MultipartUpload upload(Request request) {
+        MultipartUpload upload = this.bucket(request).uploads().get(request.query.get("uploadId"));
+
+        if (upload == null || !upload.key().equals(request.key)) {
+            throw S3Error.noSuchUpload(request.query.get("uploadId"));
+        }
+
+        return upload;
+    }
+
+    /**
+     * The x-amz-copy-source version with its blob retained, "/bucket/key" optionally with "?versionId=".
+     */
+    private ObjectVersion acquireCopySource(Request request) {
+        String copySource = request.header("x-amz-copy-source");
+        String versionId = null;
+        int query = copySource.indexOf("?versionId=");
+
+        if (query >= 0) {
+            versionId = copySource.substring(query + "?versionId=".length());
+            copySource = copySource.substring(0, query);
+        }
+
+        copySource = decodePath(copySource.startsWith("/") ? copySource.substring(1) : copySource);
+        int separator = copySource.indexOf('/');
+
+        if (separator <= 0) {
+            throw S3Error.invalidArgument(String.format("Invalid copy source '%s'", copySource));
+        }
+
+        String key = copySource.substring(separator + 1);
+        ObjectVersion source = this.bucket(copySource.substring(0, separator)).acquire(key, versionId);
+
+        if (source == null || source.deleteMarker()) {
+            throw S3Error.noSuchKey(key);
+        }
+
+        return source;
+    }
+
+    private void verifyContentMd5(Request request, Blob blob) {
+        String contentMd5 = request.header("Content-MD5");
+
+        if (contentMd5 != null && !contentMd5.equals(Base64.getEncoder().encodeToString(blob.md5()))) {
+            blob.release();
+
+            throw new S3Error(400, "BadDigest", "The Content-MD5 you specified did not match what was received");
+        }
+    }
+
+    private void setVersionHeader(Request request, LocalBucket bucket, ObjectVersion version) {
+        // Unversioned buckets don't answer with version ids
+        if (bucket.versioning() != null) {
+            request.exchange.getResponseHeaders().set("x-amz-version-id", version.versionId());
+        }
+    }
+
+    /**
+     * Reads what is left of the request first: the JDK server closes the connection when a response
+     * completes before its request was read to the end, and a response without a body completes right here.
+     */
+    private static void sendResponseHeaders(HttpExchange exchange, int status, long length) throws IOException {
+        exchange.getRequestBody().close();
+        exchange.sendResponseHeaders(status, length);
+    }
+
+    private void send(Request request, int status) throws IOException {
+        sendResponseHeaders(request.exchange, status, -1);
+    }
+
+    private void sendXml(Request request, int status, byte[] body) throws IOException {
+        request.exchange.getResponseHeaders().set("Content-Type", "application/xml");
+        sendResponseHeaders(request.exchange, status, body.length);
+
+        try (OutputStream outputStream = request.exchange.getResponseBody()) {
+            outputStream.write(body);
+        }
+    }
+
+    private void sendError(HttpExchange exchange, S3Error error) {
+        // Too late once the body is being streamed, closing the exchange cuts the response short
+        if (exchange.getResponseCode() != -1) {
+            return;
+        }
+
+        try {
+            if (exchange.getRequestMethod().equals("HEAD")) {
+                sendResponseHeaders(exchange, error.status(), -1);
+
+                return;
+            }
+
+            byte[] body = Xml.document("Error")
+                    .element("Code", error.code())
+                    .element("Message", error.getMessage())
+                    .element("Resource", exchange.getRequestURI().getRawPath())
+                    .element("RequestId", exchange.getResponseHeaders().getFirst("x-amz-request-id"))
+                    .close("Error");
+            exchange.getResponseHeaders().set("Content-Type", "application/xml");
+            sendResponseHeaders(exchange, error.status(), body.length);
+            exchange.getResponseBody().write(body);
+        } catch (IOException ignored) {
+            // The client is gone
+        }
+    }
+
+    private static Map<String, String> storedHeaders(Request request) {
+        Map<String, String> headers = new LinkedHashMap<>();
+
+        request.exchange.getRequestHeaders().forEach((name, values) -> {
+            String header = name.toLowerCase();
+
+            if (header.startsWith("x-amz-meta-") || STORED_HEADERS.contains(header)) {
+                headers.put(header, values.get(0));
+            }
+        });
+
+        // aws-chunked only describes the transfer of the request body
+        String contentEncoding = headers.remove("content-encoding");
+
+        if (contentEncoding != null) {
+            String stored = List.of(contentEncoding.split(",")).stream()
+                    .map(String::trim)
+                    .filter(encoding -> !encoding.isEmpty() && !encoding.equals("aws-chunked"))
+                    .collect(Collectors.joining(","));
+
+            if (!stored.isEmpty()) {
+                headers.put("content-encoding", stored);
+            }
+        }
+
+        headers.putIfAbsent("content-type", "binary/octet-stream");
+
+        return Collections.unmodifiableMap(headers);
+    }
+
+    private static int partNumber(Request request) {
+        int partNumber;
+
+        try {
+            partNumber = Integer.parseInt(request.query.get("partNumber"));
+        } catch (NumberFormatException exception) {
+            partNumber = 0;
+        }
+
+        if (partNumber < 1 || partNumber > 10000) {
+            throw S3Error.invalidArgument("Part number must be an integer between 1 and 10000");
+        }
+
+        return partNumber;
+    }
+
+    private static int maxKeys(Request request) {
+        return Math.min(MAX_KEYS, Integer.parseInt(request.query.getOrDefault("max-keys", String.valueOf(MAX_KEYS))));
+    }
+
+    /**
+     * @return the inclusive first and last byte, null without a (single) byte range
+     */
+    private static long[] parseRange(String range, long length) {
+        if (range == null || !range.startsWith("bytes=") || range.contains(",")) {
+            return null;
+        }
+
+        String[] bounds = range.substring("bytes=".length()).split("-", -1);
+        long first;
+        long last;
+
+        try {
+            if (bounds[0].isEmpty()) {
+                first = Math.max(0, length - Long.parseLong(bounds[1]));
+                last = length - 1;
+            } else {
+                first = Long.parseLong(bounds[0]);
+                last = bounds[1].isEmpty() ? length - 1 : Math.min(length - 1, Long.parseLong(bounds[1]));
+            }
+        } catch (NumberFormatException exception) {
+            return null;
+        }
+
+        if (first >= length || last < first) {
+            throw new S3Error(416, "InvalidRange", "The requested range is not satisfiable");
+        }
+
+        return new long[]{first, last};
+    }
+
+    private static boolean eTagMatches(String condition, String eTag) {
+        for (String candidate : condition.split(",")) {
+            String trimmed = candidate.trim();
+
+            if (trimmed.equals("*") || trimmed.equals(eTag) || ("\"" + trimmed + "\"").equals(eTag)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    // The token is the last key or common prefix of the page, opaque to clients
+    private static String encodeToken(String last) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(last.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeToken(String token) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException exception) {
+            throw S3Error.invalidArgument("The continuation token provided is incorrect");
+        }
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    // Percent-decoding only, a '+' in a path is a plus
+    private static String decodePath(String path) {
+        return URLDecoder.decode(path.replace("+", "%2B"), StandardCharsets.UTF_8);
+    }
+
+    private static void setIfAbsent(String property, String value) {
+        if (System.getProperty(property) == null) {
+            System.setProperty(property, value);
+        }
+    }
+
+    private static S3Error notImplemented(Request request) {
+        return new S3Error(501, "NotImplemented", String.format("%s %s is not supported by the local server",
+                request.exchange.getRequestMethod(), request.exchange.getRequestURI()));
+    }
+
+    private final class Request {
+        private final HttpExchange exchange;
+        private final String bucket;
+        private final String key;
+        private final Map<String, String> query = new HashMap<>();
+
+        private Request(HttpExchange exchange) {
+            this.exchange = exchange;
+
+            String path = exchange.getRequestURI().getRawPath();
+            path = path.startsWith("/") ? path.substring(1) : path;
+            int separator = path.indexOf('/');
+            String bucket = separator < 0 ? path : path.substring(0, separator);
+            String key = separator < 0 ? "" : decodePath(path.substring(separator + 1));
+            this.bucket = bucket.isEmpty() ? null : decodePath(bucket);
+            this.key = key.isEmpty() ? null : key;
+
+            String rawQuery = exchange.getRequestURI().getRawQuery();
+
+            if (rawQuery != null) {
+                for (String parameter : rawQuery.split("&")) {
+                    int equals = parameter.indexOf('=');
+                    String name = equals < 0 ? parameter : parameter.substring(0, equals);
+                    String value = equals < 0 ? "" : parameter.substring(equals + 1);
+
+                    if (!name.isEmpty()) {
+                        this.query.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                                URLDecoder.decode(value, StandardCharsets.UTF_8));
+                    }
+                }
+            }
+        }
+
+        private Request count(String operation) throws IOException {
+            LongAdder count = LocalS3Server.this.requestCounts.computeIfAbsent(operation, ignored -> new LongAdder());
+            count.increment();
+
+            if (count.sum() > LocalS3Server.this.failAbove.getOrDefault(operation, Long.MAX_VALUE)) {
+                this.exchange.getRequestBody().transferTo(OutputStream.nullOutputStream());
+
+                throw new S3Error(500, "InternalError", "We encountered an internal error. Please try again.");
+            }
+
+            return this;
+        }
+
+        private boolean has(String parameter) {
+            return this.query.containsKey(parameter);
+        }
+
+        private String header(String name) {
+            return this.exchange.getRequestHeaders().getFirst(name);
+        }
+
+        private InputStream body() {
+            String contentSha256 = this.header("x-amz-content-sha256");
+
+            return contentSha256 != null && contentSha256.startsWith("STREAMING-")
+                    ? new AwsChunkedInputStream(this.exchange.getRequestBody())
+                    : this.exchange.getRequestBody();
+        }
+
+        private long bodyLength() {
+            String length = this.header("x-amz-decoded-content-length");
+
+            if (length == null) {
+                length = this.header("Content-Length");
+            }
+
+            return length == null ? -1 : Long.parseLong(length);
+        }
+    }
+
+    public static class Builder {
+        private int port;
+        private boolean mappedStorage = true;
+        private long minimumPartSize = 5 * 1024 * 1024;
+        private Duration latency = Duration.ZERO;
+
+        /**
+         * Port to listen on, 0 (the default) picks a free one, see {@link LocalS3Server#port()}.
+         */
+        public Builder withPort(int port) {
+            this.port = port;
+
+            return this;
+        }
+
+        /**
+         * Keeps content in direct buffers instead of a memory-mapped temporary file, bounded by
+         * -XX:MaxDirectMemorySize.
+         */
+        public Builder withDirectMemory() {
+            this.mappedStorage = false;
+
+            return this;
+        }
+
+        /**
+         * Smallest size of all but the last part of a multipart upload, 5MB as on S3.
+         */
+        public Builder withMinimumPartSize(long minimumPartSize) {
+            this.minimumPartSize = minimumPartSize;
+
+            return this;
+        }
+
+        /**
+         * Holds every request for the given time before serving it, the round trip to S3 a loopback
+         * connection doesn't have. Without it, benchmarks of concurrent requests only measure CPU time.
+         */
+        public Builder withLatency(Duration latency) {
+            this.latency = latency;
+
+            return this;
+        }
+
+        public LocalS3Server build() {
+            return new LocalS3Server(this);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package SpringAWS.testing;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * An initiated multipart upload and the parts uploaded so far.
+ */
+final class MultipartUpload {
+    private final String uploadId = UUID.randomUUID().toString();
+    private final String key;
+    private final Map<String, String> headers;
+    private final Instant initiated = Instant.now();
+    private final TreeMap<Integer, Part> parts = new TreeMap<>();
+    private boolean closed;
+
+    MultipartUpload(String key, Map<String, String> headers) {
+        this.key = key;
+        this.headers = headers;
+    }
+
+    String uploadId() {
+        return this.uploadId;
+    }
+
+    String key() {
+        return this.key;
+    }
+
+    Map<String, String> headers() {
+        return this.headers;
+    }
+
+    Instant initiated() {
+        return this.initiated;
+    }
+
+    /**
+     * Adds or replaces the part, taking over the blob's reference.
+     */
+    synchronized Part putPart(int partNumber, Blob blob) {
+        if (this.closed) {
+            blob.release();
+
+            throw S3Error.noSuchUpload(this.uploadId);
+        }
+
+        Part part = new Part(partNumber, blob, Digests.eTag(blob.md5()), Instant.now());
+        Part replaced = this.parts.put(partNumber, part);
+
+        if (replaced != null) {
+            replaced.blob().release();
+        }
+
+        return part;
+    }
+
+    synchronized List<Part> parts() {
+        return new ArrayList<>(this.parts.values());
+    }
+
+    /**
+     * Assembles the listed parts into one object and ends the upload.
+     *
+     * @param requested part number to ETag, in the order the client listed them
+     */
+    synchronized Assembled complete(BlobStore store, List<Map.Entry<Integer, String>> requested, long minimumPartSize) {
+        if (this.closed) {
+            throw S3Error.noSuchUpload(this.uploadId);
+        }
+
+        if (requested.isEmpty()) {
+            throw new S3Error(400, "MalformedXML", "The upload must list at least one part");
+        }
+
+        List<Blob> blobs = new ArrayList<>(requested.size());
+        List<byte[]> md5s = new ArrayList<>(requested.size());
+        int previous = 0;
+
+        for (int index = 0; index < requested.size(); index++) {
+            int partNumber = requested.get(index).getKey();
+            Part part = this.parts.get(partNumber);
+
+            if (partNumber <= previous) {
+                throw new S3Error(400, "InvalidPartOrder", "Parts must be listed in ascending order");
+            }
+
+            if (part == null || !part.eTag().equals(quoted(requested.get(index).getValue()))) {
+                throw new S3Error(400, "InvalidPart", String.format("Part %d was not uploaded with this ETag",
+                        partNumber));
+            }
+
+            if (index < requested.size() - 1 && part.blob().length() < minimumPartSize) {
+                throw new S3Error(400, "EntityTooSmall", String.format("Part %d is smaller than %d bytes",
+                        partNumber, minimumPartSize));
+            }
+
+            blobs.add(part.blob());
+            md5s.add(part.blob().md5());
+            previous = partNumber;
+        }
+
+        // Only now that all parts are valid, so that a rejected completion can be retried
+        blobs.forEach(Blob::retain);
+        this.abort();
+
+        return new Assembled(Blob.concat(store, blobs, null), Digests.multipartETag(md5s));
+    }
+
+    synchronized void abort() {
+        this.closed = true;
+        this.parts.values().forEach(part -> part.blob().release());
+        this.parts.clear();
+    }
+
+    private static String quoted(String eTag) {
+        return eTag.startsWith("\"") ? eTag : "\"" + eTag + "\"";
+    }
+
+    record Part(int partNumber, Blob blob, String eTag, Instant lastModified) {
+    }
+
+    record Assembled(Blob blob, String eTag) {
+    }
+}
@@ -0,0 +1,29 @@
+package SpringAWS.testing;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * One version of a key, or a delete marker when it has no blob. Unversioned buckets keep a single
+ * version whose id is "null", as S3 does.
+ */
+record ObjectVersion(String key, String versionId, Blob blob, String eTag, Map<String, String> headers,
+                     Instant lastModified) {
+    static final String NULL_VERSION = "null";
+
+    static ObjectVersion deleteMarker(String key, String versionId) {
+        return new ObjectVersion(key, versionId, null, null, Map.of(), Instant.now());
+    }
+
+    boolean deleteMarker() {
+        return this.blob == null;
+    }
+
+    long size() {
+        return this.blob == null ? 0 : this.blob.length();
+    }
+
+    String storageClass() {
+        return this.headers.getOrDefault("x-amz-storage-class", "STANDARD");
+    }
+}
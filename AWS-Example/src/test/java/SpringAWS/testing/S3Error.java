@@ -0,0 +1,39 @@
+package SpringAWS.testing;
+
+/**
+ * An S3 error response, its code is what the SDKs map to AmazonS3Exception#getErrorCode.
+ */
+final class S3Error extends RuntimeException {
+    private final int status;
+    private final String code;
+
+    S3Error(int status, String code, String message) {
+        super(message);
+        this.status = status;
+        this.code = code;
+    }
+
+    static S3Error noSuchBucket(String bucketName) {
+        return new S3Error(404, "NoSuchBucket", String.format("The bucket '%s' does not exist", bucketName));
+    }
+
+    static S3Error noSuchKey(String key) {
+        return new S3Error(404, "NoSuchKey", String.format("The key '%s' does not exist", key));
+    }
+
+    static S3Error noSuchUpload(String uploadId) {
+        return new S3Error(404, "NoSuchUpload", String.format("The upload '%s' does not exist", uploadId));
+    }
+
+    static S3Error invalidArgument(String message) {
+        return new S3Error(400, "InvalidArgument", message);
+    }
+
+    int status() {
+        return this.status;
+    }
+
+    String code() {
+        return this.code;
+    }
+}
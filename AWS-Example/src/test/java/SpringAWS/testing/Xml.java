@@ -0,0 +1,131 @@
+package SpringAWS.testing;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Just enough XML for S3's request and response bodies.
+ */
+final class Xml {
+    static final String NAMESPACE = "http://s3.amazonaws.com/doc/2006-03-01/";
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'")
+            .withZone(ZoneOffset.UTC);
+
+    private final StringBuilder builder = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+    // Keys and prefixes are URL-encoded when the client asked for encoding-type=url
+    private final boolean urlEncoded;
+
+    private Xml(String root, boolean urlEncoded) {
+        this.urlEncoded = urlEncoded;
+        this.builder.append('<').append(root).append(" xmlns=\"").append(NAMESPACE).append("\">");
+    }
+
+    static Xml document(String root) {
+        return new Xml(root, false);
+    }
+
+    static Xml document(String root, boolean urlEncoded) {
+        return new Xml(root, urlEncoded);
+    }
+
+    Xml start(String name) {
+        this.builder.append('<').append(name).append('>');
+
+        return this;
+    }
+
+    Xml end(String name) {
+        this.builder.append("</").append(name).append('>');
+
+        return this;
+    }
+
+    Xml element(String name, Object value) {
+        if (value != null) {
+            this.start(name);
+            this.builder.append(escape(value instanceof Instant ? TIMESTAMP.format((Instant) value) : value.toString()));
+            this.end(name);
+        }
+
+        return this;
+    }
+
+    /**
+     * An element holding a key or prefix, URL-encoded if the client asked for it.
+     */
+    Xml name(String name, String value) {
+        return this.element(name, value != null && this.urlEncoded
+                ? URLEncoder.encode(value, StandardCharsets.UTF_8).replace("+", "%20")
+                : value);
+    }
+
+    Xml owner(String name) {
+        return this.start(name).element("ID", LocalS3Server.OWNER_ID).element("DisplayName", "local").end(name);
+    }
+
+    byte[] close(String root) {
+        this.end(root);
+
+        return this.builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static Element parse(byte[] body) {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            Document document = factory.newDocumentBuilder().parse(new ByteArrayInputStream(body));
+
+            return document.getDocumentElement();
+        } catch (Exception exception) {
+            throw new S3Error(400, "MalformedXML", "The XML you provided was not well-formed");
+        }
+    }
+
+    static List<Element> children(Element parent, String name) {
+        NodeList nodes = parent.getElementsByTagName(name);
+        List<Element> elements = new ArrayList<>(nodes.getLength());
+
+        for (int index = 0; index < nodes.getLength(); index++) {
+            elements.add((Element) nodes.item(index));
+        }
+
+        return elements;
+    }
+
+    static String text(Element parent, String name) {
+        NodeList nodes = parent.getElementsByTagName(name);
+
+        return nodes.getLength() == 0 ? null : nodes.item(0).getTextContent().trim();
+    }
+
+    private static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+
+        for (int index = 0; index < value.length(); index++) {
+            char character = value.charAt(index);
+
+            switch (character) {
+                case '<' -> escaped.append("&lt;");
+                case '>' -> escaped.append("&gt;");
+                case '&' -> escaped.append("&amp;");
+                case '"' -> escaped.append("&quot;");
+                case '\'' -> escaped.append("&apos;");
+                default -> escaped.append(character);
+            }
+        }
+
+        return escaped.toString();
+    }
+}